@@ -0,0 +1,41 @@
+#!/bin/bash
+# Start every party of a cluster config as its own process: locally for 127.0.0.1 and localhost, over ssh
+# for the other hosts. Every host needs FPTD_HOME with the compiled classes, the datasets and its offline
+# file, generated once with: java -cp <classpath> fptd.PartyMain <cluster config> offline
+#
+# usage: deploy/launch.sh <cluster config> <classpath>
+# The logs go to logs/party-<id>.log of FPTD_HOME on each host.
+
+set -u
+if [ $# -ne 2 ]; then
+    echo "usage: $0 <cluster config> <classpath>" >&2
+    exit 2
+fi
+CONF=$1
+CLASSPATH=$2
+FPTD_HOME=${FPTD_HOME:-$(pwd)}
+JAVA=${JAVA:-java}
+
+pids=()
+ids=()
+while read -r kind id host port; do
+    [ "$kind" = "party" ] || continue
+    cmd="cd '$FPTD_HOME' && mkdir -p logs && $JAVA -cp '$CLASSPATH' fptd.PartyMain '$CONF' $id > logs/party-$id.log 2>&1"
+    if [ "$host" = "127.0.0.1" ] || [ "$host" = "localhost" ]; then
+        bash -c "$cmd" &
+    else
+        ssh "$host" "$cmd" &
+    fi
+    pids+=($!)
+    ids+=("$id")
+    echo "started party $id on $host:$port"
+done < <(sed 's/#.*//' "$CONF")
+
+status=0
+for i in "${!pids[@]}"; do
+    if ! wait "${pids[$i]}"; then
+        echo "party ${ids[$i]} failed, see logs/party-${ids[$i]}.log on its host" >&2
+        status=1
+    fi
+done
+exit $status
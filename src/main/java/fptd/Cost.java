@@ -0,0 +1,162 @@
+package fptd;
+
+/**
+ * What an online phase costs a party, a gate, a round or a gate type: the traffic in WireCodec frames, whatever
+ * the transport, and where the time went. The counters of one party are only updated by its own thread.
+ */
+public final class Cost {
+
+    private long rounds;
+    private long shares; // opened
+    private long messagesSent;
+    private long bytesSent;
+    private long messagesReceived;
+    private long bytesReceived;
+    private long computeNanos; // local computation of the gates
+    private long waitNanos; // blocked on messages, those of the king included
+    private long waitForKingNanos;
+    private long reconstructNanos;
+    private long elapsedNanos;
+
+    public Cost copy() {
+        Cost result = new Cost();
+        result.add(this);
+        return result;
+    }
+
+    public void add(Cost other) {
+        rounds += other.rounds;
+        shares += other.shares;
+        messagesSent += other.messagesSent;
+        bytesSent += other.bytesSent;
+        messagesReceived += other.messagesReceived;
+        bytesReceived += other.bytesReceived;
+        computeNanos += other.computeNanos;
+        waitNanos += other.waitNanos;
+        waitForKingNanos += other.waitForKingNanos;
+        reconstructNanos += other.reconstructNanos;
+        elapsedNanos += other.elapsedNanos;
+    }
+
+    /**
+     * @return this minus an earlier copy of the same counters
+     */
+    public Cost since(Cost before) {
+        Cost result = copy();
+        result.rounds -= before.rounds;
+        result.shares -= before.shares;
+        result.messagesSent -= before.messagesSent;
+        result.bytesSent -= before.bytesSent;
+        result.messagesReceived -= before.messagesReceived;
+        result.bytesReceived -= before.bytesReceived;
+        result.computeNanos -= before.computeNanos;
+        result.waitNanos -= before.waitNanos;
+        result.waitForKingNanos -= before.waitForKingNanos;
+        result.reconstructNanos -= before.reconstructNanos;
+        result.elapsedNanos -= before.elapsedNanos;
+        return result;
+    }
+
+    /**
+     * @return the part from, ..., to - 1 of total of the traffic, waits and reconstruction of this cost, so that
+     *         the parts of consecutive ranges add up to the whole
+     */
+    public Cost part(long from, long to, long total) {
+        Cost result = new Cost();
+        if (total > 0) {
+            result.messagesSent = part(messagesSent, from, to, total);
+            result.bytesSent = part(bytesSent, from, to, total);
+            result.messagesReceived = part(messagesReceived, from, to, total);
+            result.bytesReceived = part(bytesReceived, from, to, total);
+            result.waitNanos = part(waitNanos, from, to, total);
+            result.waitForKingNanos = part(waitForKingNanos, from, to, total);
+            result.reconstructNanos = part(reconstructNanos, from, to, total);
+        }
+        return result;
+    }
+
+    private static long part(long value, long from, long to, long total) {
+        return value * to / total - value * from / total;
+    }
+
+    public void sent(int messages, long bytes) {
+        messagesSent += messages;
+        bytesSent += bytes;
+    }
+
+    public void received(long bytes) {
+        messagesReceived++;
+        bytesReceived += bytes;
+    }
+
+    public void addRounds(long rounds) {
+        this.rounds += rounds;
+    }
+
+    public void addShares(long shares) {
+        this.shares += shares;
+    }
+
+    public void addComputeNanos(long nanos) {
+        computeNanos += nanos;
+    }
+
+    public void addWaitNanos(long nanos, boolean forKing) {
+        waitNanos += nanos;
+        if (forKing) {
+            waitForKingNanos += nanos;
+        }
+    }
+
+    public void addReconstructNanos(long nanos) {
+        reconstructNanos += nanos;
+    }
+
+    public void addElapsedNanos(long nanos) {
+        elapsedNanos += nanos;
+    }
+
+    public long getRounds() {
+        return rounds;
+    }
+
+    public long getShares() {
+        return shares;
+    }
+
+    public long getMessagesSent() {
+        return messagesSent;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public long getMessagesReceived() {
+        return messagesReceived;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    public long getComputeNanos() {
+        return computeNanos;
+    }
+
+    public long getWaitNanos() {
+        return waitNanos;
+    }
+
+    public long getWaitForKingNanos() {
+        return waitForKingNanos;
+    }
+
+    public long getReconstructNanos() {
+        return reconstructNanos;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+}
@@ -2,184 +2,509 @@ package fptd;
 
 import static fptd.Params.N;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import fptd.net.ClusterConfig;
+import fptd.net.Inbox;
+import fptd.net.Sessions;
+import fptd.net.TcpTransport;
+import fptd.net.Transport;
+import fptd.net.WireCodec;
+import fptd.offline.FakeParty;
+import fptd.offline.OfflineReader;
+import fptd.sharing.PseudoRandomSecretSharing;
+import fptd.sharing.RandomnessSource;
+import fptd.sharing.SeededShamirSharing;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.math.BigInteger;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class EdgeServer {
 
     private boolean isKing = false;
     private int idx; // start from 0
-    private ArrayList<ObjectInputStream> networkReaders = null;
-    private ArrayList<ObjectOutputStream> networkWriters = null;
+    private static final int KING_ID = 0;
+    private static final long CLOSE_DRAIN_MILLIS = 10_000;
+    private final String jobName;
+    private final ClusterConfig cluster; // the addresses of the parties on other hosts, null in one JVM
+    private String offlineId; // the same in the offline files of every party of one offline run
 
-    private ObjectInputStream readerFromKing = null;
-    private ObjectOutputStream writerToKing = null;
+    private Transport transport = null;
+    private Sessions sessions = null;
+    private int session = 0; // of the messages of this server's job
+    private boolean sharedTransport = false; // the connections of a PartyDaemon, which outlive this job
+    private Inbox inbox = null; // the received messages of the session per party id
+    private int[] lateFrames = null; // frames of a party that readFromFirst did not wait for, dropped on arrival
+    private final Cost cost = new Cost(); // the traffic and waits of this server so far
 
-    private BufferedReader fileReader;
+    private final OfflineReader offline;
+    // the random masks, derived from the PRSS keys of the offline file, per thread that reads offline material
+    private final ThreadLocal<PseudoRandomSecretSharing> randomness;
+    // null if this party reads the dealt shares from the offline file
+    private final ThreadLocal<SeededShamirSharing> dealtShares;
+    private final OfflineSegment sequential = new OfflineSegment(0, 0, 0, false); // of the reads outside a segment
+    private final ThreadLocal<OfflineSegment> currentSegment = new ThreadLocal<>(); // of the gate being read
+    private final ShareVector counted; // what the counting reads return, the gates only keep what they read
+
+    /**
+     * Where the offline material of a gate is: its first entry in the offline file, the nonce of its first PRSS
+     * request and of its first dealt batch. A counting segment only counts them, see Circuit.planOfflineReads.
+     */
+    public static final class OfflineSegment {
+        private long entry;
+        private long prssNonce;
+        private long dealtNonce;
+        private final boolean counting;
+
+        private OfflineSegment(long entry, long prssNonce, long dealtNonce, boolean counting) {
+            this.entry = entry;
+            this.prssNonce = prssNonce;
+            this.dealtNonce = dealtNonce;
+            this.counting = counting;
+        }
+
+        private OfflineSegment copy(boolean counting) {
+            return new OfflineSegment(entry, prssNonce, dealtNonce, counting);
+        }
+    }
 
     public EdgeServer(boolean isKing, int idx, String jobName) {
+        this(isKing, idx, jobName, (ClusterConfig) null);
+    }
+
+    /**
+     * The servers of one run in this JVM over the given transport instead of that of Params.TRANSPORT, e.g. a
+     * transport that delays one party. The server connects and closes it like its own.
+     */
+    public EdgeServer(boolean isKing, int idx, String jobName, Transport transport) {
+        this(isKing, idx, jobName, (ClusterConfig) null);
+        this.transport = transport;
+    }
+
+    /**
+     * A job on the connections of a long-running party, see PartyDaemon. Its messages are those of the session.
+     */
+    public EdgeServer(boolean isKing, int idx, String jobName, Transport transport, Sessions sessions, int session) {
+        this(isKing, idx, jobName, (ClusterConfig) null);
+        this.transport = transport;
+        this.sessions = sessions;
+        this.session = session;
+        this.sharedTransport = true;
+    }
+
+    /**
+     * @param cluster the parties run as processes on the hosts of the cluster, connected over TCP
+     */
+    public EdgeServer(boolean isKing, int idx, String jobName, ClusterConfig cluster) {
         this.isKing = isKing;
         this.idx = idx;
+        this.jobName = jobName;
+        this.cluster = cluster;
 
         final String fileNameSuffix = jobName + (jobName.isEmpty() ? "party-" : "-party-");
-        String currentFileName = fileNameSuffix + idx + ".txt";
+        this.offline = new OfflineReader(Params.FAKE_OFFLINE_DIR, fileNameSuffix + idx + FakeParty.FILE_SUFFIX);
+        this.offlineId = offline.getOfflineId();
+        this.counted = new ShareVector(idx, 0);
+        PseudoRandomSecretSharing prss = new PseudoRandomSecretSharing(idx,
+                PseudoRandomSecretSharing.decodeKeys(offline.getPrssKeys()), Params.T, N);
+        this.randomness = ThreadLocal.withInitial(prss::copy);
+        if (!offline.getShareSeed().isEmpty()) {
+            SeededShamirSharing dealt = new SeededShamirSharing(idx, HexFormat.of().parseHex(offline.getShareSeed()),
+                    Params.T, N);
+            this.dealtShares = ThreadLocal.withInitial(dealt::copy);
+        } else {
+            this.dealtShares = null;
+        }
+    }
+
+    /**
+     * @return the random masks of the gate being read, in its segment if it has one
+     */
+    public RandomnessSource getRandomness() {
+        return new SegmentRandomness(segment());
+    }
+
+    public ShareVector readRandShares(int size) {
+        if (segment().counting) {
+            segment().entry += size;
+            return counted;
+        }
+        ShareVector shares = new ShareVector(this.idx, size);
+        readInto(shares);
+        return shares;
+    }
+
+    /**
+     * @return the shares of the next values the dealer shared with FakeParty.dealSharesToAllParties, expanded
+     *         from the share seed of a seeded party
+     */
+    public ShareVector readDealtShares(int size) {
+        if (dealtShares == null) {
+            return readRandShares(size);
+        }
+        OfflineSegment segment = segment();
+        SeededShamirSharing dealt = dealtShares.get();
+        dealt.setNonce(segment.dealtNonce++);
+        return segment.counting ? counted : dealt.nextShares(size);
+    }
+
+    public FieldVector readClear(int size) {
+        if (segment().counting) {
+            segment().entry += size;
+            return counted;
+        }
+        FieldVector values = new FieldVector(size);
+        readInto(values);
+        return values;
+    }
+
+    private void readInto(FieldVector vector) {
+        OfflineSegment segment = segment();
+        offline.read(segment.entry, vector.getLimbs(), 0, vector.size());
+        segment.entry += vector.size();
+    }
+
+    private OfflineSegment segment() {
+        OfflineSegment segment = currentSegment.get();
+        return segment != null ? segment : sequential;
+    }
+
+    /**
+     * The PRSS requests of a segment
+     */
+    private final class SegmentRandomness implements RandomnessSource {
+        private final OfflineSegment segment;
+
+        private SegmentRandomness(OfflineSegment segment) {
+            this.segment = segment;
+        }
+
+        @Override
+        public ShareVector nextShares(int size) {
+            PseudoRandomSecretSharing prss = next();
+            return segment.counting ? counted : prss.nextShares(size);
+        }
+
+        @Override
+        public ShareVector nextPackedShares(int size) {
+            PseudoRandomSecretSharing prss = next();
+            return segment.counting ? counted : prss.nextPackedShares(size);
+        }
+
+        private PseudoRandomSecretSharing next() {
+            PseudoRandomSecretSharing prss = randomness.get();
+            prss.setNonce(segment.prssNonce++);
+            return prss;
+        }
+    }
+
+    /**
+     * Run the reads of the gates from where the reads so far end, only counting what they take from the offline
+     * material, and continue after them. The gates take their segments with markOffline meanwhile.
+     */
+    public void planOffline(Runnable reads) {
+        OfflineSegment counting = sequential.copy(true);
+        currentSegment.set(counting);
         try {
-            fileReader = new BufferedReader(new FileReader(Params.FAKE_OFFLINE_DIR + currentFileName));
-        } catch (FileNotFoundException e) {
-            throw new RuntimeException(e);
+            reads.run();
+        } finally {
+            currentSegment.remove();
         }
+        sequential.entry = counting.entry;
+        sequential.prssNonce = counting.prssNonce;
+        sequential.dealtNonce = counting.dealtNonce;
+    }
+
+    public boolean isPlanningOffline() {
+        OfflineSegment segment = currentSegment.get();
+        return segment != null && segment.counting;
     }
 
-    public List<Share> readRandShares(int size) {
-        List<Share> shares = new ArrayList<>();
+    /**
+     * @return the segment of the next reads of planOffline
+     */
+    public OfflineSegment markOffline() {
+        if (!isPlanningOffline()) {
+            throw new IllegalStateException("Segments are only marked in planOffline");
+        }
+        return currentSegment.get().copy(false);
+    }
+
+    /**
+     * Run the reads of a gate from its segment, on the current thread. They wait for the material that a
+     * pipelined offline phase has not written yet, see isOfflineStreaming.
+     */
+    public void readOffline(OfflineSegment segment, Runnable reads) {
+        currentSegment.set(segment);
         try {
-            for (int i = 0; i < size; i++) {
-                shares.add(new Share(this.idx, new BigInteger(this.fileReader.readLine())));
-            }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            reads.run();
+        } finally {
+            currentSegment.remove();
         }
-        return shares;
     }
 
-    public List<BigInteger> readClear(int size) {
-        List<BigInteger> values = new ArrayList<>();
+    /**
+     * @return whether the offline phase of this JVM was still writing the offline file when this server opened
+     *         it, see Params.OFFLINE_PIPELINE
+     */
+    public boolean isOfflineStreaming() {
+        return offline.isStreaming();
+    }
+
+    public void connectOtherServers() throws IOException {
+        connectOtherServers("");
+    }
+
+    /**
+     * Connect to every server, itself included, over TCP to the hosts of the cluster, or else over the transport
+     * given or that of Params.TRANSPORT, where the servers of one run find each other by the job name. Returns
+     * once all of them are ready to receive. On the shared connections of a PartyDaemon the servers only check the
+     * handshake.
+     *
+     * @param circuitFingerprint see Circuit.fingerprint. Over TCP a server refuses the servers that run another
+     *                           job, field, circuit or offline run.
+     */
+    public void connectOtherServers(String circuitFingerprint) throws IOException {
+        this.lateFrames = new int[N];
+        String handshake = "job " + jobName + ", field " + FakeParty.fieldHeader() + ", offline " + offlineId
+                + ", circuit " + circuitFingerprint;
+        if (sharedTransport) {
+            this.inbox = sessions.inbox(session);
+            checkSession(handshake);
+            return;
+        }
+        if (cluster != null) {
+            this.transport = new TcpTransport(cluster, idx);
+        } else if (this.transport == null) {
+            this.transport = Transport.byName(Params.TRANSPORT, jobName, idx, N);
+        }
+        this.sessions = new Sessions(N);
+        this.inbox = sessions.inbox(session);
+        transport.connect(sessions, handshake);
+        if (Params.IS_PRINT_EXE_INFO && this.isKing) {
+            System.out.println("King connected to " + N + " parties over "
+                    + (cluster != null ? TcpTransport.NAME : Params.TRANSPORT));
+        }
+    }
+
+    /**
+     * Every server sends a digest of its handshake to every server, which compares it with its own
+     */
+    private void checkSession(String handshake) {
+        BigInteger digest;
         try {
-            for (int i = 0; i < size; i++) {
-                values.add(new BigInteger(this.fileReader.readLine()));
-            }
-        } catch (IOException e) {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(handshake.getBytes(StandardCharsets.UTF_8));
+            digest = new BigInteger(1, Arrays.copyOf(hash, 7)); // below any modulus of Params.FIELD
+        } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException(e);
         }
-        return values;
+        sendToAll(FieldVector.of(List.of(digest)));
+        for (int i = 0; i < N; i++) {
+            if (!digest.equals(readFrom(i).get(0))) {
+                throw new RuntimeException("Party " + i + " runs another circuit or offline run of job " + jobName);
+            }
+        }
     }
 
-    public void connectOtherServers() throws IOException {
-        if (this.isKing) {
-            this.networkReaders = new ArrayList<>();
-            this.networkWriters = new ArrayList<>();
-            networkReaders.add(null);// 留着第一个位置
-            networkWriters.add(null);
-            ServerSocket serverSocket = new ServerSocket(Params.Port_King);
-            for (int i = 0; i < Params.NUM_SERVER - 1; i++) { // except the king server
-                Socket socket = serverSocket.accept(); // wait for other servers' connection
-                networkReaders.add(new ObjectInputStream(socket.getInputStream()));
-                networkWriters.add(new ObjectOutputStream(socket.getOutputStream()));
-                if (Params.IS_PRINT_EXE_INFO) {
-                    System.out.println("King get I/O connection from " + socket.getRemoteSocketAddress());
-                }
+    /**
+     * @return the next message of party_id that is not dropped, null if none has arrived
+     */
+    private FieldVector poll(int party_id) {
+        while (true) {
+            FieldVector message = inbox.poll(party_id);
+            if (message != null && message != Inbox.CLOSED) {
+                cost.received(WireCodec.frameSize(message));
             }
-            new Thread(() -> {// 让king自我连接
-                try {
-                    Socket socket = serverSocket.accept();
-                    networkReaders.set(0, new ObjectInputStream(socket.getInputStream()));
-                    networkWriters.set(0, new ObjectOutputStream(socket.getOutputStream()));
-                    if (Params.IS_PRINT_EXE_INFO) {
-                        System.out.println("King get I/O connection from itself " + socket.getRemoteSocketAddress());
-                    }
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-            }).start();
+            if (message == Inbox.CLOSED) {
+                lateFrames[party_id] = 0; // nothing more arrives
+                return message;
+            }
+            if (message == null || lateFrames[party_id] == 0) {
+                return message;
+            }
+            lateFrames[party_id]--; // the opening it belongs to is already done
         }
-        Socket socket = new Socket(Params.IP_King, Params.Port_King); // connect to the king as a server
-        this.writerToKing = new ObjectOutputStream(socket.getOutputStream());
-        this.readerFromKing = new ObjectInputStream(socket.getInputStream());
     }
 
-    public void sendToKing(Object message) {
+    public void sendToKing(FieldVector message) {
+        sendTo(KING_ID, message);
+    }
+
+    public FieldVector readFromKing() {
+        return readFrom(KING_ID);
+    }
+
+    /**
+     * @return the next message of every server, the i-th one from party i
+     */
+    public List<ShareVector> kingReadFromAll() {
+        if (!this.isKing) {
+            throw new RuntimeException("Only the king calls this function");
+        }
+        return readFromAll();
+    }
+
+    public void kingSendToAll(FieldVector message) {
+        if (!this.isKing) {
+            throw new RuntimeException("Only the king calls this function");
+        }
+        sendToAll(message);
+    }
+
+    public void sendTo(int party_id, FieldVector message) {
         try {
-            writerToKing.writeObject(message);
-            writerToKing.flush();
+            transport.send(session, party_id, message);
+            cost.sent(1, WireCodec.frameSize(message));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    public Object readFromKing() {
+    /**
+     * Send the message to every server, this one included. It must not be changed afterwards.
+     */
+    public void sendToAll(FieldVector message) {
         try {
-            return readerFromKing.readObject();
+            transport.sendToAll(session, message);
+            cost.sent(N, (long) N * WireCodec.frameSize(message));
         } catch (IOException e) {
             throw new RuntimeException(e);
-        } catch (ClassNotFoundException e) {
-            throw new RuntimeException(e);
         }
     }
 
-    public List<Object> kingReadFromAll() {
-        if (!this.isKing) {
-            throw new RuntimeException("Only the king calls this function");
+    /**
+     * @return the next message of party_id
+     */
+    public FieldVector readFrom(int party_id) {
+        BitSet senders = new BitSet(N);
+        senders.set(party_id);
+        FieldVector message;
+        while ((message = poll(party_id)) == null) {
+            long start = System.nanoTime();
+            inbox.await(senders, Long.MAX_VALUE);
+            cost.addWaitNanos(System.nanoTime() - start, party_id == KING_ID);
         }
+        if (message == Inbox.CLOSED) {
+            throw new RuntimeException("The connection from party " + party_id + " is closed");
+        }
+        return message;
+    }
 
-        List<Object> result = new ArrayList<>();
-        List<Thread> threads = new ArrayList<>();
+    /**
+     * @return the next message of every server, the i-th one from party i
+     */
+    public List<ShareVector> readFromAll() {
+        List<ShareVector> result = new ArrayList<>(N);
         for (int i = 0; i < N; i++) {
-            int finalI = i;
-            Thread thread = new Thread(() -> {
-                ObjectInputStream reader = this.networkReaders.get(finalI);
-                try {
-                    Object obj = reader.readObject();
-                    synchronized (result) {
-                        result.add(obj);
-                    }
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                } catch (ClassNotFoundException e) {
-                    throw new RuntimeException(e);
+            FieldVector message = readFrom(i);
+            if (!(message instanceof ShareVector)) {
+                throw new RuntimeException("Party " + i + " sent clear values instead of shares");
+            }
+            result.add((ShareVector) message);
+        }
+        return result;
+    }
+
+    /**
+     * Wait only for the first count servers to send share vectors of the given size, e.g. the threshold of an
+     * opening. The next message of every other server is dropped when it arrives, so that the following
+     * reads from it stay aligned.
+     *
+     * @return count messages in the order they arrived
+     */
+    public List<ShareVector> readFromFirst(int count, int size) {
+        List<ShareVector> result = new ArrayList<>(count);
+        BitSet pending = new BitSet(N);
+        pending.set(0, N);
+        while (result.size() < count) {
+            for (int i = pending.nextSetBit(0); i >= 0 && result.size() < count; i = pending.nextSetBit(i + 1)) {
+                FieldVector message = poll(i);
+                if (message == null) {
+                    continue;
+                }
+                pending.clear(i);
+                if (message instanceof ShareVector && message.size() == size) {
+                    result.add((ShareVector) message);
+                } else if (message != Inbox.CLOSED && Params.IS_PRINT_EXE_INFO) {
+                    System.out.println("Party " + idx + " ignores an invalid message from party " + i);
+                }
+            }
+            if (result.size() < count) {
+                if (pending.cardinality() + result.size() < count) {
+                    throw new RuntimeException("Only " + result.size() + " of the " + count
+                            + " share vectors needed can still arrive");
                 }
-            });
-            thread.start();
-            threads.add(thread);
-        }
-        for (Thread thread : threads) {
-            try {
-                thread.join(); // 让main thread等待threads完成
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
+                long start = System.nanoTime();
+                inbox.await(pending, Long.MAX_VALUE);
+                cost.addWaitNanos(System.nanoTime() - start, false);
             }
         }
+        for (int i = pending.nextSetBit(0); i >= 0; i = pending.nextSetBit(i + 1)) {
+            lateFrames[i]++;
+        }
         return result;
     }
 
-    public void kingSendToAll(Object message) {
+    public List<ShareVector> kingReadFromFirst(int count, int size) {
         if (!this.isKing) {
             throw new RuntimeException("Only the king calls this function");
         }
-        try {
-            for (ObjectOutputStream writer : this.networkWriters) {
-                writer.writeObject(message);
-            }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        return readFromFirst(count, size);
     }
 
+    /**
+     * Before closing, wait a while for the frames readFromFirst did not wait for, so that a slow server can
+     * still send them instead of failing on a closed connection. Shared connections stay open for the next job
+     * and drop the late frames of the session.
+     */
     public void close() {
-        try {
-            if (this.isKing) {
-                for (ObjectInputStream reader : networkReaders) {
-                    reader.close();
-                }
-                for (ObjectOutputStream writer : networkWriters) {
-                    writer.close();
+        offline.close();
+        if (inbox == null) {
+            return; // never connected
+        }
+        if (sharedTransport) {
+            sessions.finish(session);
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CLOSE_DRAIN_MILLIS);
+        BitSet late = new BitSet(N);
+        while (true) {
+            late.clear();
+            for (int i = 0; i < N; i++) {
+                if (lateFrames[i] > 0 && poll(i) == null) {
+                    late.set(i);
                 }
             }
-            this.readerFromKing.close();
-            this.writerToKing.close();
+            if (late.isEmpty() || System.nanoTime() >= deadline) {
+                break;
+            }
+            inbox.await(late, deadline);
+        }
+        try {
+            transport.close();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * @return the bytes and messages this server has sent and received, in WireCodec frames whatever the
+     *         transport, and how long it waited for them
+     */
+    public Cost getCost() {
+        return cost;
+    }
+
+    public String getJobName() {
+        return jobName;
+    }
+
     public boolean isKing() {
         return this.isKing;
     }
@@ -187,4 +512,4 @@ public class EdgeServer {
     public int getIdx() {
         return this.idx;
     }
-}
\ No newline at end of file
+}
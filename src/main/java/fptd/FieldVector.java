@@ -0,0 +1,274 @@
+package fptd;
+
+import fptd.field.Field;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A vector of field elements in struct-of-arrays layout: all elements live in one contiguous limb
+ * array (Params.FIELD.limbs() limbs each, in the field's internal form), and a bitmap marks the
+ * missing entries that used to be null elements of a List&lt;BigInteger&gt;.
+ *
+ * Element-wise operations propagate missing entries (missing if either operand is missing),
+ * reductions such as dot products skip them.
+ */
+public class FieldVector {
+
+    protected final int size;
+    protected final long[] limbs;
+    protected final BitSet missing;
+
+    public FieldVector(int size) {
+        this(size, new long[size * Params.FIELD.limbs()], new BitSet(size));
+    }
+
+    protected FieldVector(int size, long[] limbs, BitSet missing) {
+        this.size = size;
+        this.limbs = limbs;
+        this.missing = missing;
+    }
+
+    /**
+     * @param values null elements become missing entries
+     */
+    public static FieldVector of(List<BigInteger> values) {
+        FieldVector result = new FieldVector(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            result.set(i, values.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * a vector repeating the same value, which is converted to the field only once
+     */
+    public static FieldVector filled(int size, BigInteger value) {
+        FieldVector result = new FieldVector(size);
+        int n = Params.FIELD.limbs();
+        Params.FIELD.fromBigInteger(value, result.limbs, 0);
+        for (int i = 1; i < size; i++) {
+            System.arraycopy(result.limbs, 0, result.limbs, i * n, n);
+        }
+        return result;
+    }
+
+    /**
+     * concatenate the vectors one after another
+     */
+    public static FieldVector concat(List<? extends FieldVector> parts) {
+        FieldVector result = new FieldVector(totalSize(parts));
+        result.copyFrom(parts);
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the i-th value in [0, P), null if it is missing
+     */
+    public BigInteger get(int i) {
+        if (missing.get(i)) {
+            return null;
+        }
+        return Params.FIELD.toBigInteger(limbs, offset(i));
+    }
+
+    /**
+     * @param value reduced mod P, null marks the entry as missing
+     */
+    public void set(int i, BigInteger value) {
+        if (value == null) {
+            missing.set(i);
+            return;
+        }
+        Params.FIELD.fromBigInteger(value, limbs, offset(i));
+        missing.clear(i);
+    }
+
+    public boolean isMissing(int i) {
+        return missing.get(i);
+    }
+
+    public void setMissing(int i) {
+        missing.set(i);
+    }
+
+    public boolean hasMissing() {
+        return !missing.isEmpty();
+    }
+
+    public int countMissing() {
+        return missing.cardinality();
+    }
+
+    /**
+     * @return the backing limb array, element i starts at offset(i)
+     */
+    public long[] getLimbs() {
+        return limbs;
+    }
+
+    public int offset(int i) {
+        return i * Params.FIELD.limbs();
+    }
+
+    public List<BigInteger> toBigIntegers() {
+        List<BigInteger> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(get(i));
+        }
+        return result;
+    }
+
+    public FieldVector copy() {
+        return new FieldVector(size, limbs.clone(), (BitSet) missing.clone());
+    }
+
+    /**
+     * @return a copy of the entries from, ..., from + size - 1
+     */
+    public FieldVector slice(int from, int size) {
+        FieldVector result = new FieldVector(size);
+        copySliceTo(from, result);
+        return result;
+    }
+
+    //*************************** bulk operations, in place ***************************
+
+    public void addInPlace(FieldVector Y) {
+        checkSize(Y);
+        Field field = Params.FIELD;
+        int n = field.limbs();
+        for (int i = 0, off = 0; i < size; i++, off += n) {
+            field.add(limbs, off, Y.limbs, off, limbs, off);
+        }
+        missing.or(Y.missing);
+    }
+
+    public void subtractInPlace(FieldVector Y) {
+        checkSize(Y);
+        Field field = Params.FIELD;
+        int n = field.limbs();
+        for (int i = 0, off = 0; i < size; i++, off += n) {
+            field.sub(limbs, off, Y.limbs, off, limbs, off);
+        }
+        missing.or(Y.missing);
+    }
+
+    /**
+     * this = Y - this, so that clear - shares does not need a temporary vector
+     */
+    public void reverseSubtractInPlace(FieldVector Y) {
+        checkSize(Y);
+        Field field = Params.FIELD;
+        int n = field.limbs();
+        for (int i = 0, off = 0; i < size; i++, off += n) {
+            field.sub(Y.limbs, off, limbs, off, limbs, off);
+        }
+        missing.or(Y.missing);
+    }
+
+    public void multiplyInPlace(FieldVector Y) {
+        checkSize(Y);
+        Field field = Params.FIELD;
+        int n = field.limbs();
+        for (int i = 0, off = 0; i < size; i++, off += n) {
+            field.mul(limbs, off, Y.limbs, off, limbs, off);
+        }
+        missing.or(Y.missing);
+    }
+
+    /**
+     * @param constant one element in the internal form of Params.FIELD
+     */
+    public void scaleInPlace(long[] constant) {
+        Field field = Params.FIELD;
+        int n = field.limbs();
+        for (int i = 0, off = 0; i < size; i++, off += n) {
+            field.mul(limbs, off, constant, 0, limbs, off);
+        }
+    }
+
+    /**
+     * @return the sum of all present entries, in the internal form of Params.FIELD
+     */
+    public long[] sumLimbs() {
+        Field field = Params.FIELD;
+        int n = field.limbs();
+        long[] sum = field.newElement();
+        for (int i = missing.nextClearBit(0); i < size; i = missing.nextClearBit(i + 1)) {
+            field.add(sum, 0, limbs, i * n, sum, 0);
+        }
+        return sum;
+    }
+
+    /**
+     * The products are accumulated unreduced and reduced once at the end.
+     *
+     * @return the inner product over the entries present in both vectors, in the internal form of Params.FIELD
+     */
+    public long[] dotLimbs(FieldVector Y) {
+        checkSize(Y);
+        Field field = Params.FIELD;
+        int n = field.limbs();
+        long[] sum = field.newElement();
+        long[] acc = new long[field.wideLimbs()];
+        field.initWide(sum, 0, acc, 0);
+        for (int i = 0, off = 0; i < size; i++, off += n) {
+            if (missing.get(i) || Y.missing.get(i)) {
+                continue;
+            }
+            field.mulAdd(limbs, off, Y.limbs, off, acc, 0);
+        }
+        field.reduceWide(acc, 0, sum, 0);
+        return sum;
+    }
+
+    //*************************** helpers ***************************
+
+    protected void checkSize(FieldVector Y) {
+        if (size != Y.size) {
+            throw new IllegalArgumentException("X and Y must have the same size.");
+        }
+    }
+
+    protected static int totalSize(List<? extends FieldVector> parts) {
+        int total = 0;
+        for (FieldVector part : parts) {
+            total += part.size;
+        }
+        return total;
+    }
+
+    protected void copySliceTo(int from, FieldVector dst) {
+        if (from < 0 || from + dst.size > size) {
+            throw new IndexOutOfBoundsException("Slice " + from + "+" + dst.size + " of " + size + " entries");
+        }
+        int n = Params.FIELD.limbs();
+        System.arraycopy(limbs, from * n, dst.limbs, 0, dst.size * n);
+        for (int i = missing.nextSetBit(from); i >= 0 && i < from + dst.size; i = missing.nextSetBit(i + 1)) {
+            dst.missing.set(i - from);
+        }
+    }
+
+    protected void copyFrom(List<? extends FieldVector> parts) {
+        int n = Params.FIELD.limbs();
+        int pos = 0;
+        for (FieldVector part : parts) {
+            System.arraycopy(part.limbs, 0, limbs, pos * n, part.size * n);
+            for (int i = part.missing.nextSetBit(0); i >= 0; i = part.missing.nextSetBit(i + 1)) {
+                missing.set(pos + i);
+            }
+            pos += part.size;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FieldVector" + toBigIntegers();
+    }
+}
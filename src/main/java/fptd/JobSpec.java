@@ -0,0 +1,73 @@
+package fptd;
+
+/**
+ * A TD job as a PartyDaemon runs it: its name, which also names its offline files, the dataset and the number
+ * of iterations. It is written as one line of tokens separated by spaces, so the paths cannot contain spaces.
+ */
+public class JobSpec {
+
+    private final String jobName;
+    private final String sensingDataFile;
+    private final String truthFile;
+    private final boolean isCategoricalData;
+    private final int iterations;
+
+    public JobSpec(String jobName, String sensingDataFile, String truthFile, boolean isCategoricalData,
+            int iterations) {
+        if (iterations <= 0) {
+            throw new IllegalArgumentException("A job needs at least one iteration");
+        }
+        this.jobName = jobName;
+        this.sensingDataFile = sensingDataFile;
+        this.truthFile = truthFile;
+        this.isCategoricalData = isCategoricalData;
+        this.iterations = iterations;
+    }
+
+    /**
+     * The dataset and iterations of Params, under the job name of Main
+     */
+    public static JobSpec defaults() {
+        return new JobSpec("TD_optimal", Params.sensingDataFile, Params.truthFile, Params.isCategoricalData,
+                Params.ITER_TD);
+    }
+
+    /**
+     * @param tokens jobName sensingDataFile truthFile isCategoricalData iterations, from tokens[from]
+     */
+    public static JobSpec parse(String[] tokens, int from) {
+        if (tokens.length != from + 5) {
+            throw new IllegalArgumentException(
+                    "Expected <job name> <sensing data file> <truth file> <categorical true|false> <iterations>");
+        }
+        if (!tokens[from + 3].equals("true") && !tokens[from + 3].equals("false")) {
+            throw new IllegalArgumentException("categorical must be true or false, not " + tokens[from + 3]);
+        }
+        return new JobSpec(tokens[from], tokens[from + 1], tokens[from + 2], Boolean.parseBoolean(tokens[from + 3]),
+                Integer.parseInt(tokens[from + 4]));
+    }
+
+    public String toLine() {
+        return jobName + " " + sensingDataFile + " " + truthFile + " " + isCategoricalData + " " + iterations;
+    }
+
+    public String getJobName() {
+        return jobName;
+    }
+
+    public String getSensingDataFile() {
+        return sensingDataFile;
+    }
+
+    public String getTruthFile() {
+        return truthFile;
+    }
+
+    public boolean isCategoricalData() {
+        return isCategoricalData;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+}
@@ -30,6 +30,17 @@ public class Main {
 
         final String jobName = "TD_optimal";
 
+        if (Params.OFFLINE_PIPELINE) {
+            // the parties run online while the offline phase writes their material
+            Thread offline = new TDOfflineOptimal(workerNum, examNum, jobName).startTDOffline();
+            runTDOnline(workerNum, examNum, jobName, dataManager);
+            offline.join();
+            if (Params.IS_PRINT_EXE_INFO) {
+                System.out.println("Finish to online phase");
+            }
+            return;
+        }
+
         runTDOffline(workerNum, examNum, jobName);
 
         if (Params.IS_PRINT_EXE_INFO) {
@@ -78,9 +89,6 @@ public class Main {
             Thread thread = new Thread(new ServerThread(circuit, owner_idx, owner_idx == 0, dataManager));
             thread.start();
             threads.add(thread);
-            if (0 == owner_idx) {//if it is the king
-                Thread.sleep(500);
-            }
         }
         for (Thread thread : threads) {
             thread.join();
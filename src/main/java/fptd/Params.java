@@ -1,5 +1,9 @@
 package fptd;
 
+import fptd.field.Field;
+import fptd.field.MontgomeryField;
+import fptd.net.MemoryTransport;
+import fptd.protocols.OpeningMode;
 import java.math.BigInteger;
 
 public class Params {
@@ -11,11 +15,75 @@ public class Params {
     public static final int T = (N / 2) + 1;
     public static int ITER_TD = 3;
 
-    public static final BigInteger P = new BigInteger(
+    private static final BigInteger PRIME_512 = new BigInteger(
             "3351951982485649274893506249551461531869841455148098344430890360930441007518386744200468574541725856922507964546621512713438470702986642486608412251521039");
 
+    /**
+     * The field used by shares, sharing, offline material and the wire.
+     * Select it with -Dfptd.field=montgomery|mersenne61|biginteger, montgomery (over PRIME_512) by default.
+     * mersenne61 is much faster but only fits small workloads, see OfflineDivisionGate.
+     */
+    public static final Field FIELD = Field.byName(System.getProperty("fptd.field", MontgomeryField.NAME), PRIME_512);
+    public static final BigInteger P = FIELD.getModulus();
+
+    /**
+     * Secrets per share of the packed gates, select it with -Dfptd.pack.k. By default the largest k for
+     * which a Beaver product of packed shares (degree T + 2k - 3) can still be opened by N parties.
+     */
+    public static final int PACK_K = Integer.getInteger("fptd.pack.k", (N - T) / 2 + 1);
+
+    /**
+     * The default opening mode of the circuits, select it with -Dfptd.opening=king|all-to-all|sharded|tree
+     */
+    public static final OpeningMode OPENING_MODE = OpeningMode.byName(System.getProperty("fptd.opening", "king"));
+
+    /**
+     * Children per party of OpeningMode.TREE, select it with -Dfptd.tree.fanout. By default about sqrt(N), so
+     * that the king receives as few messages as a party has children and the tree is about two levels deep.
+     */
+    public static final int TREE_FANOUT = Integer.getInteger("fptd.tree.fanout", (int) Math.ceil(Math.sqrt(N)));
+
+    /**
+     * Shares per message of a wide OpeningMode.KING opening, select it with -Dfptd.opening.chunk, 0 to send every
+     * round as one message. The king reconstructs and sends back a chunk while the next ones are still arriving.
+     */
+    public static final int OPENING_CHUNK = Integer.getInteger("fptd.opening.chunk", 1 << 14);
+
+    /**
+     * Threads of OfflineCircuit.runOffline, select it with -Dfptd.offline.threads. The offline files are the same
+     * for any number of threads.
+     */
+    public static final int OFFLINE_THREADS = Integer.getInteger("fptd.offline.threads",
+            Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Run the offline phase of Main while the parties already run online, select it with -Dfptd.offline.pipeline.
+     * Every gate waits for its own offline material only, see OfflineProgress and Circuit.planOfflineReads, unless
+     * OFFLINE_PREFETCH is 0 and a party reads the whole circuit first.
+     */
+    public static final boolean OFFLINE_PIPELINE = Boolean.getBoolean("fptd.offline.pipeline");
+
+    /**
+     * Gates whose offline material a party reads ahead of the gate it runs online, select it with
+     * -Dfptd.offline.prefetch, 0 to read the whole circuit before it runs. A gate drops its material once it has
+     * run, so a party only holds that of the gates in flight, see OfflinePrefetcher.
+     */
+    public static final int OFFLINE_PREFETCH = Integer.getInteger("fptd.offline.prefetch", 8);
+
+    /**
+     * Where ServerThread writes the online cost of every party per gate, gate type and round as
+     * job-party-i-stats.csv and .json, select it with -Dfptd.stats=dir. Unset, the gates are not timed.
+     */
+    public static final String STATS_DIR = System.getProperty("fptd.stats");
+
+    /**
+     * How the parties of one JVM talk to each other, select it with -Dfptd.transport=memory|tcp. memory (by
+     * default) hands the vectors between the party threads without encoding them, tcp sends WireCodec frames
+     * over loopback sockets on ephemeral ports of IP_King.
+     */
+    public static final String TRANSPORT = System.getProperty("fptd.transport", MemoryTransport.NAME);
+
     public static final String IP_King = "127.0.0.1";
-    public static final int Port_King = 8874;
 
     public static final long PRECISE_ROUND = (long) Math.pow(10, 5);
 
@@ -0,0 +1,288 @@
+package fptd;
+
+import fptd.net.ClusterConfig;
+import fptd.net.Inbox;
+import fptd.net.Sessions;
+import fptd.net.TcpTransport;
+import fptd.offline.FakeParty;
+import fptd.protocols.Circuit;
+import fptd.truthDiscovery.optimized.TDOnlineOptimal;
+import fptd.utils.DataManager;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Runs one party of a cluster as a long-running process that serves many TD jobs: the connections to the other
+ * parties are opened once, and every job runs as its own session on them, see Sessions. The JVM stays warm from
+ * one job to the next.
+ *
+ * <pre>
+ * java fptd.PartyDaemon cluster.conf i [control port]    on the host of party i, e.g. with deploy/launch.sh
+ * </pre>
+ *
+ * The king listens for jobs on the control port of 127.0.0.1, one command per line:
+ *
+ * <pre>
+ * submit &lt;job name&gt; &lt;sensing data file&gt; &lt;truth file&gt; &lt;categorical true|false&gt; &lt;iterations&gt;
+ *     replies accepted &lt;job id&gt;, and once the job has run done &lt;job id&gt; &lt;millis&gt;, an accuracy
+ *     &lt;output&gt; &lt;value&gt; line per truth output and end, or error &lt;reason&gt;
+ * shutdown
+ *     replies bye once the jobs before it have run, and stops every party
+ * </pre>
+ *
+ * The king announces every job to the other parties on the control session. The jobs run one after another,
+ * as DataManager and Params.ITER_TD are static. The offline files of a job are generated beforehand with
+ * PartyMain offline and the same job. A job that fails at one party closes its connections, so that the other
+ * parties fail the job too instead of waiting for it, and the daemons are started again.
+ */
+public class PartyDaemon {
+
+    public static final int DEFAULT_CONTROL_PORT = 7874;
+    private static final int CONTROL_SESSION = 0; // the jobs are sessions 1, 2, ...
+    private static final int KING_ID = 0;
+    private static final String SHUTDOWN = "shutdown";
+
+    private final ClusterConfig cluster;
+    private final int party_id;
+    private final Sessions sessions;
+    private final TcpTransport transport;
+    private final BlockingQueue<Job> jobs = new LinkedBlockingQueue<>(); // at the king
+    private int lastJobId = CONTROL_SESSION;
+
+    /**
+     * A submitted job, completed with its accuracies
+     */
+    private static final class Job {
+        private final int id;
+        private final JobSpec spec; // null to shut down
+        private final CompletableFuture<Map<String, Double>> result = new CompletableFuture<>();
+
+        private Job(int id, JobSpec spec) {
+            this.id = id;
+            this.spec = spec;
+        }
+    }
+
+    public PartyDaemon(ClusterConfig cluster, int party_id) {
+        this.cluster = cluster;
+        this.party_id = party_id;
+        this.sessions = new Sessions(cluster.parties());
+        this.transport = new TcpTransport(cluster, party_id);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 && args.length != 3) {
+            System.err.println("Usage: PartyDaemon <cluster config> <party id> [control port of the king]");
+            System.exit(2);
+        }
+        ClusterConfig cluster = ClusterConfig.read(args[0]);
+        cluster.checkParams();
+        final int party_id = Integer.parseInt(args[1]);
+        if (party_id < 0 || party_id >= cluster.parties()) {
+            throw new IllegalArgumentException("Party " + party_id + " is not in " + args[0]);
+        }
+        int controlPort = args.length == 3 ? Integer.parseInt(args[2]) : DEFAULT_CONTROL_PORT;
+
+        PartyDaemon daemon = new PartyDaemon(cluster, party_id);
+        daemon.connect();
+        if (party_id == KING_ID) {
+            daemon.serveKing(controlPort);
+        } else {
+            daemon.serveFollower();
+        }
+    }
+
+    public void connect() throws IOException {
+        transport.connect(sessions, "daemon, field " + FakeParty.fieldHeader());
+        if (Params.IS_PRINT_EXE_INFO) {
+            System.out.println("Party " + party_id + " connected to " + cluster.parties() + " parties");
+        }
+    }
+
+    /**
+     * Accept jobs on the control port and run them in the order they were submitted
+     */
+    public void serveKing(int controlPort) throws IOException {
+        ServerSocket control = new ServerSocket(controlPort, 50, InetAddress.getLoopbackAddress());
+        Thread.ofVirtual().name("control").start(() -> acceptClients(control));
+        System.out.println("King accepts jobs on " + control.getLocalSocketAddress());
+        while (true) {
+            Job job;
+            try {
+                job = jobs.take();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            if (job.spec == null) {
+                announce(SHUTDOWN);
+                awaitEveryParty();
+                job.result.complete(Map.of());
+                break;
+            }
+            announce("job " + job.id + " " + job.spec.toLine());
+            try {
+                job.result.complete(runJob(job.id, job.spec));
+            } catch (RuntimeException e) {
+                job.result.completeExceptionally(e);
+                transport.close();
+                throw e;
+            }
+        }
+        control.close();
+        transport.close();
+    }
+
+    private void acceptClients(ServerSocket control) {
+        try {
+            while (true) {
+                Socket client = control.accept();
+                Thread.ofVirtual().name("control-client").start(() -> serveClient(client));
+            }
+        } catch (IOException e) {
+            // the control socket is closed on shutdown
+        }
+    }
+
+    private void serveClient(Socket client) {
+        try (client;
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+                PrintWriter out = new PrintWriter(client.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] tokens = line.trim().split("\\s+");
+                if (tokens[0].equals(SHUTDOWN)) {
+                    submit(null).result.join();
+                    out.println("bye");
+                    return;
+                }
+                if (!tokens[0].equals("submit")) {
+                    out.println("error unknown command " + tokens[0]);
+                    continue;
+                }
+                Job job;
+                try {
+                    job = submit(JobSpec.parse(tokens, 1));
+                } catch (IllegalArgumentException e) {
+                    out.println("error " + e.getMessage());
+                    continue;
+                }
+                out.println("accepted " + job.id);
+                long start = System.currentTimeMillis();
+                try {
+                    Map<String, Double> accuracies = job.result.get();
+                    out.println("done " + job.id + " " + (System.currentTimeMillis() - start));
+                    accuracies.forEach((name, acc) -> out.println("accuracy " + name + " " + acc));
+                    out.println("end");
+                } catch (ExecutionException e) {
+                    out.println("error job " + job.id + " failed: " + e.getCause());
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            System.out.println("Control client failed: " + e);
+        }
+    }
+
+    private synchronized Job submit(JobSpec spec) {
+        Job job = new Job(spec == null ? -1 : ++lastJobId, spec);
+        jobs.add(job);
+        return job;
+    }
+
+    /**
+     * The command is sent as a vector of its UTF-8 bytes
+     */
+    private void announce(String command) throws IOException {
+        byte[] bytes = command.getBytes(StandardCharsets.UTF_8);
+        List<BigInteger> values = new ArrayList<>(bytes.length);
+        for (byte b : bytes) {
+            values.add(BigInteger.valueOf(b & 0xff));
+        }
+        FieldVector message = FieldVector.of(values);
+        for (int i = 0; i < cluster.parties(); i++) {
+            if (i != KING_ID) {
+                transport.send(CONTROL_SESSION, i, message);
+            }
+        }
+    }
+
+    /**
+     * Every party tells every party that it has run its jobs and waits until all of them have, as the slowest
+     * party may still be sending its last job to the others
+     */
+    private void awaitEveryParty() throws IOException {
+        transport.sendToAll(CONTROL_SESSION, FieldVector.of(List.of(BigInteger.ZERO)));
+        Inbox control = sessions.inbox(CONTROL_SESSION);
+        for (int i = 0; i < cluster.parties(); i++) {
+            if (control.take(i) == Inbox.CLOSED) {
+                throw new RuntimeException("The connection from party " + i + " is closed");
+            }
+        }
+    }
+
+    /**
+     * Run the jobs the king announces until it shuts down
+     */
+    public void serveFollower() throws IOException {
+        Inbox control = sessions.inbox(CONTROL_SESSION);
+        while (true) {
+            FieldVector message = control.take(KING_ID);
+            if (message == Inbox.CLOSED) {
+                throw new RuntimeException("The connection from the king is closed");
+            }
+            byte[] bytes = new byte[message.size()];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) message.get(i).intValue();
+            }
+            String[] tokens = new String(bytes, StandardCharsets.UTF_8).split(" ");
+            if (tokens[0].equals(SHUTDOWN)) {
+                awaitEveryParty();
+                break;
+            }
+            try {
+                runJob(Integer.parseInt(tokens[1]), JobSpec.parse(tokens, 2));
+            } catch (RuntimeException e) {
+                transport.close();
+                throw e;
+            }
+        }
+        transport.close();
+    }
+
+    /**
+     * @return the accuracy of every truth output by name, at the king
+     */
+    private Map<String, Double> runJob(int jobId, JobSpec spec) {
+        if (Params.IS_PRINT_EXE_INFO) {
+            System.out.println("Party " + party_id + " runs job " + jobId + ": " + spec.toLine());
+        }
+        Params.ITER_TD = spec.getIterations();
+        DataManager dataManager = new DataManager(spec.getSensingDataFile(), spec.getTruthFile(),
+                spec.isCategoricalData(), -1);
+        List<List<BigInteger>> worker2Labels = DataManager.sensingDataMatrix;
+        final int workerNum = worker2Labels.size();
+        final int examNum = worker2Labels.get(0).size();
+
+        EdgeServer server = new EdgeServer(party_id == KING_ID, party_id, spec.getJobName(), transport, sessions,
+                jobId);
+        Circuit circuit = new TDOnlineOptimal(workerNum, examNum, cluster.getSeed())
+                .buildPartyCircuit(worker2Labels, server);
+        ServerThread serverThread = new ServerThread(circuit, party_id, party_id == KING_ID, dataManager);
+        serverThread.run();
+        return serverThread.getAccuracies();
+    }
+}
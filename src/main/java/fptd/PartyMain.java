@@ -0,0 +1,67 @@
+package fptd;
+
+import fptd.net.ClusterConfig;
+import fptd.protocols.Circuit;
+import fptd.truthDiscovery.optimized.TDOfflineOptimal;
+import fptd.truthDiscovery.optimized.TDOnlineOptimal;
+import fptd.utils.DataManager;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * Runs one party of the optimal TD job as its own process, e.g. one per host of a cluster:
+ *
+ * <pre>
+ * java fptd.PartyMain cluster.conf offline    generate the offline files of every party, then copy
+ *                                             offline_data/TD_optimal-party-i.bin to the host of party i
+ * java fptd.PartyMain cluster.conf i          run party i, on the host of its entry in cluster.conf
+ * </pre>
+ *
+ * For a job of PartyDaemon, the offline files are generated with the job after "offline", see JobSpec.
+ *
+ * Every party reads the sensing data itself and shares it with the seed of the cluster, see ClusterConfig.
+ */
+public class PartyMain {
+
+    public static void main(String[] args) throws IOException {
+        boolean offline = args.length >= 2 && args[1].equals("offline");
+        if (args.length != 2 && !(offline && args.length == 7)) {
+            System.err.println("Usage: PartyMain <cluster config> offline|<party id>");
+            System.err.println("       PartyMain <cluster config> offline <job name> <sensing data file> "
+                    + "<truth file> <categorical true|false> <iterations>    for a job of PartyDaemon");
+            System.exit(2);
+        }
+        ClusterConfig cluster = ClusterConfig.read(args[0]);
+        cluster.checkParams();
+        JobSpec job = args.length == 7 ? JobSpec.parse(args, 2) : JobSpec.defaults();
+        Params.ITER_TD = job.getIterations();
+
+        DataManager dataManager = new DataManager(job.getSensingDataFile(), job.getTruthFile(),
+                job.isCategoricalData(), -1);
+        List<List<BigInteger>> worker2Labels = DataManager.sensingDataMatrix;
+        final int workerNum = worker2Labels.size();
+        final int examNum = worker2Labels.getFirst().size();
+
+        if (offline) {
+            new TDOfflineOptimal(workerNum, examNum, job.getJobName()).runTDOffline();
+            if (Params.IS_PRINT_EXE_INFO) {
+                System.out.println("Copy " + Params.FAKE_OFFLINE_DIR + job.getJobName() + "-party-<i>.bin to the "
+                        + Params.FAKE_OFFLINE_DIR + " of party i");
+            }
+            return;
+        }
+
+        final int party_id = Integer.parseInt(args[1]);
+        if (party_id < 0 || party_id >= cluster.parties()) {
+            throw new IllegalArgumentException("Party " + party_id + " is not in " + args[0]);
+        }
+        EdgeServer server = new EdgeServer(party_id == 0, party_id, job.getJobName(), cluster);
+        Circuit circuit = new TDOnlineOptimal(workerNum, examNum, cluster.getSeed())
+                .buildPartyCircuit(worker2Labels, server);
+        if (Params.IS_PRINT_EXE_INFO) {
+            System.out.println("Party " + party_id + " listens on " + cluster.getAddress(party_id));
+        }
+        new ServerThread(circuit, party_id, party_id == 0, dataManager).run();
+    }
+}
@@ -19,6 +19,8 @@ public class ServerThread implements Runnable {
     private boolean isKing = false;
     private EdgeServer server;
     private DataManager dataManager;
+    private final Map<String, Double> accuracies = new TreeMap<>(); // of the truth outputs, at the king
+    private String statsDir = Params.STATS_DIR; // null to run without OnlineStats
 
     public ServerThread(Circuit circuit, int idx, boolean isKing) {
         this.circuit = circuit;
@@ -31,29 +33,51 @@ public class ServerThread implements Runnable {
         this.dataManager = dataManager;
     }
 
+    /**
+     * @param statsDir where to write the OnlineStats of the server, null to run without them
+     */
+    public void setStatsDir(String statsDir) {
+        this.statsDir = statsDir;
+    }
+
     @Override
     public void run() {
         try {
-            server.connectOtherServers();
+            server.connectOtherServers(circuit.fingerprint());
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
 
-        if (Params.IS_PRINT_EXE_INFO) {
-            System.out.println("start to read offline randomness from file.");
+        if (circuit.getOfflinePrefetch() > 0) {
+            circuit.planOfflineReads(); // every gate reads its material right before it runs, once it is written
+        } else {
+            if (Params.IS_PRINT_EXE_INFO) {
+                System.out.println("start to read offline randomness from file.");
+            }
+            circuit.readOfflineFromFile();
         }
 
-        circuit.readOfflineFromFile();
-
         if (Params.IS_PRINT_EXE_INFO) {
             System.out.println("Server" + server.getIdx() + " start to run online circuit.");
         }
 
-        circuit.runOnline();
+        if (statsDir == null) {
+            circuit.runOnline();
+        } else {
+            circuit.runOnlineWithBenckmark();
+        }
 
         if (Params.IS_PRINT_EXE_INFO) {
             System.out.println("Server" + server.getIdx() + " end to run online circuit.");
         }
+        if (statsDir != null) {
+            circuit.printStats();
+            try {
+                circuit.getStats().write(statsDir, server.getJobName());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
         if (isKing) {
             List<String> namesOfOutputGates = new ArrayList<>();
             List<List<BigInteger>> result = circuit.getOutputValues(namesOfOutputGates);
@@ -83,6 +107,7 @@ public class ServerThread implements Runnable {
                     }
                     double acc = Tool.getAccuracy(predictedTruthsMap, DataManager.groundTruths,
                             Params.PRECISE_ROUND, Metric.RMSE, DataManager.isCategoricalData);
+                    accuracies.put(name, acc);
                     if (IS_PRINT_EXE_INFO) {
                         System.out.println("Accuracy of " + name + " = " + acc);
                     }
@@ -100,4 +125,11 @@ public class ServerThread implements Runnable {
         }
         this.server.close();
     }
+
+    /**
+     * @return the accuracy of every truth output by name, once the king has run
+     */
+    public Map<String, Double> getAccuracies() {
+        return accuracies;
+    }
 }
@@ -7,31 +7,51 @@ import java.math.BigInteger;
 public class Share implements Serializable {
 
     private int party_id; // start from 0
-    private BigInteger shr;
+    private long[] shr; // limbs in the internal form of Params.FIELD
 
     public Share(int index, BigInteger shr) {
         this.party_id = index;
-        this.shr = shr;
+        this.shr = Params.FIELD.fromBigInteger(shr);
+    }
+
+    /**
+     * @param limbs already in the internal form of Params.FIELD, not copied
+     */
+    public Share(int index, long[] limbs) {
+        this.party_id = index;
+        this.shr = limbs;
     }
 
     public BigInteger getShr() {
+        return Params.FIELD.toBigInteger(shr, 0);
+    }
+
+    public long[] getLimbs() {
         return shr;
     }
 
     public Share add(Share shr2) {
-        return new Share(this.party_id, this.shr.add(shr2.getShr()).mod(Params.P));
+        long[] result = Params.FIELD.newElement();
+        Params.FIELD.add(this.shr, 0, shr2.shr, 0, result, 0);
+        return new Share(this.party_id, result);
     }
 
-    public Share add(BigInteger shr) {
-        return new Share(this.party_id, this.shr.add(shr).mod(Params.P));
+    public Share add(BigInteger constant) {
+        long[] result = Params.FIELD.fromBigInteger(constant);
+        Params.FIELD.add(this.shr, 0, result, 0, result, 0);
+        return new Share(this.party_id, result);
     }
 
     public Share subtract(Share shr2) {
-        return new Share(this.party_id, this.shr.subtract(shr2.getShr()).mod(Params.P));
+        long[] result = Params.FIELD.newElement();
+        Params.FIELD.sub(this.shr, 0, shr2.shr, 0, result, 0);
+        return new Share(this.party_id, result);
     }
 
     public Share subtract(BigInteger constant) {
-        return new Share(this.party_id, this.shr.subtract(constant).mod(Params.P));
+        long[] result = Params.FIELD.fromBigInteger(constant);
+        Params.FIELD.sub(this.shr, 0, result, 0, result, 0);
+        return new Share(this.party_id, result);
     }
 
     public int getParty_id() {
@@ -39,21 +59,30 @@ public class Share implements Serializable {
     }
 
     public Share multiply(BigInteger constant) {
-        return new Share(this.party_id, this.shr.multiply(constant).mod(Params.P));
+        return multiply(Params.FIELD.fromBigInteger(constant));
+    }
+
+    /**
+     * @param constant in the internal form of Params.FIELD, lets callers convert a repeated constant only once
+     */
+    public Share multiply(long[] constant) {
+        long[] result = Params.FIELD.newElement();
+        Params.FIELD.mul(this.shr, 0, constant, 0, result, 0);
+        return new Share(this.party_id, result);
     }
 
     /**
      * return a new generated Share obj
      */
     public Share setValue(BigInteger newValue) {
-        return new Share(this.party_id, newValue.mod(Params.P));
+        return new Share(this.party_id, newValue);
     }
 
     @Override
     public String toString() {
         return "Share{" +
                 "party_id=" + party_id +
-                ", shr=" + shr +
+                ", shr=" + getShr() +
                 '}';
     }
 }
@@ -0,0 +1,99 @@
+package fptd;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The shares one party holds for a vector of secrets. Same layout as {@link FieldVector},
+ * with the party id stored once for the whole vector instead of in every {@link Share}.
+ */
+public class ShareVector extends FieldVector {
+
+    private final int party_id; // start from 0
+
+    public ShareVector(int party_id, int size) {
+        super(size);
+        this.party_id = party_id;
+    }
+
+    protected ShareVector(int party_id, int size, long[] limbs, BitSet missing) {
+        super(size, limbs, missing);
+        this.party_id = party_id;
+    }
+
+    /**
+     * @param shares null elements become missing entries
+     */
+    public static ShareVector of(int party_id, List<Share> shares) {
+        ShareVector result = new ShareVector(party_id, shares.size());
+        int n = Params.FIELD.limbs();
+        for (int i = 0; i < shares.size(); i++) {
+            Share share = shares.get(i);
+            if (share == null) {
+                result.missing.set(i);
+            } else {
+                System.arraycopy(share.getLimbs(), 0, result.limbs, i * n, n);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * the shares of this party with the values of the clear vector, e.g. a share of a public constant
+     */
+    public static ShareVector of(int party_id, FieldVector values) {
+        return new ShareVector(party_id, values.size, values.limbs.clone(), (BitSet) values.missing.clone());
+    }
+
+    public static ShareVector concat(int party_id, List<? extends FieldVector> parts) {
+        ShareVector result = new ShareVector(party_id, totalSize(parts));
+        result.copyFrom(parts);
+        return result;
+    }
+
+    public int getParty_id() {
+        return party_id;
+    }
+
+    /**
+     * @return a copy of the i-th share, null if it is missing
+     */
+    public Share getShare(int i) {
+        if (missing.get(i)) {
+            return null;
+        }
+        int n = Params.FIELD.limbs();
+        long[] shr = new long[n];
+        System.arraycopy(limbs, i * n, shr, 0, n);
+        return new Share(party_id, shr);
+    }
+
+    public List<Share> toShares() {
+        List<Share> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(getShare(i));
+        }
+        return result;
+    }
+
+    @Override
+    public ShareVector copy() {
+        return new ShareVector(party_id, size, limbs.clone(), (BitSet) missing.clone());
+    }
+
+    @Override
+    public ShareVector slice(int from, int size) {
+        ShareVector result = new ShareVector(party_id, size);
+        copySliceTo(from, result);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ShareVector{" +
+                "party_id=" + party_id +
+                ", shr=" + toBigIntegers() +
+                '}';
+    }
+}
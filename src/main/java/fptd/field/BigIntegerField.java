@@ -0,0 +1,68 @@
+package fptd.field;
+
+import java.math.BigInteger;
+
+/**
+ * Fallback for any modulus: elements are stored as plain limbs, every kernel goes through
+ * BigInteger. Slow, but it has no requirement on the modulus and is a reference for the fast paths.
+ */
+public final class BigIntegerField implements Field {
+
+    public static final String NAME = "biginteger";
+
+    private final BigInteger modulus;
+    private final int n;
+
+    public BigIntegerField(BigInteger modulus) {
+        if (modulus.signum() <= 0) {
+            throw new IllegalArgumentException("The modulus must be positive");
+        }
+        this.modulus = modulus;
+        this.n = (modulus.bitLength() + 63) / 64;
+    }
+
+    @Override
+    public BigInteger getModulus() {
+        return modulus;
+    }
+
+    @Override
+    public int limbs() {
+        return n;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void fromBigInteger(BigInteger value, long[] dst, int dstOff) {
+        Limbs.write(value.mod(modulus), dst, dstOff, n);
+    }
+
+    @Override
+    public BigInteger toBigInteger(long[] src, int srcOff) {
+        return Limbs.read(src, srcOff, n);
+    }
+
+    @Override
+    public void add(long[] a, int aOff, long[] b, int bOff, long[] dst, int dstOff) {
+        fromBigInteger(toBigInteger(a, aOff).add(toBigInteger(b, bOff)), dst, dstOff);
+    }
+
+    @Override
+    public void sub(long[] a, int aOff, long[] b, int bOff, long[] dst, int dstOff) {
+        fromBigInteger(toBigInteger(a, aOff).subtract(toBigInteger(b, bOff)), dst, dstOff);
+    }
+
+    @Override
+    public void neg(long[] a, int aOff, long[] dst, int dstOff) {
+        fromBigInteger(toBigInteger(a, aOff).negate(), dst, dstOff);
+    }
+
+    @Override
+    public void mul(long[] a, int aOff, long[] b, int bOff, long[] dst, int dstOff) {
+        fromBigInteger(toBigInteger(a, aOff).multiply(toBigInteger(b, bOff)), dst, dstOff);
+    }
+}
@@ -0,0 +1,121 @@
+package fptd.field;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * A prime field whose elements are stored as fixed-width {@code long} limbs.
+ *
+ * Kernels take a buffer and a limb offset for every operand so that vectors can be packed into
+ * one array, and the destination may alias a source. How an element is encoded in its limbs
+ * (plain, Montgomery form, ...) is up to the implementation; only {@link #fromBigInteger} and
+ * {@link #toBigInteger} cross that boundary.
+ */
+public interface Field {
+
+    BigInteger getModulus();
+
+    /**
+     * @return the number of limbs used by one element
+     */
+    int limbs();
+
+    /**
+     * @return a short name used in configuration and in offline file headers
+     */
+    String getName();
+
+    /**
+     * Reduce value mod p and encode it at dst[dstOff]
+     */
+    void fromBigInteger(BigInteger value, long[] dst, int dstOff);
+
+    BigInteger toBigInteger(long[] src, int srcOff);
+
+    void add(long[] a, int aOff, long[] b, int bOff, long[] dst, int dstOff);
+
+    void sub(long[] a, int aOff, long[] b, int bOff, long[] dst, int dstOff);
+
+    void neg(long[] a, int aOff, long[] dst, int dstOff);
+
+    void mul(long[] a, int aOff, long[] b, int bOff, long[] dst, int dstOff);
+
+    //*************************** lazy reduction ***************************
+    // A sum of products is accumulated unreduced in a wide accumulator and reduced once at the
+    // end: initWide, any number of mulAdd, then reduceWide. The defaults reduce eagerly.
+
+    /**
+     * @return the number of limbs of one wide accumulator
+     */
+    default int wideLimbs() {
+        return limbs();
+    }
+
+    /**
+     * Start a lazy sum: acc = a
+     */
+    default void initWide(long[] a, int aOff, long[] acc, int accOff) {
+        System.arraycopy(a, aOff, acc, accOff, limbs());
+    }
+
+    /**
+     * acc += a * b, without reducing acc
+     */
+    default void mulAdd(long[] a, int aOff, long[] b, int bOff, long[] acc, int accOff) {
+        long[] product = newElement();
+        mul(a, aOff, b, bOff, product, 0);
+        add(acc, accOff, product, 0, acc, accOff);
+    }
+
+    /**
+     * Reduce the accumulator to one element at dst[dstOff]. The accumulator is clobbered.
+     */
+    default void reduceWide(long[] acc, int accOff, long[] dst, int dstOff) {
+        System.arraycopy(acc, accOff, dst, dstOff, limbs());
+    }
+
+    /**
+     * Write a uniformly random element to dst. The default draws 64 bits more than p has, so reducing
+     * mod p leaves a negligible bias and no rejection loop is needed.
+     */
+    default void random(Random random, long[] dst, int dstOff) {
+        fromBigInteger(new BigInteger(getModulus().bitLength() + 64, random), dst, dstOff);
+    }
+
+    default long[] newElement() {
+        return new long[limbs()];
+    }
+
+    default long[] newElements(int count) {
+        return new long[limbs() * count];
+    }
+
+    default long[] fromBigInteger(BigInteger value) {
+        long[] dst = newElement();
+        fromBigInteger(value, dst, 0);
+        return dst;
+    }
+
+    default void setZero(long[] dst, int dstOff) {
+        for (int i = 0; i < limbs(); i++) {
+            dst[dstOff + i] = 0;
+        }
+    }
+
+    /**
+     * @param name "montgomery" (default), "mersenne61" or "biginteger"
+     * @param largePrime the modulus of the limb-based fields, ignored by "mersenne61"
+     */
+    static Field byName(String name, BigInteger largePrime) {
+        switch (name.toLowerCase()) {
+            case MontgomeryField.NAME:
+                return new MontgomeryField(largePrime);
+            case Mersenne61Field.NAME:
+                return new Mersenne61Field();
+            case BigIntegerField.NAME:
+                return new BigIntegerField(largePrime);
+            default:
+                throw new IllegalArgumentException("Unknown field " + name);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package fptd.field;
+
+import java.math.BigInteger;
+
+/**
+ * Conversion between non-negative BigIntegers and little-endian limbs
+ */
+final class Limbs {
+
+    private Limbs() {
+    }
+
+    static long[] toLimbs(BigInteger value, int limbs) {
+        long[] result = new long[limbs];
+        write(value, result, 0, limbs);
+        return result;
+    }
+
+    /**
+     * write a non-negative value that fits in the given number of limbs
+     */
+    static void write(BigInteger value, long[] dst, int dstOff, int limbs) {
+        byte[] bytes = value.toByteArray(); // big-endian, may carry a leading sign byte
+        for (int i = 0; i < limbs; i++) {
+            long limb = 0;
+            for (int b = 7; b >= 0; b--) {
+                int idx = bytes.length - 1 - (8 * i + b);
+                limb = (limb << 8) | (idx >= 0 ? (bytes[idx] & 0xFFL) : 0);
+            }
+            dst[dstOff + i] = limb;
+        }
+    }
+
+    static BigInteger read(long[] src, int srcOff, int limbs) {
+        byte[] bytes = new byte[8 * limbs + 1]; // big-endian with a leading zero byte for the sign
+        for (int i = 0; i < limbs; i++) {
+            long limb = src[srcOff + i];
+            for (int b = 0; b < 8; b++) {
+                bytes[bytes.length - 1 - (8 * i + b)] = (byte) (limb >>> (8 * b));
+            }
+        }
+        return new BigInteger(bytes);
+    }
+}
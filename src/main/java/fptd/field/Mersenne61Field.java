@@ -0,0 +1,125 @@
+package fptd.field;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * GF(2^61 - 1) on a single primitive long per element. Reduction is a shift and an add
+ * because 2^61 = 1 mod p, so no division or Montgomery conversion is needed.
+ *
+ * Only usable when every value of the workload fits, e.g. the division gates need
+ * e + 2 * (l + sigma) &lt; 61, see {@code OfflineDivisionGate}.
+ */
+public final class Mersenne61Field implements Field {
+
+    public static final String NAME = "mersenne61";
+    public static final long P = (1L << 61) - 1;
+    private static final BigInteger MODULUS = BigInteger.valueOf(P);
+
+    @Override
+    public BigInteger getModulus() {
+        return MODULUS;
+    }
+
+    @Override
+    public int limbs() {
+        return 1;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void fromBigInteger(BigInteger value, long[] dst, int dstOff) {
+        if (value.signum() < 0 || value.bitLength() > 61) {
+            value = value.mod(MODULUS);
+        }
+        dst[dstOff] = reduce(value.longValue());
+    }
+
+    @Override
+    public BigInteger toBigInteger(long[] src, int srcOff) {
+        return BigInteger.valueOf(src[srcOff]);
+    }
+
+    @Override
+    public void add(long[] a, int aOff, long[] b, int bOff, long[] dst, int dstOff) {
+        long s = a[aOff] + b[bOff];
+        dst[dstOff] = s >= P ? s - P : s;
+    }
+
+    @Override
+    public void sub(long[] a, int aOff, long[] b, int bOff, long[] dst, int dstOff) {
+        long d = a[aOff] - b[bOff];
+        dst[dstOff] = d < 0 ? d + P : d;
+    }
+
+    @Override
+    public void neg(long[] a, int aOff, long[] dst, int dstOff) {
+        dst[dstOff] = a[aOff] == 0 ? 0 : P - a[aOff];
+    }
+
+    @Override
+    public void mul(long[] a, int aOff, long[] b, int bOff, long[] dst, int dstOff) {
+        dst[dstOff] = mul(a[aOff], b[bOff]);
+    }
+
+    /**
+     * The accumulator is a 128-bit unsigned value (low, high). Every product is folded below
+     * 2^62 + 8 before it is added, so the high limb only counts the carries of the low limb.
+     */
+    @Override
+    public int wideLimbs() {
+        return 2;
+    }
+
+    @Override
+    public void initWide(long[] a, int aOff, long[] acc, int accOff) {
+        acc[accOff] = a[aOff];
+        acc[accOff + 1] = 0;
+    }
+
+    @Override
+    public void mulAdd(long[] a, int aOff, long[] b, int bOff, long[] acc, int accOff) {
+        long x = a[aOff];
+        long y = b[bOff];
+        long lo = x * y;
+        long hi = Math.unsignedMultiplyHigh(x, y);
+        long r = (lo & P) + (lo >>> 61) + (hi << 3);
+        long s = acc[accOff] + r;
+        acc[accOff + 1] += Long.compareUnsigned(s, r) < 0 ? 1 : 0;
+        acc[accOff] = s;
+    }
+
+    @Override
+    public void reduceWide(long[] acc, int accOff, long[] dst, int dstOff) {
+        long lo = acc[accOff];
+        long hi = acc[accOff + 1]; // 2^64 = 8 mod p, and hi < 2^58 for any realistic number of products
+        dst[dstOff] = reduce((lo & P) + (lo >>> 61) + (hi << 3));
+    }
+
+    /**
+     * 63 random bits reduced mod p, the bias is below 2^-60
+     */
+    @Override
+    public void random(Random random, long[] dst, int dstOff) {
+        dst[dstOff] = reduce(random.nextLong() >>> 1);
+    }
+
+    public static long mul(long x, long y) {
+        long lo = x * y;
+        long hi = Math.unsignedMultiplyHigh(x, y); // x * y < 2^122, so hi < 2^58
+        long r = (lo & P) + (lo >>> 61) + (hi << 3);
+        return reduce(r);
+    }
+
+    /**
+     * reduce any non-negative long below 2^63
+     */
+    static long reduce(long r) {
+        r = (r & P) + (r >>> 61);
+        return r >= P ? r - P : r;
+    }
+}
@@ -0,0 +1,328 @@
+package fptd.field;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * Arithmetic modulo a fixed odd prime m, with every element kept in Montgomery form
+ * (x * R mod m, R = 2^(64 * limbs)) as little-endian {@code long} limbs.
+ *
+ * All kernels work on flat {@code long[]} buffers plus a limb offset, so that a vector of
+ * elements can live in a single array. The destination may alias any of the sources.
+ * {@link BigInteger} is only used at the I/O edges: {@link #fromBigInteger} and {@link #toBigInteger}.
+ */
+public final class MontgomeryField implements Field {
+
+    public static final String NAME = "montgomery";
+
+    private final BigInteger modulus;
+    private final int n; // number of 64-bit limbs per element
+    private final long[] m;
+    private final long mPrime; // -m^{-1} mod 2^64
+    private final long[] r2; // R^2 mod m, used to enter the Montgomery domain
+    private final long[] one; // R mod m, i.e. 1 in Montgomery form
+    private final long[] r64; // 2^64 * R mod m, undoes the extra REDC round of reduceWide
+    private final boolean lazyFastPath; // R <= 4m, so a single REDC of any value below R^2 needs few subtractions
+
+    private final ThreadLocal<long[]> scratch; // double-width workspace for mul/reduce
+    private final ThreadLocal<long[]> plainScratch;
+    private final ThreadLocal<long[]> wideScratch;
+
+    public MontgomeryField(BigInteger modulus) {
+        if (modulus.signum() <= 0 || !modulus.testBit(0)) {
+            throw new IllegalArgumentException("Montgomery arithmetic needs an odd positive modulus");
+        }
+        this.modulus = modulus;
+        this.n = (modulus.bitLength() + 63) / 64;
+        this.m = Limbs.toLimbs(modulus, n);
+
+        long inv = m[0]; // Newton iteration for m[0]^{-1} mod 2^64, each step doubles the correct bits
+        for (int i = 0; i < 6; i++) {
+            inv *= 2 - m[0] * inv;
+        }
+        this.mPrime = -inv;
+
+        BigInteger r = BigInteger.ONE.shiftLeft(64 * n);
+        this.r2 = Limbs.toLimbs(r.multiply(r).mod(modulus), n);
+        this.one = Limbs.toLimbs(r.mod(modulus), n);
+        this.r64 = Limbs.toLimbs(r.shiftLeft(64).mod(modulus), n);
+        this.lazyFastPath = r.compareTo(modulus.shiftLeft(2)) <= 0;
+        this.scratch = ThreadLocal.withInitial(() -> new long[2 * n + 1]);
+        this.plainScratch = ThreadLocal.withInitial(() -> new long[n]);
+        this.wideScratch = ThreadLocal.withInitial(() -> new long[2 * n + 2]);
+    }
+
+    @Override
+    public BigInteger getModulus() {
+        return modulus;
+    }
+
+    @Override
+    public int limbs() {
+        return n;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    //*************************** I/O edges ***************************
+
+    /**
+     * Reduce value mod m and write it to dst in Montgomery form
+     */
+    @Override
+    public void fromBigInteger(BigInteger value, long[] dst, int dstOff) {
+        if (value.signum() < 0 || value.compareTo(modulus) >= 0) {
+            value = value.mod(modulus);
+        }
+        long[] plain = plainScratch.get();
+        Limbs.write(value, plain, 0, n);
+        mul(plain, 0, r2, 0, dst, dstOff);
+    }
+
+    @Override
+    public BigInteger toBigInteger(long[] src, int srcOff) {
+        long[] t = scratch.get();
+        System.arraycopy(src, srcOff, t, 0, n);
+        for (int i = n; i < t.length; i++) {
+            t[i] = 0;
+        }
+        long[] plain = plainScratch.get();
+        reduce(t, 0, plain, 0);
+        return Limbs.read(plain, 0, n);
+    }
+
+    //*************************** kernels ***************************
+
+    @Override
+    public void add(long[] a, int aOff, long[] b, int bOff, long[] dst, int dstOff) {
+        long carry = 0;
+        for (int i = 0; i < n; i++) {
+            long x = a[aOff + i];
+            long y = b[bOff + i];
+            long s = x + y + carry;
+            carry = ((x & y) | ((x | y) & ~s)) >>> 63;
+            dst[dstOff + i] = s;
+        }
+        if (carry != 0 || !lessThanModulus(dst, dstOff)) {
+            subtractModulus(dst, dstOff);
+        }
+    }
+
+    @Override
+    public void sub(long[] a, int aOff, long[] b, int bOff, long[] dst, int dstOff) {
+        long borrow = 0;
+        for (int i = 0; i < n; i++) {
+            long x = a[aOff + i];
+            long y = b[bOff + i];
+            long d = x - y - borrow;
+            borrow = ((~x & y) | ((~x | y) & d)) >>> 63;
+            dst[dstOff + i] = d;
+        }
+        if (borrow != 0) {
+            long carry = 0;
+            for (int i = 0; i < n; i++) {
+                long x = dst[dstOff + i];
+                long s = x + m[i] + carry;
+                carry = ((x & m[i]) | ((x | m[i]) & ~s)) >>> 63;
+                dst[dstOff + i] = s;
+            }
+        }
+    }
+
+    @Override
+    public void neg(long[] a, int aOff, long[] dst, int dstOff) {
+        boolean isZero = true;
+        for (int i = 0; i < n; i++) {
+            isZero &= a[aOff + i] == 0;
+        }
+        if (isZero) {
+            for (int i = 0; i < n; i++) {
+                dst[dstOff + i] = 0;
+            }
+            return;
+        }
+        long borrow = 0;
+        for (int i = 0; i < n; i++) {
+            long x = m[i];
+            long y = a[aOff + i];
+            long d = x - y - borrow;
+            borrow = ((~x & y) | ((~x | y) & d)) >>> 63;
+            dst[dstOff + i] = d;
+        }
+    }
+
+    /**
+     * Montgomery product: dst = a * b * R^{-1} mod m, which keeps Montgomery operands in Montgomery form
+     */
+    @Override
+    public void mul(long[] a, int aOff, long[] b, int bOff, long[] dst, int dstOff) {
+        long[] t = scratch.get();
+        for (int i = 0; i < t.length; i++) {
+            t[i] = 0;
+        }
+        for (int i = 0; i < n; i++) {
+            long x = a[aOff + i];
+            long carry = 0;
+            for (int j = 0; j < n; j++) {
+                long y = b[bOff + j];
+                long lo = x * y;
+                long hi = Math.unsignedMultiplyHigh(x, y);
+                long s = lo + t[i + j];
+                hi += Long.compareUnsigned(s, lo) < 0 ? 1 : 0;
+                long s2 = s + carry;
+                hi += Long.compareUnsigned(s2, s) < 0 ? 1 : 0;
+                t[i + j] = s2;
+                carry = hi;
+            }
+            t[i + n] = carry;
+        }
+        reduce(t, 0, dst, dstOff);
+    }
+
+    /**
+     * Montgomery reduction (REDC) of a double-width value T &lt; m * R stored in 2 * limbs + 1 limbs at wide[off].
+     * Writes T * R^{-1} mod m to dst. The wide buffer is used as workspace and is clobbered.
+     */
+    public void reduce(long[] wide, int off, long[] dst, int dstOff) {
+        redc(wide, off, n, dst, dstOff);
+    }
+
+    public void setOne(long[] dst, int dstOff) {
+        System.arraycopy(one, 0, dst, dstOff, n);
+    }
+
+    //*************************** lazy reduction ***************************
+    // The accumulator holds an unreduced T in 2 * limbs + 2 limbs and stands for T * R^{-1} mod m, so that
+    // the plain product of two Montgomery elements can be added to it as is.
+
+    @Override
+    public int wideLimbs() {
+        return 2 * n + 2;
+    }
+
+    /**
+     * acc = a * R, i.e. a is placed in the upper half
+     */
+    @Override
+    public void initWide(long[] a, int aOff, long[] acc, int accOff) {
+        for (int i = 0; i < n; i++) {
+            acc[accOff + i] = 0;
+        }
+        System.arraycopy(a, aOff, acc, accOff + n, n);
+        acc[accOff + 2 * n] = 0;
+        acc[accOff + 2 * n + 1] = 0;
+    }
+
+    @Override
+    public void mulAdd(long[] a, int aOff, long[] b, int bOff, long[] acc, int accOff) {
+        int end = accOff + 2 * n + 2;
+        for (int i = 0; i < n; i++) {
+            mulAddLimb(a[aOff + i], b, bOff, acc, accOff + i, end);
+        }
+    }
+
+    @Override
+    public void reduceWide(long[] acc, int accOff, long[] dst, int dstOff) {
+        int top = accOff + 2 * n;
+        // Fold the limbs above R^2 back with R^2 mod m until T < R^2
+        while (acc[top] != 0 || acc[top + 1] != 0) {
+            long h0 = acc[top];
+            long h1 = acc[top + 1];
+            acc[top] = 0;
+            acc[top + 1] = 0;
+            mulAddLimb(h0, r2, 0, acc, accOff, top + 2);
+            mulAddLimb(h1, r2, 0, acc, accOff + 1, top + 2);
+        }
+        if (lazyFastPath) {
+            redc(acc, accOff, n, dst, dstOff); // T / R + m < 5m
+        } else {
+            // One more round brings the result below 2m for any modulus, at the cost of a factor 2^{-64}
+            redc(acc, accOff, n + 1, dst, dstOff);
+            mul(dst, dstOff, r64, 0, dst, dstOff);
+        }
+    }
+
+    /**
+     * limbs + 1 random limbs reduced with reduceWide. Multiplying by R^{-1} is a bijection, so the result
+     * is as close to uniform as the 64 extra bits make it, without BigInteger or a rejection loop.
+     */
+    @Override
+    public void random(Random random, long[] dst, int dstOff) {
+        long[] t = wideScratch.get();
+        for (int i = 0; i < t.length; i++) {
+            t[i] = i <= n ? random.nextLong() : 0;
+        }
+        reduceWide(t, 0, dst, dstOff);
+    }
+
+    //*************************** helpers ***************************
+
+    /**
+     * REDC with the given number of rounds, the value must leave the top limb wide[off + rounds + limbs] for carries.
+     * Writes T * 2^{-64 * rounds} mod m to dst.
+     */
+    private void redc(long[] wide, int off, int rounds, long[] dst, int dstOff) {
+        int end = off + rounds + n + 1;
+        for (int i = 0; i < rounds; i++) {
+            mulAddLimb(wide[off + i] * mPrime, m, 0, wide, off + i, end);
+        }
+        // The upper part (plus the overflow limb) now holds T / 2^{64 * rounds}, a few multiples of m at most
+        int res = off + rounds;
+        while (wide[res + n] != 0 || !lessThanModulus(wide, res)) {
+            long borrow = 0;
+            for (int i = 0; i < n; i++) {
+                long x = wide[res + i];
+                long d = x - m[i] - borrow;
+                borrow = ((~x & m[i]) | ((~x | m[i]) & d)) >>> 63;
+                wide[res + i] = d;
+            }
+            wide[res + n] -= borrow;
+        }
+        System.arraycopy(wide, res, dst, dstOff, n);
+    }
+
+    /**
+     * acc[at..] += x * y[yOff..yOff + limbs), carrying up to (excluding) end
+     */
+    private void mulAddLimb(long x, long[] y, int yOff, long[] acc, int at, int end) {
+        long carry = 0;
+        for (int j = 0; j < n; j++) {
+            long lo = x * y[yOff + j];
+            long hi = Math.unsignedMultiplyHigh(x, y[yOff + j]);
+            long s = lo + acc[at + j];
+            hi += Long.compareUnsigned(s, lo) < 0 ? 1 : 0;
+            long s2 = s + carry;
+            hi += Long.compareUnsigned(s2, s) < 0 ? 1 : 0;
+            acc[at + j] = s2;
+            carry = hi;
+        }
+        for (int k = at + n; carry != 0 && k < end; k++) {
+            long s = acc[k] + carry;
+            carry = Long.compareUnsigned(s, carry) < 0 ? 1 : 0;
+            acc[k] = s;
+        }
+    }
+
+    private boolean lessThanModulus(long[] a, int aOff) {
+        for (int i = n - 1; i >= 0; i--) {
+            int cmp = Long.compareUnsigned(a[aOff + i], m[i]);
+            if (cmp != 0) {
+                return cmp < 0;
+            }
+        }
+        return false;
+    }
+
+    private void subtractModulus(long[] a, int aOff) {
+        long borrow = 0;
+        for (int i = 0; i < n; i++) {
+            long x = a[aOff + i];
+            long d = x - m[i] - borrow;
+            borrow = ((~x & m[i]) | ((~x | m[i]) & d)) >>> 63;
+            a[aOff + i] = d;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package fptd.net;
+
+import fptd.Params;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The parties of a deployment over several hosts, read from a text file with one entry per line:
+ *
+ * <pre>
+ * threshold 4
+ * seed 1                       # optional, see getSeed
+ * party 0 10.0.0.1 8874        # party id, host, port
+ * party 1 10.0.0.2 8874
+ * ...
+ * </pre>
+ *
+ * Empty lines and everything after # are ignored. Every party of the deployment reads the same file.
+ */
+public final class ClusterConfig {
+
+    private final int threshold;
+    private final long seed;
+    private final List<InetSocketAddress> addresses; // indexed by party id
+
+    private ClusterConfig(int threshold, long seed, List<InetSocketAddress> addresses) {
+        this.threshold = threshold;
+        this.seed = seed;
+        this.addresses = addresses;
+    }
+
+    public static ClusterConfig read(String file) throws IOException {
+        int threshold = -1;
+        long seed = 0;
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            for (int lineNo = 1; (line = reader.readLine()) != null; lineNo++) {
+                int comment = line.indexOf('#');
+                String[] tokens = (comment < 0 ? line : line.substring(0, comment)).trim().split("\\s+");
+                try {
+                    switch (tokens[0]) {
+                        case "":
+                            break;
+                        case "threshold":
+                            threshold = Integer.parseInt(tokens[1]);
+                            break;
+                        case "seed":
+                            seed = Long.parseLong(tokens[1]);
+                            break;
+                        case "party":
+                            int party_id = Integer.parseInt(tokens[1]);
+                            while (addresses.size() <= party_id) {
+                                addresses.add(null);
+                            }
+                            if (addresses.get(party_id) != null) {
+                                throw new IllegalArgumentException("party " + party_id + " is listed twice");
+                            }
+                            addresses.set(party_id, InetSocketAddress.createUnresolved(tokens[2],
+                                    Integer.parseInt(tokens[3])));
+                            break;
+                        default:
+                            throw new IllegalArgumentException("unknown entry " + tokens[0]);
+                    }
+                } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+                    throw new IllegalArgumentException(file + ":" + lineNo + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        if (threshold < 0) {
+            throw new IllegalArgumentException(file + " has no threshold");
+        }
+        int missing = addresses.indexOf(null);
+        if (missing >= 0 || addresses.isEmpty()) {
+            throw new IllegalArgumentException(file + " has no address for party " + Math.max(missing, 0));
+        }
+        if (threshold < 1 || threshold > addresses.size()) {
+            throw new IllegalArgumentException(file + " has threshold " + threshold + " for " + addresses.size()
+                    + " parties");
+        }
+        return new ClusterConfig(threshold, seed, Collections.unmodifiableList(addresses));
+    }
+
+    /**
+     * N and T are fixed when the code is built, so the cluster must have been planned for them
+     */
+    public void checkParams() {
+        if (parties() != Params.N || threshold != Params.T) {
+            throw new IllegalArgumentException("The cluster has " + parties() + " parties and threshold "
+                    + threshold + " but this build runs N = " + Params.N + " and T = " + Params.T);
+        }
+    }
+
+    public int parties() {
+        return addresses.size();
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * The seed every party shares the sensing data with, standing in for the workers that would send each
+     * party its shares
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return the address party_id listens on, resolved when a party connects to it
+     */
+    public InetSocketAddress getAddress(int party_id) {
+        return addresses.get(party_id);
+    }
+}
@@ -0,0 +1,94 @@
+package fptd.net;
+
+import fptd.FieldVector;
+import java.util.BitSet;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The messages received by one party: one queue per sender, filled by the transport and read by the party's
+ * own thread. The queues are single-producer single-consumer, so a message is handed over without a lock,
+ * and a consumer waiting for any sender parks until the transport unparks it.
+ */
+public final class Inbox {
+
+    /**
+     * Offered by the transport when the connection from a sender ends
+     */
+    public static final FieldVector CLOSED = new FieldVector(0);
+
+    private final SpscQueue<FieldVector>[] queues;
+    private final boolean[] closed; // the consumer's: CLOSED was taken from the queue
+    private volatile Thread consumer;
+
+    @SuppressWarnings("unchecked")
+    public Inbox(int parties) {
+        this.queues = (SpscQueue<FieldVector>[]) new SpscQueue<?>[parties];
+        this.closed = new boolean[parties];
+        for (int i = 0; i < parties; i++) {
+            queues[i] = new SpscQueue<>();
+        }
+    }
+
+    /**
+     * Called by the transport, by one thread per sender
+     */
+    public void offer(int from, FieldVector message) {
+        queues[from].offer(message);
+        Thread waiting = consumer;
+        if (waiting != null) {
+            LockSupport.unpark(waiting);
+        }
+    }
+
+    /**
+     * @return the next message of the sender, null if none has arrived, CLOSED from then on if the connection ended
+     */
+    public FieldVector poll(int from) {
+        if (closed[from]) {
+            return CLOSED;
+        }
+        FieldVector message = queues[from].poll();
+        if (message == CLOSED) {
+            closed[from] = true;
+        }
+        return message;
+    }
+
+    /**
+     * @return the next message of the sender, waiting for it
+     */
+    public FieldVector take(int from) {
+        BitSet senders = new BitSet();
+        senders.set(from);
+        FieldVector message;
+        while ((message = poll(from)) == null) {
+            await(senders, Long.MAX_VALUE);
+        }
+        return message;
+    }
+
+    /**
+     * Wait until one of the senders has a message or has closed, or until the deadline of System.nanoTime().
+     * The caller polls again afterwards: a wake-up does not guarantee a message.
+     */
+    public void await(BitSet senders, long deadline) {
+        consumer = Thread.currentThread();
+        try {
+            for (int i = senders.nextSetBit(0); i >= 0; i = senders.nextSetBit(i + 1)) {
+                if (closed[i] || !queues[i].isEmpty()) {
+                    return; // arrived before the consumer was registered
+                }
+            }
+            if (deadline == Long.MAX_VALUE) {
+                LockSupport.park(this);
+            } else {
+                LockSupport.parkNanos(this, deadline - System.nanoTime());
+            }
+            if (Thread.interrupted()) {
+                throw new RuntimeException(new InterruptedException());
+            }
+        } finally {
+            consumer = null;
+        }
+    }
+}
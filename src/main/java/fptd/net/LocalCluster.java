@@ -0,0 +1,61 @@
+package fptd.net;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where the parties of one run in this JVM find each other: every party publishes its endpoint (its inbox,
+ * or the address it listens on) under the name of the run and waits until every party has. This replaces
+ * sleeping until the other parties are up.
+ *
+ * The cluster is forgotten once every party has joined, so the next run may use the same name; runs in
+ * parallel need different names.
+ */
+final class LocalCluster {
+
+    private static final long READY_TIMEOUT_SECONDS = 60;
+    private static final Map<String, LocalCluster> CLUSTERS = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final Object[] endpoints;
+    private final CountDownLatch ready;
+
+    private LocalCluster(String name, int parties) {
+        this.name = name;
+        this.endpoints = new Object[parties];
+        this.ready = new CountDownLatch(parties);
+    }
+
+    /**
+     * Publish the endpoint of party_id and wait for the endpoints of every party
+     *
+     * @return the endpoints, the i-th one of party i
+     */
+    static Object[] join(String name, int party_id, int parties, Object endpoint) throws IOException {
+        LocalCluster cluster = CLUSTERS.computeIfAbsent(name, unused -> new LocalCluster(name, parties));
+        cluster.publish(party_id, endpoint);
+        try {
+            if (!cluster.ready.await(READY_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IOException("Only " + (parties - cluster.ready.getCount()) + " of " + parties
+                        + " parties joined " + name);
+            }
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+        return cluster.endpoints;
+    }
+
+    private synchronized void publish(int party_id, Object endpoint) {
+        if (party_id < 0 || party_id >= endpoints.length || endpoints[party_id] != null) {
+            throw new IllegalArgumentException("Party " + party_id + " cannot join " + name);
+        }
+        endpoints[party_id] = endpoint;
+        ready.countDown();
+        if (ready.getCount() == 0) {
+            CLUSTERS.remove(name, this);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package fptd.net;
+
+import fptd.FieldVector;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The inboxes of one party, one per session, so that several jobs share the connections of a party: every
+ * message carries the session it belongs to and the transport offers it to the inbox of that session. A session
+ * may receive messages before the party opens it, they wait in its inbox.
+ *
+ * Per session and sender there is still one producer, the thread that receives from the sender or, in one
+ * JVM, the thread that runs the session at the sender.
+ */
+public final class Sessions {
+
+    private final int parties;
+    private final Map<Integer, Inbox> inboxes = new ConcurrentHashMap<>();
+    private final Set<Integer> finished = ConcurrentHashMap.newKeySet(); // their late messages are dropped
+    private final boolean[] closed; // the connection from the party has ended, guarded by this
+
+    public Sessions(int parties) {
+        this.parties = parties;
+        this.closed = new boolean[parties];
+    }
+
+    /**
+     * @return the inbox of the session, created when the first message arrives or when the party opens it
+     */
+    public Inbox inbox(int session) {
+        Inbox inbox = inboxes.get(session);
+        return inbox != null ? inbox : create(session);
+    }
+
+    private synchronized Inbox create(int session) {
+        Inbox inbox = inboxes.get(session);
+        if (inbox == null) {
+            inbox = new Inbox(parties);
+            for (int i = 0; i < parties; i++) {
+                if (closed[i]) {
+                    inbox.offer(i, Inbox.CLOSED); // its producer has ended, so this thread may offer
+                }
+            }
+            if (!finished.contains(session)) {
+                inboxes.put(session, inbox);
+            }
+        }
+        return inbox;
+    }
+
+    /**
+     * Called by the transport
+     */
+    public void offer(int session, int from, FieldVector message) {
+        if (!finished.contains(session)) {
+            inbox(session).offer(from, message);
+        }
+    }
+
+    /**
+     * Called by the transport when the connection from a party ends: every session takes CLOSED from it
+     */
+    public synchronized void closeFrom(int from) {
+        closed[from] = true;
+        for (Inbox inbox : inboxes.values()) {
+            inbox.offer(from, Inbox.CLOSED);
+        }
+    }
+
+    /**
+     * The session is done, the messages that still arrive for it are dropped
+     */
+    public synchronized void finish(int session) {
+        finished.add(session);
+        inboxes.remove(session);
+    }
+
+    public int parties() {
+        return parties;
+    }
+}
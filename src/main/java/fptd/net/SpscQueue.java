@@ -0,0 +1,57 @@
+package fptd.net;
+
+/**
+ * An unbounded lock-free queue for one producer thread and one consumer thread. The producer links a node
+ * after the tail, the consumer moves the head along the links, and the volatile link is what hands the
+ * element from one thread to the other.
+ */
+final class SpscQueue<E> {
+
+    private static final class Node<E> {
+        E value;
+        volatile Node<E> next;
+
+        Node(E value) {
+            this.value = value;
+        }
+    }
+
+    private Node<E> head; // the consumer's, a dummy node before the first element
+    private Node<E> tail; // the producer's
+
+    SpscQueue() {
+        head = tail = new Node<>(null);
+    }
+
+    /**
+     * Called by the producer only
+     */
+    void offer(E value) {
+        Node<E> node = new Node<>(value);
+        tail.next = node;
+        tail = node;
+    }
+
+    /**
+     * Called by the consumer only
+     */
+    boolean isEmpty() {
+        return head.next == null;
+    }
+
+    /**
+     * Called by the consumer only
+     *
+     * @return the first element, null if the queue is empty
+     */
+    E poll() {
+        Node<E> next = head.next;
+        if (next == null) {
+            return null;
+        }
+        E value = next.value;
+        next.value = null; // next becomes the dummy node
+        head = next;
+        return value;
+    }
+}
@@ -0,0 +1,207 @@
+package fptd.net;
+
+import fptd.FieldVector;
+import fptd.Params;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The transport over sockets, in the frames of WireCodec. Every party connects to every party, itself included,
+ * and sends a hello first: its party id and its handshake. The outgoing connection to a party carries everything
+ * sent to it, and a persistent reader per incoming connection decodes the frames into the inbox.
+ *
+ * The parties of a ClusterConfig listen on the port of their entry and may start in any order: the connections
+ * are opened in parallel and retried until the others are up. The parties of one JVM listen on ephemeral
+ * ports of Params.IP_King and find each other through LocalCluster.
+ */
+public final class TcpTransport implements Transport {
+
+    public static final String NAME = "tcp";
+    private static final long CONNECT_TIMEOUT_MILLIS = 120_000;
+    private static final long CONNECT_RETRY_MILLIS = 100;
+
+    private final String cluster; // in this JVM, null with a ClusterConfig
+    private final ClusterConfig config;
+    private final int party_id;
+    private final int parties;
+    private List<SocketChannel> sendChannels = null; // to every party, indexed by party id
+    private List<SocketChannel> receiveChannels = null; // from every party, indexed by party id
+    private volatile boolean closed = false;
+
+    public TcpTransport(String cluster, int party_id, int parties) {
+        this.cluster = cluster;
+        this.config = null;
+        this.party_id = party_id;
+        this.parties = parties;
+    }
+
+    public TcpTransport(ClusterConfig config, int party_id) {
+        this.cluster = null;
+        this.config = config;
+        this.party_id = party_id;
+        this.parties = config.parties();
+    }
+
+    @Override
+    public void connect(Sessions sessions, String handshake) throws IOException {
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        InetSocketAddress[] addresses = new InetSocketAddress[parties];
+        if (config == null) {
+            serverChannel.bind(new InetSocketAddress(Params.IP_King, 0), parties);
+            Object[] endpoints = LocalCluster.join(cluster + "/" + NAME, party_id, parties,
+                    serverChannel.getLocalAddress());
+            for (int i = 0; i < parties; i++) {
+                addresses[i] = (InetSocketAddress) endpoints[i];
+            }
+        } else {
+            serverChannel.bind(new InetSocketAddress(config.getAddress(party_id).getPort()), parties);
+            for (int i = 0; i < parties; i++) {
+                InetSocketAddress address = config.getAddress(i);
+                addresses[i] = new InetSocketAddress(address.getHostString(), address.getPort());
+            }
+        }
+
+        // connect to every party while accepting the connections of every party
+        try (ExecutorService connectors = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<SocketChannel>> outgoing = new ArrayList<>(parties);
+            for (int i = 0; i < parties; i++) {
+                InetSocketAddress address = addresses[i];
+                outgoing.add(connectors.submit(() -> open(address, handshake)));
+            }
+            try {
+                accept(serverChannel, handshake);
+            } catch (IOException e) {
+                connectors.shutdownNow(); // stop retrying, this party gives up
+                throw e;
+            }
+            this.sendChannels = new ArrayList<>(parties);
+            for (Future<SocketChannel> channel : outgoing) {
+                sendChannels.add(channel.get());
+            }
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException("Party " + party_id + " cannot connect to every party", e.getCause());
+        } finally {
+            serverChannel.close();
+        }
+        for (int i = 0; i < parties; i++) {
+            int from = i;
+            Thread.ofVirtual().name("party-" + party_id + "-reader-" + from).start(() -> readLoop(sessions, from));
+        }
+    }
+
+    /**
+     * A refused connection is retried until the party listens or the timeout is over
+     */
+    private SocketChannel open(InetSocketAddress address, String handshake) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MILLIS;
+        while (true) {
+            try {
+                SocketChannel channel = SocketChannel.open(address);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                WireCodec.writeHello(channel, party_id, handshake);
+                return channel;
+            } catch (ConnectException | NoRouteToHostException e) {
+                if (System.currentTimeMillis() >= deadline) {
+                    throw e;
+                }
+            }
+            Thread.sleep(CONNECT_RETRY_MILLIS);
+        }
+    }
+
+    private void accept(ServerSocketChannel serverChannel, String handshake) throws IOException {
+        this.receiveChannels = new ArrayList<>(Collections.nCopies(parties, null));
+        serverChannel.socket().setSoTimeout((int) CONNECT_TIMEOUT_MILLIS);
+        for (int i = 0; i < parties; i++) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.socket().accept().getChannel();
+            } catch (SocketTimeoutException e) {
+                throw new IOException("Party " + party_id + " accepted only " + i + " of " + parties
+                        + " parties", e);
+            }
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            int from = WireCodec.readPartyId(channel);
+            if (from < 0 || from >= parties || receiveChannels.get(from) != null) {
+                throw new IOException("Unexpected party id " + from + " from " + channel.getRemoteAddress());
+            }
+            String theirs = WireCodec.readHandshake(channel);
+            if (!handshake.equals(theirs)) {
+                throw new IOException("Party " + from + " runs " + theirs + " but party " + party_id + " runs "
+                        + handshake);
+            }
+            receiveChannels.set(from, channel);
+        }
+    }
+
+    /**
+     * The persistent reader of the connection from one party
+     */
+    private void readLoop(Sessions sessions, int from) {
+        try {
+            while (true) {
+                ByteBuffer frame = WireCodec.readFrame(receiveChannels.get(from));
+                sessions.offer(WireCodec.session(frame), from, WireCodec.decode(frame));
+            }
+        } catch (IOException e) {
+            if (!closed && !(e instanceof EOFException)) { // EOF: the party has finished and closed its side
+                System.out.println("Party " + party_id + " lost the connection from party " + from + ": " + e);
+            }
+        } finally {
+            sessions.closeFrom(from);
+        }
+    }
+
+    @Override
+    public void send(int session, int party_id, FieldVector message) throws IOException {
+        write(sendChannels.get(party_id), WireCodec.encode(session, message));
+    }
+
+    /**
+     * The message is encoded once and the same frame is written to every party
+     */
+    @Override
+    public void sendToAll(int session, FieldVector message) throws IOException {
+        ByteBuffer frame = WireCodec.encode(session, message);
+        for (SocketChannel channel : sendChannels) {
+            write(channel, frame.duplicate());
+        }
+    }
+
+    /**
+     * The sessions of a party may send from several threads, a frame is written as a whole
+     */
+    private static void write(SocketChannel channel, ByteBuffer frame) throws IOException {
+        synchronized (channel) {
+            WireCodec.write(channel, frame);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        for (SocketChannel channel : sendChannels) {
+            channel.close();
+        }
+        for (SocketChannel channel : receiveChannels) {
+            channel.close();
+        }
+    }
+}
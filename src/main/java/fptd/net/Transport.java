@@ -0,0 +1,52 @@
+package fptd.net;
+
+import fptd.FieldVector;
+import java.io.IOException;
+
+/**
+ * Moves the messages of one party to the other parties of its run, itself included. Every message belongs to a
+ * session, e.g. a job, and what a party receives is offered to the Inbox of its session in Sessions, one queue
+ * per sender, in the order the sender sent it.
+ *
+ * A message may be handed to the receivers as the same object, so neither the sender nor a receiver may
+ * change a vector once it is sent.
+ */
+public interface Transport {
+
+    /**
+     * Connect to every party, returns once every party is ready to receive
+     *
+     * @param handshake what every party must agree on, e.g. the circuit and the offline material. A transport
+     *                  between processes fails to connect to a party with another handshake.
+     */
+    void connect(Sessions sessions, String handshake) throws IOException;
+
+    void send(int session, int party_id, FieldVector message) throws IOException;
+
+    /**
+     * Send the same message to every party, this one included
+     */
+    void sendToAll(int session, FieldVector message) throws IOException;
+
+    /**
+     * The other parties take CLOSED from their queues of this party once they have read everything before it
+     */
+    void close() throws IOException;
+
+    /**
+     * @param name     memory or tcp
+     * @param cluster  the name the parties of one run in this JVM share, e.g. the job name
+     * @param party_id this party, from 0
+     * @param parties  the number of parties in the run
+     */
+    static Transport byName(String name, String cluster, int party_id, int parties) {
+        switch (name.toLowerCase()) {
+            case MemoryTransport.NAME:
+                return new MemoryTransport(cluster, party_id, parties);
+            case TcpTransport.NAME:
+                return new TcpTransport(cluster, party_id, parties);
+            default:
+                throw new IllegalArgumentException("Unknown transport " + name);
+        }
+    }
+}
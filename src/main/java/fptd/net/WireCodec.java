@@ -0,0 +1,244 @@
+package fptd.net;
+
+import fptd.FieldVector;
+import fptd.Params;
+import fptd.ShareVector;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The binary frame of every message between the edge servers, little-endian:
+ *
+ * <pre>
+ * int   length   bytes after this field
+ * int   session  the job the message belongs to, see Sessions
+ * byte  type     SHARES (a ShareVector) or CLEAR (a FieldVector)
+ * byte  flags    HAS_MISSING if a bitmap follows
+ * short party_id of a ShareVector, -1 for CLEAR
+ * int   size     number of entries
+ * long[ceil(size / 64)]           missing bitmap, only with HAS_MISSING
+ * long[limbs * present entries]   the present entries in the internal form of Params.FIELD
+ * </pre>
+ *
+ * Every party runs the same field, so the limbs go over the wire as they are: no BigInteger
+ * conversion and no per-entry header. A missing entry costs one bit.
+ */
+public final class WireCodec {
+
+    public static final byte SHARES = 1;
+    public static final byte CLEAR = 2;
+    private static final byte HAS_MISSING = 1;
+
+    public static final int LENGTH_BYTES = 4;
+    public static final int HEADER_BYTES = LENGTH_BYTES + 12;
+    private static final int MAX_HANDSHAKE_BYTES = 1 << 16;
+
+    private WireCodec() {
+    }
+
+    /**
+     * @return the bytes of the whole frame of the vector, length field included
+     */
+    public static int frameSize(FieldVector vector) {
+        int size = vector.size();
+        int present = size - vector.countMissing();
+        int bitmap = vector.hasMissing() ? (size + 63) / 64 * 8 : 0;
+        return HEADER_BYTES + bitmap + present * Params.FIELD.limbs() * 8;
+    }
+
+    /**
+     * @return a buffer holding the frame, ready to be written
+     */
+    public static ByteBuffer encode(int session, FieldVector vector) {
+        ByteBuffer dst = ByteBuffer.allocate(frameSize(vector));
+        encode(session, vector, dst);
+        dst.flip();
+        return dst;
+    }
+
+    /**
+     * Append the frame of the vector at the position of dst, which needs frameSize(vector) bytes left
+     */
+    public static void encode(int session, FieldVector vector, ByteBuffer dst) {
+        final int n = Params.FIELD.limbs();
+        final int size = vector.size();
+        final boolean hasMissing = vector.hasMissing();
+        ByteOrder order = dst.order();
+        dst.order(ByteOrder.LITTLE_ENDIAN);
+        dst.putInt(frameSize(vector) - LENGTH_BYTES);
+        dst.putInt(session);
+        dst.put(vector instanceof ShareVector ? SHARES : CLEAR);
+        dst.put(hasMissing ? HAS_MISSING : 0);
+        dst.putShort((short) (vector instanceof ShareVector ? ((ShareVector) vector).getParty_id() : -1));
+        dst.putInt(size);
+        long[] limbs = vector.getLimbs();
+        if (!hasMissing) {
+            dst.asLongBuffer().put(limbs, 0, size * n);
+            dst.position(dst.position() + size * n * 8);
+        } else {
+            long[] bitmap = new long[(size + 63) / 64];
+            for (int i = 0; i < size; i++) {
+                if (vector.isMissing(i)) {
+                    bitmap[i >>> 6] |= 1L << i;
+                }
+            }
+            LongBuffer longs = dst.asLongBuffer();
+            longs.put(bitmap);
+            for (int i = 0; i < size; i++) {
+                if (!vector.isMissing(i)) {
+                    longs.put(limbs, i * n, n);
+                }
+            }
+            dst.position(dst.position() + longs.position() * 8);
+        }
+        dst.order(order);
+    }
+
+    /**
+     * Decode the frame at the position of src, which must hold the whole frame
+     *
+     * @return a ShareVector for SHARES, a FieldVector for CLEAR
+     */
+    public static FieldVector decode(ByteBuffer src) {
+        final int n = Params.FIELD.limbs();
+        ByteOrder order = src.order();
+        src.order(ByteOrder.LITTLE_ENDIAN);
+        int length = src.getInt();
+        if (length < HEADER_BYTES - LENGTH_BYTES || src.remaining() < length) {
+            throw new IllegalArgumentException("Truncated frame of " + length + " bytes");
+        }
+        int end = src.position() + length;
+        src.getInt(); // session
+        byte type = src.get();
+        byte flags = src.get();
+        int party_id = src.getShort();
+        int size = src.getInt();
+        boolean hasMissing = (flags & HAS_MISSING) != 0;
+        long least = hasMissing ? (size + 63L) / 64 * 8 : (long) size * n * 8; // bytes the size takes at least
+        if (size < 0 || least > length - (HEADER_BYTES - LENGTH_BYTES)) { // before allocating for the size
+            throw new IllegalArgumentException("Frame of " + size + " entries in " + length + " bytes");
+        }
+        FieldVector result;
+        if (type == SHARES) {
+            result = new ShareVector(party_id, size);
+        } else if (type == CLEAR) {
+            result = new FieldVector(size);
+        } else {
+            throw new IllegalArgumentException("Unknown frame type " + type);
+        }
+        long[] limbs = result.getLimbs();
+        LongBuffer longs = src.asLongBuffer();
+        if (!hasMissing) {
+            checkLength(length, size, 0, n);
+            longs.get(limbs, 0, size * n);
+        } else {
+            long[] bitmap = new long[(size + 63) / 64];
+            longs.get(bitmap);
+            int present = 0;
+            for (int i = 0; i < size; i++) {
+                if ((bitmap[i >>> 6] >>> i & 1) != 0) {
+                    result.setMissing(i);
+                } else {
+                    present++;
+                }
+            }
+            checkLength(length, present, bitmap.length, n);
+            for (int i = 0; i < size; i++) {
+                if (!result.isMissing(i)) {
+                    longs.get(limbs, i * n, n);
+                }
+            }
+        }
+        src.position(end);
+        src.order(order);
+        return result;
+    }
+
+    private static void checkLength(int length, int present, int bitmapLongs, int n) {
+        if (length != HEADER_BYTES - LENGTH_BYTES + (bitmapLongs + present * n) * 8) {
+            throw new IllegalArgumentException("Frame length " + length + " does not match its header, "
+                    + "is every party running " + Params.FIELD.getName() + "?");
+        }
+    }
+
+    /**
+     * Write the remaining bytes of the buffer, e.g. a frame from encode
+     */
+    public static void write(WritableByteChannel channel, ByteBuffer frame) throws IOException {
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    /**
+     * @return the session of the frame at the position of the buffer
+     */
+    public static int session(ByteBuffer frame) {
+        return frame.duplicate().order(ByteOrder.LITTLE_ENDIAN).getInt(frame.position() + LENGTH_BYTES);
+    }
+
+    /**
+     * Read one whole frame from a blocking channel, see session and decode
+     */
+    public static ByteBuffer readFrame(ReadableByteChannel channel) throws IOException {
+        ByteBuffer lengthField = ByteBuffer.allocate(LENGTH_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, lengthField);
+        int length = lengthField.getInt(0);
+        if (length < HEADER_BYTES - LENGTH_BYTES) {
+            throw new IOException("Invalid frame of " + length + " bytes");
+        }
+        ByteBuffer frame = ByteBuffer.allocate(LENGTH_BYTES + length);
+        frame.put(lengthField.flip());
+        readFully(channel, frame);
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * The handshake, the first bytes on a connection: the party id of the sender, then the length and the
+     * UTF-8 bytes of what every party must agree on, see EdgeServer.connectOtherServers
+     */
+    public static void writeHello(WritableByteChannel channel, int party_id, String handshake) throws IOException {
+        byte[] bytes = handshake.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + bytes.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(party_id).putInt(bytes.length).put(bytes).flip();
+        write(channel, buffer);
+    }
+
+    public static int readPartyId(ReadableByteChannel channel) throws IOException {
+        return readInt(channel);
+    }
+
+    /**
+     * The rest of the hello, after readPartyId
+     */
+    public static String readHandshake(ReadableByteChannel channel) throws IOException {
+        int length = readInt(channel);
+        if (length < 0 || length > MAX_HANDSHAKE_BYTES) {
+            throw new IOException("Invalid handshake of " + length + " bytes");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        readFully(channel, buffer);
+        return new String(buffer.array(), StandardCharsets.UTF_8);
+    }
+
+    private static int readInt(ReadableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, buffer);
+        return buffer.getInt(0);
+    }
+
+    private static void readFully(ReadableByteChannel channel, ByteBuffer dst) throws IOException {
+        while (dst.hasRemaining()) {
+            if (channel.read(dst) < 0) {
+                throw new EOFException("The peer closed the connection");
+            }
+        }
+    }
+}
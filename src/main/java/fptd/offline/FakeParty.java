@@ -1,86 +1,418 @@
 package fptd.offline;
 
+import fptd.FieldVector;
 import fptd.Params;
-import fptd.Share;
-import fptd.sharing.ShamirSharing;
+import fptd.ShareVector;
+import fptd.sharing.PackedShamirSharing;
+import fptd.sharing.PseudoRandomSecretSharing;
+import fptd.sharing.SeededShamirSharing;
 
 import java.io.*;
-import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
 
 
+/**
+ * Deals the offline material of every party into its offline file, offline_data/&lt;job&gt;-party-i.bin, a
+ * binary file of fixed-width entries, little-endian, read back by OfflineReader:
+ *
+ * <pre>
+ * long  magic        MAGIC
+ * int   version      VERSION
+ * int   limbs        width of an entry in longs, Params.FIELD.limbs()
+ * long  count        number of entries, updated after every write and every OfflineCircuit.runOffline
+ * int   data start   offset of the first entry, a multiple of 8
+ * int   length, bytes (UTF-8) of the field header, see fieldHeader
+ * int   length, bytes (UTF-8) of the offline id
+ * int   length, bytes (UTF-8) of the PRSS keys of the party
+ * int   length, bytes (UTF-8) of the share seed in hex, empty if the party is not seeded
+ * long[limbs * count]   the entries in the internal form of Params.FIELD, in the order the gates read them
+ * </pre>
+ *
+ * The shares the dealer deals with dealSharesToAllParties are only written to the parties without a share
+ * seed: the T - 1 seeded parties expand theirs from the seed, see SeededShamirSharing. Their files keep the
+ * values that depend on other values, the deltas, which are clear, and the shares of the linear gates.
+ *
+ * OfflineCircuit.runOffline generates its gates in parallel. Every gate draws its randomness and writes its
+ * entries in a Segment of its own, planned beforehand in the order the gates run one after another, so the
+ * files are the same as if they had.
+ */
 public class FakeParty {
+    public static final String FILE_SUFFIX = ".bin";
+    public static final long MAGIC = 0x3146464f44545046L; // "FPTDOFF1"
+    public static final int VERSION = 2;
+    static final int COUNT_POSITION = 16;
+    private static final int BUFFER_BYTES = 1 << 16;
+
     private int partyNum;
-    private List<BufferedWriter> writers = new ArrayList<>();
+    private final List<FileChannel> channels = new ArrayList<>();
+    private final long[] dataStarts; // of the entries, per party
+    private final OfflineProgress[] progress; // per party, with Params.OFFLINE_PIPELINE
+    private final Segment sequential; // of the calls outside of OfflineCircuit.runOffline
+    private final ThreadLocal<Segment> current = new ThreadLocal<>(); // of the gate the thread generates
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(
+            () -> ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN));
+    // the shares of the seeded parties come from their seeds
+    private final ThreadLocal<SeededShamirSharing> dealtSharing;
+    private PackedShamirSharing packedSharing; // created on first use, k = Params.PACK_K
+    // holds every PRSS key, the parties get theirs in the files
+    private final ThreadLocal<PseudoRandomSecretSharing> prss;
+
+    /**
+     * Where a gate draws its randomness and writes its entries: the nonce of its first PRSS request and of its
+     * first dealt batch, and its first entry in the file of every party. A counting segment only counts them,
+     * see OfflineCircuit.
+     */
+    static final class Segment {
+        private long prssNonce;
+        private long dealtNonce;
+        private final long[] positions; // in entries, per party
+        private final boolean counting;
+
+        private Segment(long prssNonce, long dealtNonce, long[] positions, boolean counting) {
+            this.prssNonce = prssNonce;
+            this.dealtNonce = dealtNonce;
+            this.positions = positions;
+            this.counting = counting;
+        }
+
+        private Segment copy(boolean counting) {
+            return new Segment(prssNonce, dealtNonce, positions.clone(), counting);
+        }
+    }
 
     public FakeParty(String jobName, int partyNum) {
+        this(jobName, partyNum, SeededShamirSharing.generateSeeds(Params.T, partyNum),
+                PseudoRandomSecretSharing.generateKeys(Params.T, partyNum));
+    }
+
+    /**
+     * With the given share seeds and PRSS keys, so that two runs deal the same material
+     */
+    FakeParty(String jobName, int partyNum, Map<Integer, byte[]> shareSeeds, Map<Integer, byte[]> prssKeys) {
         this.partyNum = partyNum;
+        this.dataStarts = new long[partyNum];
+        this.progress = Params.OFFLINE_PIPELINE ? new OfflineProgress[partyNum] : null;
+        this.sequential = new Segment(0, 0, new long[partyNum], false);
+        SeededShamirSharing dealer = new SeededShamirSharing(shareSeeds, Params.T, partyNum);
+        this.dealtSharing = ThreadLocal.withInitial(dealer::copy);
+        PseudoRandomSecretSharing prssDealer = new PseudoRandomSecretSharing(-1, prssKeys, Params.T, partyNum);
+        this.prss = ThreadLocal.withInitial(prssDealer::copy);
         File folder = new File(Params.FAKE_OFFLINE_DIR);
         if(!folder.exists()) {
             folder.mkdir();
         }
         final String fileNameSuffix = jobName + (jobName.isEmpty() ? "party-": "-party-");
+        final String offlineId = Long.toHexString(new SecureRandom().nextLong()); // the same in every file of this run
         try {
             for(int i = 0; i < partyNum; i++){
-                String currentFileName = fileNameSuffix + String.valueOf(i) + ".txt";
-                BufferedWriter writer = new BufferedWriter(new FileWriter(Params.FAKE_OFFLINE_DIR + "/" + currentFileName));
-                writers.add(writer);
+                String currentFileName = fileNameSuffix + String.valueOf(i) + FILE_SUFFIX;
+                FileChannel channel = FileChannel.open(Path.of(Params.FAKE_OFFLINE_DIR, currentFileName),
+                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                channels.add(channel);
+                byte[] shareSeed = shareSeeds.get(i);
+                dataStarts[i] = writeHeader(channel, offlineId,
+                        PseudoRandomSecretSharing.encodeKeys(prssKeys, i, Params.T, partyNum),
+                        shareSeed == null ? "" : HexFormat.of().formatHex(shareSeed));
+                if (progress != null) {
+                    progress[i] = OfflineProgress.start(Path.of(Params.FAKE_OFFLINE_DIR, currentFileName), offlineId);
+                }
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    public final List<List<Share>> generateAllPartiesShares(List<BigInteger> values){
-        List<List<Share>> result = new ArrayList<>();//one row for an edge server
-        ShamirSharing sharing = new ShamirSharing();
-        for(BigInteger value : values){//generate shares for value
-            List<Share> shares = sharing.getShares(value);
-            if(result.isEmpty()){
-                for(int i = 0; i < shares.size(); i++){
-                    result.add(new ArrayList<>());
-                }
+    /**
+     * @return the offset of the first entry
+     */
+    private int writeHeader(FileChannel channel, String offlineId, String prssKeys, String shareSeed)
+            throws IOException {
+        byte[][] texts = {fieldHeader().getBytes(StandardCharsets.UTF_8), offlineId.getBytes(StandardCharsets.UTF_8),
+                prssKeys.getBytes(StandardCharsets.UTF_8), shareSeed.getBytes(StandardCharsets.UTF_8)};
+        int length = COUNT_POSITION + 8 + 4;
+        for (byte[] text : texts) {
+            length += 4 + text.length;
+        }
+        int dataStart = (length + 7) / 8 * 8;
+        ByteBuffer header = ByteBuffer.allocate(dataStart).order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(MAGIC).putInt(VERSION).putInt(Params.FIELD.limbs()).putLong(0).putInt(dataStart);
+        for (byte[] text : texts) {
+            header.putInt(text.length).put(text);
+        }
+        header.position(0);
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        return dataStart;
+    }
+
+    /**
+     * The field header of every offline file, so that a party never reads material of another field
+     */
+    public static String fieldHeader(){
+        return "#" + Params.FIELD.getName() + " " + Params.FIELD.getModulus();
+    }
+
+    /**
+     * @return a counting segment that starts where the calls so far end
+     */
+    Segment startPlan() {
+        return sequential.copy(true);
+    }
+
+    /**
+     * Count what the work draws and writes, from where the counting segment is
+     *
+     * @return the segment of the work
+     */
+    Segment plan(Segment counting, Runnable work) {
+        Segment segment = counting.copy(false);
+        generate(counting, work);
+        return segment;
+    }
+
+    /**
+     * Run the work of a gate in its segment, on the current thread
+     */
+    void generate(Segment segment, Runnable work) {
+        current.set(segment);
+        try {
+            work.run();
+        } finally {
+            current.remove();
+        }
+    }
+
+    /**
+     * @return whether the current thread runs the work of a segment, e.g. the inner circuit of an OfflineLogGate
+     */
+    boolean isGenerating() {
+        return current.get() != null;
+    }
+
+    /**
+     * Continue after the planned segments, and write the counts of entries
+     */
+    void finishPlan(Segment counting) {
+        sequential.prssNonce = counting.prssNonce;
+        sequential.dealtNonce = counting.dealtNonce;
+        System.arraycopy(counting.positions, 0, sequential.positions, 0, partyNum);
+        for (int party_idx = 0; party_idx < partyNum; party_idx++) {
+            writeCount(party_idx);
+        }
+    }
+
+    private Segment segment() {
+        Segment segment = current.get();
+        return segment != null ? segment : sequential;
+    }
+
+    private PseudoRandomSecretSharing prss(Segment segment) {
+        PseudoRandomSecretSharing result = prss.get();
+        result.setNonce(segment.prssNonce++);
+        return result;
+    }
+
+    /**
+     * @return the shares a counting segment returns instead of drawing them
+     */
+    private List<ShareVector> zeroShares(int size) {
+        List<ShareVector> result = new ArrayList<>(partyNum);
+        for (int party_idx = 0; party_idx < partyNum; party_idx++) {
+            result.add(new ShareVector(party_idx, size));
+        }
+        return result;
+    }
+
+    private static int packedBlocks(int size) {
+        return (size + Params.PACK_K - 1) / Params.PACK_K;
+    }
+
+    /**
+     * Share the values and write the shares to the parties without a share seed; the seeded parties read theirs
+     * with EdgeServer.readDealtShares, in the same order
+     *
+     * @return one ShareVector per party, the i-th entry of each shares values[i]
+     */
+    public final List<ShareVector> dealSharesToAllParties(FieldVector values){
+        Segment segment = segment();
+        SeededShamirSharing sharing = dealtSharing.get();
+        sharing.setNonce(segment.dealtNonce++);
+        List<ShareVector> shares = segment.counting ? zeroShares(values.size()) : sharing.shareBatch(values);
+        for (int party_idx = 0; party_idx < partyNum; party_idx++) {
+            if (!SeededShamirSharing.isSeeded(party_idx, Params.T, partyNum)) {
+                writeClearToIthParty(shares.get(party_idx), party_idx);
             }
-            for(int i = 0; i < result.size(); i++){
-                List<Share> sharesIthParty = result.get(i);
-                sharesIthParty.add(shares.get(i));//put the shares to various rows
+        }
+        return shares;
+    }
+
+    /**
+     * @return one ShareVector per party, the i-th entry of each is a packed share of the i-th block of values
+     */
+    public final List<ShareVector> generateAllPartiesPackedShares(FieldVector values){
+        if (segment().counting) {
+            return zeroShares(packedBlocks(values.size()));
+        }
+        return packedSharing().shareBatch(values);
+    }
+
+    private synchronized PackedShamirSharing packedSharing() {
+        if(packedSharing == null){
+            packedSharing = new PackedShamirSharing(Params.PACK_K, Params.T, partyNum);
+        }
+        return packedSharing;
+    }
+
+    /**
+     * Draw the next random values with PRSS. Nothing is written: every party derives its shares itself.
+     *
+     * @param values receives the random values, its size is the number of values
+     * @return one ShareVector per party, the same shares the parties derive
+     */
+    public final List<ShareVector> generateRandomShares(FieldVector values){
+        Segment segment = segment();
+        PseudoRandomSecretSharing prss = prss(segment);
+        return segment.counting ? zeroShares(values.size()) : prss.nextAllShares(values);
+    }
+
+    /**
+     * Like generateRandomShares, packed with k = Params.PACK_K
+     */
+    public final List<ShareVector> generateRandomPackedShares(FieldVector values){
+        Segment segment = segment();
+        PseudoRandomSecretSharing prss = prss(segment);
+        return segment.counting ? zeroShares(packedBlocks(values.size())) : prss.nextAllPackedShares(values);
+    }
+
+    /**
+     * Like generateRandomShares, for values of which the dealer needs no shares
+     */
+    public final void generateRandomValues(FieldVector values){
+        Segment segment = segment();
+        PseudoRandomSecretSharing prss = prss(segment);
+        if (!segment.counting) {
+            prss.nextValues(values);
+        }
+    }
+
+    /**
+     * Like generateRandomValues, for values the parties draw as packed shares
+     */
+    public final void generateRandomPackedValues(FieldVector values){
+        Segment segment = segment();
+        PseudoRandomSecretSharing prss = prss(segment);
+        if (!segment.counting) {
+            prss.nextPackedValues(values);
+        }
+    }
+
+    public void writeSharesToAllParties(List<ShareVector> shares){
+        for (int party_idx = 0; party_idx < partyNum; party_idx++) {
+            writeClearToIthParty(shares.get(party_idx), party_idx);
+        }
+    }
+
+    /**
+     * Write the values to the file of the party, where the segment of the current gate is. Outside of
+     * OfflineCircuit.runOffline they are appended and the count is updated, so that the file is whole after
+     * every write. With Params.OFFLINE_PIPELINE the readers of this JVM can read them right away.
+     */
+    public void writeClearToIthParty(FieldVector values, int party_id){
+        Segment segment = segment();
+        final long from = segment.positions[party_id];
+        if (!segment.counting) {
+            write(values, party_id, dataStarts[party_id] + from * Params.FIELD.limbs() * 8);
+            if (progress != null) {
+                progress[party_id].written(from, from + values.size());
             }
         }
-        return result;
+        segment.positions[party_id] += values.size();
+        if (segment == sequential) {
+            writeCount(party_id);
+        }
     }
 
-    public void writeSharesToAllParties(List<List<Share>> shares){
+    private void write(FieldVector values, int party_id, long position) {
+        if (values.hasMissing()) {
+            throw new IllegalArgumentException("The offline material of a party cannot have missing entries");
+        }
+        FileChannel channel = channels.get(party_id);
+        ByteBuffer buffer = buffers.get();
+        long[] limbs = values.getLimbs();
+        final int length = values.size() * Params.FIELD.limbs();
         try {
-            for (int party_idx = 0; party_idx < partyNum; party_idx++) {
-                BufferedWriter writer = writers.get(party_idx);
-                for (Share share : shares.get(party_idx)) {
-                    writer.write(share.getShr().toString());
-                    writer.newLine();
+            for (int i = 0; i < length; ) {
+                int step = Math.min(length - i, buffer.remaining() / 8);
+                buffer.asLongBuffer().put(limbs, i, step);
+                buffer.position(buffer.position() + step * 8);
+                i += step;
+                if (!buffer.hasRemaining()) {
+                    position = flush(channel, buffer, position);
                 }
-                writer.flush();
             }
-        }catch (IOException e){
+            flush(channel, buffer, position);
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    public void writeClearToIthParty(List<BigInteger> values, int party_id){
-        BufferedWriter writer = writers.get(party_id);
+    /**
+     * @return the position after the buffer
+     */
+    private static long flush(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        buffer.clear();
+        return position;
+    }
+
+    private void writeCount(int party_id) {
+        ByteBuffer count = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN)
+                .putLong(0, sequential.positions[party_id]);
         try {
-            for(BigInteger value : values) {
-                writer.write(value.toString());
-                writer.newLine();
-            }
-            writer.flush();
-        }catch (IOException e) {
+            channels.get(party_id).write(count, COUNT_POSITION);
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    public void writeClearToAllParties(List<BigInteger> values){
+    public void writeClearToAllParties(FieldVector values){
         for(int party_idx = 0; party_idx < partyNum; party_idx++){
             writeClearToIthParty(values, party_idx);
         }
     }
+
+    /**
+     * Close the offline files, which are whole already. The readers that still wait for entries fail.
+     */
+    public void close() {
+        try {
+            for (FileChannel channel : channels) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (progress != null) {
+                for (OfflineProgress party : progress) {
+                    if (party != null) {
+                        party.finish();
+                    }
+                }
+            }
+        }
+    }
 }
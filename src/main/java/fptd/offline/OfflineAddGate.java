@@ -25,11 +25,11 @@ public class OfflineAddGate extends OfflineGate {
         // Write the lambda values to the output files
         this.fakeParty.writeSharesToAllParties(this.lambda_shr_matrix);
 
-//        this.lambda_clear_list = LinearAlgebra.addBigIntVec(inputX.lambda_clear_list, inputY.lambda_clear_list);
+//        this.lambda_clear_list = LinearAlgebra.addClearVec(inputX.lambda_clear_list, inputY.lambda_clear_list);
 
         this.lambda_clear_list = this.firstGate().lambda_clear_list;
         for (int i = 1; i < this.inputGates.length; i++) {
-            this.lambda_clear_list = LinearAlgebra.addBigIntVec(this.lambda_clear_list,
+            this.lambda_clear_list = LinearAlgebra.addClearVec(this.lambda_clear_list,
                     this.getIthGate(i).lambda_clear_list);
         }
     }
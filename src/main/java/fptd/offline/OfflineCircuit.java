@@ -1,22 +1,117 @@
 package fptd.offline;
 
+import fptd.Params;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
-
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * runOffline generates the gates on Params.OFFLINE_THREADS threads, see setThreads. It first runs every gate in the order the
+ * online circuit reads them, only counting its PRSS requests, dealt batches and entries, which gives every gate
+ * a FakeParty.Segment of its own; then each gate runs in its segment as soon as its inputs have run. With one
+ * thread the gates simply run in that order.
+ */
 public class OfflineCircuit {
 
     private FakeParty fakeParty;
     private List<OfflineGate> gates = new ArrayList<>();
     private List<OfflineGate> endpoints = new ArrayList<>();
+    private int threads = Params.OFFLINE_THREADS;
 
     public OfflineCircuit(FakeParty fakeParty) {
         this.fakeParty = fakeParty;
     }
 
+    /**
+     * @param threads of runOffline, see Params.OFFLINE_THREADS. The offline files are the same for any number.
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Offline threads " + threads + " below 1");
+        }
+        this.threads = threads;
+    }
+
     public void runOffline() {
+        // the circuit of a gate, e.g. OfflineLogGate, runs in the segment of the gate
+        if (fakeParty.isGenerating() || threads == 1) {
+            for (OfflineGate gate : endpoints) {
+                gate.runOffline();
+            }
+            return;
+        }
+        List<OfflineGate> order = new ArrayList<>();
+        Map<OfflineGate, Boolean> added = new IdentityHashMap<>();
         for (OfflineGate gate : endpoints) {
-            gate.runOffline();
+            addInOrder(gate, order, added);
+        }
+        FakeParty.Segment cursor = fakeParty.startPlan();
+        List<FakeParty.Segment> segments = new ArrayList<>(order.size());
+        for (OfflineGate gate : order) {
+            segments.add(fakeParty.plan(cursor, gate::runOffline));
+        }
+        for (OfflineGate gate : order) {
+            gate.reset();
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            Map<OfflineGate, CompletableFuture<Void>> done = new IdentityHashMap<>();
+            for (int i = 0; i < order.size(); i++) {
+                OfflineGate gate = order.get(i);
+                FakeParty.Segment segment = segments.get(i);
+                List<CompletableFuture<Void>> inputs = new ArrayList<>();
+                if (gate.inputGates != null) {
+                    for (OfflineGate input : gate.inputGates) {
+                        if (input != null && done.containsKey(input)) {
+                            inputs.add(done.get(input));
+                        }
+                    }
+                }
+                done.put(gate, CompletableFuture.allOf(inputs.toArray(new CompletableFuture<?>[0]))
+                        .thenRunAsync(() -> fakeParty.generate(segment, gate::runOffline), pool));
+            }
+            CompletableFuture.allOf(done.values().toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        } finally {
+            pool.shutdown();
+        }
+        fakeParty.finishPlan(cursor);
+    }
+
+    /**
+     * The gates that have not run yet, inputs first, in the order OfflineGate.runOffline runs them
+     */
+    private static void addInOrder(OfflineGate gate, List<OfflineGate> order, Map<OfflineGate, Boolean> added) {
+        if (gate.isEvaluatedOffline() || added.containsKey(gate)) {
+            return;
+        }
+        if (gate.inputGates != null) {
+            for (OfflineGate input : gate.inputGates) {
+                if (input != null) {
+                    addInOrder(input, order, added);
+                }
+            }
+        }
+        added.put(gate, true);
+        order.add(gate);
+    }
+
+    /**
+     * Run every gate again, see OfflineGate.reset
+     */
+    void reset() {
+        for (OfflineGate gate : gates) {
+            gate.reset();
         }
     }
 
@@ -124,6 +219,21 @@ public class OfflineCircuit {
         return gate;
     }
 
+    /**
+     * packed gates only connect to packed gates, see PackedShamirSharing
+     */
+    public OfflinePackedInputGate packedInput(int owner_id, int dim) {
+        OfflinePackedInputGate gate = new OfflinePackedInputGate(this.fakeParty, dim, owner_id);
+        this.gates.add(gate);
+        return gate;
+    }
+
+    public OfflinePackedElemWiseMultGate packedElemWiseMult(OfflineGate inputX, OfflineGate inputY) {
+        OfflinePackedElemWiseMultGate gate = new OfflinePackedElemWiseMultGate(inputX, inputY);
+        this.gates.add(gate);
+        return gate;
+    }
+
     public OfflineElemWiseMultThenMulConstGate elemWiseMultThenMulConst(OfflineGate inputX,
             OfflineGate inputY) {
         OfflineElemWiseMultThenMulConstGate gate = new OfflineElemWiseMultThenMulConstGate(inputX, inputY);
@@ -1,8 +1,8 @@
 package fptd.offline;
 
-import fptd.Share;
+import fptd.FieldVector;
+import fptd.ShareVector;
 
-import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -21,49 +21,20 @@ public class OfflineCombinationGate extends OfflineGate {
 
     @Override
     void doRunOffline() {
-        List<List<Share>> shares = new ArrayList<>();
+        List<ShareVector> shares = new ArrayList<>();
         for(int i = 0; i < this.firstGate().lambda_shr_matrix.size(); i++) {
-            shares.add(new ArrayList<>());
-        }
-        for(int i = 0; i < shares.size(); i++) {
-            List<Share> shares1 = this.firstGate().lambda_shr_matrix.get(i);
-            for(int j = 0; j < shares1.size(); j++) {
-                shares.get(i).add(shares1.get(j));//copy
-            }
-        }
-        for(int i = 0; i < shares.size(); i++) {
-//            List<Share> shares1 = inputY.lambda_shr_matrix.get(i);
-            for(int gateIdx = 1; gateIdx < this.inputGates.length; gateIdx++) {//for the gateIdx gate
-                List<Share> shares1 = this.inputGates[gateIdx].lambda_shr_matrix.get(i);
-                for(int j = 0; j < shares1.size(); j++) {
-                    shares.get(i).add(shares1.get(j));//copy
-                }
+            List<ShareVector> parts = new ArrayList<>();
+            for(OfflineGate gate : this.inputGates) {//copy the i-th row of every gate
+                parts.add(gate.lambda_shr_matrix.get(i));
             }
+            shares.add(ShareVector.concat(i, parts));
         }
         this.lambda_shr_matrix = shares;
 
-        List<BigInteger> new_lambda_clear_list = new ArrayList<>();
-        firstGate().lambda_clear_list.forEach(x->{
-            new_lambda_clear_list.add(x);
-        });
-
-        for(int gateIdx = 1; gateIdx < this.inputGates.length; gateIdx++) {
-            this.inputGates[gateIdx].lambda_clear_list.forEach(x->{
-                new_lambda_clear_list.add(x);
-            });
+        List<FieldVector> clear_parts = new ArrayList<>();
+        for(OfflineGate gate : this.inputGates) {
+            clear_parts.add(gate.lambda_clear_list);
         }
-
-        this.lambda_clear_list = new_lambda_clear_list;
+        this.lambda_clear_list = FieldVector.concat(clear_parts);
     }
 }
-
-
-
-
-
-
-
-
-
-
-
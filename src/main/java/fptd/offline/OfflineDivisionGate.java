@@ -1,8 +1,8 @@
 package fptd.offline;
 
-import fptd.Share;
+import fptd.FieldVector;
+import fptd.ShareVector;
 import java.math.BigInteger;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
@@ -11,9 +11,10 @@ public class OfflineDivisionGate extends OfflineGate {
 //    public static final int e = 100;
 //    public static final int sigma = 150;
 
-    public static final int l = 64;
-    public static final int e = 90;
-    public static final int sigma = 64;
+    // Requires e + 2 * (l + sigma) < bitLength(P). Override with -Dfptd.div.l/e/sigma to fit a small field
+    public static final int l = Integer.getInteger("fptd.div.l", 64);
+    public static final int e = Integer.getInteger("fptd.div.e", 90);
+    public static final int sigma = Integer.getInteger("fptd.div.sigma", 64);
 
     public OfflineDivisionGate(OfflineGate inputX) {
         super(inputX, null);
@@ -32,23 +33,17 @@ public class OfflineDivisionGate extends OfflineGate {
     @Override
     void doRunOffline() {
         Random rand = new Random();
-        List<BigInteger> r_list = new ArrayList<>();
-        List<BigInteger> r1_list = new ArrayList<>();
-        List<BigInteger> r2_list = new ArrayList<>();
+        FieldVector r_list = new FieldVector(dim);
+        FieldVector r1_list = new FieldVector(dim);
+        FieldVector r2_list = new FieldVector(dim);
         for (int i = 0; i < dim; i++) {
-            BigInteger r = new BigInteger(l + sigma, rand);
-            BigInteger r1 = new BigInteger(e + sigma, rand);
-            BigInteger r2 = new BigInteger(l + sigma, rand);
-            r_list.add(r);
-            r1_list.add(r1);
-            r2_list.add(r2);
+            r_list.set(i, new BigInteger(l + sigma, rand));
+            r1_list.set(i, new BigInteger(e + sigma, rand));
+            r2_list.set(i, new BigInteger(l + sigma, rand));
         }
-        List<List<Share>> shares_r = this.fakeParty.generateAllPartiesShares(r_list);
-        List<List<Share>> shares_r1 = this.fakeParty.generateAllPartiesShares(r1_list);
-        List<List<Share>> shares_r2 = this.fakeParty.generateAllPartiesShares(r2_list);
-        this.fakeParty.writeSharesToAllParties(shares_r);
-        this.fakeParty.writeSharesToAllParties(shares_r1);
-        this.fakeParty.writeSharesToAllParties(shares_r2);
+        this.fakeParty.dealSharesToAllParties(r_list);
+        List<ShareVector> shares_r1 = this.fakeParty.dealSharesToAllParties(r1_list);
+        this.fakeParty.dealSharesToAllParties(r2_list);
 
         this.lambda_clear_list = r1_list;
         this.lambda_shr_matrix = shares_r1;
@@ -1,8 +1,8 @@
 package fptd.offline;
 
-import fptd.Share;
+import fptd.FieldVector;
+import fptd.ShareVector;
 import fptd.utils.LinearAlgebra;
-import fptd.utils.Tool;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
@@ -45,54 +45,38 @@ public class OfflineDotProdThenDivGate extends OfflineGate {
     void doRunOffline() {
         final int numDotProd = num_dot_prod;
         for (int dpIdx = 0; dpIdx < numDotProd; dpIdx++) {
-            List<BigInteger> a_clear_list = new ArrayList<>(firstGate().dim);
-            List<BigInteger> b_clear_list = new ArrayList<>(firstGate().dim);
-            List<BigInteger> c_clear_list = new ArrayList<>(firstGate().dim);
-
-            for (int i = 0; i < firstGate().dim; i++) {
-                BigInteger a = Tool.getRand(64);
-                BigInteger b = Tool.getRand(64);
-                a_clear_list.add(a);
-                b_clear_list.add(b);
-                c_clear_list.add(a.multiply(b));
-            }
+            // a and b come from PRSS
+            FieldVector a_clear_list = new FieldVector(firstGate().dim);
+            FieldVector b_clear_list = new FieldVector(firstGate().dim);
+            fakeParty.generateRandomValues(a_clear_list);
+            fakeParty.generateRandomValues(b_clear_list);
+            FieldVector c_clear_list = LinearAlgebra.elemWiseMultiply(a_clear_list, b_clear_list);
 //            c_clear_list = LinearAlgebra.dotProduct(a_clear_list, b_clear_list);
 
-            List<List<Share>> a_shares = fakeParty.generateAllPartiesShares(a_clear_list);
-            List<List<Share>> b_shares = fakeParty.generateAllPartiesShares(b_clear_list);
-            List<List<Share>> c_shares = fakeParty.generateAllPartiesShares(c_clear_list);
+            fakeParty.dealSharesToAllParties(c_clear_list);
             // $\delta_x = a - \lambda_x$, $\delta_y = b - \lambda_y$
-            List<BigInteger> delta_x_clear = LinearAlgebra.subtractBigIntVec(a_clear_list,
+            FieldVector delta_x_clear = LinearAlgebra.subtractClearVec(a_clear_list,
                     this.xGates.get(dpIdx).lambda_clear_list);
-            List<BigInteger> delta_y_clear = LinearAlgebra.subtractBigIntVec(b_clear_list,
+            FieldVector delta_y_clear = LinearAlgebra.subtractClearVec(b_clear_list,
                     this.yGates.get(dpIdx).lambda_clear_list);
             //Write all data to files
-            fakeParty.writeSharesToAllParties(a_shares);
-            fakeParty.writeSharesToAllParties(b_shares);
-            fakeParty.writeSharesToAllParties(c_shares);
             fakeParty.writeClearToAllParties(delta_x_clear);
             fakeParty.writeClearToAllParties(delta_y_clear);
         }
 
         {   //For division
             Random rand = new Random();
-            List<BigInteger> r_list = new ArrayList<>();
-            List<BigInteger> r1_list = new ArrayList<>();
-            List<BigInteger> r2_list = new ArrayList<>();
+            FieldVector r_list = new FieldVector(num_dot_prod);
+            FieldVector r1_list = new FieldVector(num_dot_prod);
+            FieldVector r2_list = new FieldVector(num_dot_prod);
             for (int i = 0; i < num_dot_prod; i++) {
-                BigInteger r = new BigInteger(OfflineDivisionGate.l + OfflineDivisionGate.sigma, rand);
-                BigInteger r1 = new BigInteger(OfflineDivisionGate.e + OfflineDivisionGate.sigma, rand);
-                BigInteger r2 = new BigInteger(OfflineDivisionGate.l + OfflineDivisionGate.sigma, rand);
-                r_list.add(r);
-                r1_list.add(r1);
-                r2_list.add(r2);
+                r_list.set(i, new BigInteger(OfflineDivisionGate.l + OfflineDivisionGate.sigma, rand));
+                r1_list.set(i, new BigInteger(OfflineDivisionGate.e + OfflineDivisionGate.sigma, rand));
+                r2_list.set(i, new BigInteger(OfflineDivisionGate.l + OfflineDivisionGate.sigma, rand));
             }
-            List<List<Share>> shares_r = this.fakeParty.generateAllPartiesShares(r_list);
-            List<List<Share>> shares_r1 = this.fakeParty.generateAllPartiesShares(r1_list);
-            List<List<Share>> shares_r2 = this.fakeParty.generateAllPartiesShares(r2_list);
-            this.fakeParty.writeSharesToAllParties(shares_r);
-            this.fakeParty.writeSharesToAllParties(shares_r1);
-            this.fakeParty.writeSharesToAllParties(shares_r2);
+            this.fakeParty.dealSharesToAllParties(r_list);
+            List<ShareVector> shares_r1 = this.fakeParty.dealSharesToAllParties(r1_list);
+            this.fakeParty.dealSharesToAllParties(r2_list);
 
             this.lambda_clear_list = r1_list;
             this.lambda_shr_matrix = shares_r1;
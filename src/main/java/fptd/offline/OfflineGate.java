@@ -1,8 +1,8 @@
 package fptd.offline;
 
-import fptd.Share;
+import fptd.FieldVector;
+import fptd.ShareVector;
 
-import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -14,8 +14,8 @@ public abstract class OfflineGate {
     protected int dim;
     protected OfflineGate[] inputGates;
 
-    protected List<BigInteger> lambda_clear_list = new ArrayList<>();
-    protected List<List<Share>> lambda_shr_matrix = new ArrayList<>();
+    protected FieldVector lambda_clear_list = new FieldVector(0);
+    protected List<ShareVector> lambda_shr_matrix = new ArrayList<>(); // one row for an edge server
 
     public OfflineGate(FakeParty edgeServer, int dim) {
         this.fakeParty = edgeServer;
@@ -34,6 +34,30 @@ public abstract class OfflineGate {
 
     abstract void doRunOffline();
 
+    /**
+     * Share the values and write the shares to the offline files; the packed gates override it
+     *
+     * @return one vector of shares per party
+     */
+    protected List<ShareVector> deal(FieldVector values) {
+        return fakeParty.dealSharesToAllParties(values);
+    }
+
+    /**
+     * @param values receives fresh random values, drawn with PRSS; the packed gates override it
+     * @return one vector of shares per party, the parties derive them without the offline file
+     */
+    protected List<ShareVector> random(FieldVector values) {
+        return fakeParty.generateRandomShares(values);
+    }
+
+    /**
+     * Like random, for values of which no gate needs the shares offline
+     */
+    protected void randomValues(FieldVector values) {
+        fakeParty.generateRandomValues(values);
+    }
+
     public void runOffline() {
         if(this.evaluatedOffline) return;
 
@@ -59,6 +83,17 @@ public abstract class OfflineGate {
     }
 
 
+    boolean isEvaluatedOffline() {
+        return evaluatedOffline;
+    }
+
+    /**
+     * Let runOffline run the gate again, after OfflineCircuit has only counted what it draws and writes
+     */
+    void reset() {
+        this.evaluatedOffline = false;
+    }
+
     protected OfflineGate firstGate(){
         return this.inputGates[0];
     }
@@ -1,7 +1,6 @@
 package fptd.offline;
 
-import java.math.BigInteger;
-import java.util.Random;
+import fptd.FieldVector;
 
 public class OfflineInputGate extends OfflineGate {
 
@@ -15,16 +14,10 @@ public class OfflineInputGate extends OfflineGate {
     @Override
     void doRunOffline() {
         int size = this.dim;
-        Random rand = new Random();
-        for (int i = 0; i < size; i++) {
-            BigInteger r = new BigInteger(64, rand);
-//            BigInteger r = BigInteger.valueOf(88888888 * (i + 1));
-//            System.out.println("r = " + r);
-            this.lambda_clear_list.add(r);
-        }
-        this.lambda_shr_matrix = this.fakeParty.generateAllPartiesShares(lambda_clear_list);
+        // lambda comes from PRSS, the parties derive their shares and nothing is written
+        this.lambda_clear_list = new FieldVector(size);
+        this.lambda_shr_matrix = random(lambda_clear_list);
 
 //        this.fakeParty.writeClearToIthParty(this.lambda_clear_list, owner_id);
-        this.fakeParty.writeSharesToAllParties(this.lambda_shr_matrix);
     }
 }
@@ -14,6 +14,12 @@ public class OfflineLogGate extends OfflineGate {
         this.fakeCircuit.addEndpoint(divFixed);
     }
 
+    @Override
+    void reset() {
+        super.reset();
+        this.fakeCircuit.reset();
+    }
+
     @Override
     void doRunOffline() {
         this.fakeCircuit.runOffline();
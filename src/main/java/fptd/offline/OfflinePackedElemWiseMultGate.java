@@ -0,0 +1,33 @@
+package fptd.offline;
+
+import fptd.FieldVector;
+import fptd.ShareVector;
+import java.util.List;
+
+/**
+ * OfflineElemWiseMultGate with packed a, b, c and lambda shares, for PackedElemWiseMultiplyGate.
+ * The deltas stay clear vectors of dim values.
+ */
+public class OfflinePackedElemWiseMultGate extends OfflineElemWiseMultGate {
+
+    public OfflinePackedElemWiseMultGate(OfflineGate inputX, OfflineGate inputY) {
+        super(inputX, inputY);
+    }
+
+    @Override
+    protected List<ShareVector> deal(FieldVector values) {
+        List<ShareVector> shares = fakeParty.generateAllPartiesPackedShares(values);
+        fakeParty.writeSharesToAllParties(shares);
+        return shares;
+    }
+
+    @Override
+    protected List<ShareVector> random(FieldVector values) {
+        return fakeParty.generateRandomPackedShares(values);
+    }
+
+    @Override
+    protected void randomValues(FieldVector values) {
+        fakeParty.generateRandomPackedValues(values);
+    }
+}
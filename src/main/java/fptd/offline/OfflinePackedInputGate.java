@@ -0,0 +1,20 @@
+package fptd.offline;
+
+import fptd.FieldVector;
+import fptd.ShareVector;
+import java.util.List;
+
+/**
+ * OfflineInputGate with packed lambda shares, for PackedInputGate
+ */
+public class OfflinePackedInputGate extends OfflineInputGate {
+
+    public OfflinePackedInputGate(FakeParty fakeParty, int dim, int owner_id) {
+        super(fakeParty, dim, owner_id);
+    }
+
+    @Override
+    protected List<ShareVector> random(FieldVector values) {
+        return fakeParty.generateRandomPackedShares(values);
+    }
+}
@@ -0,0 +1,98 @@
+package fptd.offline;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The entries of an offline file that a FakeParty of the same JVM has written so far, so that an OfflineReader
+ * can read a gate's entries while the other gates are still generated, see Params.OFFLINE_PIPELINE. The gates
+ * of OfflineCircuit are written out of order, so the written entries are kept as ranges.
+ */
+final class OfflineProgress {
+
+    private static final Map<Path, OfflineProgress> LIVE = new ConcurrentHashMap<>(); // by file
+
+    private final Path file;
+    private final String offlineId;
+    private final TreeMap<Long, Long> written = new TreeMap<>(); // from -> to, in entries, disjoint and apart
+    private boolean finished = false;
+
+    private OfflineProgress(Path file, String offlineId) {
+        this.file = file;
+        this.offlineId = offlineId;
+    }
+
+    /**
+     * The file is being written from now on
+     */
+    static OfflineProgress start(Path file, String offlineId) {
+        OfflineProgress progress = new OfflineProgress(key(file), offlineId);
+        LIVE.put(progress.file, progress);
+        return progress;
+    }
+
+    /**
+     * @return the progress of the file if it is still being written for this offline run, else null
+     */
+    static OfflineProgress find(Path file, String offlineId) {
+        OfflineProgress progress = LIVE.get(key(file));
+        return progress != null && progress.offlineId.equals(offlineId) ? progress : null;
+    }
+
+    private static Path key(Path file) {
+        return file.toAbsolutePath().normalize();
+    }
+
+    synchronized void written(long from, long to) {
+        Map.Entry<Long, Long> before = written.floorEntry(from);
+        if (before != null && before.getValue() >= from) {
+            from = before.getKey();
+            to = Math.max(to, before.getValue());
+        }
+        Map.Entry<Long, Long> after = written.ceilingEntry(from);
+        while (after != null && after.getKey() <= to) {
+            to = Math.max(to, after.getValue());
+            written.remove(after.getKey());
+            after = written.ceilingEntry(from);
+        }
+        written.put(from, to);
+        notifyAll();
+    }
+
+    /**
+     * The writer is done, whether it wrote every entry or failed
+     */
+    synchronized void finish() {
+        finished = true;
+        LIVE.remove(file, this);
+        notifyAll();
+    }
+
+    /**
+     * Wait until the entries from, ..., to - 1 are written
+     */
+    synchronized void await(long from, long to) {
+        while (!isWritten(from, to)) {
+            if (finished) {
+                throw new IllegalStateException("Offline file " + file.getFileName()
+                        + " was finished without the entries the circuit reads: generate it for this circuit");
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private boolean isWritten(long from, long to) {
+        if (from >= to) {
+            return true;
+        }
+        Map.Entry<Long, Long> range = written.floorEntry(from);
+        return range != null && range.getValue() >= to;
+    }
+}
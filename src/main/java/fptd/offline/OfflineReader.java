@@ -0,0 +1,205 @@
+package fptd.offline;
+
+import fptd.Params;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the offline file of a party, see FakeParty, through a MappedByteBuffer: the entries are copied as they
+ * are into the limbs of the vectors, so loading them costs page faults instead of decimal parsing. A file larger
+ * than WINDOW_BYTES is mapped one window after another.
+ *
+ * The entries are read at their position, from any thread. A file that a FakeParty of the same JVM is still
+ * writing, see OfflineProgress, is read with positional reads once the entries are written.
+ */
+public class OfflineReader implements AutoCloseable {
+
+    private static final long WINDOW_BYTES = 1L << 30;
+
+    private final String fileName;
+    private final long windowBytes;
+    private final FileChannel channel;
+    private final int limbs;
+    private final long count; // entries in the file
+    private final long dataStart;
+    private final String fieldHeader;
+    private final String offlineId;
+    private final String prssKeys;
+    private final String shareSeed;
+    private final OfflineProgress progress; // null once the file is whole
+    private final LongBuffer[] windows; // mapped when first read, the i-th from i * windowBytes
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(
+            () -> ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN)); // of the positional reads
+
+    public OfflineReader(String dir, String fileName) {
+        this(dir, fileName, WINDOW_BYTES);
+    }
+
+    /**
+     * @param windowBytes the bytes mapped at once, a multiple of 8
+     */
+    OfflineReader(String dir, String fileName, long windowBytes) {
+        if (windowBytes <= 0 || windowBytes % 8 != 0) {
+            throw new IllegalArgumentException("Window of " + windowBytes + " bytes, not a positive multiple of 8");
+        }
+        this.fileName = fileName;
+        this.windowBytes = windowBytes;
+        try {
+            this.channel = FileChannel.open(Path.of(dir, fileName), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            throw new IllegalStateException("Offline file " + fileName + " does not exist, generate it first", e);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        try {
+            long size = channel.size();
+            if (size < FakeParty.COUNT_POSITION + 12) {
+                throw new IllegalStateException("Offline file " + fileName + " is truncated, generate it again");
+            }
+            ByteBuffer fixed = ByteBuffer.allocate(FakeParty.COUNT_POSITION + 12).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(fixed, 0);
+            if (fixed.getLong(0) != FakeParty.MAGIC || fixed.getInt(8) != FakeParty.VERSION) {
+                throw new IllegalStateException("Offline file " + fileName
+                        + " is not an offline file of this version, generate it again");
+            }
+            this.limbs = fixed.getInt(12);
+            this.count = fixed.getLong(FakeParty.COUNT_POSITION);
+            this.dataStart = fixed.getInt(FakeParty.COUNT_POSITION + 8);
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, dataStart);
+            header.order(ByteOrder.LITTLE_ENDIAN).position(FakeParty.COUNT_POSITION + 12);
+            this.fieldHeader = readText(header);
+            this.offlineId = readText(header);
+            this.prssKeys = readText(header);
+            this.shareSeed = readText(header);
+            this.progress = OfflineProgress.find(Path.of(dir, fileName), offlineId);
+            if (progress == null && size < dataStart + count * limbs * 8) {
+                throw new IllegalStateException("Offline file " + fileName + " is truncated, generate it again");
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        this.windows = new LongBuffer[(int) ((count * limbs * 8 + windowBytes - 1) / windowBytes)];
+        if (!FakeParty.fieldHeader().equals(fieldHeader) || limbs != Params.FIELD.limbs()) {
+            throw new IllegalStateException("Offline file " + fileName + " was generated for "
+                    + fieldHeader + " but this party runs " + FakeParty.fieldHeader());
+        }
+    }
+
+    private static String readText(ByteBuffer header) {
+        byte[] bytes = new byte[header.getInt()];
+        header.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public String getFieldHeader() {
+        return fieldHeader;
+    }
+
+    public String getOfflineId() {
+        return offlineId;
+    }
+
+    /**
+     * @return the PRSS keys of the party, see PseudoRandomSecretSharing.decodeKeys
+     */
+    public String getPrssKeys() {
+        return prssKeys;
+    }
+
+    /**
+     * @return the share seed of the party in hex, empty if the party is not seeded, see SeededShamirSharing
+     */
+    public String getShareSeed() {
+        return shareSeed;
+    }
+
+    /**
+     * @return whether a FakeParty of this JVM was still writing the file when it was opened
+     */
+    public boolean isStreaming() {
+        return progress != null;
+    }
+
+    /**
+     * Copy the entries entry, ..., entry + entries - 1 into dst from offset, once they are written
+     */
+    public void read(long entry, long[] dst, int offset, int entries) {
+        if (progress != null) {
+            progress.await(entry, entry + entries);
+            readWritten(entry * limbs, dst, offset, entries * limbs);
+            return;
+        }
+        if (entry + entries > count) {
+            throw new IllegalStateException("Offline file " + fileName + " has " + count
+                    + " entries, fewer than the circuit reads: generate it for this circuit");
+        }
+        long position = entry * limbs; // in longs, from dataStart
+        int length = entries * limbs;
+        final long windowLongs = windowBytes / 8;
+        while (length > 0) {
+            LongBuffer window = window((int) (position / windowLongs));
+            int from = (int) (position % windowLongs);
+            int step = Math.min(length, window.limit() - from);
+            window.get(from, dst, offset, step);
+            offset += step;
+            length -= step;
+            position += step;
+        }
+    }
+
+    private synchronized LongBuffer window(int i) {
+        if (windows[i] == null) {
+            long start = i * windowBytes;
+            long size = Math.min(windowBytes, count * limbs * 8 - start);
+            try {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, dataStart + start, size);
+                windows[i] = mapped.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return windows[i];
+    }
+
+    /**
+     * Read a file that is still being written: it cannot be mapped beyond its current end
+     */
+    private void readWritten(long position, long[] dst, int offset, int length) {
+        ByteBuffer buffer = buffers.get();
+        try {
+            while (length > 0) {
+                int step = Math.min(length, buffer.capacity() / 8);
+                buffer.clear().limit(step * 8);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, dataStart + position * 8 + buffer.position()) < 0) {
+                        throw new IllegalStateException("Offline file " + fileName + " is truncated");
+                    }
+                }
+                buffer.flip();
+                buffer.asLongBuffer().get(dst, offset, step);
+                offset += step;
+                length -= step;
+                position += step;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -1,9 +1,9 @@
 package fptd.offline;
 
-import fptd.Share;
+import fptd.ShareVector;
+import fptd.utils.LinearAlgebra;
 import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.List;
 
 public class OfflineScalingGate extends OfflineGate {
 
@@ -17,21 +17,10 @@ public class OfflineScalingGate extends OfflineGate {
 
     @Override
     void doRunOffline() {
-        this.lambda_clear_list = new ArrayList<>();
+        this.lambda_clear_list = LinearAlgebra.scaleClearVec(firstGate().lambda_clear_list, this.roundingFactor);
         this.lambda_shr_matrix = new ArrayList<>();
-
-        for (BigInteger v : firstGate().lambda_clear_list) {
-            this.lambda_clear_list.add(v.multiply(this.roundingFactor));
-        }
-        for (int i = 0; i < firstGate().lambda_shr_matrix.size(); i++) {
-            List<Share> shares = firstGate().lambda_shr_matrix.get(i);
-            List<Share> newShareList = new ArrayList<>();
-            for (int j = 0; j < shares.size(); j++) {
-                Share share = shares.get(j);
-                BigInteger newValue = share.getShr().multiply(this.roundingFactor);
-                newShareList.add(share.setValue(newValue));
-            }
-            this.lambda_shr_matrix.add(newShareList);
+        for (ShareVector shares : firstGate().lambda_shr_matrix) {
+            this.lambda_shr_matrix.add(LinearAlgebra.scaleSharesVec(shares, this.roundingFactor));
         }
         this.fakeParty.writeSharesToAllParties(this.lambda_shr_matrix);
     }
@@ -21,7 +21,7 @@ public class OfflineSubtractGate extends OfflineGate {
         }
         // Write the lambda values to the output files
         this.fakeParty.writeSharesToAllParties(this.lambda_shr_matrix);
-        this.lambda_clear_list = LinearAlgebra.subtractBigIntVec(firstGate().lambda_clear_list,
+        this.lambda_clear_list = LinearAlgebra.subtractClearVec(firstGate().lambda_clear_list,
                 secondGate().lambda_clear_list);
     }
 }
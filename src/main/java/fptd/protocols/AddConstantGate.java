@@ -1,5 +1,6 @@
 package fptd.protocols;
 
+import fptd.FieldVector;
 import fptd.utils.LinearAlgebra;
 import java.math.BigInteger;
 import java.util.List;
@@ -21,6 +22,7 @@ public class AddConstantGate extends Gate {
     @Override
     void doRunOnline() {
         this.lambda_share_list = this.firstGate().lambda_share_list;
-        this.Delta_clear_list = LinearAlgebra.addBigIntVec(this.firstGate().Delta_clear_list, constants);
+        this.Delta_clear_list = LinearAlgebra.addClearVec(this.firstGate().Delta_clear_list,
+                FieldVector.of(constants));
     }
 }
@@ -23,11 +23,11 @@ public class AddGate extends Gate {
 
     @Override
     void doRunOnline() {
-//        this.Delta_clear_list = LinearAlgebra.addBigIntVec(this.firstGate().Delta_clear_list, this.inputY.Delta_clear_list);
+//        this.Delta_clear_list = LinearAlgebra.addClearVec(this.firstGate().Delta_clear_list, this.inputY.Delta_clear_list);
 
         this.Delta_clear_list = this.firstGate().Delta_clear_list;
         for (int i = 1; i < inputGates.length; i++) {
-            this.Delta_clear_list = LinearAlgebra.addBigIntVec(this.Delta_clear_list, inputGates[i].Delta_clear_list);
+            this.Delta_clear_list = LinearAlgebra.addClearVec(this.Delta_clear_list, inputGates[i].Delta_clear_list);
         }
 
     }
@@ -1,10 +1,18 @@
 package fptd.protocols;
 
 import fptd.EdgeServer;
+import fptd.FieldVector;
+import fptd.Params;
 import fptd.Share;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class Circuit {
 
@@ -12,6 +20,11 @@ public class Circuit {
     private List<Gate> gates = new ArrayList<>();
     private List<Gate> endpoints = new ArrayList<>();
     private List<OutputGate> outputGates = new ArrayList<>();
+    private OpeningMode openingMode = Params.OPENING_MODE;
+    private int openingChunk = Params.OPENING_CHUNK;
+    private int treeFanout = Params.TREE_FANOUT;
+    private int offlinePrefetch = Params.OFFLINE_PREFETCH;
+    private OnlineStats stats = null; // of the last runOnlineWithBenckmark
 
     public Circuit(EdgeServer server) {
         this.server = server;
@@ -33,17 +46,123 @@ public class Circuit {
         }
     }
 
-    public void runOnline() {
+    /**
+     * Instead of readOfflineFromFile: find where the offline material of every gate is, in the order
+     * readOfflineFromFile reads it, so that the OnlineScheduler reads each gate's material right before the gate
+     * runs, e.g. while a pipelined offline phase is still writing the rest, see Params.OFFLINE_PIPELINE, and
+     * only holds that of the gates in flight, see Params.OFFLINE_PREFETCH
+     */
+    public void planOfflineReads() {
+        server.planOffline(this::readOfflineFromFile);
+        resetOfflineReads();
+    }
+
+    void resetOfflineReads() {
         for (Gate gate : endpoints) {
-            gate.runOnline();
+            gate.resetOfflineRead();
+        }
+    }
+
+    /**
+     * Opens the values of all the gates of the same interactive depth in one round, see OnlineScheduler
+     */
+    public void runOnline() {
+        new OnlineScheduler(endpoints, openingMode, openingChunk, treeFanout, offlinePrefetch, null).run();
+    }
+
+    /**
+     * Every party must run its circuit with the same mode
+     */
+    public void setOpeningMode(OpeningMode openingMode) {
+        this.openingMode = openingMode;
+    }
+
+    public OpeningMode getOpeningMode() {
+        return openingMode;
+    }
+
+    /**
+     * @param openingChunk shares per message of an OpeningMode.KING opening, 0 for one message, see
+     *                     Params.OPENING_CHUNK. Every party must run its circuit with the same chunk.
+     */
+    public void setOpeningChunk(int openingChunk) {
+        if (openingChunk < 0) {
+            throw new IllegalArgumentException("Negative opening chunk " + openingChunk);
+        }
+        this.openingChunk = openingChunk;
+    }
+
+    /**
+     * @param treeFanout children per party of an OpeningMode.TREE opening, see Params.TREE_FANOUT. Every party
+     *                   must run its circuit with the same fan-out.
+     */
+    public void setTreeFanout(int treeFanout) {
+        if (treeFanout < 1) {
+            throw new IllegalArgumentException("Tree fan-out " + treeFanout + " below 1");
+        }
+        this.treeFanout = treeFanout;
+    }
+
+    /**
+     * @param offlinePrefetch gates whose offline material is read ahead of the gate that runs, after
+     *                        planOfflineReads, 0 to read the whole circuit before it runs, see
+     *                        Params.OFFLINE_PREFETCH
+     */
+    public void setOfflinePrefetch(int offlinePrefetch) {
+        if (offlinePrefetch < 0) {
+            throw new IllegalArgumentException("Negative offline prefetch " + offlinePrefetch);
+        }
+        this.offlinePrefetch = offlinePrefetch;
+    }
+
+    public int getOfflinePrefetch() {
+        return offlinePrefetch;
+    }
+
+    /**
+     * A digest of the gates in the order they were added, with their dimensions and input gates, so that parties
+     * on different hosts can check that they run the same circuit, see EdgeServer.connectOtherServers
+     */
+    public String fingerprint() {
+        Map<Gate, Integer> ids = new IdentityHashMap<>();
+        StringBuilder description = new StringBuilder();
+        for (Gate gate : gates) {
+            ids.put(gate, ids.size());
+            description.append(gate.getClass().getSimpleName()).append(' ').append(gate.getDim());
+            if (gate.inputGates != null) {
+                for (Gate input : gate.inputGates) {
+                    description.append(' ').append(input == null ? -1 : ids.getOrDefault(input, -2));
+                }
+            }
+            description.append(';');
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(description.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Run online as runOnline does, timing every gate and recording the traffic, waits and reconstruction of
+     * every round, see OnlineStats
+     */
     public void runOnlineWithBenckmark() {
-        runOnline();
+        this.stats = new OnlineStats(server.getIdx(), gates);
+        new OnlineScheduler(endpoints, openingMode, openingChunk, treeFanout, offlinePrefetch, stats).run();
     }
 
     public void printStats() {
+        if (stats == null) {
+            throw new IllegalStateException("Run the circuit with runOnlineWithBenckmark first");
+        }
+        System.out.print(stats.report());
+    }
+
+    public OnlineStats getStats() {
+        return stats;
     }
 
     public InputGate input(int owner_id, int dim) {
@@ -77,6 +196,13 @@ public class Circuit {
         return gate;
     }
 
+    // filter中missing的元素，将InputX所对应的这些元素也设置为missing
+    public ReduceGate reduceSum(Gate inputX, FieldVector filter) {
+        ReduceGate gate = new ReduceGate(inputX, filter);
+        this.gates.add(gate);
+        return gate;
+    }
+
     public AddGate add(Gate inputX, Gate inputY) {
         AddGate gate = new AddGate(inputX, inputY);
         gates.add(gate);
@@ -191,6 +317,28 @@ public class Circuit {
         return gate;
     }
 
+    /**
+     * packed gates only connect to packed gates, see PackedShamirSharing
+     */
+    public PackedInputGate packedInput(int owner_id, int dim) {
+        PackedInputGate gate = new PackedInputGate(server, dim, owner_id);
+        this.gates.add(gate);
+        return gate;
+    }
+
+    public PackedElemWiseMultiplyGate packedElemMultiply(Gate inputX, Gate inputY) {
+        PackedElemWiseMultiplyGate gate = new PackedElemWiseMultiplyGate(inputX, inputY);
+        gates.add(gate);
+        return gate;
+    }
+
+    public PackedOutputGate packedOutput(Gate inputX) {
+        PackedOutputGate gate = new PackedOutputGate(inputX);
+        gates.add(gate);
+        outputGates.add(gate);
+        return gate;
+    }
+
     public EdgeServer getServer() {
         return server;
     }
@@ -1,7 +1,7 @@
 package fptd.protocols;
 
-import fptd.Share;
-import java.math.BigInteger;
+import fptd.FieldVector;
+import fptd.ShareVector;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -24,24 +24,13 @@ public class CombinationGate extends Gate {
 
     @Override
     void doRunOnline() {
-        List<Share> new_lambda_share_list = new ArrayList<>();
-        this.firstGate().lambda_share_list.forEach(x -> {
-            new_lambda_share_list.add(x);
-        });
-        List<BigInteger> new_Delta_clear_list = new ArrayList<>();
-        this.firstGate().Delta_clear_list.forEach(x -> {
-            new_Delta_clear_list.add(x);
-        });
-        for (int gateIdx = 1; gateIdx < this.inputGates.length; gateIdx++) {
-            inputGates[gateIdx].lambda_share_list.forEach(x -> {
-                new_lambda_share_list.add(x);
-            });
-            inputGates[gateIdx].Delta_clear_list.forEach(x -> {
-                new_Delta_clear_list.add(x);
-            });
+        List<ShareVector> lambda_parts = new ArrayList<>(this.inputGates.length);
+        List<FieldVector> Delta_parts = new ArrayList<>(this.inputGates.length);
+        for (Gate gate : this.inputGates) {
+            lambda_parts.add(gate.lambda_share_list);
+            Delta_parts.add(gate.Delta_clear_list);
         }
-
-        this.lambda_share_list = new_lambda_share_list;
-        this.Delta_clear_list = new_Delta_clear_list;
+        this.lambda_share_list = ShareVector.concat(edgeServer.getIdx(), lambda_parts);
+        this.Delta_clear_list = FieldVector.concat(Delta_parts);
     }
 }
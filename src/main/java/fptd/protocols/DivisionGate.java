@@ -2,10 +2,10 @@ package fptd.protocols;
 
 import static fptd.Params.P;
 
-import fptd.Share;
+import fptd.FieldVector;
+import fptd.ShareVector;
 import fptd.offline.OfflineDivisionGate;
 import fptd.utils.LinearAlgebra;
-import fptd.utils.Tool;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
@@ -26,9 +26,12 @@ public class DivisionGate extends Gate {
     private List<BigInteger> divisors;
     private OutputGate divisorGate; //Get the divisors from this gate
 
-    private List<Share> r_list;
-    private List<Share> r1_list;
-    private List<Share> r2_list;
+    private ShareVector r_list;
+    private ShareVector r1_list;
+    private ShareVector r2_list;
+
+    // assert required(): x is opened at the king only, in the same round as z
+    private static final boolean CHECK_INPUT = DivisionGate.class.desiredAssertionStatus();
 
 
     public DivisionGate(Gate inputX, List<BigInteger> divisors) {
@@ -71,19 +74,25 @@ public class DivisionGate extends Gate {
 
     @Override
     void doReadOfflineFromFile() {
-        r_list = edgeServer.readRandShares(dim);
-        r1_list = edgeServer.readRandShares(dim);
-        r2_list = edgeServer.readRandShares(dim);
+        r_list = edgeServer.readDealtShares(dim);
+        r1_list = edgeServer.readDealtShares(dim);
+        r2_list = edgeServer.readDealtShares(dim);
     }
 
-    private boolean required() {
+    @Override
+    void releaseOffline() {
+        r_list = null;
+        r1_list = null;
+        r2_list = null;
+    }
+
+    /**
+     * @param x_list opened at the king only, null at the other servers
+     */
+    private boolean required(FieldVector x_list) {
         //Check the requirement
-        edgeServer.sendToKing(
-                LinearAlgebra.subtractVec2(this.firstGate().Delta_clear_list, this.firstGate().lambda_share_list));
-        if (edgeServer.isKing()) {
-            List<Object> objs = edgeServer.kingReadFromAll();
-            List<BigInteger> x_list = Tool.openShares2Values(this.firstGate().dim, objs);
-            for (BigInteger x : x_list) {
+        if (x_list != null) {
+            for (BigInteger x : x_list.toBigIntegers()) {
                 if (x.bitLength() >= OfflineDivisionGate.e) {
                     System.out.println("0 <= x.bitlen < e. bit(x)=" + x.bitLength() + ", e = " + OfflineDivisionGate.e);
                     return false;
@@ -94,8 +103,17 @@ public class DivisionGate extends Gate {
     }
 
     @Override
-    void doRunOnline() {
-        assert required();
+    int rounds() {
+        return 1;
+    }
+
+    @Override
+    List<Opening> prepareRound(int round) {
+        List<Opening> openings = new ArrayList<>(2);
+        if (CHECK_INPUT) {
+            openings.add(Opening.kingOnly(
+                    LinearAlgebra.subtractVec2(this.firstGate().Delta_clear_list, this.firstGate().lambda_share_list)));
+        }
 
         if (this.divisorGate != null) {
             List<BigInteger> outputValues = this.divisorGate.getOutputValues();
@@ -107,33 +125,30 @@ public class DivisionGate extends Gate {
         }
 
         BigInteger two2l_sigma = BigInteger.TWO.pow(OfflineDivisionGate.l + OfflineDivisionGate.sigma);
-        List<BigInteger> two2l_sigma_list = new ArrayList<>();
-        for (int i = 0; i < this.firstGate().dim; i++) {
-            two2l_sigma_list.add(two2l_sigma);
-        }
-        List<Share> shares_h = LinearAlgebra.elemWiseMultiply2(r1_list, two2l_sigma_list);
+        ShareVector shares_h = LinearAlgebra.scaleSharesVec(r1_list, two2l_sigma);
         shares_h = LinearAlgebra.addSharesVec(r_list, shares_h);
-        shares_h = LinearAlgebra.elemWiseMultiply2(shares_h, divisors);
+        shares_h = LinearAlgebra.elemWiseMultiply2(shares_h, FieldVector.of(divisors));
 
-        List<Share> shares_x = LinearAlgebra.subtractVec2(this.firstGate().Delta_clear_list,
+        ShareVector shares_x = LinearAlgebra.subtractVec2(this.firstGate().Delta_clear_list,
                 this.firstGate().lambda_share_list);
-        List<Share> shares_z = LinearAlgebra.elemWiseMultiply2(shares_x, two2l_sigma_list);
+        ShareVector shares_z = LinearAlgebra.scaleSharesVec(shares_x, two2l_sigma);
         shares_z = LinearAlgebra.addSharesVec(shares_z, shares_h);
         shares_z = LinearAlgebra.addSharesVec(shares_z, r2_list);
         //open z
-        edgeServer.sendToKing(shares_z);
-        if (edgeServer.isKing()) {
-            List<Object> objs = edgeServer.kingReadFromAll();
-            List<BigInteger> z_clear_list = Tool.openShares2Values(dim, objs);
-            edgeServer.kingSendToAll(z_clear_list);
-        }
-        List<BigInteger> z_clear_list = (List<BigInteger>) edgeServer.readFromKing();
+        openings.add(Opening.of(shares_z));
+        return openings;
+    }
+
+    @Override
+    void finishRound(int round, List<FieldVector> values) {
+        assert required(values.get(0));
+        FieldVector z_clear_list = values.get(values.size() - 1);
+        BigInteger two2l_sigma = BigInteger.TWO.pow(OfflineDivisionGate.l + OfflineDivisionGate.sigma);
 
         // Delta_clear = \lfloor z/(2^{l+sigma} \cdot d)  \rfloor
-        List<BigInteger> d_temp = LinearAlgebra.elemWiseMultiply(two2l_sigma_list, divisors);
-        this.Delta_clear_list = new ArrayList<>();
+        this.Delta_clear_list = new FieldVector(dim);
         for (int i = 0; i < this.firstGate().dim; i++) {
-            this.Delta_clear_list.add(z_clear_list.get(i).divide(d_temp.get(i)));
+            this.Delta_clear_list.set(i, z_clear_list.get(i).divide(two2l_sigma.multiply(divisors.get(i))));
         }
         this.lambda_share_list = this.r1_list;
     }
@@ -1,38 +1,41 @@
 package fptd.protocols;
 
-import fptd.Share;
+import fptd.FieldVector;
+import fptd.Params;
+import fptd.ShareVector;
 import fptd.offline.OfflineDivisionGate;
 import fptd.utils.LinearAlgebra;
-import fptd.utils.Tool;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 public class DotProdThenDivGate extends Gate {
 
     //Fields for multiply
     //每一行表示一个dot product的随机数
-    private List<List<Share>> a_shr_matrix = new ArrayList<>();
-    private List<List<Share>> b_shr_matrix = new ArrayList<>();
-    private List<List<Share>> c_shr_matrix = new ArrayList<>();
-    private List<List<BigInteger>> delta_x_clear_matrix = new ArrayList<>();
-    private List<List<BigInteger>> delta_y_clear_matrix = new ArrayList<>();
+    private List<ShareVector> a_shr_matrix = new ArrayList<>();
+    private List<ShareVector> b_shr_matrix = new ArrayList<>();
+    private List<ShareVector> c_shr_matrix = new ArrayList<>();
+    private List<FieldVector> delta_x_clear_matrix = new ArrayList<>();
+    private List<FieldVector> delta_y_clear_matrix = new ArrayList<>();
+    private FieldVector temp_xy_list; // temp_x * temp_y of every dot product, public, added to the opened z
 
     private List<Gate> xGates = new ArrayList<>(); // The i-th xGate dot-product the i-th yGate
     private List<Gate> yGates = new ArrayList<>();
 
     //Fields for division
     private OutputGate divisorGate; //Get the divisors from this gate
-    private List<Share> r_list;
-    private List<Share> r1_list;
-    private List<Share> r2_list;
+    private ShareVector r_list;
+    private ShareVector r1_list;
+    private ShareVector r2_list;
     private List<BigInteger> divisors;
 
     private int num_dot_prod = -1;//计算dot product的个数
 
     private BigInteger scaling = null; // To scale the result of all dot product
 
-    private List<List<Boolean>> filterMatrix = null; // 0 or 1 values, if 0 then ignore this value in dot product
+    private List<BitSet> filterMatrix = null; // 0 or 1 values, if 0 then ignore this value in dot product
 
     /**
      * 有dim次内积，每一次内积的结果是一个数字，因此，需要使用combine Gate来合并这个内积的output gates，以升维
@@ -57,13 +60,11 @@ public class DotProdThenDivGate extends Gate {
         this.dim = num_dot_prod;
     }
 
-    private <T> List<Boolean> initFilter(List<T> xList, List<T> yList) {
-        List<Boolean> filter = new ArrayList<>();
+    private BitSet initFilter(FieldVector xList, FieldVector yList) {
+        BitSet filter = new BitSet(xList.size());
         for (int i = 0; i < xList.size(); i++) {
-            if (xList.get(i) != null && yList.get(i) != null) {
-                filter.add(true);
-            } else {
-                filter.add(false);
+            if (!xList.isMissing(i) && !yList.isMissing(i)) {
+                filter.set(i);
             }
         }
         return filter;
@@ -76,25 +77,48 @@ public class DotProdThenDivGate extends Gate {
 
     @Override
     void doReadOfflineFromFile() {
-        //randomness for multiply
+        //randomness for multiply, read afresh after Circuit.planOfflineReads
+        a_shr_matrix.clear();
+        b_shr_matrix.clear();
+        c_shr_matrix.clear();
+        delta_x_clear_matrix.clear();
+        delta_y_clear_matrix.clear();
         for (int dpIdx = 0; dpIdx < num_dot_prod; dpIdx++) {
-            a_shr_matrix.add(edgeServer.readRandShares(this.firstGate().dim));
-            b_shr_matrix.add(edgeServer.readRandShares(this.firstGate().dim));
-            c_shr_matrix.add(edgeServer.readRandShares(this.firstGate().dim));
+            a_shr_matrix.add(edgeServer.getRandomness().nextShares(this.firstGate().dim));
+            b_shr_matrix.add(edgeServer.getRandomness().nextShares(this.firstGate().dim));
+            c_shr_matrix.add(edgeServer.readDealtShares(this.firstGate().dim));
             delta_x_clear_matrix.add(edgeServer.readClear(this.firstGate().dim));
             delta_y_clear_matrix.add(edgeServer.readClear(this.firstGate().dim));
         }
         //randomness for division
-        r_list = edgeServer.readRandShares(num_dot_prod);
-        r1_list = edgeServer.readRandShares(num_dot_prod);
-        r2_list = edgeServer.readRandShares(num_dot_prod);
+        r_list = edgeServer.readDealtShares(num_dot_prod);
+        r1_list = edgeServer.readDealtShares(num_dot_prod);
+        r2_list = edgeServer.readDealtShares(num_dot_prod);
     }
 
     @Override
-    void doRunOnline() {
+    void releaseOffline() {
+        a_shr_matrix.clear();
+        b_shr_matrix.clear();
+        c_shr_matrix.clear();
+        delta_x_clear_matrix.clear();
+        delta_y_clear_matrix.clear();
+        temp_xy_list = null;
+        r_list = null;
+        r1_list = null;
+        r2_list = null;
+    }
+
+    @Override
+    int rounds() {
+        return 1;
+    }
+
+    @Override
+    List<Opening> prepareRound(int round) {
         filterMatrix = new ArrayList<>();//initialize the filterMatrix
         for (int i = 0; i < this.xGates.size(); i++) {
-            List<Boolean> filter = initFilter(this.xGates.get(i).Delta_clear_list, this.yGates.get(i).Delta_clear_list);
+            BitSet filter = initFilter(this.xGates.get(i).Delta_clear_list, this.yGates.get(i).Delta_clear_list);
             filterMatrix.add(filter);
         }
 
@@ -108,92 +132,72 @@ public class DotProdThenDivGate extends Gate {
             this.divisors = outputValues;
         }
 
-        List<Share> Delta_z_share_list = new ArrayList<>();
-        List<BigInteger> temp_xy_list = new ArrayList<>();
         final int numDotProd = num_dot_prod;
+        ShareVector Delta_z_share_list = new ShareVector(edgeServer.getIdx(), numDotProd);
+        this.temp_xy_list = new FieldVector(numDotProd);
+        final int n = Params.FIELD.limbs();
         for (int pdIdx = 0; pdIdx < numDotProd; pdIdx++) {//For each dot product
             Gate gateX = this.xGates.get(pdIdx);
             Gate gateY = this.yGates.get(pdIdx);
             // temp_x = $\Delta_x + \delta_x$
-            List<BigInteger> temp_x = LinearAlgebra.addBigIntVec(gateX.Delta_clear_list,
+            FieldVector temp_x = LinearAlgebra.addClearVec(gateX.Delta_clear_list,
                     this.delta_x_clear_matrix.get(pdIdx));
             // temp_y = $\Delta_y + \delta_y$
-            List<BigInteger> temp_y = LinearAlgebra.addBigIntVec(gateY.Delta_clear_list,
+            FieldVector temp_y = LinearAlgebra.addClearVec(gateY.Delta_clear_list,
                     this.delta_y_clear_matrix.get(pdIdx));
-            //perform the filtering
-            temp_x = LinearAlgebra.doFilter(temp_x, this.filterMatrix.get(pdIdx));
-            temp_y = LinearAlgebra.doFilter(temp_y, this.filterMatrix.get(pdIdx));
-            // temp_xy = temp_x * temp_y, 只有一个元素
-            List<BigInteger> temp_xy = LinearAlgebra.dotProduct(temp_x, temp_y);
-            if (temp_xy.size() > 1) {
-                throw new RuntimeException("temp_xy should only one element");
-            }
-            temp_xy_list.add(temp_xy.getFirst());
-            // Compute [Delta_z] according to the paper
+            // temp_xy = temp_x * temp_y, 只有一个元素. The filter is exactly where both temp_x and temp_y are present
+            FieldVector temp_xy = LinearAlgebra.dotProduct(temp_x, temp_y);
+            System.arraycopy(temp_xy.getLimbs(), 0, temp_xy_list.getLimbs(), temp_xy_list.offset(pdIdx), n);
+            // Compute [Delta_z] according to the paper, over the entries in the filter
             // [Delta_z] = [c] + [lambda_z]
 //            List<Share> Delta_z_shr = LinearAlgebra.addSharesVec(c_shr, lambda_share_list);
-//            List<Share> Delta_z_shr = c_shr_matrix.get(pdIdx);//只有一个元素在这个数组中
-            List<Share> c_shr = c_shr_matrix.get(pdIdx);
-            c_shr = LinearAlgebra.doFilter(c_shr, this.filterMatrix.get(pdIdx));
-//            Share sum_of_c_shr = c_shr.stream().reduce((s1, s2)->{return s1.add(s2);}).get();
-            Share sum_of_c_shr = LinearAlgebra.reduceSum(c_shr);
-            List<Share> Delta_z_shr = List.of(sum_of_c_shr);//只有一个元素在这个数组中
-            // [Delta_z] -= [a] * temp_y
-            Delta_z_shr = LinearAlgebra.subtractSharesVec(Delta_z_shr,
-                    LinearAlgebra.dotProduct2(a_shr_matrix.get(pdIdx), temp_y));
-            // [Delta_z] -= temp_x * [b]
-            Delta_z_shr = LinearAlgebra.subtractSharesVec(Delta_z_shr,
-                    LinearAlgebra.dotProduct2(b_shr_matrix.get(pdIdx), temp_x));
+            // [Delta_z] = sum([c]) - <[a], temp_y> - <temp_x, [b]>, 只有一个元素在这个数组中
+            ShareVector Delta_z_shr = LinearAlgebra.beaverDotProduct(c_shr_matrix.get(pdIdx), null,
+                    a_shr_matrix.get(pdIdx), temp_y, b_shr_matrix.get(pdIdx), temp_x, this.filterMatrix.get(pdIdx));
             if (Delta_z_shr.size() > 1) {
                 throw new RuntimeException("Delta_z_shr should have only one element");
             }
-            Delta_z_share_list.add(Delta_z_shr.getFirst());
+            System.arraycopy(Delta_z_shr.getLimbs(), 0,
+                    Delta_z_share_list.getLimbs(), Delta_z_share_list.offset(pdIdx), n);
+            if (Delta_z_shr.isMissing(0)) {
+                Delta_z_share_list.setMissing(pdIdx);
+            }
         }
 
         //To scale the result of dot product
         if (this.scaling != null) {
-            for (int i = 0; i < Delta_z_share_list.size(); i++) {
-                Share s = Delta_z_share_list.get(i);
-                Delta_z_share_list.set(i, s.multiply(this.scaling));
-                temp_xy_list.set(i, temp_xy_list.get(i).multiply(this.scaling));
-            }
+            Delta_z_share_list = LinearAlgebra.scaleSharesVec(Delta_z_share_list, this.scaling);
+            temp_xy_list = LinearAlgebra.scaleClearVec(temp_xy_list, this.scaling);
         }
 
         /******************** start the division **********************************/
         BigInteger two2l_sigma = BigInteger.TWO.pow(OfflineDivisionGate.l + OfflineDivisionGate.sigma);
-        List<BigInteger> two2l_sigma_list = new ArrayList<>();
-        for (int i = 0; i < numDotProd; i++) {
-            two2l_sigma_list.add(two2l_sigma);
-        }
-        List<Share> shares_h = LinearAlgebra.elemWiseMultiply2(r1_list, two2l_sigma_list);
+        ShareVector shares_h = LinearAlgebra.scaleSharesVec(r1_list, two2l_sigma);
         shares_h = LinearAlgebra.addSharesVec(r_list, shares_h);
-        shares_h = LinearAlgebra.elemWiseMultiply2(shares_h, divisors);
+        shares_h = LinearAlgebra.elemWiseMultiply2(shares_h, FieldVector.of(divisors));
 
 //        List<Share> shares_x = LinearAlgebra.subtractVec2(this.firstGate().Delta_clear_list, this.firstGate().lambda_share_list);
-        List<Share> shares_x = Delta_z_share_list; // Newly-added
+        ShareVector shares_x = Delta_z_share_list; // Newly-added
 
-        List<Share> shares_z = LinearAlgebra.elemWiseMultiply2(shares_x, two2l_sigma_list);
+        ShareVector shares_z = LinearAlgebra.scaleSharesVec(shares_x, two2l_sigma);
         shares_z = LinearAlgebra.addSharesVec(shares_z, shares_h);
         shares_z = LinearAlgebra.addSharesVec(shares_z, r2_list);
         //open z
-        edgeServer.sendToKing(shares_z);
-        if (edgeServer.isKing()) {
-            List<Object> objs = edgeServer.kingReadFromAll();
-            List<BigInteger> z_clear_list = Tool.openShares2Values(numDotProd, objs);
-
-            //Newly-added. temp_xy is not shared with other servers
-            z_clear_list = LinearAlgebra.addBigIntVec(z_clear_list,
-                    LinearAlgebra.elemWiseMultiply(two2l_sigma_list, temp_xy_list));
+        return List.of(Opening.of(shares_z));
+    }
 
-            edgeServer.kingSendToAll(z_clear_list);
-        }
-        List<BigInteger> z_clear_list = (List<BigInteger>) edgeServer.readFromKing();
+    @Override
+    void finishRound(int round, List<FieldVector> values) {
+        final int numDotProd = num_dot_prod;
+        BigInteger two2l_sigma = BigInteger.TWO.pow(OfflineDivisionGate.l + OfflineDivisionGate.sigma);
+        //Newly-added. temp_xy is public, so every server adds it to the opened z
+        FieldVector z_clear_list = LinearAlgebra.addClearVec(values.get(0),
+                LinearAlgebra.scaleClearVec(temp_xy_list, two2l_sigma));
 
         // Delta_clear = \lfloor z/(2^{l+sigma} \cdot d)  \rfloor
-        List<BigInteger> d_temp = LinearAlgebra.elemWiseMultiply(two2l_sigma_list, divisors);
-        this.Delta_clear_list = new ArrayList<>();
+        this.Delta_clear_list = new FieldVector(numDotProd);
         for (int i = 0; i < numDotProd; i++) {
-            this.Delta_clear_list.add(z_clear_list.get(i).divide(d_temp.get(i)));
+            this.Delta_clear_list.set(i, z_clear_list.get(i).divide(two2l_sigma.multiply(divisors.get(i))));
         }
         this.lambda_share_list = this.r1_list;
     }
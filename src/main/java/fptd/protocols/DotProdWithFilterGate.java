@@ -1,10 +1,9 @@
 package fptd.protocols;
 
-import fptd.Share;
+import fptd.FieldVector;
+import fptd.ShareVector;
 import fptd.utils.LinearAlgebra;
-import fptd.utils.Tool;
-import java.math.BigInteger;
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 /**
@@ -15,12 +14,13 @@ import java.util.List;
  */
 public class DotProdWithFilterGate extends Gate {
 
-    private List<Share> a_shr;
-    private List<Share> b_shr;
-    private List<Share> c_shr;
-    private List<BigInteger> delta_x_clear_list;
-    private List<BigInteger> delta_y_clear_list;
-    private List<Boolean> filter; //if 0, the value in this dimension will be ignored in the dot product.
+    private ShareVector a_shr;
+    private ShareVector b_shr;
+    private ShareVector c_shr;
+    private FieldVector delta_x_clear_list;
+    private FieldVector delta_y_clear_list;
+    private FieldVector temp_xy; // temp_x * temp_y, public, added to the opened value
+    private BitSet filter; //if 0, the value in this dimension will be ignored in the dot product.
 
     /**
      *
@@ -37,65 +37,57 @@ public class DotProdWithFilterGate extends Gate {
 
     @Override
     void doReadOfflineFromFile() {
-        a_shr = edgeServer.readRandShares(this.firstGate().dim);
-        b_shr = edgeServer.readRandShares(this.firstGate().dim);
-        c_shr = edgeServer.readRandShares(this.firstGate().dim);
-        this.lambda_share_list = edgeServer.readRandShares(1);
+        a_shr = edgeServer.getRandomness().nextShares(this.firstGate().dim);
+        b_shr = edgeServer.getRandomness().nextShares(this.firstGate().dim);
+        c_shr = edgeServer.readDealtShares(this.firstGate().dim);
+        this.lambda_share_list = edgeServer.getRandomness().nextShares(1);
         this.delta_x_clear_list = edgeServer.readClear(this.firstGate().dim);
         this.delta_y_clear_list = edgeServer.readClear(this.firstGate().dim);
     }
 
     @Override
-    void doRunOnline() {
+    void releaseOffline() {
+        a_shr = null;
+        b_shr = null;
+        c_shr = null;
+        delta_x_clear_list = null;
+        delta_y_clear_list = null;
+        temp_xy = null;
+    }
+
+    @Override
+    int rounds() {
+        return 1;
+    }
+
+    @Override
+    List<Opening> prepareRound(int round) {
         //initialize the filter
-        this.filter = new ArrayList<>();
+        this.filter = new BitSet(this.firstGate().dim);
         for (int i = 0; i < this.firstGate().dim; i++) {
-            if (this.firstGate().Delta_clear_list.get(i) != null
-                    && this.secondGate().Delta_clear_list.get(i) != null) {
-                this.filter.add(true);
-            } else {
-                this.filter.add(false);
+            if (!this.firstGate().Delta_clear_list.isMissing(i)
+                    && !this.secondGate().Delta_clear_list.isMissing(i)) {
+                this.filter.set(i);
             }
         }
         // temp_x = $\Delta_x + \delta_x$
-        List<BigInteger> temp_x = LinearAlgebra.addBigIntVec(this.firstGate().Delta_clear_list, delta_x_clear_list);
+        FieldVector temp_x = LinearAlgebra.addClearVec(this.firstGate().Delta_clear_list, delta_x_clear_list);
         // temp_y = $\Delta_y + \delta_y$
-        List<BigInteger> temp_y = LinearAlgebra.addBigIntVec(this.secondGate().Delta_clear_list, delta_y_clear_list);
-        //perform the filtering
-        temp_x = LinearAlgebra.doFilter(temp_x, filter);
-        temp_y = LinearAlgebra.doFilter(temp_y, filter);
-        // temp_xy = temp_x * temp_y, 只有一个元素
-        List<BigInteger> temp_xy = LinearAlgebra.dotProduct(temp_x, temp_y);
-        // Compute [Delta_z] according to the paper
-        // [Delta_z] = [c] + [lambda_z]
-//        List<Share> Delta_z_shr = LinearAlgebra.addSharesVec(c_shr, lambda_share_list);
-        c_shr = LinearAlgebra.doFilter(c_shr, this.filter); //mul the constant
-
-        Share sumOf_c_share = LinearAlgebra.reduceSum(c_shr);
-        List<Share> Delta_z_shr = List.of(sumOf_c_share); //update for multiplying a constant
-
-        // [Delta_z] -= [a] * temp_y
-        Delta_z_shr = LinearAlgebra.subtractSharesVec(Delta_z_shr, LinearAlgebra.dotProduct2(a_shr, temp_y));
-        // [Delta_z] -= temp_x * [b]
-        Delta_z_shr = LinearAlgebra.subtractSharesVec(Delta_z_shr, LinearAlgebra.dotProduct2(b_shr, temp_x));
-
-        Delta_z_shr = LinearAlgebra.addSharesVec(Delta_z_shr, lambda_share_list);
+        FieldVector temp_y = LinearAlgebra.addClearVec(this.secondGate().Delta_clear_list, delta_y_clear_list);
+        // temp_xy = temp_x * temp_y, 只有一个元素. The filter is exactly where both temp_x and temp_y are present
+        this.temp_xy = LinearAlgebra.dotProduct(temp_x, temp_y);
+        // Compute [Delta_z] according to the paper, over the entries in the filter
+        // [Delta_z] = sum([c]) + [lambda_z] - <[a], temp_y> - <temp_x, [b]>
+        ShareVector Delta_z_shr = LinearAlgebra.beaverDotProduct(c_shr, lambda_share_list, a_shr, temp_y,
+                b_shr, temp_x, this.filter);
 
         //To open Delta_z in the clear
-        edgeServer.sendToKing(Delta_z_shr);
-        if (edgeServer.isKing()) {
-            List<Object> shares = edgeServer.kingReadFromAll();
-            List<BigInteger> values = Tool.openShares2Values(1, shares);
-            values = LinearAlgebra.addBigIntVec(values, temp_xy); // temp_xy is not shared with other servers
-            //Let other servers know Delta_clear_list, i.e., values
-            edgeServer.kingSendToAll(values);
-        }
-        this.Delta_clear_list = (List<BigInteger>) edgeServer.readFromKing();
+        return List.of(Opening.of(Delta_z_shr));
     }
-}
-
-
-
-
-
 
+    @Override
+    void finishRound(int round, List<FieldVector> values) {
+        // temp_xy is public, so every server adds it to the opened value
+        this.Delta_clear_list = LinearAlgebra.addClearVec(values.get(0), temp_xy);
+    }
+}
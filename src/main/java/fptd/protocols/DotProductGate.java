@@ -1,19 +1,20 @@
 package fptd.protocols;
 
-import fptd.Share;
+import fptd.FieldVector;
+import fptd.ShareVector;
 import fptd.utils.LinearAlgebra;
-import fptd.utils.Tool;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 
 public class DotProductGate extends Gate {
 
-    private List<Share> a_shr;
-    private List<Share> b_shr;
-    private List<Share> c_shr;
-    private List<BigInteger> delta_x_clear_list;
-    private List<BigInteger> delta_y_clear_list;
+    private ShareVector a_shr;
+    private ShareVector b_shr;
+    private ShareVector c_shr;
+    private FieldVector delta_x_clear_list;
+    private FieldVector delta_y_clear_list;
+    private FieldVector temp_xy; // temp_x * temp_y, public, added to the opened value
     private List<BigInteger> roundingFactorsToEliminate = new ArrayList<>();
 
     public DotProductGate(Gate inputX, Gate inputY) {
@@ -32,50 +33,58 @@ public class DotProductGate extends Gate {
 
     @Override
     void doReadOfflineFromFile() {
-        a_shr = edgeServer.readRandShares(this.firstGate().dim);
-        b_shr = edgeServer.readRandShares(this.firstGate().dim);
-        c_shr = edgeServer.readRandShares(1);
-        this.lambda_share_list = edgeServer.readRandShares(1);
+        a_shr = edgeServer.getRandomness().nextShares(this.firstGate().dim);
+        b_shr = edgeServer.getRandomness().nextShares(this.firstGate().dim);
+        c_shr = edgeServer.readDealtShares(1);
+        this.lambda_share_list = edgeServer.getRandomness().nextShares(1);
         this.delta_x_clear_list = edgeServer.readClear(this.firstGate().dim);
         this.delta_y_clear_list = edgeServer.readClear(this.firstGate().dim);
     }
 
     @Override
-    void doRunOnline() {
+    void releaseOffline() {
+        a_shr = null;
+        b_shr = null;
+        c_shr = null;
+        delta_x_clear_list = null;
+        delta_y_clear_list = null;
+        temp_xy = null;
+    }
+
+    @Override
+    int rounds() {
+        return 1;
+    }
+
+    @Override
+    List<Opening> prepareRound(int round) {
         // temp_x = $\Delta_x + \delta_x$
-        List<BigInteger> temp_x = LinearAlgebra.addBigIntVec(this.firstGate().Delta_clear_list, delta_x_clear_list);
+        FieldVector temp_x = LinearAlgebra.addClearVec(this.firstGate().Delta_clear_list, delta_x_clear_list);
         // temp_y = $\Delta_y + \delta_y$
-        List<BigInteger> temp_y = LinearAlgebra.addBigIntVec(secondGate().Delta_clear_list, delta_y_clear_list);
+        FieldVector temp_y = LinearAlgebra.addClearVec(secondGate().Delta_clear_list, delta_y_clear_list);
         // temp_xy = temp_x * temp_y, 只有一个元素
-        List<BigInteger> temp_xy = LinearAlgebra.dotProduct(temp_x, temp_y);
+        this.temp_xy = LinearAlgebra.dotProduct(temp_x, temp_y);
         // Compute [Delta_z] according to the paper
-        // [Delta_z] = [c] + [lambda_z]
-        List<Share> Delta_z_shr = LinearAlgebra.addSharesVec(c_shr, lambda_share_list);
-        // [Delta_z] -= [a] * temp_y
-        Delta_z_shr = LinearAlgebra.subtractSharesVec(Delta_z_shr, LinearAlgebra.dotProduct2(a_shr, temp_y));
-        // [Delta_z] -= temp_x * [b]
-        Delta_z_shr = LinearAlgebra.subtractSharesVec(Delta_z_shr, LinearAlgebra.dotProduct2(b_shr, temp_x));
+        // [Delta_z] = [c] + [lambda_z] - <[a], temp_y> - <temp_x, [b]>
+        ShareVector Delta_z_shr = LinearAlgebra.beaverDotProduct(c_shr, lambda_share_list, a_shr, temp_y,
+                b_shr, temp_x, null);
 
         //To open Delta_z in the clear
-        edgeServer.sendToKing(Delta_z_shr);
-        if (edgeServer.isKing()) {
-            List<Object> shares = edgeServer.kingReadFromAll();
-            List<BigInteger> values = Tool.openShares2Values(1, shares);
-
-            values = LinearAlgebra.addBigIntVec(values, temp_xy); // temp_xy is not shared with other servers
+        return List.of(Opening.of(Delta_z_shr));
+    }
 
-            //Let other servers know Delta_clear_list, i.e., values
-            edgeServer.kingSendToAll(values);
-        }
+    @Override
+    void finishRound(int round, List<FieldVector> values) {
+        // temp_xy is public, so every server adds it to the opened value
+        FieldVector DeltaTempList = LinearAlgebra.addClearVec(values.get(0), temp_xy);
         //To eliminate the rounding factors
         BigInteger roundingFactorAll = BigInteger.ONE;
         for (BigInteger rounding : roundingFactorsToEliminate) {
             roundingFactorAll = roundingFactorAll.multiply(rounding);
         }
-        List<BigInteger> DeltaTempList = (List<BigInteger>) edgeServer.readFromKing();
-        this.Delta_clear_list = new ArrayList<>();
-        for (BigInteger delta : DeltaTempList) {
-            this.Delta_clear_list.add(delta.divide(roundingFactorAll));
+        this.Delta_clear_list = new FieldVector(DeltaTempList.size());
+        for (int i = 0; i < DeltaTempList.size(); i++) {
+            this.Delta_clear_list.set(i, DeltaTempList.get(i).divide(roundingFactorAll));
         }
     }
 }
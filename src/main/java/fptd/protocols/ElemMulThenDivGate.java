@@ -2,10 +2,10 @@ package fptd.protocols;
 
 import static fptd.Params.P;
 
-import fptd.Share;
+import fptd.FieldVector;
+import fptd.ShareVector;
 import fptd.offline.OfflineDivisionGate;
 import fptd.utils.LinearAlgebra;
-import fptd.utils.Tool;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
@@ -13,18 +13,22 @@ import java.util.List;
 public class ElemMulThenDivGate extends Gate {
 
     //Fields for multiply
-    private List<Share> a_shr;
-    private List<Share> b_shr;
-    private List<Share> c_shr;
-    private List<BigInteger> delta_x_clear_list;
-    private List<BigInteger> delta_y_clear_list;
+    private ShareVector a_shr;
+    private ShareVector b_shr;
+    private ShareVector c_shr;
+    private FieldVector delta_x_clear_list;
+    private FieldVector delta_y_clear_list;
 
     //Fields for division
     private OutputGate divisorGate; //Get the divisors from this gate
-    private List<Share> r_list;
-    private List<Share> r1_list;
-    private List<Share> r2_list;
+    private ShareVector r_list;
+    private ShareVector r1_list;
+    private ShareVector r2_list;
     private List<BigInteger> divisors = null;
+    private FieldVector temp_xy; // temp_x * temp_y, public, added to the opened z
+
+    // assert required(): x is opened at the king only, in the same round as z
+    private static final boolean CHECK_INPUT = ElemMulThenDivGate.class.desiredAssertionStatus();
 
     public ElemMulThenDivGate(Gate inputX, Gate inputY, OutputGate divisorGate) {
         super(inputX, inputY, divisorGate);
@@ -47,22 +51,44 @@ public class ElemMulThenDivGate extends Gate {
     @Override
     void doReadOfflineFromFile() {
         //randomness for multiply
-        a_shr = edgeServer.readRandShares(dim);
-        b_shr = edgeServer.readRandShares(dim);
-        c_shr = edgeServer.readRandShares(dim);
+        a_shr = edgeServer.getRandomness().nextShares(dim);
+        b_shr = edgeServer.getRandomness().nextShares(dim);
+        c_shr = edgeServer.readDealtShares(dim);
 //        this.lambda_share_list = edgeServer.readRandShares(dim);
         this.delta_x_clear_list = edgeServer.readClear(dim);
         this.delta_y_clear_list = edgeServer.readClear(dim);
 
         //randomness for division
-        r_list = edgeServer.readRandShares(dim);
-        r1_list = edgeServer.readRandShares(dim);
-        r2_list = edgeServer.readRandShares(dim);
+        r_list = edgeServer.readDealtShares(dim);
+        r1_list = edgeServer.readDealtShares(dim);
+        r2_list = edgeServer.readDealtShares(dim);
+    }
+
+    @Override
+    void releaseOffline() {
+        a_shr = null;
+        b_shr = null;
+        c_shr = null;
+        delta_x_clear_list = null;
+        delta_y_clear_list = null;
+        temp_xy = null;
+        r_list = null;
+        r1_list = null;
+        r2_list = null;
     }
 
     @Override
-    void doRunOnline() {
-        assert required() : "The division requirement is not met.";
+    int rounds() {
+        return 1;
+    }
+
+    @Override
+    List<Opening> prepareRound(int round) {
+        List<Opening> openings = new ArrayList<>(2);
+        if (CHECK_INPUT) {
+            openings.add(Opening.kingOnly(
+                    LinearAlgebra.subtractVec2(this.firstGate().Delta_clear_list, this.firstGate().lambda_share_list)));
+        }
         if (this.divisorGate != null) {
             List<BigInteger> outputValues = this.divisorGate.getOutputValues();
             assert required(outputValues) : "The division requirement is not met.";
@@ -76,57 +102,47 @@ public class ElemMulThenDivGate extends Gate {
 
         /******************** start the multiplication **********************************/
         // temp_x = $\Delta_x + \delta_x$
-        List<BigInteger> temp_x = LinearAlgebra.addBigIntVec(this.firstGate().Delta_clear_list, delta_x_clear_list);
+        FieldVector temp_x = LinearAlgebra.addClearVec(this.firstGate().Delta_clear_list, delta_x_clear_list);
         // temp_y = $\Delta_y + \delta_y$
-        List<BigInteger> temp_y = LinearAlgebra.addBigIntVec(secondGate().Delta_clear_list, delta_y_clear_list);
+        FieldVector temp_y = LinearAlgebra.addClearVec(secondGate().Delta_clear_list, delta_y_clear_list);
         // temp_xy = temp_x * temp_y
-        List<BigInteger> temp_xy = LinearAlgebra.elemWiseMultiply(temp_x, temp_y);
+        this.temp_xy = LinearAlgebra.elemWiseMultiply(temp_x, temp_y);
         // Compute [Delta_z] according to the paper
         // [Delta_z] = [c] + [lambda_z]
 
 //        List<Share> Delta_z_shr = LinearAlgebra.addSharesVec(c_shr, lambda_share_list);
-        List<Share> Delta_z_shr = c_shr; //Newly-added
-
-        // [Delta_z] -= [a] * temp_y
-        Delta_z_shr = LinearAlgebra.subtractSharesVec(Delta_z_shr, LinearAlgebra.elemWiseMultiply2(a_shr, temp_y));
-        // [Delta_z] -= temp_x * [b]
-        Delta_z_shr = LinearAlgebra.subtractSharesVec(Delta_z_shr, LinearAlgebra.elemWiseMultiply2(b_shr, temp_x));
+        // [Delta_z] = [c] - [a] * temp_y - temp_x * [b], without lambda_z //Newly-added
+        ShareVector Delta_z_shr = LinearAlgebra.beaverMultiply(c_shr, null, a_shr, temp_y, b_shr, temp_x);
 
         /******************** start the division **********************************/
         BigInteger two2l_sigma = BigInteger.TWO.pow(OfflineDivisionGate.l + OfflineDivisionGate.sigma);
-        List<BigInteger> two2l_sigma_list = new ArrayList<>();
-        for (int i = 0; i < this.firstGate().dim; i++) {
-            two2l_sigma_list.add(two2l_sigma);
-        }
-        List<Share> shares_h = LinearAlgebra.elemWiseMultiply2(r1_list, two2l_sigma_list);
+        ShareVector shares_h = LinearAlgebra.scaleSharesVec(r1_list, two2l_sigma);
         shares_h = LinearAlgebra.addSharesVec(r_list, shares_h);
-        shares_h = LinearAlgebra.elemWiseMultiply2(shares_h, divisors);
+        shares_h = LinearAlgebra.elemWiseMultiply2(shares_h, FieldVector.of(divisors));
 
 //        List<Share> shares_x = LinearAlgebra.subtractVec2(this.firstGate().Delta_clear_list, this.firstGate().lambda_share_list);
-        List<Share> shares_x = Delta_z_shr; // Newly-added
+        ShareVector shares_x = Delta_z_shr; // Newly-added
 
-        List<Share> shares_z = LinearAlgebra.elemWiseMultiply2(shares_x, two2l_sigma_list);
+        ShareVector shares_z = LinearAlgebra.scaleSharesVec(shares_x, two2l_sigma);
         shares_z = LinearAlgebra.addSharesVec(shares_z, shares_h);
         shares_z = LinearAlgebra.addSharesVec(shares_z, r2_list);
         //open z
-        edgeServer.sendToKing(shares_z);
-        if (edgeServer.isKing()) {
-            List<Object> objs = edgeServer.kingReadFromAll();
-            List<BigInteger> z_clear_list = Tool.openShares2Values(dim, objs);
-
-            //Newly-added. temp_xy is not shared with other servers
-            z_clear_list = LinearAlgebra.addBigIntVec(z_clear_list,
-                    LinearAlgebra.elemWiseMultiply(two2l_sigma_list, temp_xy));
+        openings.add(Opening.of(shares_z));
+        return openings;
+    }
 
-            edgeServer.kingSendToAll(z_clear_list);
-        }
-        List<BigInteger> z_clear_list = (List<BigInteger>) edgeServer.readFromKing();
+    @Override
+    void finishRound(int round, List<FieldVector> values) {
+        assert required(values.get(0)) : "The division requirement is not met.";
+        BigInteger two2l_sigma = BigInteger.TWO.pow(OfflineDivisionGate.l + OfflineDivisionGate.sigma);
+        //Newly-added. temp_xy is public, so every server adds it to the opened z
+        FieldVector z_clear_list = LinearAlgebra.addClearVec(values.get(values.size() - 1),
+                LinearAlgebra.scaleClearVec(temp_xy, two2l_sigma));
 
         // Delta_clear = \lfloor z/(2^{l+sigma} \cdot d)  \rfloor
-        List<BigInteger> d_temp = LinearAlgebra.elemWiseMultiply(two2l_sigma_list, divisors);
-        this.Delta_clear_list = new ArrayList<>();
+        this.Delta_clear_list = new FieldVector(dim);
         for (int i = 0; i < this.firstGate().dim; i++) {
-            this.Delta_clear_list.add(z_clear_list.get(i).divide(d_temp.get(i)));
+            this.Delta_clear_list.set(i, z_clear_list.get(i).divide(two2l_sigma.multiply(divisors.get(i))));
         }
         this.lambda_share_list = this.r1_list;
     }
@@ -148,14 +164,13 @@ public class ElemMulThenDivGate extends Gate {
         return true;
     }
 
-    private boolean required() {
+    /**
+     * @param x_list opened at the king only, null at the other servers
+     */
+    private boolean required(FieldVector x_list) {
         //Check the requirement
-        edgeServer.sendToKing(
-                LinearAlgebra.subtractVec2(this.firstGate().Delta_clear_list, this.firstGate().lambda_share_list));
-        if (edgeServer.isKing()) {
-            List<Object> objs = edgeServer.kingReadFromAll();
-            List<BigInteger> x_list = Tool.openShares2Values(this.firstGate().dim, objs);
-            for (BigInteger x : x_list) {
+        if (x_list != null) {
+            for (BigInteger x : x_list.toBigIntegers()) {
                 if (x.bitLength() >= OfflineDivisionGate.e) {
                     System.out.println("0 <= x.bitlen < e. bit(x)=" + x.bitLength() + ", e = " + OfflineDivisionGate.e);
                     return false;
@@ -1,18 +1,19 @@
 package fptd.protocols;
 
-import fptd.Share;
+import fptd.FieldVector;
+import fptd.ShareVector;
 import fptd.utils.LinearAlgebra;
-import fptd.utils.Tool;
 import java.math.BigInteger;
 import java.util.List;
 
 public class ElemWiseMulThenMulConstGate extends Gate {
 
-    private List<Share> a_shr;
-    private List<Share> b_shr;
-    private List<Share> c_shr;
-    private List<BigInteger> delta_x_clear_list;
-    private List<BigInteger> delta_y_clear_list;
+    private ShareVector a_shr;
+    private ShareVector b_shr;
+    private ShareVector c_shr;
+    private FieldVector delta_x_clear_list;
+    private FieldVector delta_y_clear_list;
+    private FieldVector temp_xy; // temp_x * temp_y, public, added to the opened value
 
     private List<BigInteger> constants;
 
@@ -26,51 +27,57 @@ public class ElemWiseMulThenMulConstGate extends Gate {
 
     @Override
     void doReadOfflineFromFile() {
-        a_shr = edgeServer.readRandShares(dim);
-        b_shr = edgeServer.readRandShares(dim);
-        c_shr = edgeServer.readRandShares(dim);
-        this.lambda_share_list = edgeServer.readRandShares(dim);
+        a_shr = edgeServer.getRandomness().nextShares(dim);
+        b_shr = edgeServer.getRandomness().nextShares(dim);
+        c_shr = edgeServer.readDealtShares(dim);
+        this.lambda_share_list = edgeServer.getRandomness().nextShares(dim);
         this.delta_x_clear_list = edgeServer.readClear(dim);
         this.delta_y_clear_list = edgeServer.readClear(dim);
     }
 
     @Override
-    void doRunOnline() {
+    void releaseOffline() {
+        a_shr = null;
+        b_shr = null;
+        c_shr = null;
+        delta_x_clear_list = null;
+        delta_y_clear_list = null;
+        temp_xy = null;
+    }
+
+    @Override
+    int rounds() {
+        return 1;
+    }
+
+    @Override
+    List<Opening> prepareRound(int round) {
         // temp_x = $\Delta_x + \delta_x$
-        List<BigInteger> temp_x = LinearAlgebra.addBigIntVec(this.firstGate().Delta_clear_list, delta_x_clear_list);
+        FieldVector temp_x = LinearAlgebra.addClearVec(this.firstGate().Delta_clear_list, delta_x_clear_list);
         // temp_y = $\Delta_y + \delta_y$
-        List<BigInteger> temp_y = LinearAlgebra.addBigIntVec(secondGate().Delta_clear_list, delta_y_clear_list);
+        FieldVector temp_y = LinearAlgebra.addClearVec(secondGate().Delta_clear_list, delta_y_clear_list);
         // temp_xy = temp_x * temp_y
-        List<BigInteger> temp_xy = LinearAlgebra.elemWiseMultiply(temp_x, temp_y);
+        this.temp_xy = LinearAlgebra.elemWiseMultiply(temp_x, temp_y);
         // Compute [Delta_z] according to the paper
         // [Delta_z] = [c] + [lambda_z]
-//        List<Share> Delta_z_shr = LinearAlgebra.addSharesVec(c_shr, lambda_share_list);
-        List<Share> Delta_z_shr = c_shr; // Update
-        // [Delta_z] -= [a] * temp_y
-        Delta_z_shr = LinearAlgebra.subtractSharesVec(Delta_z_shr, LinearAlgebra.elemWiseMultiply2(a_shr, temp_y));
-        // [Delta_z] -= temp_x * [b]
-        Delta_z_shr = LinearAlgebra.subtractSharesVec(Delta_z_shr, LinearAlgebra.elemWiseMultiply2(b_shr, temp_x));
+//        ShareVector Delta_z_shr = LinearAlgebra.addSharesVec(c_shr, lambda_share_list);
+        // [Delta_z] = [c] - [a] * temp_y - temp_x * [b], lambda_z is added after the constant // Update
+        ShareVector Delta_z_shr = LinearAlgebra.beaverMultiply(c_shr, null, a_shr, temp_y, b_shr, temp_x);
 
         //Multiply the constant
-        for (int i = 0; i < Delta_z_shr.size(); i++) {
-            BigInteger constant = constants.get(i);
-            Share s = Delta_z_shr.get(i);
-            Delta_z_shr.set(i, s.multiply(constant)); // update Delta_z_shr
-            temp_xy.set(i, temp_xy.get(i).multiply(constant));//update temp_xy
-        }
+        FieldVector constantVec = FieldVector.of(constants);
+        Delta_z_shr.multiplyInPlace(constantVec); // update Delta_z_shr
+        temp_xy.multiplyInPlace(constantVec); //update temp_xy
 
         Delta_z_shr = LinearAlgebra.addSharesVec(Delta_z_shr, lambda_share_list);
 
         //To open Delta_z in the clear
-        edgeServer.sendToKing(Delta_z_shr);
-        if (edgeServer.isKing()) {
-            List<Object> shares = edgeServer.kingReadFromAll();
-            List<BigInteger> values = Tool.openShares2Values(dim, shares);
-            values = LinearAlgebra.addBigIntVec(values, temp_xy); // temp_xy is not shared with other servers
-            //Let other servers know Delta_clear_list, i.e., values
-            edgeServer.kingSendToAll(values);
-        }
-        this.Delta_clear_list = (List<BigInteger>) edgeServer.readFromKing();
+        return List.of(Opening.of(Delta_z_shr));
     }
 
+    @Override
+    void finishRound(int round, List<FieldVector> values) {
+        // temp_xy is public, so every server adds it to the opened value
+        this.Delta_clear_list = LinearAlgebra.addClearVec(values.get(0), temp_xy);
+    }
 }
@@ -1,9 +1,9 @@
 package fptd.protocols;
 
+import fptd.Cost;
 import fptd.EdgeServer;
-import fptd.Share;
-
-import java.math.BigInteger;
+import fptd.FieldVector;
+import fptd.ShareVector;
 import java.util.List;
 
 public abstract class Gate {
@@ -11,21 +11,61 @@ public abstract class Gate {
     protected EdgeServer edgeServer;
 
     private boolean evaluatedOffline = false;
-    private boolean evaluatedOnline = false;
+    boolean evaluatedOnline = false; // set by the OnlineScheduler
     private boolean readOffline = false;
+    private EdgeServer.OfflineSegment offlineSegment; // where readOfflineLazily reads, see Circuit.planOfflineReads
 
     protected Gate[] inputGates;
     protected Gate inputY;
     protected int dim = 1; // dimension of the vector
+    final Cost cost = new Cost(); // of the online phase, filled when the circuit runs with OnlineStats
 
-    protected List<Share> lambda_share_list; //随机数
-    protected List<BigInteger> Delta_clear_list;// = x + lambda，以明文的形式存在，大写的Delta是上三角形
+    protected ShareVector lambda_share_list; //随机数
+    protected FieldVector Delta_clear_list;// = x + lambda，以明文的形式存在，大写的Delta是上三角形
 
     public void doRunOffline(){
         throw new RuntimeException("Not implemented yet");
     }
     abstract void doReadOfflineFromFile();
-    abstract void doRunOnline();
+
+    /**
+     * The online step of a gate that only computes locally, nothing by default. A gate that opens values
+     * implements rounds, prepareRound and finishRound instead, so that the OnlineScheduler can open the values
+     * of all the gates of a level in one round, with the opening settings of the circuit.
+     */
+    void doRunOnline() {
+        if (rounds() > 0) {
+            throw new IllegalStateException("A gate that opens values runs its rounds in the OnlineScheduler");
+        }
+    }
+
+    /**
+     * @return the number of rounds in which this gate opens values, 0 if it only computes locally
+     */
+    int rounds() {
+        return 0;
+    }
+
+    /**
+     * @return the shares this gate opens in the round, once all its input gates are evaluated
+     */
+    List<Opening> prepareRound(int round) {
+        throw new RuntimeException("Not implemented yet");
+    }
+
+    /**
+     * @param values the opened values, in the order of prepareRound
+     */
+    void finishRound(int round, List<FieldVector> values) {
+        throw new RuntimeException("Not implemented yet");
+    }
+
+    /**
+     * @return the gates that must be evaluated online before this gate, null entries are skipped
+     */
+    Gate[] dependencies() {
+        return inputGates;
+    }
 
     public Gate(final EdgeServer edgeServer, int dim) {
         this.edgeServer = edgeServer;
@@ -84,26 +124,57 @@ public abstract class Gate {
 //        if(inputY != null && ! inputY.readOffline)
 //            inputY.readOfflineFromFile();
 
+        if (edgeServer.isPlanningOffline()) {
+            this.offlineSegment = edgeServer.markOffline();
+        }
         this.doReadOfflineFromFile();
         this.readOffline = true;
     }
 
-    void runOnline() {
-        if(this.evaluatedOnline) return;
+    /**
+     * Read the offline material of this gate from its segment, unless it is read already. Its input gates are
+     * read on their own.
+     */
+    void readOfflineLazily() {
+        if (this.readOffline) {
+            return;
+        }
+        if (offlineSegment == null) {
+            throw new IllegalStateException("Read the offline material of the circuit or plan its reads first");
+        }
+        edgeServer.readOffline(offlineSegment, this::doReadOfflineFromFile);
+        this.readOffline = true;
+    }
 
-        if(inputGates != null) {
-            for(Gate inputGate : inputGates) {//递归
-                if(inputGate != null && !inputGate.evaluatedOnline) {
-                    inputGate.runOnline();
+    boolean isReadOffline() {
+        return readOffline;
+    }
+
+    /**
+     * Drop the offline material the gate only needs to run online, once it has run. The masks of its output stay,
+     * the gates after it read them.
+     */
+    void releaseOffline() {
+    }
+
+    /**
+     * Let readOfflineLazily read the gate and the gates readOfflineFromFile read with it, after
+     * Circuit.planOfflineReads has only counted what they read
+     */
+    void resetOfflineRead() {
+        if (!this.readOffline) {
+            return;
+        }
+        this.readOffline = false;
+        if (inputGates != null) {
+            for (Gate inputGate : inputGates) {
+                if (inputGate != null) {
+                    inputGate.resetOfflineRead();
                 }
             }
         }
-        this.doRunOnline();
-        this.evaluatedOnline = true;
     }
 
-
-
     //*******************************************
 
 
@@ -119,15 +190,23 @@ public abstract class Gate {
         return edgeServer;
     }
 
+    /**
+     * @return the online cost of this gate, see Circuit.runOnlineWithBenckmark. The traffic, waits and
+     *         reconstruction of a round are split among its gates by the number of shares they open.
+     */
+    public Cost getCost() {
+        return cost;
+    }
+
     public Gate getInputY() {
         return inputY;
     }
 
-    public List<Share> getLambda_share_list() {
+    public ShareVector getLambda_share_list() {
         return lambda_share_list;
     }
 
-    public List<BigInteger> getDelta_clear_list() {
+    public FieldVector getDelta_clear_list() {
         return Delta_clear_list;
     }
 
@@ -146,9 +225,7 @@ public abstract class Gate {
             }
         }
 
-        if(this.lambda_share_list != null)this.lambda_share_list.clear();
         this.lambda_share_list = null;
-        if(this.Delta_clear_list != null) this.Delta_clear_list.clear();
         this.Delta_clear_list = null;
         this.inputY = null;
     }
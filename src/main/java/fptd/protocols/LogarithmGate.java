@@ -35,9 +35,23 @@ public class LogarithmGate extends Gate {
         circuit.readOfflineFromFile();
     }
 
+    @Override
+    void resetOfflineRead() {
+        super.resetOfflineRead();
+        circuit.resetOfflineReads();
+    }
+
+    /**
+     * the gates of the inner circuit are scheduled together with the outer circuit
+     */
+    @Override
+    Gate[] dependencies() {
+        return circuit.getEndpoints().toArray(new Gate[0]);
+    }
+
     @Override
     void doRunOnline() {
-        circuit.runOnline();
+        circuit.runOnline(); // nothing left to evaluate, see dependencies
         this.lambda_share_list = circuit.getEndpoints().getFirst().lambda_share_list;
         this.Delta_clear_list = circuit.getEndpoints().getFirst().Delta_clear_list;
     }
@@ -0,0 +1,100 @@
+package fptd.protocols;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Reads the offline material of the gates of an OnlineScheduler on a thread of its own, in the order the scheduler
+ * takes the gates and at most ahead gates before it, see Params.OFFLINE_PREFETCH. As every gate drops its material
+ * once it has run, see Gate.releaseOffline, a party holds the material of the gates in flight and of those read
+ * ahead instead of that of the whole circuit.
+ *
+ * The scheduler reads a gate itself if the prefetcher has not got to it yet, so the order is only a guess.
+ */
+final class OfflinePrefetcher {
+
+    private final List<Gate> gates; // in the order the scheduler takes them
+    private final Map<Gate, FutureTask<Void>> reads = new IdentityHashMap<>(); // run once, by whoever comes first
+    private final int ahead;
+    private final Thread thread;
+    private int taken = 0; // gates the scheduler took so far
+    private boolean closed = false;
+
+    OfflinePrefetcher(List<Gate> gates, int ahead, int party_id) {
+        if (ahead <= 0) {
+            throw new IllegalArgumentException("Prefetch at least one gate, not " + ahead);
+        }
+        this.gates = gates;
+        this.ahead = ahead;
+        for (Gate gate : gates) {
+            reads.put(gate, new FutureTask<>(gate::readOfflineLazily, null));
+        }
+        this.thread = new Thread(this::run, "offline-prefetch-" + party_id);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        for (int i = 0; i < gates.size(); i++) {
+            synchronized (this) {
+                while (!closed && i >= taken + ahead) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+            }
+            try {
+                // the material of a gate may depend on that of its input gates, so wait for those the scheduler reads
+                await(reads.get(gates.get(i)));
+            } catch (RuntimeException e) {
+                return; // the scheduler gets it from take
+            }
+        }
+    }
+
+    /**
+     * Wait until the material of the gate is read, reading it on this thread if the prefetcher has not started it
+     */
+    void take(Gate gate) {
+        FutureTask<Void> read = reads.get(gate);
+        if (read == null) {
+            throw new IllegalArgumentException("The gate is not scheduled");
+        }
+        synchronized (this) {
+            taken++;
+            notifyAll();
+        }
+        await(read);
+    }
+
+    /**
+     * Stop reading ahead, the gate being read is finished first
+     */
+    synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    private static void await(FutureTask<Void> read) {
+        read.run(); // nothing if it runs or ran already
+        try {
+            read.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+}
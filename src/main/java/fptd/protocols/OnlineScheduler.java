@@ -0,0 +1,212 @@
+package fptd.protocols;
+
+import fptd.Cost;
+import fptd.EdgeServer;
+import fptd.FieldVector;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates a circuit online level by level of interactive depth: the gates that only compute locally
+ * run as soon as their inputs are ready, and the next round of every interactive gate whose inputs are
+ * ready is opened together with Opening.exchange. A level then costs one message per party and one
+ * reconstruction, however many gates it has.
+ *
+ * Every party builds the same circuit, so every party batches the same openings in the same order.
+ *
+ * With OnlineStats, every gate's computation is timed and the cost of every round recorded.
+ *
+ * The gates whose offline material is not read yet read it ahead of time with an OfflinePrefetcher, or all
+ * before the first round without one, and every gate drops its material once it has run.
+ */
+class OnlineScheduler {
+
+    private final List<Gate> order = new ArrayList<>(); // topological order
+    private final Map<Gate, Integer> nextRound = new IdentityHashMap<>(); // of the gates not evaluated yet
+    private final OpeningMode openingMode;
+    private final int openingChunk;
+    private final int treeFanout;
+    private final int offlinePrefetch;
+    private final OnlineStats stats; // null to run without timing
+
+    OnlineScheduler(List<Gate> endpoints, OpeningMode openingMode, int openingChunk, int treeFanout,
+            int offlinePrefetch, OnlineStats stats) {
+        this.openingMode = openingMode;
+        this.openingChunk = openingChunk;
+        this.treeFanout = treeFanout;
+        this.offlinePrefetch = offlinePrefetch;
+        this.stats = stats;
+        for (Gate gate : endpoints) {
+            visit(gate);
+        }
+    }
+
+    private void visit(Gate gate) {
+        if (gate == null || gate.evaluatedOnline || nextRound.containsKey(gate)) {
+            return;
+        }
+        nextRound.put(gate, 0);
+        Gate[] dependencies = gate.dependencies();
+        if (dependencies != null) {
+            for (Gate dependency : dependencies) {//递归
+                visit(dependency);
+            }
+        }
+        order.add(gate);
+    }
+
+    void run() {
+        OfflinePrefetcher prefetcher = null;
+        if (order.stream().anyMatch(gate -> !gate.isReadOffline())) {
+            if (offlinePrefetch > 0) {
+                prefetcher = new OfflinePrefetcher(executionOrder(), offlinePrefetch,
+                        order.get(0).getEdgeServer().getIdx());
+            } else {
+                for (Gate gate : executionOrder()) { // the whole circuit before it runs
+                    gate.readOfflineLazily();
+                }
+            }
+        }
+        try {
+            run(prefetcher);
+        } finally {
+            if (prefetcher != null) {
+                prefetcher.close();
+            }
+        }
+    }
+
+    private void run(OfflinePrefetcher prefetcher) {
+        EdgeServer edgeServer = order.isEmpty() ? null : order.get(0).getEdgeServer();
+        Cost start = stats == null || edgeServer == null ? null : edgeServer.getCost().copy();
+        long startNanos = System.nanoTime();
+        long computeNanos = 0; // of every round
+        while (!nextRound.isEmpty()) {
+            Cost before = stats == null ? null : edgeServer.getCost().copy();
+            long roundStart = System.nanoTime();
+            long roundCompute = 0;
+            List<Gate> batch = new ArrayList<>();
+            List<Opening> openings = new ArrayList<>();
+            List<Integer> counts = new ArrayList<>();
+            List<Integer> shares = new ArrayList<>();
+            for (Gate gate : order) {
+                if (gate.evaluatedOnline || !isReady(gate)) {
+                    continue;
+                }
+                if (prefetcher != null && nextRound.get(gate) == 0) { // its material is read before its first round
+                    prefetcher.take(gate);
+                }
+                long gateStart = stats == null ? 0 : System.nanoTime();
+                if (gate.rounds() == 0) { // in topological order, so the gates after it see it evaluated
+                    gate.doRunOnline();
+                    finish(gate);
+                } else {
+                    List<Opening> gateOpenings = gate.prepareRound(nextRound.get(gate));
+                    batch.add(gate);
+                    openings.addAll(gateOpenings);
+                    counts.add(gateOpenings.size());
+                    int size = 0;
+                    for (Opening opening : gateOpenings) {
+                        size += opening.size();
+                    }
+                    shares.add(size);
+                }
+                if (stats != null) {
+                    long nanos = System.nanoTime() - gateStart;
+                    stats.compute(gate, nanos);
+                    roundCompute += nanos;
+                }
+            }
+            if (batch.isEmpty()) {
+                if (!nextRound.isEmpty()) {
+                    throw new RuntimeException("The circuit has a cycle");
+                }
+                break;
+            }
+
+            List<FieldVector> values = Opening.exchange(batch.get(0).getEdgeServer(), openingMode, openingChunk,
+                    treeFanout, openings);
+            int pos = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                Gate gate = batch.get(i);
+                int round = nextRound.get(gate);
+                long gateStart = stats == null ? 0 : System.nanoTime();
+                gate.finishRound(round, values.subList(pos, pos + counts.get(i)));
+                if (stats != null) {
+                    long nanos = System.nanoTime() - gateStart;
+                    stats.compute(gate, nanos);
+                    roundCompute += nanos;
+                }
+                pos += counts.get(i);
+                if (round + 1 == gate.rounds()) {
+                    finish(gate);
+                } else {
+                    nextRound.put(gate, round + 1);
+                }
+            }
+            if (stats != null) {
+                Cost cost = edgeServer.getCost().since(before);
+                cost.addComputeNanos(roundCompute);
+                cost.addElapsedNanos(System.nanoTime() - roundStart);
+                stats.round(batch, shares, cost);
+                computeNanos += roundCompute;
+            }
+        }
+        if (stats != null && edgeServer != null) {
+            Cost total = edgeServer.getCost().since(start);
+            for (Cost round : stats.getRounds()) {
+                total.addRounds(round.getRounds());
+                total.addShares(round.getShares());
+            }
+            total.addComputeNanos(computeNanos);
+            total.addElapsedNanos(System.nanoTime() - startNanos);
+            stats.finish(total);
+        }
+    }
+
+    /**
+     * @return the gates in the order run takes them: by the pass of the loop in which their inputs are ready, a
+     *         local gate's output being ready in its own pass and an interactive gate's after its last round
+     */
+    private List<Gate> executionOrder() {
+        Map<Gate, Integer> start = new IdentityHashMap<>();
+        Map<Gate, Integer> ready = new IdentityHashMap<>();
+        for (Gate gate : order) { // the input gates come first
+            int pass = 0;
+            Gate[] dependencies = gate.dependencies();
+            if (dependencies != null) {
+                for (Gate dependency : dependencies) {
+                    if (dependency != null && ready.containsKey(dependency)) {
+                        pass = Math.max(pass, ready.get(dependency));
+                    }
+                }
+            }
+            start.put(gate, pass);
+            ready.put(gate, pass + gate.rounds());
+        }
+        List<Gate> result = new ArrayList<>(order);
+        result.sort(Comparator.comparing(start::get)); // stable, so in topological order within a pass
+        return result;
+    }
+
+    private boolean isReady(Gate gate) {
+        Gate[] dependencies = gate.dependencies();
+        if (dependencies != null) {
+            for (Gate dependency : dependencies) {
+                if (dependency != null && !dependency.evaluatedOnline) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void finish(Gate gate) {
+        gate.releaseOffline();
+        gate.evaluatedOnline = true;
+        nextRound.remove(gate);
+    }
+}
@@ -0,0 +1,249 @@
+package fptd.protocols;
+
+import fptd.Cost;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Where the online phase of one party goes: per round of the OnlineScheduler, per gate and per gate type, the
+ * bytes and messages sent and received, the rounds, the local computation, the waits for messages and for the
+ * king, and the reconstruction. A round is shared by the gates it opens, so its traffic, waits and
+ * reconstruction are split among them by the number of shares each opens.
+ *
+ * Filled by Circuit.runOnlineWithBenckmark. Printed with report, exported with toCsv and toJson.
+ */
+public class OnlineStats {
+
+    private static final String[] COLUMNS = {"gates", "rounds", "shares", "messages_sent", "bytes_sent",
+            "messages_received", "bytes_received", "compute_ns", "wait_ns", "wait_for_king_ns", "reconstruct_ns",
+            "elapsed_ns"};
+
+    private final int party_id;
+    private final List<Gate> gates; // of the circuit, in the order they were added
+    private final Map<Gate, Integer> ids = new IdentityHashMap<>();
+    private final List<Cost> rounds = new ArrayList<>();
+    private final List<List<Gate>> roundGates = new ArrayList<>();
+    private final Cost total = new Cost();
+
+    OnlineStats(int party_id, List<Gate> gates) {
+        this.party_id = party_id;
+        this.gates = gates;
+        for (Gate gate : gates) {
+            ids.put(gate, ids.size());
+        }
+    }
+
+    void compute(Gate gate, long nanos) {
+        gate.cost.addComputeNanos(nanos);
+    }
+
+    /**
+     * @param shares the shares every gate of the round opens
+     * @param cost   the traffic, waits and reconstruction of the round, its computation and duration
+     */
+    void round(List<Gate> batch, List<Integer> shares, Cost cost) {
+        long totalShares = 0;
+        for (int size : shares) {
+            totalShares += size;
+        }
+        cost.addRounds(1);
+        cost.addShares(totalShares);
+        long from = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Gate gate = batch.get(i);
+            gate.cost.add(cost.part(from, from + shares.get(i), totalShares));
+            from += shares.get(i);
+            gate.cost.addRounds(1);
+            gate.cost.addShares(shares.get(i));
+        }
+        rounds.add(cost);
+        roundGates.add(new ArrayList<>(batch));
+    }
+
+    /**
+     * @param cost of the whole online phase
+     */
+    void finish(Cost cost) {
+        total.add(cost);
+    }
+
+    public Cost getTotal() {
+        return total;
+    }
+
+    public List<Cost> getRounds() {
+        return rounds;
+    }
+
+    /**
+     * @return e.g. ElemWiseMultiplyGate#12, numbered in the order the gates were added to the circuit
+     */
+    public String name(Gate gate) {
+        Integer id = ids.get(gate);
+        return gate.getClass().getSimpleName() + "#" + (id == null ? "?" : id);
+    }
+
+    /**
+     * @return the cost of the gates of every type, by the simple name of the class
+     */
+    public Map<String, Cost> byType() {
+        Map<String, Cost> result = new TreeMap<>();
+        for (Gate gate : gates) {
+            result.computeIfAbsent(gate.getClass().getSimpleName(), type -> new Cost()).add(gate.cost);
+        }
+        return result;
+    }
+
+    private Map<String, Integer> countByType() {
+        Map<String, Integer> result = new TreeMap<>();
+        for (Gate gate : gates) {
+            result.merge(gate.getClass().getSimpleName(), 1, Integer::sum);
+        }
+        return result;
+    }
+
+    /**
+     * @return a table of the gate types and of the rounds, for the console
+     */
+    public String report() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("Party %d online: %d rounds, %d gates, %.1f KB sent, %.1f KB received, %d ms%n",
+                party_id, total.getRounds(), gates.size(), total.getBytesSent() / 1024.0,
+                total.getBytesReceived() / 1024.0, millis(total.getElapsedNanos())));
+        String header = "%-28s %6s %6s %10s %11s %11s %10s %8s %8s %8s %10s%n";
+        String row = "%-28s %6d %6d %10d %11.1f %11.1f %10d %8d %8d %8d %10s%n";
+        String roundRow = "%-28s %6d %6s %10d %11.1f %11.1f %10d %8d %8d %8d %10s%n";
+        out.append(String.format(header, "gate type", "gates", "rounds", "shares", "sent KB", "received KB",
+                "compute ms", "wait ms", "king ms", "recon ms", ""));
+        Map<String, Integer> counts = countByType();
+        for (Map.Entry<String, Cost> entry : byType().entrySet()) {
+            Cost cost = entry.getValue();
+            out.append(String.format(row, entry.getKey(), counts.get(entry.getKey()), cost.getRounds(),
+                    cost.getShares(), cost.getBytesSent() / 1024.0, cost.getBytesReceived() / 1024.0,
+                    millis(cost.getComputeNanos()), millis(cost.getWaitNanos()), millis(cost.getWaitForKingNanos()),
+                    millis(cost.getReconstructNanos()), ""));
+        }
+        out.append(String.format(header, "round", "gates", "", "shares", "sent KB", "received KB", "compute ms",
+                "wait ms", "king ms", "recon ms", "elapsed ms"));
+        for (int r = 0; r < rounds.size(); r++) {
+            Cost cost = rounds.get(r);
+            out.append(String.format(roundRow, Integer.toString(r), roundGates.get(r).size(), "",
+                    cost.getShares(), cost.getBytesSent() / 1024.0, cost.getBytesReceived() / 1024.0,
+                    millis(cost.getComputeNanos()), millis(cost.getWaitNanos()), millis(cost.getWaitForKingNanos()),
+                    millis(cost.getReconstructNanos()), Long.toString(millis(cost.getElapsedNanos()))));
+        }
+        return out.toString();
+    }
+
+    /**
+     * @return one line per kind (total, type, gate, round) and name, with the columns of Cost
+     */
+    public String toCsv() {
+        StringBuilder out = new StringBuilder("party,kind,name");
+        for (String column : COLUMNS) {
+            out.append(',').append(column);
+        }
+        out.append('\n');
+        csvLine(out, "total", "", gates.size(), total);
+        Map<String, Integer> counts = countByType();
+        for (Map.Entry<String, Cost> entry : byType().entrySet()) {
+            csvLine(out, "type", entry.getKey(), counts.get(entry.getKey()), entry.getValue());
+        }
+        for (Gate gate : gates) {
+            csvLine(out, "gate", name(gate), 1, gate.cost);
+        }
+        for (int r = 0; r < rounds.size(); r++) {
+            csvLine(out, "round", Integer.toString(r), roundGates.get(r).size(), rounds.get(r));
+        }
+        return out.toString();
+    }
+
+    private void csvLine(StringBuilder out, String kind, String name, int gateCount, Cost cost) {
+        out.append(party_id).append(',').append(kind).append(',').append(name);
+        for (long value : values(gateCount, cost)) {
+            out.append(',').append(value);
+        }
+        out.append('\n');
+    }
+
+    /**
+     * @return {"party", "total", "types", "gates", "rounds"}, every entry with the columns of Cost, a round also
+     *         with the names of its gates
+     */
+    public String toJson() {
+        StringBuilder out = new StringBuilder();
+        out.append("{\"party\": ").append(party_id).append(",\n\"total\": ");
+        jsonObject(out, null, gates.size(), total, null);
+        out.append(",\n\"types\": [");
+        Map<String, Integer> counts = countByType();
+        String separator = "\n";
+        for (Map.Entry<String, Cost> entry : byType().entrySet()) {
+            out.append(separator);
+            jsonObject(out, entry.getKey(), counts.get(entry.getKey()), entry.getValue(), null);
+            separator = ",\n";
+        }
+        out.append("],\n\"gates\": [");
+        separator = "\n";
+        for (Gate gate : gates) {
+            out.append(separator);
+            jsonObject(out, name(gate), 1, gate.cost, null);
+            separator = ",\n";
+        }
+        out.append("],\n\"rounds\": [");
+        separator = "\n";
+        for (int r = 0; r < rounds.size(); r++) {
+            out.append(separator);
+            jsonObject(out, Integer.toString(r), roundGates.get(r).size(), rounds.get(r), roundGates.get(r));
+            separator = ",\n";
+        }
+        return out.append("]}\n").toString();
+    }
+
+    private void jsonObject(StringBuilder out, String name, int gateCount, Cost cost, List<Gate> members) {
+        out.append('{');
+        if (name != null) {
+            out.append("\"name\": \"").append(name).append("\", ");
+        }
+        long[] values = values(gateCount, cost);
+        for (int i = 0; i < COLUMNS.length; i++) {
+            out.append(i == 0 ? "" : ", ").append('"').append(COLUMNS[i]).append("\": ").append(values[i]);
+        }
+        if (members != null) {
+            out.append(", \"members\": [");
+            for (int i = 0; i < members.size(); i++) {
+                out.append(i == 0 ? "" : ", ").append('"').append(name(members.get(i))).append('"');
+            }
+            out.append(']');
+        }
+        out.append('}');
+    }
+
+    private static long[] values(int gateCount, Cost cost) {
+        return new long[]{gateCount, cost.getRounds(), cost.getShares(), cost.getMessagesSent(),
+                cost.getBytesSent(), cost.getMessagesReceived(), cost.getBytesReceived(), cost.getComputeNanos(),
+                cost.getWaitNanos(), cost.getWaitForKingNanos(), cost.getReconstructNanos(),
+                cost.getElapsedNanos()};
+    }
+
+    /**
+     * Write prefix-party-i-stats.csv and .json to the directory
+     */
+    public void write(String dir, String prefix) throws IOException {
+        Path directory = Path.of(dir);
+        Files.createDirectories(directory);
+        String fileName = prefix + (prefix.isEmpty() ? "party-" : "-party-") + party_id + "-stats";
+        Files.writeString(directory.resolve(fileName + ".csv"), toCsv(), StandardCharsets.UTF_8);
+        Files.writeString(directory.resolve(fileName + ".json"), toJson(), StandardCharsets.UTF_8);
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1_000_000;
+    }
+}
@@ -0,0 +1,480 @@
+package fptd.protocols;
+
+import static fptd.Params.N;
+import static fptd.Params.T;
+
+import fptd.EdgeServer;
+import fptd.FieldVector;
+import fptd.Params;
+import fptd.ShareVector;
+import fptd.sharing.PackedShamirSharing;
+import fptd.sharing.ShamirSharing;
+import fptd.utils.Tool;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shares that a gate opens in one round, and how the king reconstructs them.
+ *
+ * Every opening of a round goes through exchange together: one message per party, one reconstruction
+ * over all plain Shamir openings, and with OpeningMode.KING one broadcast of the values. A wide round of
+ * OpeningMode.KING is streamed instead, in chunks of a fixed number of shares.
+ */
+public class Opening {
+
+    private static final ShamirSharing SHARING = new ShamirSharing();
+
+    private final ShareVector shares;
+    private final int dim; // the number of values, shares.size() unless packed
+    private final PackedShamirSharing packedSharing; // null for plain Shamir shares
+    private final int degree;
+    private final boolean kingOnly;
+
+    private Opening(ShareVector shares, int dim, PackedShamirSharing packedSharing, int degree, boolean kingOnly) {
+        this.shares = shares;
+        this.dim = dim;
+        this.packedSharing = packedSharing;
+        this.degree = degree;
+        this.kingOnly = kingOnly;
+    }
+
+    public static Opening of(ShareVector shares) {
+        return new Opening(shares, shares.size(), null, 0, false);
+    }
+
+    /**
+     * @param degree the degree of the opened polynomials, see PackedShamirSharing.recoverVector
+     */
+    public static Opening packed(PackedShamirSharing sharing, int dim, int degree, ShareVector shares) {
+        return new Opening(shares, dim, sharing, degree, false);
+    }
+
+    /**
+     * The values are only reconstructed by the king and not sent back, e.g. for a debug check of a secret
+     */
+    public static Opening kingOnly(ShareVector shares) {
+        return new Opening(shares, shares.size(), null, 0, true);
+    }
+
+    /**
+     * @return the number of shares opened
+     */
+    int size() {
+        return shares.size();
+    }
+
+    /**
+     * Open all the shares in one round, a wide round of OpeningMode.KING in chunks of Params.OPENING_CHUNK
+     * shares. Every party calls this with the same openings in the same order.
+     *
+     * @return the values of every opening, null for a kingOnly opening except at the king
+     */
+    public static List<FieldVector> exchange(EdgeServer edgeServer, OpeningMode mode, List<Opening> openings) {
+        return exchange(edgeServer, mode, Params.OPENING_CHUNK, openings);
+    }
+
+    /**
+     * @param chunk the shares per message of OpeningMode.KING, 0 for one message
+     */
+    public static List<FieldVector> exchange(EdgeServer edgeServer, OpeningMode mode, int chunk,
+                                             List<Opening> openings) {
+        return exchange(edgeServer, mode, chunk, Params.TREE_FANOUT, openings);
+    }
+
+    /**
+     * @param fanout the children per party of OpeningMode.TREE
+     */
+    public static List<FieldVector> exchange(EdgeServer edgeServer, OpeningMode mode, int chunk, int fanout,
+                                             List<Opening> openings) {
+        if (mode == OpeningMode.KING && !isStreamed(openings, chunk)) {
+            return viaKing(edgeServer, openings);
+        }
+        // the other modes send the values to every party, so the kingOnly openings go to the king alone first
+        List<Opening> shared = new ArrayList<>(openings.size());
+        List<Opening> secret = new ArrayList<>();
+        for (Opening opening : openings) {
+            (opening.kingOnly ? secret : shared).add(opening);
+        }
+        List<FieldVector> secretValues = null;
+        if (!secret.isEmpty()) {
+            int[] order = plainFirst(secret);
+            ShareVector message = message(edgeServer.getIdx(), secret, order);
+            edgeServer.sendToKing(message);
+            if (edgeServer.isKing()) {
+                List<ShareVector> rows = edgeServer.kingReadFromFirst(needed(secret), message.size());
+                secretValues = reconstruct(edgeServer, rows, secret, order);
+            }
+        }
+        List<FieldVector> sharedValues = null;
+        if (!shared.isEmpty()) {
+            switch (mode) {
+                case KING:
+                    sharedValues = streamed(edgeServer, shared, chunk);
+                    break;
+                case ALL_TO_ALL:
+                    sharedValues = allToAll(edgeServer, shared);
+                    break;
+                case SHARDED:
+                    sharedValues = sharded(edgeServer, shared);
+                    break;
+                case TREE:
+                    sharedValues = tree(edgeServer, shared, fanout);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown opening mode " + mode);
+            }
+        }
+
+        List<FieldVector> result = new ArrayList<>(openings.size());
+        int nextShared = 0;
+        int nextSecret = 0;
+        for (Opening opening : openings) {
+            if (opening.kingOnly) {
+                result.add(secretValues == null ? null : secretValues.get(nextSecret));
+                nextSecret++;
+            } else {
+                result.add(sharedValues.get(nextShared++));
+            }
+        }
+        return result;
+    }
+
+    private static List<FieldVector> viaKing(EdgeServer edgeServer, List<Opening> openings) {
+        int[] order = plainFirst(openings);
+        ShareVector message = message(edgeServer.getIdx(), openings, order);
+        edgeServer.sendToKing(message);
+
+        List<FieldVector> result = new ArrayList<>(Collections.nCopies(openings.size(), null));
+        int broadcasts = 0;
+        for (Opening opening : openings) {
+            broadcasts += opening.kingOnly ? 0 : 1;
+        }
+        if (edgeServer.isKing()) {
+            //二维数组，每一行表示一个server，每一列表示一个secret的share
+            List<FieldVector> values = reconstruct(edgeServer,
+                    edgeServer.kingReadFromFirst(needed(openings), message.size()), openings, order);
+            List<FieldVector> broadcast = new ArrayList<>(broadcasts);
+            for (int i : order) {
+                if (openings.get(i).kingOnly) {
+                    result.set(i, values.get(i));
+                } else {
+                    broadcast.add(values.get(i));
+                }
+            }
+            edgeServer.kingSendToAll(broadcast.size() == 1 ? broadcast.get(0) : FieldVector.concat(broadcast));
+        }
+        FieldVector received = edgeServer.readFromKing();
+
+        int pos = 0;
+        for (int i : order) {
+            Opening opening = openings.get(i);
+            if (!opening.kingOnly) {
+                result.set(i, broadcasts == 1 ? received : received.slice(pos, opening.dim));
+                pos += opening.dim;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return whether the openings other than kingOnly have more than chunk shares
+     */
+    private static boolean isStreamed(List<Opening> openings, int chunk) {
+        if (chunk <= 0) {
+            return false;
+        }
+        int size = 0;
+        for (Opening opening : openings) {
+            size += opening.kingOnly ? 0 : opening.shares.size();
+        }
+        return size > chunk;
+    }
+
+    /**
+     * The message goes to the king in chunks, which are cut from the shares of the openings without building
+     * the whole message. The king reconstructs a chunk from the first parties to send it and sends its values
+     * to every party at once, while the next chunks are still arriving. No message holds more than chunk shares
+     * or the values of chunk shares.
+     */
+    private static List<FieldVector> streamed(EdgeServer edgeServer, List<Opening> openings, int chunk) {
+        int[] order = plainFirst(openings);
+        int size = 0;
+        for (Opening opening : openings) {
+            size += opening.shares.size();
+        }
+        int idx = edgeServer.getIdx();
+        if (!edgeServer.isKing()) {
+            for (int from = 0; from < size; from += chunk) {
+                edgeServer.sendToKing(message(idx, openings, order, from, Math.min(size, from + chunk)));
+            }
+        }
+
+        int needed = needed(openings);
+        List<FieldVector> chunks = new ArrayList<>((size + chunk - 1) / chunk);
+        for (int from = 0; from < size; from += chunk) {
+            int to = Math.min(size, from + chunk);
+            if (edgeServer.isKing()) {
+                // its shares and values come from the same party, so it sends itself one chunk at a time
+                edgeServer.sendToKing(message(idx, openings, order, from, to));
+                List<ShareVector> rows = edgeServer.kingReadFromFirst(needed, to - from);
+                edgeServer.kingSendToAll(reconstructRange(edgeServer, rows, openings, order, from, to));
+            }
+            chunks.add(edgeServer.readFromKing());
+        }
+        return split(chunks.size() == 1 ? chunks.get(0) : FieldVector.concat(chunks), openings, order);
+    }
+
+    private static List<FieldVector> allToAll(EdgeServer edgeServer, List<Opening> openings) {
+        int[] order = plainFirst(openings);
+        ShareVector message = message(edgeServer.getIdx(), openings, order);
+        edgeServer.sendToAll(message);
+        return reconstruct(edgeServer, edgeServer.readFromFirst(needed(openings), message.size()), openings, order);
+    }
+
+    /**
+     * Party p reconstructs the p-th of N contiguous ranges of the message, so it only receives that range from
+     * every party, and sends the values of its range to every party. Only the second step waits for every party.
+     */
+    private static List<FieldVector> sharded(EdgeServer edgeServer, List<Opening> openings) {
+        int[] order = plainFirst(openings);
+        ShareVector message = message(edgeServer.getIdx(), openings, order);
+        int size = message.size();
+        for (int p = 0; p < N; p++) {
+            edgeServer.sendTo(p, message.slice(shardStart(p, size), shardStart(p + 1, size) - shardStart(p, size)));
+        }
+        int idx = edgeServer.getIdx();
+        int from = shardStart(idx, size);
+        int to = shardStart(idx + 1, size);
+        List<ShareVector> rows = edgeServer.readFromFirst(needed(openings), to - from);
+        edgeServer.sendToAll(reconstructRange(edgeServer, rows, openings, order, from, to));
+
+        List<FieldVector> shards = new ArrayList<>(N);
+        for (int p = 0; p < N; p++) {
+            shards.add(edgeServer.readFrom(p));
+        }
+        return split(FieldVector.concat(shards), openings, order);
+    }
+
+    /**
+     * Reconstruction is linear: every party adds its Lagrange term, see ShamirSharing.partialRecover, to the
+     * partial sums of its children and sends the sum to its parent. The king adds up fanout partial
+     * sums and the values go back down the same tree.
+     */
+    private static List<FieldVector> tree(EdgeServer edgeServer, List<Opening> openings, int fanout) {
+        int[] order = plainFirst(openings);
+        int idx = edgeServer.getIdx();
+        long start = System.nanoTime();
+        List<FieldVector> terms = new ArrayList<>(order.length);
+        for (int i : order) {
+            Opening opening = openings.get(i);
+            terms.add(opening.packedSharing == null ? SHARING.partialRecover(opening.shares)
+                    : opening.packedSharing.partialRecover(opening.shares, opening.dim));
+        }
+        FieldVector sum = terms.size() == 1 ? terms.get(0) : FieldVector.concat(terms);
+        edgeServer.getCost().addReconstructNanos(System.nanoTime() - start);
+        int firstChild = idx * fanout + 1;
+        for (int child = firstChild; child < Math.min(N, firstChild + fanout); child++) {
+            FieldVector partialSum = edgeServer.readFrom(child);
+            start = System.nanoTime();
+            sum.addInPlace(partialSum);
+            edgeServer.getCost().addReconstructNanos(System.nanoTime() - start);
+        }
+
+        FieldVector values;
+        if (idx == 0) {
+            values = sum;
+        } else {
+            int parent = (idx - 1) / fanout;
+            edgeServer.sendTo(parent, sum);
+            values = edgeServer.readFrom(parent);
+        }
+        for (int child = firstChild; child < Math.min(N, firstChild + fanout); child++) {
+            edgeServer.sendTo(child, values);
+        }
+        return split(values, openings, order);
+    }
+
+    /**
+     * @param values the values of the openings one after another, in the given order
+     * @return the values of every opening, in the order of openings
+     */
+    private static List<FieldVector> split(FieldVector values, List<Opening> openings, int[] order) {
+        List<FieldVector> result = new ArrayList<>(Collections.nCopies(openings.size(), null));
+        int pos = 0;
+        for (int i : order) {
+            int dim = openings.get(i).dim;
+            result.set(i, order.length == 1 ? values : values.slice(pos, dim));
+            pos += dim;
+        }
+        return result;
+    }
+
+    /**
+     * @return the first share of party p's range of a message of size shares, size for p = N
+     */
+    private static int shardStart(int p, int size) {
+        return (int) ((long) size * p / N);
+    }
+
+    /**
+     * A reconstruction only waits for the first parties to answer, as many as the highest degree needs,
+     * so that one slow party does not hold up the round. Missing entries are the same at every party.
+     *
+     * @return the number of share vectors needed to reconstruct all the openings
+     */
+    private static int needed(List<Opening> openings) {
+        int result = T;
+        for (Opening opening : openings) {
+            if (opening.packedSharing != null) {
+                result = Math.max(result, opening.degree + 1);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the indexes of the openings, plain Shamir shares first so that they are reconstructed at once
+     */
+    private static int[] plainFirst(List<Opening> openings) {
+        int[] order = new int[openings.size()];
+        int count = 0;
+        for (int i = 0; i < openings.size(); i++) {
+            if (openings.get(i).packedSharing == null) {
+                order[count++] = i;
+            }
+        }
+        for (int i = 0; i < openings.size(); i++) {
+            if (openings.get(i).packedSharing != null) {
+                order[count++] = i;
+            }
+        }
+        return order;
+    }
+
+    /**
+     * @return the shares of the openings one after another, in the given order
+     */
+    private static ShareVector message(int party_id, List<Opening> openings, int[] order) {
+        if (order.length == 1) {
+            return openings.get(order[0]).shares;
+        }
+        List<ShareVector> parts = new ArrayList<>(order.length);
+        for (int i : order) {
+            parts.add(openings.get(i).shares);
+        }
+        return ShareVector.concat(party_id, parts);
+    }
+
+    /**
+     * @return the shares from, ..., to - 1 of the message, see message
+     */
+    private static ShareVector message(int party_id, List<Opening> openings, int[] order, int from, int to) {
+        List<ShareVector> parts = new ArrayList<>();
+        int start = 0;
+        for (int i : order) {
+            ShareVector shares = openings.get(i).shares;
+            int end = start + shares.size();
+            int lo = Math.max(from, start);
+            int hi = Math.min(to, end);
+            if (lo < hi) {
+                parts.add(lo == start && hi == end ? shares : shares.slice(lo - start, hi - lo));
+            }
+            start = end;
+        }
+        return parts.size() == 1 ? parts.get(0) : ShareVector.concat(party_id, parts);
+    }
+
+    /**
+     * Reconstruct and count the time in the cost of the server, see EdgeServer.getCost
+     */
+    private static List<FieldVector> reconstruct(EdgeServer edgeServer, List<ShareVector> rows,
+                                                 List<Opening> openings, int[] order) {
+        long start = System.nanoTime();
+        List<FieldVector> result = reconstruct(rows, openings, order);
+        edgeServer.getCost().addReconstructNanos(System.nanoTime() - start);
+        return result;
+    }
+
+    private static FieldVector reconstructRange(EdgeServer edgeServer, List<ShareVector> rows,
+                                                List<Opening> openings, int[] order, int from, int to) {
+        long start = System.nanoTime();
+        FieldVector result = reconstructRange(rows, openings, order, from, to);
+        edgeServer.getCost().addReconstructNanos(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * @param rows the messages of every party, see message
+     * @return the values of every opening, in the order of openings
+     */
+    private static List<FieldVector> reconstruct(List<ShareVector> rows, List<Opening> openings, int[] order) {
+        int plainSize = 0;
+        for (Opening opening : openings) {
+            plainSize += opening.packedSharing == null ? opening.shares.size() : 0;
+        }
+        FieldVector plainValues = null;
+        if (plainSize > 0) {
+            plainValues = Tool.openShares2Values(plainSize,
+                    plainSize == rows.get(0).size() ? rows : slice(rows, 0, plainSize));
+        }
+        List<FieldVector> result = new ArrayList<>(Collections.nCopies(openings.size(), null));
+        int pos = 0;
+        for (int i : order) {
+            Opening opening = openings.get(i);
+            int size = opening.shares.size();
+            if (opening.packedSharing == null) {
+                result.set(i, size == plainSize ? plainValues : plainValues.slice(pos, size));
+            } else {
+                result.set(i, Tool.openPackedShares2Values(opening.packedSharing, opening.dim, opening.degree,
+                        slice(rows, pos, size)));
+            }
+            pos += size;
+        }
+        return result;
+    }
+
+    /**
+     * @param rows the shares from, ..., to - 1 of the message of every party
+     * @return the values of those shares one after another, k values for every packed share
+     */
+    private static FieldVector reconstructRange(List<ShareVector> rows, List<Opening> openings, int[] order,
+                                                int from, int to) {
+        List<FieldVector> parts = new ArrayList<>();
+        int plainSize = 0;
+        for (Opening opening : openings) {
+            plainSize += opening.packedSharing == null ? opening.shares.size() : 0;
+        }
+        // the plain openings come first, so their part of the range is reconstructed at once
+        if (from < Math.min(to, plainSize)) {
+            int size = Math.min(to, plainSize) - from;
+            parts.add(Tool.openShares2Values(size, size == to - from ? rows : slice(rows, 0, size)));
+        }
+        int start = plainSize;
+        for (int i : order) {
+            Opening opening = openings.get(i);
+            if (opening.packedSharing == null) {
+                continue;
+            }
+            int end = start + opening.shares.size();
+            int lo = Math.max(from, start);
+            int hi = Math.min(to, end);
+            if (lo < hi) {
+                int k = opening.packedSharing.getK();
+                int dim = Math.min(opening.dim, (hi - start) * k) - (lo - start) * k;
+                parts.add(Tool.openPackedShares2Values(opening.packedSharing, dim, opening.degree,
+                        slice(rows, lo - from, hi - lo)));
+            }
+            start = end;
+        }
+        return parts.size() == 1 ? parts.get(0) : FieldVector.concat(parts);
+    }
+
+    private static List<ShareVector> slice(List<ShareVector> rows, int from, int size) {
+        List<ShareVector> result = new ArrayList<>(rows.size());
+        for (ShareVector row : rows) {
+            result.add(row.slice(from, size));
+        }
+        return result;
+    }
+}
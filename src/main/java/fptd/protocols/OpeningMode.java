@@ -0,0 +1,50 @@
+package fptd.protocols;
+
+/**
+ * How the parties open shares, see Opening.exchange. Select it per circuit with Circuit.setOpeningMode,
+ * or for every circuit with -Dfptd.opening=king|all-to-all|sharded|tree (king by default).
+ *
+ * A reconstruction only waits for the share vectors of the first parties that answer, see
+ * EdgeServer.readFromFirst, so KING and ALL_TO_ALL do not wait for a slow party. The values of SHARDED
+ * and the partial sums of TREE are needed from every party.
+ */
+public enum OpeningMode {
+
+    /**
+     * Every party sends its shares to the king, which reconstructs the values and sends them to every party.
+     * Two hops, and the king receives, reconstructs and sends N times as much as any other party. A wide round
+     * is streamed in chunks of Params.OPENING_CHUNK shares, so the king works on one chunk while the next arrive.
+     */
+    KING,
+
+    /**
+     * Every party sends its shares to every party and reconstructs the values itself. One hop and the same
+     * load on every party, for N times the traffic of the king's uplink spread over all the parties.
+     */
+    ALL_TO_ALL,
+
+    /**
+     * The shares of a round are cut into N ranges and party p reconstructs the p-th range: every party sends
+     * each range to its owner and the values of its own range to every party. Wide openings then use the
+     * CPU and the uplink of every party, and every party sends and receives about as much as the others.
+     */
+    SHARDED,
+
+    /**
+     * The parties form a tree of fan-out Params.TREE_FANOUT, see Circuit.setTreeFanout, rooted at the king. Every
+     * party sends the sum of its own and its children's Lagrange terms to its parent, and the values go back down
+     * the tree. No party receives more than fan-out messages per round, for 2 * depth hops instead of 2.
+     */
+    TREE;
+
+    /**
+     * @param name e.g. "king" or "all-to-all"
+     */
+    public static OpeningMode byName(String name) {
+        try {
+            return valueOf(name.toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown opening mode " + name);
+        }
+    }
+}
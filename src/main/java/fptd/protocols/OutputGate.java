@@ -1,13 +1,13 @@
 package fptd.protocols;
 
+import fptd.FieldVector;
 import fptd.utils.LinearAlgebra;
-import fptd.utils.Tool;
 import java.math.BigInteger;
 import java.util.List;
 
 public class OutputGate extends Gate {
 
-    private List<BigInteger> outputValues;
+    protected List<BigInteger> outputValues;
     private String name = "";
 
     public OutputGate(final Gate inputX) {
@@ -20,27 +20,28 @@ public class OutputGate extends Gate {
     }
 
     @Override
-    void doRunOnline() {
+    int rounds() {
+        return 1;
+    }
+
+    @Override
+    List<Opening> prepareRound(int round) {
         this.lambda_share_list = this.firstGate().lambda_share_list;
         this.Delta_clear_list = this.firstGate().Delta_clear_list;
+        return List.of(Opening.of(this.lambda_share_list));
+    }
 
-        edgeServer.sendToKing(this.lambda_share_list);
-        if (edgeServer.isKing()) {
-            //二维数组，每一行表示一个server，每一列表示一个secret的share
-            List<Object> receivedShares = edgeServer.kingReadFromAll(); // receive from the network
-            List<BigInteger> lambda_clear_list_temp = Tool.openShares2Values(dim, receivedShares);
+    @Override
+    void finishRound(int round, List<FieldVector> values) {
+        FieldVector lambda_clear_list_temp = values.get(0);
 
-            //test
+        //test
 //            lambda_clear_list_temp.forEach((x)->{
 //                System.out.println("lambda clear in outputgate = " + x);
 //            });
 
-            List<BigInteger> outputValues = LinearAlgebra.subtractBigIntVec(Delta_clear_list, lambda_clear_list_temp);
-//            this.outputValues = outputValues;
-
-            edgeServer.kingSendToAll(outputValues);
-        }
-        this.outputValues = (List<BigInteger>) edgeServer.readFromKing();
+        // Delta is public, so every server subtracts lambda itself
+        this.outputValues = LinearAlgebra.subtractClearVec(Delta_clear_list, lambda_clear_list_temp).toBigIntegers();
     }
 
     public List<BigInteger> getOutputValues() {
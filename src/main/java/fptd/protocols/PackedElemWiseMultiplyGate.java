@@ -0,0 +1,83 @@
+package fptd.protocols;
+
+import fptd.FieldVector;
+import fptd.Params;
+import fptd.ShareVector;
+import fptd.sharing.PackedShamirSharing;
+import fptd.utils.LinearAlgebra;
+import java.util.List;
+
+/**
+ * ElemWiseMultiplyGate on packed shares. The clear operands of the Beaver step are turned into
+ * one value per block with PackedShamirSharing.evaluateClear, so [Delta_z] is opened with
+ * productDegree() and every party sends blocks(dim) shares to the king.
+ */
+public class PackedElemWiseMultiplyGate extends Gate {
+
+    private final PackedShamirSharing sharing = new PackedShamirSharing(Params.PACK_K);
+    private ShareVector a_shr;
+    private ShareVector b_shr;
+    private ShareVector c_shr;
+    private FieldVector delta_x_clear_list;
+    private FieldVector delta_y_clear_list;
+    private FieldVector temp_xy; // temp_x * temp_y, public, added to the opened value
+
+    public PackedElemWiseMultiplyGate(Gate inputX, Gate inputY) {
+        super(inputX, inputY);
+        if (inputX.getDim() != inputY.getDim()) {
+            throw new IllegalArgumentException("Input dimensions do not match");
+        }
+        if (sharing.productDegree() + 1 > Params.N) {
+            throw new IllegalArgumentException("k = " + Params.PACK_K + " is too large to multiply packed shares");
+        }
+    }
+
+    @Override
+    void doReadOfflineFromFile() {
+        int blocks = sharing.blocks(dim);
+        a_shr = edgeServer.getRandomness().nextPackedShares(dim);
+        b_shr = edgeServer.getRandomness().nextPackedShares(dim);
+        c_shr = edgeServer.readRandShares(blocks);
+        this.lambda_share_list = edgeServer.getRandomness().nextPackedShares(dim);
+        this.delta_x_clear_list = edgeServer.readClear(dim);
+        this.delta_y_clear_list = edgeServer.readClear(dim);
+    }
+
+    @Override
+    void releaseOffline() {
+        a_shr = null;
+        b_shr = null;
+        c_shr = null;
+        delta_x_clear_list = null;
+        delta_y_clear_list = null;
+        temp_xy = null;
+    }
+
+    @Override
+    int rounds() {
+        return 1;
+    }
+
+    @Override
+    List<Opening> prepareRound(int round) {
+        // temp_x = $\Delta_x + \delta_x$
+        FieldVector temp_x = LinearAlgebra.addClearVec(this.firstGate().Delta_clear_list, delta_x_clear_list);
+        // temp_y = $\Delta_y + \delta_y$
+        FieldVector temp_y = LinearAlgebra.addClearVec(secondGate().Delta_clear_list, delta_y_clear_list);
+        // temp_xy = temp_x * temp_y
+        this.temp_xy = LinearAlgebra.elemWiseMultiply(temp_x, temp_y);
+        // [Delta_z] = [c] + [lambda_z] - [a] * temp_y - temp_x * [b], on packed shares
+        int idx = edgeServer.getIdx();
+        ShareVector Delta_z_shr = LinearAlgebra.beaverMultiply(c_shr, lambda_share_list,
+                a_shr, sharing.evaluateClear(idx, temp_y), b_shr, sharing.evaluateClear(idx, temp_x));
+
+        //To open Delta_z in the clear
+        return List.of(Opening.packed(sharing, dim, sharing.productDegree(), Delta_z_shr));
+    }
+
+    @Override
+    void finishRound(int round, List<FieldVector> values) {
+        // temp_xy is public, so every server adds it to the opened value
+        this.Delta_clear_list = LinearAlgebra.addClearVec(values.get(0), temp_xy);
+    }
+}
@@ -0,0 +1,58 @@
+package fptd.protocols;
+
+import fptd.EdgeServer;
+import fptd.FieldVector;
+import fptd.Params;
+import fptd.ShareVector;
+import fptd.sharing.PackedShamirSharing;
+import fptd.utils.LinearAlgebra;
+import java.util.List;
+
+/**
+ * InputGate on packed shares: the lambda shares and the input hold k values each (see PackedShamirSharing),
+ * so every party sends blocks(dim) shares to the king instead of dim. Delta is still a clear vector of dim values.
+ */
+public class PackedInputGate extends Gate {
+    private int owner_id;
+    private ShareVector sharesOfSecrets;
+    private final PackedShamirSharing sharing = new PackedShamirSharing(Params.PACK_K);
+
+    public PackedInputGate(EdgeServer server, int dim, int owner_id) {
+        super(server, dim);
+        if (server.getIdx() != owner_id) {
+            throw new IllegalArgumentException("Server id mismatch");
+        }
+        this.owner_id = owner_id;
+    }
+
+    /**
+     * @param sharesOfSecrets this party's row of PackedShamirSharing.shareBatch
+     */
+    public void setInput(ShareVector sharesOfSecrets) {
+        if (sharesOfSecrets.size() != sharing.blocks(getDim())) {
+            throw new IllegalArgumentException("Input size mismatch");
+        }
+        this.sharesOfSecrets = sharesOfSecrets;
+    }
+
+    @Override
+    void doReadOfflineFromFile() {
+        this.lambda_share_list = edgeServer.getRandomness().nextPackedShares(dim);
+    }
+
+    @Override
+    int rounds() {
+        return 1;
+    }
+
+    @Override
+    List<Opening> prepareRound(int round) {
+        ShareVector shares = LinearAlgebra.addSharesVec(sharesOfSecrets, lambda_share_list);
+        return List.of(Opening.packed(sharing, getDim(), sharing.degree(), shares));
+    }
+
+    @Override
+    void finishRound(int round, List<FieldVector> values) {
+        this.Delta_clear_list = values.get(0); // Delta = x + lambda, opened by the king
+    }
+}
@@ -0,0 +1,24 @@
+package fptd.protocols;
+
+import fptd.Params;
+import fptd.sharing.PackedShamirSharing;
+import java.util.List;
+
+/**
+ * OutputGate of a packed gate: opens the packed lambda shares, blocks(dim) per party.
+ */
+public class PackedOutputGate extends OutputGate {
+
+    private final PackedShamirSharing sharing = new PackedShamirSharing(Params.PACK_K);
+
+    public PackedOutputGate(final Gate inputX) {
+        super(inputX);
+    }
+
+    @Override
+    List<Opening> prepareRound(int round) {
+        this.lambda_share_list = this.firstGate().lambda_share_list;
+        this.Delta_clear_list = this.firstGate().Delta_clear_list;
+        return List.of(Opening.packed(sharing, dim, sharing.degree(), this.lambda_share_list));
+    }
+}
@@ -1,12 +1,14 @@
 package fptd.protocols;
 
+import fptd.FieldVector;
 import fptd.Share;
-import java.math.BigInteger;
+import fptd.utils.LinearAlgebra;
+import java.util.BitSet;
 import java.util.List;
 
 public class ReduceGate extends Gate {
 
-    private List<Share> filter = null; //只关注到这个filter中哪些元素是null的
+    private BitSet filter = null; //只关注到这个filter中哪些元素是null的, 非null的位置为true
 
     public ReduceGate(Gate inputX) {
         super(inputX, null);
@@ -17,7 +19,24 @@ public class ReduceGate extends Gate {
     public ReduceGate(Gate inputX, List<Share> filter) {
         super(inputX, null);
         this.dim = 1;
-        this.filter = filter;
+        this.filter = new BitSet(filter.size());
+        for (int i = 0; i < filter.size(); i++) {
+            if (filter.get(i) != null) {
+                this.filter.set(i);
+            }
+        }
+    }
+
+    // filter中missing的元素，将InputX所对应的这些元素也设置为null
+    public ReduceGate(Gate inputX, FieldVector filter) {
+        super(inputX, null);
+        this.dim = 1;
+        this.filter = new BitSet(filter.size());
+        for (int i = 0; i < filter.size(); i++) {
+            if (!filter.isMissing(i)) {
+                this.filter.set(i);
+            }
+        }
     }
 
     @Override
@@ -26,28 +45,17 @@ public class ReduceGate extends Gate {
 
     @Override
     void doRunOnline() {
-        Share sumLambda = null;
         final int size = this.firstGate().lambda_share_list.size();
+        BitSet present = new BitSet(size); //只取非空的值
         for (int i = 0; i < size; i++) {
-            Share s = this.firstGate().lambda_share_list.get(i);
-            if (this.firstGate().Delta_clear_list.get(i) != null && filter != null && filter.get(i) != null) {
-                if (sumLambda != null) {//只取非空的值
-                    sumLambda = sumLambda.add(s);
-                } else {
-                    sumLambda = s;
-                }
-            }
-        }
-        BigInteger sum2 = BigInteger.ZERO; //需要考虑到存在null的情况
-        for (int i = 0; i < size; i++) {
-            BigInteger temp = this.firstGate().Delta_clear_list.get(i);
-            if (temp != null && filter != null && filter.get(i) != null) {
-                sum2 = sum2.add(temp);
+            if (!this.firstGate().Delta_clear_list.isMissing(i) && filter != null && filter.get(i)) {
+                present.set(i);
             }
         }
-        this.lambda_share_list = List.of(sumLambda);
-        this.Delta_clear_list = List.of(sum2);
-
-
+        this.lambda_share_list = LinearAlgebra.reduceSum(
+                LinearAlgebra.doFilter(this.firstGate().lambda_share_list, present));
+        //需要考虑到存在null的情况
+        this.Delta_clear_list = LinearAlgebra.reduceSumClear(
+                LinearAlgebra.doFilter(this.firstGate().Delta_clear_list, present));
     }
 }
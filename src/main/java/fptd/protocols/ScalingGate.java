@@ -1,7 +1,7 @@
 package fptd.protocols;
 
+import fptd.utils.LinearAlgebra;
 import java.math.BigInteger;
-import java.util.ArrayList;
 
 /**
  * Scale the data via the rounding factors
@@ -23,9 +23,6 @@ public class ScalingGate extends Gate {
 
     @Override
     void doRunOnline() {
-        this.Delta_clear_list = new ArrayList<>();
-        for (BigInteger Delta : this.firstGate().Delta_clear_list) {
-            this.Delta_clear_list.add(Delta.multiply(this.roundingFactor));
-        }
+        this.Delta_clear_list = LinearAlgebra.scaleClearVec(this.firstGate().Delta_clear_list, this.roundingFactor);
     }
 }
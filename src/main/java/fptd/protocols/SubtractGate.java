@@ -28,7 +28,7 @@ public class SubtractGate extends Gate {
 
     @Override
     void doRunOnline() {
-        this.Delta_clear_list = LinearAlgebra.subtractBigIntVec(
+        this.Delta_clear_list = LinearAlgebra.subtractClearVec(
                 this.firstGate().Delta_clear_list, this.secondGate().Delta_clear_list);
     }
 }
@@ -0,0 +1,81 @@
+package fptd.sharing;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.GeneralSecurityException;
+import java.util.Random;
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * The PRF of PRSS: the AES-CTR key stream of one key under a nonce, read as a Random so that
+ * Field.random can draw field elements from it. Not thread-safe.
+ */
+final class AesCtrRandom extends Random {
+
+    private static final long serialVersionUID = 1L;
+    private static final int BUFFER_BYTES = 1024;
+
+    // a Random is Serializable, the key stream is not meant to be
+    private final transient Cipher cipher;
+    private final transient SecretKeySpec key;
+    private final byte[] zeros = new byte[BUFFER_BYTES];
+    private final byte[] buffer = new byte[BUFFER_BYTES];
+    private final transient ByteBuffer longs = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+    private final byte[] iv = new byte[16];
+    private int pos = BUFFER_BYTES;
+
+    AesCtrRandom(byte[] key) {
+        this(new SecretKeySpec(key, "AES"));
+    }
+
+    private AesCtrRandom(SecretKeySpec key) {
+        this.key = key;
+        try {
+            this.cipher = Cipher.getInstance("AES/CTR/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return a stream of the same key, with a cipher of its own
+     */
+    AesCtrRandom copy() {
+        return new AesCtrRandom(key);
+    }
+
+    /**
+     * Restart at the beginning of the stream of this nonce
+     */
+    void reset(long nonce) {
+        ByteBuffer.wrap(iv).putLong(0, nonce);
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(iv));
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+        pos = BUFFER_BYTES;
+    }
+
+    @Override
+    public long nextLong() {
+        if (pos == BUFFER_BYTES) {
+            try {
+                cipher.update(zeros, 0, BUFFER_BYTES, buffer, 0);
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException(e);
+            }
+            pos = 0;
+        }
+        long value = longs.getLong(pos);
+        pos += 8;
+        return value;
+    }
+
+    @Override
+    protected int next(int bits) {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+}
@@ -0,0 +1,309 @@
+package fptd.sharing;
+
+import static fptd.Params.N;
+import static fptd.Params.T;
+
+import fptd.FieldVector;
+import fptd.Params;
+import fptd.ShareVector;
+import fptd.field.Field;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Packed (Franklin-Yung) Shamir sharing: k secrets are the values of one polynomial at the points
+ * 0, -1, ..., -(k-1), and party i holds its value at x = i + 1. To keep threshold - 1 parties learning
+ * nothing the polynomial has degree threshold + k - 2, so a vector of dim secrets is shared as
+ * ceil(dim / k) shares per party (one per block of k secrets), and an opening sends k times fewer
+ * elements to the king. The price is that an opening needs degree + 1 shares instead of threshold.
+ *
+ * Multiplying a packed share by a clear vector (see evaluateClear) raises the degree by k - 1, which is
+ * what the Beaver step of a multiplication does; with N = 7 and T = 4 that allows k = 2.
+ *
+ * A block is missing as a whole: if one of its secrets is missing, all k are.
+ */
+public class PackedShamirSharing {
+
+    // Recovery coefficients per (k, totalShares, participating party ids), see recoverCoefficients
+    private static final Map<List<Integer>, long[]> RECOVER_CACHE = new ConcurrentHashMap<>();
+
+    private final int k;
+    private final int threshold;
+    private final int totalShares;
+    private final int degree;
+    private final long[] shareMatrix; // totalShares x (degree + 1): Lagrange basis of all points evaluated at x = 1..N
+    private final long[] clearMatrix; // totalShares x k: Lagrange basis of the secret points evaluated at x = 1..N
+    private final Random random = new Random();
+
+    public PackedShamirSharing(int k) {
+        this(k, T, N);
+    }
+
+    public PackedShamirSharing(int k, int threshold, int totalShares) {
+        if (k <= 0 || threshold <= 0 || threshold > totalShares) {
+            throw new IllegalArgumentException("Invalid k, threshold or total shares");
+        }
+        this.k = k;
+        this.threshold = threshold;
+        this.totalShares = totalShares;
+        this.degree = threshold + k - 2;
+        if (degree + 1 > totalShares) {
+            throw new IllegalArgumentException("k = " + k + " is too large: an opening needs " + (degree + 1)
+                    + " shares but there are only " + totalShares);
+        }
+        //secrets at 0, -1, ..., -(k-1), then the random values at -k, ..., -degree
+        int[] points = new int[degree + 1];
+        for (int j = 0; j <= degree; j++) {
+            points[j] = -j;
+        }
+        int[] secretPoints = new int[k];
+        System.arraycopy(points, 0, secretPoints, 0, k);
+        final Field field = Params.FIELD;
+        final int limbs = field.limbs();
+        this.shareMatrix = field.newElements(totalShares * (degree + 1));
+        this.clearMatrix = field.newElements(totalShares * k);
+        for (int party = 0; party < totalShares; party++) {
+            BigInteger[] row = lagrangeBasis(points, party + 1);
+            for (int j = 0; j <= degree; j++) {
+                field.fromBigInteger(row[j], shareMatrix, (party * (degree + 1) + j) * limbs);
+            }
+            row = lagrangeBasis(secretPoints, party + 1);
+            for (int j = 0; j < k; j++) {
+                field.fromBigInteger(row[j], clearMatrix, (party * k + j) * limbs);
+            }
+        }
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * @return the degree of a fresh sharing
+     */
+    public int degree() {
+        return degree;
+    }
+
+    /**
+     * @return the degree after multiplying by the polynomial of a clear vector, e.g. in a Beaver step
+     */
+    public int productDegree() {
+        return degree + k - 1;
+    }
+
+    /**
+     * @return the number of packed shares for dim secrets
+     */
+    public int blocks(int dim) {
+        return (dim + k - 1) / k;
+    }
+
+    /**
+     * Share the secrets in blocks of k, the last block is padded with zeros.
+     *
+     * @return totalShares vectors of blocks(dim) shares, the i-th one for party i
+     */
+    public List<ShareVector> shareBatch(FieldVector secrets) {
+        final Field field = Params.FIELD;
+        final int limbs = field.limbs();
+        final int size = secrets.size();
+        final int blocks = blocks(size);
+        List<ShareVector> result = new ArrayList<>(totalShares);//one row for a party
+        for (int party = 0; party < totalShares; party++) {
+            result.add(new ShareVector(party, blocks));
+        }
+        long[] values = field.newElements(degree + 1); // k secrets, then threshold - 1 random values
+        long[] zero = field.newElement();
+        long[] acc = new long[field.wideLimbs()];
+        for (int block = 0; block < blocks; block++) {
+            boolean missing = false;
+            for (int j = 0; j < k; j++) {
+                int idx = block * k + j;
+                if (idx >= size) {
+                    field.setZero(values, j * limbs);
+                } else if (secrets.isMissing(idx)) {
+                    missing = true;
+                } else {
+                    System.arraycopy(secrets.getLimbs(), secrets.offset(idx), values, j * limbs, limbs);
+                }
+            }
+            if (missing) {
+                for (ShareVector sharesIthParty : result) {
+                    sharesIthParty.setMissing(block);
+                }
+                continue;
+            }
+            for (int j = k; j <= degree; j++) {
+                field.random(random, values, j * limbs);
+            }
+            for (int party = 0; party < totalShares; party++) {
+                ShareVector sharesIthParty = result.get(party);
+                field.initWide(zero, 0, acc, 0);
+                for (int j = 0; j <= degree; j++) {
+                    field.mulAdd(values, j * limbs, shareMatrix, (party * (degree + 1) + j) * limbs, acc, 0);
+                }
+                field.reduceWide(acc, 0, sharesIthParty.getLimbs(), sharesIthParty.offset(block));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The value at this party's point of the degree k - 1 polynomial through every block of the clear
+     * vector. Multiplying a packed share by it multiplies the k secrets by the k clear values.
+     *
+     * @return one value per block, missing if any value of the block is missing
+     */
+    public FieldVector evaluateClear(int party_id, FieldVector clear) {
+        final Field field = Params.FIELD;
+        final int limbs = field.limbs();
+        final int size = clear.size();
+        FieldVector result = new FieldVector(blocks(size));
+        long[] zero = field.newElement();
+        long[] acc = new long[field.wideLimbs()];
+        for (int block = 0; block < result.size(); block++) {
+            field.initWide(zero, 0, acc, 0);
+            for (int j = 0; j < k && block * k + j < size; j++) {
+                int idx = block * k + j;
+                if (clear.isMissing(idx)) {
+                    result.setMissing(block);
+                    break;
+                }
+                field.mulAdd(clear.getLimbs(), clear.offset(idx), clearMatrix, (party_id * k + j) * limbs, acc, 0);
+            }
+            if (!result.isMissing(block)) {
+                field.reduceWide(acc, 0, result.getLimbs(), result.offset(block));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Recover dim secrets from one vector of packed shares per party, using the first
+     * openedDegree + 1 rows.
+     *
+     * @param openedDegree degree() for a fresh sharing, productDegree() after a Beaver step
+     * @return an entry is missing if its block is missing in any row
+     */
+    public FieldVector recoverVector(List<ShareVector> rows, int dim, int openedDegree) {
+        if (rows == null || rows.size() < openedDegree + 1) {
+            throw new IllegalArgumentException("Not enough shares to recover the secrets");
+        }
+        final Field field = Params.FIELD;
+        final int limbs = field.limbs();
+        final int blocks = blocks(dim);
+        FieldVector result = new FieldVector(dim);
+        BitSet partyIds = new BitSet();
+        for (int r = 0; r < rows.size(); r++) {
+            ShareVector row = rows.get(r);
+            if (row.size() != blocks) {
+                throw new IllegalArgumentException("Every row must have " + blocks + " packed shares");
+            }
+            if (r <= openedDegree) {
+                partyIds.set(row.getParty_id());
+            }
+            for (int block = 0; row.hasMissing() && block < blocks; block++) {
+                if (row.isMissing(block)) {
+                    for (int idx = block * k; idx < Math.min(dim, (block + 1) * k); idx++) {
+                        result.setMissing(idx);
+                    }
+                }
+            }
+        }
+        long[] coefficients = recoverCoefficients(partyIds);
+        long[] zero = field.newElement();
+        long[] acc = new long[field.wideLimbs()];
+        for (int idx = 0; idx < dim; idx++) {
+            if (result.isMissing(idx)) {
+                continue;
+            }
+            int block = idx / k;
+            int j = idx % k;
+            field.initWide(zero, 0, acc, 0);
+            for (int r = 0; r <= openedDegree; r++) {
+                ShareVector row = rows.get(r);
+                field.mulAdd(row.getLimbs(), row.offset(block),
+                        coefficients, (j * totalShares + row.getParty_id()) * limbs, acc, 0);
+            }
+            field.reduceWide(acc, 0, result.getLimbs(), result.offset(idx));
+        }
+        return result;
+    }
+
+    /**
+     * One party's term of a recovery over all totalShares parties, see ShamirSharing.partialRecover. With all
+     * the parties the interpolation is exact for any degree below totalShares, fresh or after a product.
+     *
+     * @return dim values, missing where the block is missing
+     */
+    public FieldVector partialRecover(ShareVector row, int dim) {
+        if (row.size() != blocks(dim)) {
+            throw new IllegalArgumentException("The row must have " + blocks(dim) + " packed shares");
+        }
+        final Field field = Params.FIELD;
+        final int limbs = field.limbs();
+        BitSet partyIds = new BitSet();
+        partyIds.set(0, totalShares);
+        long[] coefficients = recoverCoefficients(partyIds);
+        FieldVector result = new FieldVector(dim);
+        for (int idx = 0; idx < dim; idx++) {
+            int block = idx / k;
+            if (row.isMissing(block)) {
+                result.setMissing(idx);
+            } else {
+                field.mul(row.getLimbs(), row.offset(block), coefficients,
+                        ((idx % k) * totalShares + row.getParty_id()) * limbs, result.getLimbs(), result.offset(idx));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the Lagrange coefficient of party i for secret j at offset (j * totalShares + i) * limbs, which
+     *         interpolate any degree below the number of parties
+     */
+    private long[] recoverCoefficients(BitSet partyIds) {
+        List<Integer> key = new ArrayList<>();
+        key.add(k);
+        key.add(totalShares); // the stride of the layout
+        partyIds.stream().forEach(key::add);
+        return RECOVER_CACHE.computeIfAbsent(key, unused -> {
+            final Field field = Params.FIELD;
+            int[] points = partyIds.stream().map(id -> id + 1).toArray();
+            long[] coefficients = field.newElements(k * totalShares);
+            for (int j = 0; j < k; j++) {
+                BigInteger[] row = lagrangeBasis(points, -j);
+                for (int s = 0; s < points.length; s++) {
+                    field.fromBigInteger(row[s], coefficients, (j * totalShares + points[s] - 1) * field.limbs());
+                }
+            }
+            return coefficients;
+        });
+    }
+
+    /**
+     * @return the Lagrange basis polynomials over the points, evaluated at x, mod P
+     */
+    static BigInteger[] lagrangeBasis(int[] points, int x) {
+        BigInteger[] result = new BigInteger[points.length];
+        for (int a = 0; a < points.length; a++) {
+            BigInteger numerator = BigInteger.ONE;
+            BigInteger denominator = BigInteger.ONE;
+            for (int b = 0; b < points.length; b++) {
+                if (a == b) {
+                    continue;
+                }
+                numerator = numerator.multiply(BigInteger.valueOf(x - points[b])).mod(Params.P);
+                denominator = denominator.multiply(BigInteger.valueOf(points[a] - points[b])).mod(Params.P);
+            }
+            result[a] = numerator.multiply(denominator.modInverse(Params.P)).mod(Params.P);
+        }
+        return result;
+    }
+}
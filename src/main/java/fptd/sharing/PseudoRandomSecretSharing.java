@@ -0,0 +1,292 @@
+package fptd.sharing;
+
+import fptd.FieldVector;
+import fptd.Params;
+import fptd.ShareVector;
+import fptd.field.Field;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pseudo-random secret sharing (Cramer-Damgard-Ishai): every subset A of totalShares - threshold + 1
+ * parties shares a PRF key K_A. The i-th random value is sum_A PRF(K_A, i), and party p's share of it is
+ * sum_{A containing p} PRF(K_A, i) * f_A(p + 1), where f_A is the polynomial of the sharing's degree with
+ * f_A(0) = 1 and f_A = 0 at the points of the parties outside A. The parties outside a subset are at most
+ * threshold - 1, and they never see its key, so shares of uniformly random values come without any
+ * communication or offline file.
+ *
+ * The packed variant uses k values per subset, one polynomial per secret point 0, -1, ..., -(k-1),
+ * which gives packed shares of degree threshold + k - 2 like PackedShamirSharing.
+ *
+ * A party holds the keys of its subsets, C(totalShares - 1, threshold - 1) of them; the dealer holds all
+ * of them and derives the same values and every party's shares. The i-th request uses nonce i, so the
+ * dealer and the parties must request the same sizes in the same order.
+ */
+public class PseudoRandomSecretSharing implements RandomnessSource {
+
+    private final int party_id; // -1 for the dealer
+    private final int threshold;
+    private final int totalShares;
+    private final int[] subsets; // bit masks of the subsets whose keys are held
+    private final AesCtrRandom[] streams; // one per subset
+    private final Map<Integer, long[]> coefficients; // per k, see buildCoefficients, shared with the copies
+    private long nonce = 0;
+
+    /**
+     * @param party_id -1 for the dealer, which needs every key
+     * @param keys     AES keys per subset bit mask
+     */
+    public PseudoRandomSecretSharing(int party_id, Map<Integer, byte[]> keys, int threshold, int totalShares) {
+        if (threshold <= 0 || threshold > totalShares || totalShares > 31) {
+            throw new IllegalArgumentException("Invalid threshold or total shares");
+        }
+        this.party_id = party_id;
+        this.threshold = threshold;
+        this.totalShares = totalShares;
+        List<Integer> expected = party_id < 0 ? allSubsets(threshold, totalShares)
+                : subsetsOf(party_id, threshold, totalShares);
+        this.subsets = new int[expected.size()];
+        this.streams = new AesCtrRandom[expected.size()];
+        for (int s = 0; s < subsets.length; s++) {
+            byte[] key = keys.get(expected.get(s));
+            if (key == null) {
+                throw new IllegalArgumentException("Missing the PRSS key of subset " + Integer.toBinaryString(expected.get(s)));
+            }
+            subsets[s] = expected.get(s);
+            streams[s] = new AesCtrRandom(key);
+        }
+        this.coefficients = new ConcurrentHashMap<>();
+    }
+
+    private PseudoRandomSecretSharing(PseudoRandomSecretSharing other) {
+        this.party_id = other.party_id;
+        this.threshold = other.threshold;
+        this.totalShares = other.totalShares;
+        this.subsets = other.subsets;
+        this.streams = new AesCtrRandom[other.streams.length];
+        for (int s = 0; s < streams.length; s++) {
+            streams[s] = other.streams[s].copy();
+        }
+        this.coefficients = other.coefficients;
+        this.nonce = other.nonce;
+    }
+
+    /**
+     * @return the same keys with streams of their own, e.g. for another thread
+     */
+    public PseudoRandomSecretSharing copy() {
+        return new PseudoRandomSecretSharing(this);
+    }
+
+    /**
+     * @return the nonce of the next request
+     */
+    public long getNonce() {
+        return nonce;
+    }
+
+    /**
+     * Continue with the request of this nonce, e.g. the first one of a gate that the dealer generates out of
+     * order, see OfflineCircuit
+     */
+    public void setNonce(long nonce) {
+        this.nonce = nonce;
+    }
+
+    /**
+     * @return a fresh AES-128 key for every subset of totalShares - threshold + 1 parties
+     */
+    public static Map<Integer, byte[]> generateKeys(int threshold, int totalShares) {
+        SecureRandom random = new SecureRandom();
+        Map<Integer, byte[]> keys = new LinkedHashMap<>();
+        for (int subset : allSubsets(threshold, totalShares)) {
+            byte[] key = new byte[16];
+            random.nextBytes(key);
+            keys.put(subset, key);
+        }
+        return keys;
+    }
+
+    /**
+     * @return the bit masks of the subsets that contain the party
+     */
+    public static List<Integer> subsetsOf(int party_id, int threshold, int totalShares) {
+        List<Integer> result = new ArrayList<>();
+        for (int subset : allSubsets(threshold, totalShares)) {
+            if ((subset >>> party_id & 1) == 1) {
+                result.add(subset);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The keys of one party as "mask:hex" entries separated by spaces, the form of the offline files
+     */
+    public static String encodeKeys(Map<Integer, byte[]> keys, int party_id, int threshold, int totalShares) {
+        StringBuilder sb = new StringBuilder();
+        for (int subset : subsetsOf(party_id, threshold, totalShares)) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(subset).append(':').append(HexFormat.of().formatHex(keys.get(subset)));
+        }
+        return sb.toString();
+    }
+
+    public static Map<Integer, byte[]> decodeKeys(String line) {
+        Map<Integer, byte[]> keys = new LinkedHashMap<>();
+        for (String entry : line.trim().split(" ")) {
+            int colon = entry.indexOf(':');
+            keys.put(Integer.parseInt(entry.substring(0, colon)), HexFormat.of().parseHex(entry.substring(colon + 1)));
+        }
+        return keys;
+    }
+
+    @Override
+    public ShareVector nextShares(int size) {
+        return derive(size, 1, null, true).getFirst();
+    }
+
+    @Override
+    public ShareVector nextPackedShares(int size) {
+        return derive(size, Params.PACK_K, null, true).getFirst();
+    }
+
+    /**
+     * Dealer only: the next random values, written to values, and the shares every party derives for them
+     */
+    public List<ShareVector> nextAllShares(FieldVector values) {
+        return derive(values.size(), 1, values, true);
+    }
+
+    /**
+     * Dealer only: like nextAllShares, packed with k = Params.PACK_K
+     */
+    public List<ShareVector> nextAllPackedShares(FieldVector values) {
+        return derive(values.size(), Params.PACK_K, values, true);
+    }
+
+    /**
+     * Dealer only: the next random values without the shares, e.g. for Beaver's a and b
+     */
+    public void nextValues(FieldVector values) {
+        derive(values.size(), 1, values, false);
+    }
+
+    /**
+     * Dealer only: like nextValues, for values the parties draw with nextPackedShares
+     */
+    public void nextPackedValues(FieldVector values) {
+        derive(values.size(), Params.PACK_K, values, false);
+    }
+
+    /**
+     * @param values     null for a party, the dealer receives the random values in it
+     * @param withShares false if the dealer only needs the values
+     * @return one row of blocks per party, only this party's row for a party
+     */
+    private List<ShareVector> derive(int size, int k, FieldVector values, boolean withShares) {
+        final Field field = Params.FIELD;
+        final int limbs = field.limbs();
+        final int wide = field.wideLimbs();
+        final int blocks = (size + k - 1) / k;
+        long[] coeff = coefficients.computeIfAbsent(k, this::buildCoefficients);
+        int[] parties = new int[party_id >= 0 ? 1 : withShares ? totalShares : 0];
+        for (int p = 0; p < parties.length; p++) {
+            parties[p] = party_id < 0 ? p : party_id;
+        }
+        long[][] accs = new long[parties.length][blocks * wide];
+        long[] zero = field.newElement();
+        for (long[] acc : accs) {
+            for (int block = 0; block < blocks; block++) {
+                field.initWide(zero, 0, acc, block * wide);
+            }
+        }
+        long[] r = field.newElement();
+        for (int s = 0; s < subsets.length; s++) {
+            AesCtrRandom stream = streams[s];
+            stream.reset(nonce);
+            for (int block = 0; block < blocks; block++) {
+                for (int j = 0; j < k; j++) {
+                    field.random(stream, r, 0);
+                    int idx = block * k + j;
+                    if (values != null && idx < size) {
+                        field.add(values.getLimbs(), values.offset(idx), r, 0, values.getLimbs(), values.offset(idx));
+                    }
+                    for (int p = 0; p < parties.length; p++) {
+                        if ((subsets[s] >>> parties[p] & 1) == 1) {
+                            field.mulAdd(r, 0, coeff, coefficientOffset(k, subsets[s], j, parties[p]), accs[p], block * wide);
+                        }
+                    }
+                }
+            }
+        }
+        nonce++;
+        List<ShareVector> result = new ArrayList<>(parties.length);
+        for (int p = 0; p < parties.length; p++) {
+            ShareVector row = new ShareVector(parties[p], blocks);
+            for (int block = 0; block < blocks; block++) {
+                field.reduceWide(accs[p], block * wide, row.getLimbs(), row.offset(block));
+            }
+            result.add(row);
+        }
+        return result;
+    }
+
+    private int coefficientOffset(int k, int subset, int j, int party) {
+        return ((subset * k + j) * totalShares + party) * Params.FIELD.limbs();
+    }
+
+    /**
+     * f_{A,j}(p + 1) for every subset mask A, secret j and party p, where f_{A,j} is 1 at -j, 0 at the other
+     * secret points and at the points of the parties outside A
+     */
+    private long[] buildCoefficients(int k) {
+        final Field field = Params.FIELD;
+        if (threshold + k - 1 > totalShares) {
+            throw new IllegalArgumentException("k = " + k + " is too large for " + totalShares + " parties");
+        }
+        long[] result = field.newElements((1 << totalShares) * k * totalShares);
+        for (int subset : allSubsets(threshold, totalShares)) {
+            int[] points = new int[k + threshold - 1];
+            for (int j = 0; j < k; j++) {
+                points[j] = -j;
+            }
+            for (int p = 0, pos = k; p < totalShares; p++) {
+                if ((subset >>> p & 1) == 0) {
+                    points[pos++] = p + 1;
+                }
+            }
+            for (int p = 0; p < totalShares; p++) {
+                if ((subset >>> p & 1) == 1) {
+                    BigInteger[] basis = PackedShamirSharing.lagrangeBasis(points, p + 1);
+                    for (int j = 0; j < k; j++) {
+                        field.fromBigInteger(basis[j], result, coefficientOffset(k, subset, j, p));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the bit masks of all subsets of totalShares - threshold + 1 parties, in increasing order
+     */
+    private static List<Integer> allSubsets(int threshold, int totalShares) {
+        List<Integer> result = new ArrayList<>();
+        int size = totalShares - threshold + 1;
+        for (int mask = 0; mask < 1 << totalShares; mask++) {
+            if (Integer.bitCount(mask) == size) {
+                result.add(mask);
+            }
+        }
+        return result;
+    }
+}
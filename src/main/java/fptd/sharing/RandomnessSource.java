@@ -0,0 +1,21 @@
+package fptd.sharing;
+
+import fptd.ShareVector;
+
+/**
+ * Where a party takes the shares of its uniformly random masks (lambda, Beaver a and b) from.
+ * Every party and the dealer must request the same sizes in the same order, which holds because
+ * the offline and the online circuits visit their gates in the same order.
+ */
+public interface RandomnessSource {
+
+    /**
+     * @return this party's Shamir shares of size fresh random values
+     */
+    ShareVector nextShares(int size);
+
+    /**
+     * @return this party's packed shares (k = Params.PACK_K) of size fresh random values, one per block
+     */
+    ShareVector nextPackedShares(int size);
+}
@@ -0,0 +1,231 @@
+package fptd.sharing;
+
+import fptd.FieldVector;
+import fptd.Params;
+import fptd.ShareVector;
+import fptd.field.Field;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shamir sharing by a dealer in which threshold - 1 parties, the seeded ones, draw their shares from an AES-CTR
+ * stream of their own seed. Together with the secret at 0 their shares fix the polynomial of degree
+ * threshold - 1, so the dealer only hands the shares of the other parties out, and a seeded party stores
+ * nothing but its seed. Every party still gets a share of a uniformly random polynomial, as the threshold - 1
+ * seeded shares are uniform and independent of the secret.
+ *
+ * The i-th batch uses nonce i, so the dealer and a seeded party must share and draw the same sizes in the same
+ * order, like PseudoRandomSecretSharing.
+ */
+public class SeededShamirSharing {
+
+    private final int threshold;
+    private final int totalShares;
+    private final int[] seeded; // the parties with a seed, in increasing order
+    private final AesCtrRandom[] streams; // per seeded party, only its own at a party
+    private final int party_id; // -1 for the dealer
+    private final long[] coefficients; // see buildCoefficients, at the dealer
+    private long nonce = 0;
+
+    /**
+     * The dealer, with the seed of every seeded party
+     */
+    public SeededShamirSharing(Map<Integer, byte[]> seeds, int threshold, int totalShares) {
+        this(-1, seeds, threshold, totalShares);
+    }
+
+    /**
+     * A seeded party, with its seed
+     */
+    public SeededShamirSharing(int party_id, byte[] seed, int threshold, int totalShares) {
+        this(party_id, Map.of(party_id, seed), threshold, totalShares);
+    }
+
+    private SeededShamirSharing(int party_id, Map<Integer, byte[]> seeds, int threshold, int totalShares) {
+        if (threshold <= 0 || threshold > totalShares) {
+            throw new IllegalArgumentException("Invalid threshold or total shares");
+        }
+        this.threshold = threshold;
+        this.totalShares = totalShares;
+        this.party_id = party_id;
+        this.seeded = seededParties(threshold, totalShares).stream().mapToInt(Integer::intValue).toArray();
+        this.streams = new AesCtrRandom[seeded.length];
+        for (int s = 0; s < seeded.length; s++) {
+            if (party_id >= 0 && seeded[s] != party_id) {
+                continue;
+            }
+            byte[] seed = seeds.get(seeded[s]);
+            if (seed == null) {
+                throw new IllegalArgumentException("Missing the share seed of party " + seeded[s]);
+            }
+            streams[s] = new AesCtrRandom(seed);
+        }
+        this.coefficients = party_id < 0 ? buildCoefficients() : null;
+    }
+
+    private SeededShamirSharing(SeededShamirSharing other) {
+        this.threshold = other.threshold;
+        this.totalShares = other.totalShares;
+        this.party_id = other.party_id;
+        this.seeded = other.seeded;
+        this.streams = new AesCtrRandom[other.streams.length];
+        for (int s = 0; s < streams.length; s++) {
+            streams[s] = other.streams[s] == null ? null : other.streams[s].copy();
+        }
+        this.coefficients = other.coefficients;
+        this.nonce = other.nonce;
+    }
+
+    /**
+     * @return the same seeds with streams of their own, e.g. for another thread
+     */
+    public SeededShamirSharing copy() {
+        return new SeededShamirSharing(this);
+    }
+
+    /**
+     * @return the nonce of the next batch
+     */
+    public long getNonce() {
+        return nonce;
+    }
+
+    /**
+     * Continue with the batch of this nonce, like PseudoRandomSecretSharing.setNonce
+     */
+    public void setNonce(long nonce) {
+        this.nonce = nonce;
+    }
+
+    /**
+     * @return the last threshold - 1 parties, so that the king keeps its shares in its offline file
+     */
+    public static List<Integer> seededParties(int threshold, int totalShares) {
+        List<Integer> result = new ArrayList<>();
+        for (int p = totalShares - threshold + 1; p < totalShares; p++) {
+            result.add(p);
+        }
+        return result;
+    }
+
+    public static boolean isSeeded(int party_id, int threshold, int totalShares) {
+        return party_id > totalShares - threshold && party_id < totalShares;
+    }
+
+    /**
+     * @return a fresh AES-128 key for every seeded party
+     */
+    public static Map<Integer, byte[]> generateSeeds(int threshold, int totalShares) {
+        SecureRandom random = new SecureRandom();
+        Map<Integer, byte[]> seeds = new LinkedHashMap<>();
+        for (int party : seededParties(threshold, totalShares)) {
+            byte[] seed = new byte[16];
+            random.nextBytes(seed);
+            seeds.put(party, seed);
+        }
+        return seeds;
+    }
+
+    /**
+     * At the dealer
+     *
+     * @return one ShareVector per party, the i-th entry of each shares secrets[i]; those of the seeded parties are
+     *         the ones they draw with nextShares
+     */
+    public List<ShareVector> shareBatch(FieldVector secrets) {
+        if (party_id >= 0) {
+            throw new IllegalStateException("Only the dealer shares");
+        }
+        final Field field = Params.FIELD;
+        final int limbs = field.limbs();
+        final int size = secrets.size();
+        List<ShareVector> result = new ArrayList<>(totalShares);
+        for (int party = 0; party < totalShares; party++) {
+            result.add(new ShareVector(party, size));
+        }
+        for (int s = 0; s < seeded.length; s++) {
+            draw(s, result.get(seeded[s]));
+        }
+        nonce++;
+        long[] acc = new long[field.wideLimbs()];
+        long[] zero = field.newElement();
+        long[] secretLimbs = secrets.getLimbs();
+        long[][] seededLimbs = new long[seeded.length][];
+        for (int s = 0; s < seeded.length; s++) {
+            seededLimbs[s] = result.get(seeded[s]).getLimbs();
+        }
+        for (int party = 0; party < totalShares; party++) {
+            if (isSeeded(party, threshold, totalShares)) {
+                continue;
+            }
+            long[] dst = result.get(party).getLimbs();
+            for (int idx = 0, off = 0; idx < size; idx++, off += limbs) {
+                field.initWide(zero, 0, acc, 0);
+                field.mulAdd(secretLimbs, off, coefficients, coefficientOffset(party, 0), acc, 0);
+                for (int s = 0; s < seeded.length; s++) {
+                    field.mulAdd(seededLimbs[s], off, coefficients, coefficientOffset(party, s + 1), acc, 0);
+                }
+                field.reduceWide(acc, 0, dst, off);
+            }
+        }
+        for (int idx = 0; idx < size; idx++) {
+            if (secrets.isMissing(idx)) {
+                for (ShareVector shares : result) {
+                    shares.setMissing(idx);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * At a seeded party
+     *
+     * @return its shares of the next batch the dealer shared
+     */
+    public ShareVector nextShares(int size) {
+        ShareVector shares = new ShareVector(party_id, size);
+        for (int s = 0; s < seeded.length; s++) {
+            if (seeded[s] == party_id) {
+                draw(s, shares);
+            }
+        }
+        nonce++;
+        return shares;
+    }
+
+    private void draw(int s, ShareVector shares) {
+        AesCtrRandom stream = streams[s];
+        stream.reset(nonce);
+        for (int idx = 0; idx < shares.size(); idx++) {
+            Params.FIELD.random(stream, shares.getLimbs(), shares.offset(idx));
+        }
+    }
+
+    private int coefficientOffset(int party, int point) {
+        return (party * (seeded.length + 1) + point) * Params.FIELD.limbs();
+    }
+
+    /**
+     * The Lagrange basis over 0 and the points of the seeded parties, evaluated at the point of every party
+     */
+    private long[] buildCoefficients() {
+        final Field field = Params.FIELD;
+        int[] points = new int[seeded.length + 1];
+        for (int s = 0; s < seeded.length; s++) {
+            points[s + 1] = seeded[s] + 1;
+        }
+        long[] result = field.newElements(totalShares * points.length);
+        for (int party = 0; party < totalShares; party++) {
+            BigInteger[] basis = PackedShamirSharing.lagrangeBasis(points, party + 1);
+            for (int j = 0; j < points.length; j++) {
+                field.fromBigInteger(basis[j], result, coefficientOffset(party, j));
+            }
+        }
+        return result;
+    }
+}
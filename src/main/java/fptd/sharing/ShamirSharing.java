@@ -3,29 +3,64 @@ package fptd.sharing;
 import static fptd.Params.N;
 import static fptd.Params.T;
 
+import fptd.FieldVector;
 import fptd.Params;
 import fptd.Share;
+import fptd.ShareVector;
+import fptd.field.Field;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ShamirSharing extends Sharing {
 
+    // Lagrange coefficients at x = 0 per participant subset, see lagrangeCoefficients
+    private static final Map<BitSet, long[]> LAGRANGE_CACHE = new ConcurrentHashMap<>();
+
     private final int threshold;
     private final int totalShares;
 
+    private final long[] vandermonde; // x^i for x = 1..totalShares (rows) and i = 1..threshold-1 (columns)
+    private final Random random;
+
     public ShamirSharing() {
-        this.threshold = T;
-        this.totalShares = N;
+        this(T, N);
     }
 
     public ShamirSharing(int threshold, int totalShares) {
+        this(threshold, totalShares, new Random());
+    }
+
+    /**
+     * @param random draws the polynomials, seed it for shares that can be drawn again
+     */
+    public ShamirSharing(int threshold, int totalShares, Random random) {
         if (threshold <= 0 || totalShares <= 0 || threshold > totalShares) {
             throw new IllegalArgumentException("Invalid threshold or total shares");
         }
         this.threshold = threshold;
         this.totalShares = totalShares;
+        this.random = random;
+        this.vandermonde = buildVandermonde();
+    }
+
+    private long[] buildVandermonde() {
+        final Field field = Params.FIELD;
+        final int limbs = field.limbs();
+        final int cols = threshold - 1;
+        long[] result = field.newElements(totalShares * cols);
+        for (int x = 1; x <= totalShares; x++) {
+            BigInteger xPow = BigInteger.ONE;
+            for (int i = 1; i <= cols; i++) {
+                xPow = xPow.multiply(BigInteger.valueOf(x));
+                field.fromBigInteger(xPow, result, ((x - 1) * cols + i - 1) * limbs);
+            }
+        }
+        return result;
     }
 
     @Override
@@ -33,65 +68,183 @@ public class ShamirSharing extends Sharing {
         if (secret.compareTo(BigInteger.ZERO) < 0 || secret.compareTo(Params.P) >= 0) {
             throw new IllegalArgumentException("Secret must be in [0, p-1]");
         }
-
-        // Generate random coefficients for the polynomial
-        List<BigInteger> coefficients = new ArrayList<>();
-        coefficients.add(secret); // a0 is the secret
-
-        Random random = new Random();
-        for (int i = 1; i < threshold; i++) {
-            BigInteger coeff;
-            do {
-                coeff = new BigInteger(Params.P.bitLength(), random);
-            } while (coeff.compareTo(Params.P) >= 0);
-            coefficients.add(coeff);
-        }
-        // Generate shares by evaluating the polynomial at different points
+        FieldVector secrets = new FieldVector(1);
+        secrets.set(0, secret);
         List<Share> shares = new ArrayList<>();
-        for (int x = 1; x <= totalShares; x++) {
-            BigInteger y = evaluatePolynomial(coefficients, BigInteger.valueOf(x));
-            //使用x=1开始计算多项式，但Share中的idx表示的是edge server的下标，从0开始
-            shares.add(new Share(x - 1, y));
+        for (ShareVector sharesIthParty : shareBatch(secrets)) {
+            shares.add(sharesIthParty.getShare(0));
         }
         return shares;
     }
 
+    /**
+     * Share every secret with its own random polynomial, writing straight into one vector per party.
+     * Each share is the secret plus a row of the precomputed Vandermonde matrix times the random
+     * coefficients, accumulated unreduced and reduced once.
+     *
+     * @param secrets missing entries stay missing in every party's vector
+     * @return totalShares vectors, the i-th one holds the shares of party i (x = i + 1)
+     */
+    public List<ShareVector> shareBatch(FieldVector secrets) {
+        final Field field = Params.FIELD;
+        final int limbs = field.limbs();
+        final int cols = threshold - 1;
+        final int size = secrets.size();
+        List<ShareVector> result = new ArrayList<>(totalShares);//one row for a party
+        for (int party = 0; party < totalShares; party++) {
+            result.add(new ShareVector(party, size));
+        }
+        long[] coefficients = field.newElements(cols); // a1, ..., a_{t-1}, a0 is the secret
+        long[] acc = new long[field.wideLimbs()];
+        long[] secretLimbs = secrets.getLimbs();
+        for (int idx = 0, off = 0; idx < size; idx++, off += limbs) {
+            if (secrets.isMissing(idx)) {
+                for (ShareVector sharesIthParty : result) {
+                    sharesIthParty.setMissing(idx);
+                }
+                continue;
+            }
+            for (int i = 0; i < cols; i++) {
+                field.random(random, coefficients, i * limbs);
+            }
+            for (int party = 0; party < totalShares; party++) {
+                field.initWide(secretLimbs, off, acc, 0);
+                for (int i = 0; i < cols; i++) {
+                    field.mulAdd(coefficients, i * limbs, vandermonde, (party * cols + i) * limbs, acc, 0);
+                }
+                field.reduceWide(acc, 0, result.get(party).getLimbs(), off);
+            }
+        }
+        return result;
+    }
+
     @Override
     public BigInteger recover(List<Share> shares) {
         if (shares == null || shares.size() < threshold) {
             throw new IllegalArgumentException("Not enough shares to recover the secret");
         }
-        // Use Lagrange interpolation to recover the constant term (secret)
-        BigInteger secret = BigInteger.ZERO;
+        final Field field = Params.FIELD;
+        final int limbs = field.limbs();
+        // Use Lagrange interpolation to recover the constant term (secret), with the first threshold shares
+        BitSet partyIds = new BitSet();
+        for (int i = 0; i < threshold; i++) {
+            partyIds.set(shares.get(i).getParty_id());
+        }
+        long[] coefficients = lagrangeCoefficients(partyIds);
+        long[] secret = field.newElement();
+        long[] acc = new long[field.wideLimbs()];
+        field.initWide(secret, 0, acc, 0);
         for (int i = 0; i < threshold; i++) {
             Share currentShare = shares.get(i);
+            field.mulAdd(currentShare.getLimbs(), 0, coefficients, currentShare.getParty_id() * limbs, acc, 0);
+        }
+        field.reduceWide(acc, 0, secret, 0);
+        return field.toBigInteger(secret, 0);
+    }
+
+    /**
+     * Recover a whole vector from the N x dim matrix of received shares, one row per party, as one
+     * matrix-vector product with the cached Lagrange coefficients of the first threshold rows.
+     *
+     * @param rows one ShareVector per party, in any order
+     * @return an entry is missing if it is missing in any row
+     */
+    public FieldVector recoverVector(List<ShareVector> rows, int dim) {
+        if (rows == null || rows.size() < threshold) {
+            throw new IllegalArgumentException("Not enough shares to recover the secret");
+        }
+        final Field field = Params.FIELD;
+        final int limbs = field.limbs();
+        FieldVector result = new FieldVector(dim);
+        BitSet partyIds = new BitSet();
+        for (int r = 0; r < rows.size(); r++) {
+            ShareVector row = rows.get(r);
+            if (row.size() != dim) {
+                throw new IllegalArgumentException("Every row must have dim shares");
+            }
+            if (r < threshold) {
+                partyIds.set(row.getParty_id());
+            }
+            if (row.hasMissing()) { // missing in the inputs of the parties
+                for (int i = 0; i < dim; i++) {
+                    if (row.isMissing(i)) {
+                        result.setMissing(i);
+                    }
+                }
+            }
+        }
+        long[] coefficients = lagrangeCoefficients(partyIds);
+        long[] zero = field.newElement();
+        long[] acc = new long[field.wideLimbs()];
+        long[] out = result.getLimbs();
+        for (int i = 0, off = 0; i < dim; i++, off += limbs) {
+            if (result.isMissing(i)) {
+                continue;
+            }
+            field.initWide(zero, 0, acc, 0);
+            for (int r = 0; r < threshold; r++) {
+                ShareVector row = rows.get(r);
+                field.mulAdd(row.getLimbs(), off, coefficients, row.getParty_id() * limbs, acc, 0);
+            }
+            field.reduceWide(acc, 0, out, off);
+        }
+        return result;
+    }
+
+    /**
+     * One party's term of a recovery over all totalShares parties: its Lagrange coefficient times its shares.
+     * Recovery is linear, so the terms of all the parties add up to the secrets in any order, e.g. up a tree.
+     *
+     * @return an entry is missing if the share is missing
+     */
+    public FieldVector partialRecover(ShareVector row) {
+        final Field field = Params.FIELD;
+        final int limbs = field.limbs();
+        BitSet partyIds = new BitSet();
+        partyIds.set(0, totalShares);
+        long[] coefficients = lagrangeCoefficients(partyIds);
+        int coefficientOff = row.getParty_id() * limbs;
+        FieldVector result = new FieldVector(row.size());
+        for (int i = 0, off = 0; i < row.size(); i++, off += limbs) {
+            if (row.isMissing(i)) {
+                result.setMissing(i);
+            } else {
+                field.mul(row.getLimbs(), off, coefficients, coefficientOff, result.getLimbs(), off);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The coefficients only depend on which parties take part, so they are computed once per subset.
+     *
+     * @param partyIds the parties whose shares are interpolated, starting from 0
+     * @return the Lagrange coefficient at x = 0 of party i at offset i * limbs, in the internal form of
+     *         Params.FIELD; zero for the parties not in the subset. Must not be modified.
+     */
+    public static long[] lagrangeCoefficients(BitSet partyIds) {
+        return LAGRANGE_CACHE.computeIfAbsent((BitSet) partyIds.clone(), ShamirSharing::computeLagrangeCoefficients);
+    }
+
+    private static long[] computeLagrangeCoefficients(BitSet partyIds) {
+        final Field field = Params.FIELD;
+        long[] coefficients = field.newElements(partyIds.length());
+        for (int i = partyIds.nextSetBit(0); i >= 0; i = partyIds.nextSetBit(i + 1)) {
             BigInteger numerator = BigInteger.ONE;
             BigInteger denominator = BigInteger.ONE;
-            for (int j = 0; j < threshold; j++) {
+            int x_curr = i + 1; //使用x=1开始计算多项式，但party id从0开始
+            for (int j = partyIds.nextSetBit(0); j >= 0; j = partyIds.nextSetBit(j + 1)) {
                 if (i == j) {
                     continue;
                 }
-
-                Share otherShare = shares.get(j);
-                int x_other = otherShare.getParty_id() + 1;//
+                int x_other = j + 1;
                 numerator = numerator.multiply(BigInteger.valueOf(-x_other)).mod(Params.P);
-                int x_curr = currentShare.getParty_id() + 1;
                 denominator = denominator.multiply(BigInteger.valueOf(x_curr - x_other)).mod(Params.P);
             }
             BigInteger lagrangeCoeff = numerator.multiply(denominator.modInverse(Params.P)).mod(Params.P);
-            secret = secret.add(currentShare.getShr().multiply(lagrangeCoeff)).mod(Params.P);
-        }
-        return secret;
-    }
-
-    private BigInteger evaluatePolynomial(List<BigInteger> coefficients, BigInteger x) {
-        BigInteger result = BigInteger.ZERO;
-        for (int i = 0; i < coefficients.size(); i++) {
-            BigInteger coeff = coefficients.get(i);
-            BigInteger xPow = x.pow(i);
-            result = result.add(coeff.multiply(xPow)).mod(Params.P);
+            field.fromBigInteger(lagrangeCoeff, coefficients, i * field.limbs());
         }
-        return result;
+        return coefficients;
     }
 
     public static void main(String[] args) {
@@ -26,7 +26,29 @@ public class TDOfflineOptimal {
     }
 
     public void runTDOffline() {
+        runTDOffline(new FakeParty(jobName, N));
+    }
+
+    /**
+     * Run the offline phase on a thread of its own, see Params.OFFLINE_PIPELINE. The offline files exist with
+     * their headers once this returns, so that the parties can open them.
+     */
+    public Thread startTDOffline() {
         FakeParty fakeParty = new FakeParty(jobName, N);
+        Thread thread = new Thread(() -> runTDOffline(fakeParty), "offline");
+        thread.start();
+        return thread;
+    }
+
+    private void runTDOffline(FakeParty fakeParty) {
+        try {
+            buildAndRun(fakeParty);
+        } finally {
+            fakeParty.close(); // also if it fails, so that the parties that wait for it fail too
+        }
+    }
+
+    private void buildAndRun(FakeParty fakeParty) {
         OfflineCircuit circuit = new OfflineCircuit(fakeParty);
 
         int dim = this.examNum;
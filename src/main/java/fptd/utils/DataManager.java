@@ -160,6 +160,7 @@ public class DataManager {
         }
         arrayIdx2ExamIDOut.clear();
         arrayIdx2ExamIDOut.addAll(examIDSet);
+        arrayIdx2WorkerIDOut.clear();
         arrayIdx2WorkerIDOut.addAll(w2e2l_map.keySet().stream().toList());
 
         List<List<BigInteger>> result = new ArrayList<>();
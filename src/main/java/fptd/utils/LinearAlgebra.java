@@ -1,9 +1,12 @@
 package fptd.utils;
 
+import fptd.FieldVector;
 import fptd.Params;
-import fptd.Share;
+import fptd.ShareVector;
+import fptd.field.Field;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 
@@ -19,239 +22,224 @@ public class LinearAlgebra {
      * @param Y
      * @return
      */
-    public static List<Share> addSharesVec(List<Share> X, List<Share> Y) {
-        if (X.size() != Y.size()) {
-            throw new IllegalArgumentException("X and Y must have the same size.");
-        }
-        List<Share> result = new ArrayList<Share>();
-        Iterator<Share> iterator = X.iterator();
-        Iterator<Share> iteratorY = Y.iterator();
-        while (iterator.hasNext()) {
-            Share shareX = iterator.next();
-            Share shareY = iteratorY.next();
-            if (shareX != null && shareY != null) {
-                result.add(shareX.add(shareY));
-            } else {
-                result.add(null);
-            }
-        }
+    public static ShareVector addSharesVec(ShareVector X, ShareVector Y) {
+        ShareVector result = X.copy();
+        result.addInPlace(Y);
         return result;
     }
 
-    public static List<Share> subtractSharesVec(List<Share> X, List<Share> Y) {
-        if (X.size() != Y.size()) {
-            throw new IllegalArgumentException("X and Y must have the same size.");
-        }
-        List<Share> result = new ArrayList<Share>();
-        Iterator<Share> iterator = X.iterator();
-        Iterator<Share> iteratorY = Y.iterator();
-        while (iterator.hasNext()) {
-            Share shareX = iterator.next();
-            Share shareY = iteratorY.next();
-            if (shareX != null && shareY != null) {
-                result.add(shareX.subtract(shareY));
-            } else {
-                result.add(null);
-            }
+    public static ShareVector subtractSharesVec(ShareVector X, ShareVector Y) {
+        ShareVector result = X.copy();
+        result.subtractInPlace(Y);
+        return result;
+    }
 
-        }
+    public static FieldVector subtractClearVec(FieldVector X, FieldVector Y) {
+        FieldVector result = X.copy();
+        result.subtractInPlace(Y);
         return result;
     }
 
-    public static List<BigInteger> subtractBigIntVec(List<BigInteger> X, List<BigInteger> Y) {
-        if (X.size() != Y.size()) {
-            throw new IllegalArgumentException("X and Y must have the same size.");
-        }
-        List<BigInteger> result = new ArrayList<>();
-        Iterator<BigInteger> iterator = X.iterator();
-        Iterator<BigInteger> iteratorY = Y.iterator();
-        while (iterator.hasNext()) {
-            BigInteger valuesX = iterator.next();
-            BigInteger valuesY = iteratorY.next();
-            if (valuesX != null && valuesY != null) {
-                result.add(valuesX.subtract(valuesY).mod(Params.P));
-            } else {
-                result.add(null);
-            }
-        }
+    public static ShareVector subtractVec(ShareVector X, FieldVector Y) {
+        ShareVector result = X.copy();
+        result.subtractInPlace(Y);
         return result;
     }
 
-    public static List<Share> subtractVec(List<Share> X, List<BigInteger> Y) {
-        if (X.size() != Y.size()) {
-            throw new IllegalArgumentException("X and Y must have the same size.");
-        }
-        List<Share> result = new ArrayList<>();
-        Iterator<Share> iterator = X.iterator();
-        Iterator<BigInteger> iteratorY = Y.iterator();
-        while (iterator.hasNext()) {
-            Share valuesX = iterator.next();
-            BigInteger valuesY = iteratorY.next();
-            if (valuesX != null && valuesY != null) {
-                result.add(valuesX.subtract(valuesY));
-            } else {
-                result.add(null);
-            }
+    public static ShareVector subtractVec2(FieldVector X, ShareVector Y) {
+        ShareVector result = Y.copy();
+        result.reverseSubtractInPlace(X);
+        return result;
+    }
 
-        }
+    public static ShareVector addVec(ShareVector X, FieldVector Y) {
+        ShareVector result = X.copy();
+        result.addInPlace(Y);
         return result;
     }
 
-    public static List<Share> subtractVec2(List<BigInteger> X, List<Share> Y) {
-        if (X.size() != Y.size()) {
-            throw new IllegalArgumentException("X and Y must have the same size.");
-        }
-        List<Share> result = new ArrayList<>();
-        Iterator<BigInteger> iterator = X.iterator();
-        Iterator<Share> iteratorY = Y.iterator();
-        while (iterator.hasNext()) {
-            BigInteger valuesX = iterator.next();
-            Share valuesY = iteratorY.next();
-            if (valuesX != null && valuesY != null) {
-                result.add(valuesY.setValue(valuesX.subtract(valuesY.getShr())));
-            } else {
-                result.add(null);
-            }
-        }
+    public static FieldVector elemWiseMultiply(FieldVector X, FieldVector Y) {
+        FieldVector result = X.copy();
+        result.multiplyInPlace(Y);
         return result;
     }
 
-    public static List<Share> addVec(List<Share> X, List<BigInteger> Y) {
-        if (X.size() != Y.size()) {
-            throw new IllegalArgumentException("X and Y must have the same size.");
+    /**
+     * 若Y中的元素为false，将X中对应的元素设置为missing
+     *
+     * @param X
+     * @param Y
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends FieldVector> T doFilter(T X, BitSet Y) {
+        T result = (T) X.copy();
+        for (int i = Y.nextClearBit(0); i < X.size(); i = Y.nextClearBit(i + 1)) {
+            result.setMissing(i);
         }
-        List<Share> result = new ArrayList<>();
-        Iterator<Share> iterator = X.iterator();
-        Iterator<BigInteger> iteratorY = Y.iterator();
-        while (iterator.hasNext()) {
-            Share valuesX = iterator.next();
-            BigInteger valuesY = iteratorY.next();
-            if (valuesX != null && valuesY != null) {
-                result.add(valuesX.add(valuesY));
-            } else {
-                result.add(null);
-            }
+        return result;
+    }
 
+    /**
+     * @return one share of the sum of the present entries, missing if all entries are missing
+     */
+    public static ShareVector reduceSum(ShareVector xList) {
+        ShareVector result = new ShareVector(xList.getParty_id(), 1);
+        if (xList.countMissing() == xList.size()) {
+            result.setMissing(0);
+            return result;
         }
+        System.arraycopy(xList.sumLimbs(), 0, result.getLimbs(), 0, Params.FIELD.limbs());
         return result;
     }
 
+    /**
+     * @return the sum of the present entries, zero if all entries are missing
+     */
+    public static FieldVector reduceSumClear(FieldVector xList) {
+        FieldVector result = new FieldVector(1);
+        System.arraycopy(xList.sumLimbs(), 0, result.getLimbs(), 0, Params.FIELD.limbs());
+        return result;
+    }
 
-    public static List<BigInteger> elemWiseMultiply(List<BigInteger> X, List<BigInteger> Y) {
-        if (X.size() != Y.size()) {
-            throw new IllegalArgumentException("X and Y must have the same size.");
-        }
-        List<BigInteger> result = new ArrayList<>();
-        Iterator<BigInteger> iterator = X.iterator();
-        Iterator<BigInteger> iteratorY = Y.iterator();
-        while (iterator.hasNext()) {
-            BigInteger valuesX = iterator.next();
-            BigInteger valuesY = iteratorY.next();
-            if (valuesX != null && valuesY != null) {
-                result.add(valuesX.multiply(valuesY).mod(Params.P));
-            } else {
-                result.add(null);
-            }
+    public static FieldVector dotProduct(FieldVector X, FieldVector Y) {
+        FieldVector result = new FieldVector(1);
+        System.arraycopy(X.dotLimbs(Y), 0, result.getLimbs(), 0, Params.FIELD.limbs());
+        return result;
+    }
 
-        }
+    public static ShareVector dotProduct2(ShareVector X, FieldVector Y) {
+        ShareVector result = new ShareVector(X.getParty_id(), 1);
+        System.arraycopy(X.dotLimbs(Y), 0, result.getLimbs(), 0, Params.FIELD.limbs());
         return result;
     }
 
     /**
-     * 若Y中的元素为false，将X中对应的元素设置为null
+     * Fused Beaver step of the multiplication gates, element-wise:
+     * [Delta_z] = [c] + [lambda_z] - [a] * temp_y - temp_x * [b].
+     * Both products go into one unreduced accumulator, so each element is reduced only once.
      *
-     * @param X
-     * @param Y
-     * @return
+     * @param lambda null to leave [lambda_z] out, e.g. when it is added after a later step
+     * @return missing where any operand is missing
      */
-    public static <T> List<T> doFilter(List<T> X, List<Boolean> Y) {
-        if (X.size() != Y.size()) {
-            throw new IllegalArgumentException("X and Y must have the same size.");
+    public static ShareVector beaverMultiply(ShareVector c, ShareVector lambda, ShareVector a, FieldVector temp_y,
+                                             ShareVector b, FieldVector temp_x) {
+        checkSizes(c, a, temp_y, b, temp_x);
+        Field field = Params.FIELD;
+        int n = field.limbs();
+        ShareVector result = c.copy(); // [c] + [lambda_z] is the start of every accumulator
+        if (lambda != null) {
+            result.addInPlace(lambda);
         }
-        List<T> result = new ArrayList<>();
-        Iterator<T> iterator = X.iterator();
-        Iterator<Boolean> iteratorY = Y.iterator();
-        while (iterator.hasNext()) {
-            T valuesX = iterator.next();
-            Boolean valuesY = iteratorY.next();
-            if (valuesY == true) {
-                result.add(valuesX);
-            } else {
-                result.add(null);
+        long[] acc = new long[field.wideLimbs()];
+        long[] neg = field.newElement();
+        long[] out = result.getLimbs();
+        for (int i = 0, off = 0; i < result.size(); i++, off += n) {
+            if (result.isMissing(i) || a.isMissing(i) || temp_y.isMissing(i) || b.isMissing(i)
+                    || temp_x.isMissing(i)) {
+                result.setMissing(i);
+                continue;
             }
+            field.initWide(out, off, acc, 0);
+            field.neg(temp_y.getLimbs(), off, neg, 0);
+            field.mulAdd(a.getLimbs(), off, neg, 0, acc, 0);
+            field.neg(temp_x.getLimbs(), off, neg, 0);
+            field.mulAdd(b.getLimbs(), off, neg, 0, acc, 0);
+            field.reduceWide(acc, 0, out, off);
         }
         return result;
     }
 
-    public static Share reduceSum(List<Share> xList) {
-        Share result = null;
-        for (int i = 0; i < xList.size(); i++) {
-            if (result == null) {
-                result = xList.get(i);
-            } else {
-                if (xList.get(i) != null) {
-                    result = result.add(xList.get(i));
-                }
+    /**
+     * Fused Beaver step of the dot-product gates:
+     * [Delta_z] = sum([c]) + [lambda_z] - &lt;[a], temp_y&gt; - &lt;temp_x, [b]&gt;, reduced only once.
+     * Like dotProduct2, a product is skipped where its clear operand is missing.
+     *
+     * @param c one share, or one per entry which are summed up
+     * @param lambda null to leave [lambda_z] out
+     * @param filter the entries to use, null for all
+     * @return one share, missing if no entry of c is used
+     */
+    public static ShareVector beaverDotProduct(ShareVector c, ShareVector lambda, ShareVector a, FieldVector temp_y,
+                                               ShareVector b, FieldVector temp_x, BitSet filter) {
+        checkSizes(a, temp_y, b, temp_x);
+        Field field = Params.FIELD;
+        int n = field.limbs();
+        ShareVector result = new ShareVector(c.getParty_id(), 1);
+        long[] sum = result.getLimbs();
+        boolean used = false;
+        for (int i = 0; i < c.size(); i++) {
+            if (!c.isMissing(i) && (filter == null || filter.get(i))) {
+                field.add(sum, 0, c.getLimbs(), i * n, sum, 0);
+                used = true;
             }
         }
-        return result;
-    }
-
-    public static List<BigInteger> dotProduct(List<BigInteger> X, List<BigInteger> Y) {
-        if (X.size() != Y.size()) {
-            throw new IllegalArgumentException("X and Y must have the same size.");
+        if (!used || (lambda != null && lambda.isMissing(0))) {
+            result.setMissing(0);
+            return result;
         }
-        BigInteger result = BigInteger.ZERO;
-        Iterator<BigInteger> iterator = X.iterator();
-        Iterator<BigInteger> iteratorY = Y.iterator();
-        while (iterator.hasNext()) {
-            BigInteger valuesX = iterator.next();
-            BigInteger valuesY = iteratorY.next();
-            if (valuesX != null && valuesY != null) {
-                result = result.add(valuesX.multiply(valuesY).mod(Params.P));
+        if (lambda != null) {
+            field.add(sum, 0, lambda.getLimbs(), 0, sum, 0);
+        }
+        long[] acc = new long[field.wideLimbs()];
+        long[] neg = field.newElement();
+        field.initWide(sum, 0, acc, 0);
+        for (int i = 0, off = 0; i < a.size(); i++, off += n) {
+            if (filter != null && !filter.get(i)) {
+                continue;
+            }
+            if (!temp_y.isMissing(i)) {
+                field.neg(temp_y.getLimbs(), off, neg, 0);
+                field.mulAdd(a.getLimbs(), off, neg, 0, acc, 0);
+            }
+            if (!temp_x.isMissing(i)) {
+                field.neg(temp_x.getLimbs(), off, neg, 0);
+                field.mulAdd(b.getLimbs(), off, neg, 0, acc, 0);
             }
         }
-        return List.of(result);
+        field.reduceWide(acc, 0, sum, 0);
+        return result;
     }
 
-
-    public static List<Share> dotProduct2(List<Share> X, List<BigInteger> Y) {
-        if (X.size() != Y.size()) {
-            throw new IllegalArgumentException("X and Y must have the same size.");
-        }
-        BigInteger dotPro = BigInteger.ZERO;
-        Iterator<Share> iterator = X.iterator();
-        Iterator<BigInteger> iteratorY = Y.iterator();
-        while (iterator.hasNext()) {
-            Share valuesX = iterator.next();
-            BigInteger valuesY = iteratorY.next();
-            if (valuesX != null && valuesY != null) {
-                dotPro = dotPro.add(valuesX.getShr().multiply(valuesY).mod(Params.P));
+    private static void checkSizes(FieldVector first, FieldVector... others) {
+        for (FieldVector other : others) {
+            if (other.size() != first.size()) {
+                throw new IllegalArgumentException("X and Y must have the same size.");
             }
         }
-        return List.of(X.getFirst().setValue(dotPro));
     }
 
-    public static List<Share> elemWiseMultiply2(List<Share> X, List<BigInteger> Y) {
-        if (X.size() != Y.size()) {
-            throw new IllegalArgumentException("X and Y must have the same size.");
-        }
-        List<Share> result = new ArrayList<>();
-        Iterator<Share> iterator = X.iterator();
-        Iterator<BigInteger> iteratorY = Y.iterator();
-        while (iterator.hasNext()) {
-            Share valuesX = iterator.next();
-            BigInteger valuesY = iteratorY.next();
-            if (valuesX != null && valuesY != null) {
-                result.add(valuesX.multiply(valuesY));
-            } else {
-                result.add(null);
-            }
+    public static ShareVector elemWiseMultiply2(ShareVector X, FieldVector Y) {
+        ShareVector result = X.copy();
+        result.multiplyInPlace(Y);
+        return result;
+    }
 
-        }
+    /**
+     * multiply every share by the same constant, which is converted to the field only once
+     *
+     * @param X
+     * @param constant
+     * @return
+     */
+    public static ShareVector scaleSharesVec(ShareVector X, BigInteger constant) {
+        ShareVector result = X.copy();
+        result.scaleInPlace(Params.FIELD.fromBigInteger(constant));
         return result;
     }
 
+    /**
+     * multiply every value by the same constant, which is converted to the field only once
+     *
+     * @param X
+     * @param constant
+     * @return
+     */
+    public static FieldVector scaleClearVec(FieldVector X, BigInteger constant) {
+        FieldVector result = X.copy();
+        result.scaleInPlace(Params.FIELD.fromBigInteger(constant));
+        return result;
+    }
 
     /**
      * element-wise addition
@@ -260,51 +248,35 @@ public class LinearAlgebra {
      * @param Y
      * @return
      */
-    public static List<BigInteger> addBigIntVec(List<BigInteger> X, List<BigInteger> Y) {
-        if (X.size() != Y.size()) {
-            throw new IllegalArgumentException("X and Y must have the same size.");
-        }
-        List<BigInteger> result = new ArrayList<BigInteger>();
-        Iterator<BigInteger> iterator = X.iterator();
-        Iterator<BigInteger> iteratorY = Y.iterator();
-        while (iterator.hasNext()) {
-            BigInteger shareX = iterator.next();
-            BigInteger shareY = iteratorY.next();
-            if (shareX != null && shareY != null) {
-                result.add(shareX.add(shareY));
-            } else {
-                result.add(null);
-            }
-
-        }
+    public static FieldVector addClearVec(FieldVector X, FieldVector Y) {
+        FieldVector result = X.copy();
+        result.addInPlace(Y);
         return result;
     }
 
     /**
-     * element-wise addition
+     * element-wise addition, one vector per party
      *
      * @param X
      * @param Y
      * @return
      */
-    public static List<List<Share>> addShareMatrix(List<List<Share>> X, List<List<Share>> Y) {
+    public static List<ShareVector> addShareMatrix(List<ShareVector> X, List<ShareVector> Y) {
         if (X.isEmpty() || X.size() != Y.size()) {
             throw new IllegalArgumentException("X and Y must have the same size.");
         }
-        List<List<Share>> result = new ArrayList<>();
+        List<ShareVector> result = new ArrayList<>();
 
-        Iterator<List<Share>> iterator = X.iterator();
-        Iterator<List<Share>> iteratorY = Y.iterator();
+        Iterator<ShareVector> iterator = X.iterator();
+        Iterator<ShareVector> iteratorY = Y.iterator();
         while (iterator.hasNext()) {
-            List<Share> shareX = iterator.next();
-            List<Share> shareY = iteratorY.next();
+            ShareVector shareX = iterator.next();
+            ShareVector shareY = iteratorY.next();
             if (shareX != null && shareY != null) {
-                List<Share> shareZ = addSharesVec(shareX, shareY);
-                result.add(shareZ);
+                result.add(addSharesVec(shareX, shareY));
             } else {
                 result.add(null);
             }
-
         }
         return result;
     }
@@ -316,42 +288,39 @@ public class LinearAlgebra {
      * @param Y
      * @return
      */
-    public static List<List<BigInteger>> addBigIntMatrix(List<List<BigInteger>> X, List<List<BigInteger>> Y) {
+    public static List<FieldVector> addClearMatrix(List<FieldVector> X, List<FieldVector> Y) {
         if (X.isEmpty() || X.size() != Y.size() || X.get(0).size() != Y.get(0).size()) {
             throw new IllegalArgumentException("X and Y must have the same size.");
         }
-        List<List<BigInteger>> result = new ArrayList<>();
+        List<FieldVector> result = new ArrayList<>();
 
-        Iterator<List<BigInteger>> iterator = X.iterator();
-        Iterator<List<BigInteger>> iteratorY = Y.iterator();
+        Iterator<FieldVector> iterator = X.iterator();
+        Iterator<FieldVector> iteratorY = Y.iterator();
         while (iterator.hasNext()) {
-            List<BigInteger> shareX = iterator.next();
-            List<BigInteger> shareY = iteratorY.next();
+            FieldVector shareX = iterator.next();
+            FieldVector shareY = iteratorY.next();
             if (shareX != null && shareY != null) {
-                List<BigInteger> shareZ = addBigIntVec(shareX, shareY);
-                result.add(shareZ);
+                result.add(addClearVec(shareX, shareY));
             } else {
                 result.add(null);
             }
-
         }
         return result;
     }
 
-    public static List<List<Share>> subtractShareMatrix(List<List<Share>> X, List<List<Share>> Y) {
+    public static List<ShareVector> subtractShareMatrix(List<ShareVector> X, List<ShareVector> Y) {
         if (X.isEmpty() || X.size() != Y.size()) {
             throw new IllegalArgumentException("X and Y should not be empty and must have the same size.");
         }
-        List<List<Share>> result = new ArrayList<>();
+        List<ShareVector> result = new ArrayList<>();
 
-        Iterator<List<Share>> iterator = X.iterator();
-        Iterator<List<Share>> iteratorY = Y.iterator();
+        Iterator<ShareVector> iterator = X.iterator();
+        Iterator<ShareVector> iteratorY = Y.iterator();
         while (iterator.hasNext()) {
-            List<Share> shareX = iterator.next();
-            List<Share> shareY = iteratorY.next();
+            ShareVector shareX = iterator.next();
+            ShareVector shareY = iteratorY.next();
             if (shareX != null && shareY != null) {
-                List<Share> shareZ = subtractSharesVec(shareX, shareY);
-                result.add(shareZ);
+                result.add(subtractSharesVec(shareX, shareY));
             } else {
                 result.add(null);
             }
@@ -1,13 +1,10 @@
 package fptd.utils;
 
-import static fptd.Params.N;
-
+import fptd.FieldVector;
 import fptd.Params;
-import fptd.Share;
+import fptd.ShareVector;
+import fptd.sharing.PackedShamirSharing;
 import fptd.sharing.ShamirSharing;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
@@ -19,6 +16,8 @@ import java.util.TreeSet;
 
 public class Tool {
 
+    private static final ShamirSharing SHARING = new ShamirSharing(); // reused for every opening
+
     public static BigInteger getRand() {
         Random random = new Random();
         BigInteger r = new BigInteger(Params.P.bitLength() - 20, random);
@@ -30,7 +29,7 @@ public class Tool {
 
     public static BigInteger getRand(int bitlength) {
         Random random = new Random();
-        BigInteger r = new BigInteger(64, random);
+        BigInteger r = new BigInteger(64, random).mod(Params.P); // only shrinks anything in a small field
 //        BigInteger r = BigInteger.valueOf(345435765).multiply(BigInteger.valueOf(1000));
 //        int bitlen = BigInteger.valueOf(345435765).multiply(BigInteger.valueOf(1000)).bitLength();
 //        BigInteger r = new BigInteger(bitlen, random);
@@ -49,19 +48,21 @@ public class Tool {
      * @param receivedSharesFromServers, shares from N servers with N rows, dim columns
      * @return
      */
-    public static List<BigInteger> openShares2Values(int dim, List<Object> receivedSharesFromServers) {
-        List<BigInteger> result = new ArrayList<>();
-        ShamirSharing sharing = new ShamirSharing();
-        for (int colIdx = 0; colIdx < dim; colIdx++) {
-            List<Share> shrsToRecover = new ArrayList<>();
-            for (int rowIdx = 0; rowIdx < N; rowIdx++) {
-                List<Share> row = (List<Share>) receivedSharesFromServers.get(rowIdx);
-                shrsToRecover.add(row.get(colIdx));
-            }
-            BigInteger lambda = sharing.recover(shrsToRecover);
-            result.add(lambda);
-        }
-        return result;
+    public static FieldVector openShares2Values(int dim, List<ShareVector> receivedSharesFromServers) {
+        return SHARING.recoverVector(receivedSharesFromServers, dim);
+    }
+
+    /**
+     * recover packed shares from N servers to get the values in clear
+     *
+     * @param dim, the number of values, each row has sharing.blocks(dim) packed shares
+     * @param degree, the degree of the opened polynomials
+     * @param receivedSharesFromServers, packed shares from N servers with N rows
+     * @return
+     */
+    public static FieldVector openPackedShares2Values(PackedShamirSharing sharing, int dim, int degree,
+            List<ShareVector> receivedSharesFromServers) {
+        return sharing.recoverVector(receivedSharesFromServers, dim, degree);
     }
 
     public static List<BigInteger> getRands(int size) {
@@ -151,22 +152,6 @@ public class Tool {
         }
     }
 
-    /*
-     * return the byte len of the obj
-     * */
-    public static int getObjSize(Object obj) {
-        ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-        try (ObjectOutputStream out = new ObjectOutputStream(byteOut)) {
-            out.writeObject(obj);
-            out.flush();
-
-//            ObjectInputStream in = new ObjectInputStream();
-            return byteOut.toByteArray().length;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
 //    public static int countMissingValue(List<List<BigInteger>> missingValuesMatrix, int workerIdx){
 //        List<BigInteger> list = missingValuesMatrix.get(workerIdx);
 //        int result = 0;
@@ -177,16 +162,5 @@ public class Tool {
 //        }
 //        return result;
 //    }
-
-    public static void main(String[] args) {
-        Share s1 = new Share(1, BigInteger.ONE);
-        Share s2 = new Share(1, BigInteger.ONE);
-        Share s3 = new Share(1, BigInteger.ONE);
-        List<Share> list = List.of(s1, s2);
-        System.out.println(getObjSize(s1));
-        System.out.println(getObjSize(s2));
-        System.out.println(getObjSize(s3));
-        System.out.println(getObjSize(list));
-    }
 }
 
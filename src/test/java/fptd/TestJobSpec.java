@@ -0,0 +1,52 @@
+package fptd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * The submit line of PartyDaemon and the job line the king announces, see JobSpec.parse
+ */
+public class TestJobSpec {
+
+    private static String[] tokens(String line) {
+        return line.trim().split("\\s+");
+    }
+
+    @Test
+    public void testParse() {
+        JobSpec spec = JobSpec.parse(tokens("submit weather data/answer.csv data/truth.csv false 3"), 1);
+        assertEquals("weather", spec.getJobName());
+        assertEquals("data/answer.csv", spec.getSensingDataFile());
+        assertEquals("data/truth.csv", spec.getTruthFile());
+        assertFalse(spec.isCategoricalData());
+        assertEquals(3, spec.getIterations());
+
+        JobSpec announced = JobSpec.parse(tokens("job 7 " + spec.toLine()), 2); // as a follower reads it
+        assertEquals(spec.toLine(), announced.toLine());
+        assertTrue(JobSpec.parse(tokens("dog a.csv b.csv true 1"), 0).isCategoricalData());
+    }
+
+    @Test
+    public void testRejectMalformedSubmit() {
+        expectRejected("submit");
+        expectRejected("submit weather answer.csv truth.csv false"); // no iterations
+        expectRejected("submit weather answer.csv truth.csv false 3 extra");
+        expectRejected("submit weather answer.csv truth.csv yes 3");
+        expectRejected("submit weather answer.csv truth.csv false three");
+        expectRejected("submit weather answer.csv truth.csv false 0");
+        expectRejected("submit weather answer.csv truth.csv false -2");
+    }
+
+    private static void expectRejected(String line) {
+        try {
+            JobSpec.parse(tokens(line), 1);
+            fail("Parsed " + line);
+        } catch (IllegalArgumentException expected) {
+            // as intended
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package fptd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import fptd.net.ClusterConfig;
+import fptd.truthDiscovery.optimized.TDOfflineOptimal;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * N daemons on ephemeral ports of the loopback run two jobs one after another on the connections they open once,
+ * and stop on shutdown. Every daemon is its own JVM, as deployed: the parties of a job read DataManager, which is
+ * static.
+ */
+public class TestPartyDaemon {
+
+    private static final String[] JOBS = {"daemon-test1", "daemon-test2"};
+    private static final int ITERATIONS = 1;
+    private static final long WAIT_MILLIS = 120_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final int iterTD = Params.ITER_TD;
+    private final List<Process> daemons = new ArrayList<>();
+
+    @After
+    public void restore() throws IOException {
+        Params.ITER_TD = iterTD;
+        for (Process daemon : daemons) {
+            daemon.destroyForcibly();
+        }
+        for (String job : JOBS) {
+            for (int party_id = 0; party_id < Params.N; party_id++) {
+                Files.deleteIfExists(Path.of(Params.FAKE_OFFLINE_DIR, job + "-party-" + party_id + ".bin"));
+            }
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * 3 workers answering 4 questions
+     */
+    private JobSpec job(String name) throws IOException {
+        File answers = folder.newFile(name + "-answer.csv");
+        File truths = folder.newFile(name + "-truth.csv");
+        Files.write(answers.toPath(), List.of("question,worker,answer",
+                "1,1,20", "2,1,31", "3,1,44", "4,1,50",
+                "1,2,22", "2,2,29", "3,2,40", "4,2,53",
+                "1,3,21", "2,3,35", "3,3,41", "4,3,49"));
+        Files.write(truths.toPath(), List.of("question,truth", "1,21.0", "2,30.0", "3,42.0", "4,51.0"));
+        return new JobSpec(name, answers.getPath(), truths.getPath(), false, ITERATIONS);
+    }
+
+    private void start(String... args) throws IOException {
+        List<String> command = new ArrayList<>(List.of(Path.of(System.getProperty("java.home"), "bin", "java")
+                .toString(), "-cp", System.getProperty("java.class.path"), PartyDaemon.class.getName()));
+        command.addAll(List.of(args));
+        File log = folder.newFile("daemon-" + args[1] + ".log");
+        daemons.add(new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start());
+    }
+
+    private static Socket connectControl(int port) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (true) {
+            try {
+                return new Socket(InetAddress.getLoopbackAddress(), port);
+            } catch (ConnectException e) {
+                if (System.currentTimeMillis() >= deadline) {
+                    throw e;
+                }
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    /**
+     * @return the accuracies of the job, after its accepted, done and end replies
+     */
+    private static Map<String, Double> submit(BufferedReader in, PrintWriter out, JobSpec spec, int jobId)
+            throws IOException {
+        out.println("submit " + spec.toLine());
+        assertEquals("accepted " + jobId, in.readLine());
+        String done = in.readLine();
+        assertTrue(done, done.matches("done " + jobId + " \\d+"));
+        Map<String, Double> accuracies = new TreeMap<>();
+        String line;
+        while (!(line = in.readLine()).equals("end")) {
+            String[] tokens = line.split(" ");
+            assertEquals(line, 3, tokens.length);
+            assertEquals(line, "accuracy", tokens[0]);
+            accuracies.put(tokens[1], Double.parseDouble(tokens[2]));
+        }
+        return accuracies;
+    }
+
+    @Test
+    public void testTwoJobsThenShutdown() throws IOException, InterruptedException {
+        List<String> lines = new ArrayList<>(List.of("threshold " + Params.T, "seed 3"));
+        int[] ports = new int[Params.N];
+        for (int party_id = 0; party_id < Params.N; party_id++) {
+            ports[party_id] = freePort();
+            lines.add("party " + party_id + " 127.0.0.1 " + ports[party_id]);
+        }
+        File config = folder.newFile("cluster.conf");
+        Files.write(config.toPath(), lines);
+        ClusterConfig cluster = ClusterConfig.read(config.getPath());
+        cluster.checkParams();
+
+        List<JobSpec> specs = new ArrayList<>();
+        Params.ITER_TD = ITERATIONS;
+        for (String name : JOBS) {
+            JobSpec spec = job(name);
+            new TDOfflineOptimal(3, 4, name).runTDOffline(); // as PartyMain offline does
+            specs.add(spec);
+        }
+
+        int controlPort = freePort();
+        for (int party_id = 0; party_id < Params.N; party_id++) {
+            start(config.getPath(), String.valueOf(party_id), String.valueOf(controlPort));
+        }
+
+        try (Socket control = connectControl(controlPort);
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(control.getInputStream(), StandardCharsets.UTF_8));
+                PrintWriter out = new PrintWriter(control.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            Map<String, Double> first = submit(in, out, specs.get(0), 1);
+            assertFalse(first.isEmpty());
+            for (double accuracy : first.values()) {
+                assertTrue(Double.isFinite(accuracy));
+            }
+
+            // the parties stopped listening once connected, so job 2 can only run on the connections of job 1
+            for (int port : ports) {
+                try {
+                    new Socket(InetAddress.getLoopbackAddress(), port).close();
+                    fail("Port " + port + " still accepts connections");
+                } catch (ConnectException expected) {
+                    // as intended
+                }
+            }
+            Map<String, Double> second = submit(in, out, specs.get(1), 2); // the same data under another job name
+            assertEquals(first.keySet(), second.keySet());
+            for (String name : first.keySet()) { // up to the rounding of the random offline material
+                assertEquals(name, first.get(name), second.get(name), 1e-3);
+            }
+
+            out.println("shutdown");
+            assertEquals("bye", in.readLine());
+        }
+        for (int party_id = 0; party_id < Params.N; party_id++) {
+            Process daemon = daemons.get(party_id);
+            assertTrue("daemon " + party_id + " still runs", daemon.waitFor(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+            assertEquals("exit of daemon " + party_id, 0, daemon.exitValue());
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package fptd.field;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import fptd.Params;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * The limb kernels of every Field against BigIntegerField over the same modulus, and BigIntegerField against
+ * BigInteger mod p, on 0, 1, p - 1 and seeded random elements. MontgomeryField also runs over a 100-bit prime, for
+ * which R > 4m and reduceWide takes its slow path.
+ */
+@RunWith(Parameterized.class)
+public class TestFieldKernels {
+
+    private static final int RANDOM_ELEMENTS = 40;
+    private static final int CHAIN = 2000; // products summed before a single reduceWide
+
+    private final Field field;
+    private final Field oracle;
+    private final BigInteger p;
+    private final Random random = new Random(20240601L);
+
+    public TestFieldKernels(String name, Field field) {
+        this.field = field;
+        this.oracle = new BigIntegerField(field.getModulus());
+        this.p = field.getModulus();
+    }
+
+    @Parameters(name = "{0}")
+    public static List<Object[]> fields() {
+        BigInteger prime100 = BigInteger.probablePrime(100, new Random(7));
+        return List.of(
+                new Object[]{"montgomery", Field.byName(MontgomeryField.NAME, Params.P)},
+                new Object[]{"montgomery-100", Field.byName(MontgomeryField.NAME, prime100)},
+                new Object[]{"mersenne61", Field.byName(Mersenne61Field.NAME, Params.P)},
+                new Object[]{"biginteger", Field.byName(BigIntegerField.NAME, Params.P)});
+    }
+
+    private List<BigInteger> elements() {
+        List<BigInteger> result = new ArrayList<>(List.of(BigInteger.ZERO, BigInteger.ONE, BigInteger.TWO,
+                p.subtract(BigInteger.ONE), p.subtract(BigInteger.TWO), p.shiftRight(1)));
+        for (int i = 0; i < RANDOM_ELEMENTS; i++) {
+            result.add(randomElement());
+        }
+        return result;
+    }
+
+    private BigInteger randomElement() {
+        return new BigInteger(p.bitLength() + 8, random).mod(p);
+    }
+
+    /**
+     * @return the element at src[off], whose limbs, in whatever form, must be below p as well
+     */
+    private static BigInteger read(Field field, long[] src, int off) {
+        assertTrue(Limbs.read(src, off, field.limbs()).compareTo(field.getModulus()) < 0);
+        return field.toBigInteger(src, off);
+    }
+
+    /**
+     * The oracle must give the reference value and the field the oracle's
+     */
+    private void check(BigInteger reference, long[] oracleDst, long[] dst) {
+        BigInteger expected = read(oracle, oracleDst, 0);
+        assertEquals(reference.mod(p), expected);
+        assertEquals(expected, read(field, dst, 0));
+    }
+
+    @Test
+    public void testByName() {
+        Field named = Field.byName(field.getName().toUpperCase(), p);
+        assertSame(field.getClass(), named.getClass());
+        assertEquals(p, named.getModulus());
+        assertEquals(field.limbs(), named.limbs());
+        try {
+            Field.byName("no-such-field", p);
+            throw new AssertionError("An unknown field was accepted");
+        } catch (IllegalArgumentException expected) {
+            // as intended
+        }
+    }
+
+    @Test
+    public void testLimbs() {
+        for (int limbs = 1; limbs <= 8; limbs++) {
+            for (int i = 0; i < RANDOM_ELEMENTS; i++) {
+                BigInteger value = new BigInteger(64 * limbs, random);
+                assertEquals(value, Limbs.read(Limbs.toLimbs(value, limbs), 0, limbs));
+            }
+            BigInteger max = BigInteger.ONE.shiftLeft(64 * limbs).subtract(BigInteger.ONE);
+            assertEquals(max, Limbs.read(Limbs.toLimbs(max, limbs), 0, limbs));
+        }
+    }
+
+    @Test
+    public void testFromAndToBigInteger() {
+        List<BigInteger> values = new ArrayList<>(elements());
+        values.addAll(List.of(p, p.add(BigInteger.ONE), p.shiftLeft(3).add(BigInteger.TEN),
+                BigInteger.ONE.negate(), p.negate(), new BigInteger(2 * p.bitLength() + 64, random)));
+        for (BigInteger value : values) {
+            check(value, oracle.fromBigInteger(value), field.fromBigInteger(value));
+        }
+    }
+
+    @Test
+    public void testAddSubNegMul() {
+        List<BigInteger> values = elements();
+        long[] dst = field.newElement();
+        long[] oracleDst = oracle.newElement();
+        for (BigInteger x : values) {
+            long[] a = field.fromBigInteger(x);
+            long[] oa = oracle.fromBigInteger(x);
+            field.neg(a, 0, dst, 0);
+            oracle.neg(oa, 0, oracleDst, 0);
+            check(x.negate(), oracleDst, dst);
+            for (BigInteger y : values) {
+                long[] b = field.fromBigInteger(y);
+                long[] ob = oracle.fromBigInteger(y);
+                field.add(a, 0, b, 0, dst, 0);
+                oracle.add(oa, 0, ob, 0, oracleDst, 0);
+                check(x.add(y), oracleDst, dst);
+                field.sub(a, 0, b, 0, dst, 0);
+                oracle.sub(oa, 0, ob, 0, oracleDst, 0);
+                check(x.subtract(y), oracleDst, dst);
+                field.mul(a, 0, b, 0, dst, 0);
+                oracle.mul(oa, 0, ob, 0, oracleDst, 0);
+                check(x.multiply(y), oracleDst, dst);
+            }
+        }
+    }
+
+    @Test
+    public void testAliasingAndOffsets() {
+        int limbs = field.limbs();
+        BigInteger x = randomElement();
+        BigInteger y = randomElement();
+        long[] buffer = field.newElements(3);
+        field.fromBigInteger(x, buffer, limbs);
+        field.fromBigInteger(y, buffer, 2 * limbs);
+        field.mul(buffer, limbs, buffer, 2 * limbs, buffer, limbs); // dst aliases a
+        assertEquals(x.multiply(y).mod(p), read(field, buffer, limbs));
+        field.add(buffer, limbs, buffer, limbs, buffer, limbs); // dst aliases both
+        assertEquals(x.multiply(y).shiftLeft(1).mod(p), read(field, buffer, limbs));
+        assertArrayEquals(new long[limbs], Arrays.copyOf(buffer, limbs)); // untouched
+    }
+
+    @Test
+    public void testLazySum() {
+        BigInteger max = p.subtract(BigInteger.ONE);
+        checkChain(max, max, max, CHAIN); // the most carries
+        checkChain(BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO, CHAIN);
+        checkChain(BigInteger.ONE, max, BigInteger.ONE, 1);
+        for (int i = 0; i < 5; i++) {
+            long[] acc = new long[field.wideLimbs()];
+            long[] oracleAcc = new long[oracle.wideLimbs()];
+            BigInteger start = randomElement();
+            field.initWide(field.fromBigInteger(start), 0, acc, 0);
+            oracle.initWide(oracle.fromBigInteger(start), 0, oracleAcc, 0);
+            BigInteger reference = start;
+            for (int j = 0; j < CHAIN; j++) {
+                BigInteger x = randomElement();
+                BigInteger y = j % 7 == 0 ? max : randomElement();
+                field.mulAdd(field.fromBigInteger(x), 0, field.fromBigInteger(y), 0, acc, 0);
+                oracle.mulAdd(oracle.fromBigInteger(x), 0, oracle.fromBigInteger(y), 0, oracleAcc, 0);
+                reference = reference.add(x.multiply(y));
+            }
+            long[] dst = field.newElement();
+            long[] oracleDst = oracle.newElement();
+            field.reduceWide(acc, 0, dst, 0);
+            oracle.reduceWide(oracleAcc, 0, oracleDst, 0);
+            check(reference, oracleDst, dst);
+        }
+    }
+
+    private void checkChain(BigInteger start, BigInteger x, BigInteger y, int products) {
+        long[] acc = new long[field.wideLimbs()];
+        field.initWide(field.fromBigInteger(start), 0, acc, 0);
+        long[] a = field.fromBigInteger(x);
+        long[] b = field.fromBigInteger(y);
+        for (int j = 0; j < products; j++) {
+            field.mulAdd(a, 0, b, 0, acc, 0);
+        }
+        long[] dst = field.newElement();
+        field.reduceWide(acc, 0, dst, 0);
+        BigInteger expected = start.add(x.multiply(y).multiply(BigInteger.valueOf(products)));
+        assertEquals(expected.mod(p), read(field, dst, 0));
+    }
+
+    @Test
+    public void testRandomIsReduced() {
+        long[] dst = field.newElement();
+        for (int i = 0; i < 200; i++) {
+            field.random(random, dst, 0);
+            read(field, dst, 0);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package fptd.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestClusterConfig {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String write(String... lines) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), List.of(lines));
+        return file.getPath();
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        ClusterConfig cluster = ClusterConfig.read(write(
+                "# three parties",
+                "threshold 2",
+                "",
+                "party 2 10.0.0.3 9000   # listed out of order",
+                "party 0 10.0.0.1 8874",
+                "  party 1   10.0.0.2   8875  ",
+                "seed 42"));
+        assertEquals(3, cluster.parties());
+        assertEquals(2, cluster.getThreshold());
+        assertEquals(42, cluster.getSeed());
+        assertEquals("10.0.0.1", cluster.getAddress(0).getHostString());
+        assertEquals(8875, cluster.getAddress(1).getPort());
+        assertEquals("10.0.0.3", cluster.getAddress(2).getHostString());
+        assertEquals(0, ClusterConfig.read(write("threshold 1", "party 0 localhost 1")).getSeed());
+    }
+
+    @Test
+    public void testRejectMissingParty() throws IOException {
+        expectRejected("no address for party 1", "threshold 2", "party 0 a 1", "party 2 c 1");
+        expectRejected("no address for party 0", "threshold 1");
+    }
+
+    @Test
+    public void testRejectDuplicateParty() throws IOException {
+        expectRejected("listed twice", "threshold 1", "party 0 a 1", "party 0 b 2");
+    }
+
+    @Test
+    public void testRejectThreshold() throws IOException {
+        expectRejected("threshold 3 for 2 parties", "threshold 3", "party 0 a 1", "party 1 b 1");
+        expectRejected("threshold 0", "threshold 0", "party 0 a 1");
+        expectRejected("no threshold", "party 0 a 1");
+    }
+
+    @Test
+    public void testRejectMalformedLine() throws IOException {
+        expectRejected(":2: unknown entry", "threshold 1", "parties 0 a 1");
+        expectRejected(":2:", "threshold 1", "party 0 a");
+        expectRejected(":2:", "threshold 1", "party 0 a port");
+        expectRejected(":1:", "threshold one", "party 0 a 1");
+    }
+
+    private void expectRejected(String message, String... lines) throws IOException {
+        try {
+            ClusterConfig.read(write(lines));
+            fail("Read a bad cluster config");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains(message));
+        }
+    }
+}
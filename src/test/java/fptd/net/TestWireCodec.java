@@ -0,0 +1,236 @@
+package fptd.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import fptd.FieldVector;
+import fptd.Params;
+import fptd.ShareVector;
+import fptd.field.Mersenne61Field;
+import fptd.field.MontgomeryField;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Round trips of WireCodec frames and the frames it must reject. The limbs of the field of Params go over the wire,
+ * so testOtherLimbWidth runs the class once more in a JVM with a field of the other width.
+ */
+public class TestWireCodec {
+
+    private static final String CHILD = "fptd.test.wireCodecChild";
+
+    private final Random random = new Random(42);
+
+    private ShareVector shares(int party_id, int size, int... missing) {
+        ShareVector result = new ShareVector(party_id, size);
+        fill(result, missing);
+        return result;
+    }
+
+    private FieldVector clear(int size, int... missing) {
+        FieldVector result = new FieldVector(size);
+        fill(result, missing);
+        return result;
+    }
+
+    private void fill(FieldVector vector, int... missing) {
+        for (int i = 0; i < vector.size(); i++) {
+            vector.set(i, new BigInteger(Params.P.bitLength() + 8, random).mod(Params.P));
+        }
+        if (vector.size() > 0) {
+            vector.set(vector.size() - 1, Params.P.subtract(BigInteger.ONE));
+        }
+        for (int i : missing) {
+            vector.setMissing(i);
+        }
+    }
+
+    private static void assertSameVector(FieldVector expected, FieldVector actual) {
+        assertSame(expected.getClass(), actual.getClass());
+        if (expected instanceof ShareVector) {
+            assertEquals(((ShareVector) expected).getParty_id(), ((ShareVector) actual).getParty_id());
+        }
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.toBigIntegers(), actual.toBigIntegers()); // null where missing
+    }
+
+    private static FieldVector roundTrip(int session, FieldVector vector) {
+        ByteBuffer frame = WireCodec.encode(session, vector);
+        assertEquals(WireCodec.frameSize(vector), frame.remaining());
+        assertEquals(session, WireCodec.session(frame));
+        FieldVector decoded = WireCodec.decode(frame);
+        assertFalse(frame.hasRemaining());
+        return decoded;
+    }
+
+    @Test
+    public void testRoundTrip() {
+        List<FieldVector> vectors = List.of(
+                shares(3, 5),
+                shares(6, 130, 0, 63, 64, 65, 129), // the bitmap crosses two longs
+                shares(0, 64, 63),
+                clear(7),
+                clear(100, 1, 2, 99),
+                shares(2, 0),
+                clear(0),
+                shares(1, 3, 0, 1, 2)); // all missing, no limbs at all
+        int session = 0;
+        for (FieldVector vector : vectors) {
+            assertSameVector(vector, roundTrip(session++, vector));
+        }
+    }
+
+    @Test
+    public void testFramesBackToBack() {
+        ShareVector first = shares(4, 70, 3, 69);
+        FieldVector second = clear(9);
+        ByteBuffer buffer = ByteBuffer.allocate(WireCodec.frameSize(first) + WireCodec.frameSize(second));
+        WireCodec.encode(11, first, buffer);
+        WireCodec.encode(12, second, buffer);
+        assertFalse(buffer.hasRemaining());
+        buffer.flip();
+        assertEquals(11, WireCodec.session(buffer));
+        assertSameVector(first, WireCodec.decode(buffer));
+        assertEquals(12, WireCodec.session(buffer));
+        assertSameVector(second, WireCodec.decode(buffer));
+        assertSame(ByteOrder.BIG_ENDIAN, buffer.order()); // restored
+    }
+
+    @Test
+    public void testChannel() throws IOException {
+        ShareVector first = shares(5, 33, 10);
+        FieldVector second = clear(0);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        WritableByteChannel out = Channels.newChannel(bytes);
+        WireCodec.writeHello(out, 5, "circuit fingerprint");
+        WireCodec.write(out, WireCodec.encode(1, first));
+        WireCodec.write(out, WireCodec.encode(2, second));
+
+        ReadableByteChannel in = Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(5, WireCodec.readPartyId(in));
+        assertEquals("circuit fingerprint", WireCodec.readHandshake(in));
+        assertSameVector(first, WireCodec.decode(WireCodec.readFrame(in)));
+        assertSameVector(second, WireCodec.decode(WireCodec.readFrame(in)));
+        try {
+            WireCodec.readFrame(in);
+            fail("Read a frame after the end of the stream");
+        } catch (EOFException expected) {
+            // as intended
+        }
+    }
+
+    @Test
+    public void testRejectTruncatedFrame() throws IOException {
+        ByteBuffer frame = WireCodec.encode(1, shares(1, 10, 4));
+        ByteBuffer truncated = frame.duplicate();
+        truncated.limit(frame.limit() - 1);
+        expectRejected(truncated);
+
+        byte[] bytes = new byte[frame.remaining() - 3];
+        frame.duplicate().get(bytes);
+        try {
+            WireCodec.readFrame(Channels.newChannel(new ByteArrayInputStream(bytes)));
+            fail("Read a truncated frame");
+        } catch (EOFException expected) {
+            // as intended
+        }
+    }
+
+    @Test
+    public void testRejectCorruptFrame() {
+        ByteBuffer frame = WireCodec.encode(1, shares(1, 10));
+
+        ByteBuffer badType = copy(frame);
+        badType.put(WireCodec.HEADER_BYTES - 8, (byte) 9);
+        expectRejected(badType);
+
+        ByteBuffer missingFlag = copy(frame); // claims a bitmap it does not have
+        missingFlag.put(WireCodec.HEADER_BYTES - 7, (byte) 1);
+        expectRejected(missingFlag);
+
+        ByteBuffer wrongSize = copy(frame); // more entries than limbs
+        wrongSize.order(ByteOrder.LITTLE_ENDIAN).putInt(WireCodec.HEADER_BYTES - 4, 11);
+        expectRejected(wrongSize);
+
+        ByteBuffer hugeSize = copy(frame); // must not allocate for it
+        hugeSize.order(ByteOrder.LITTLE_ENDIAN).putInt(WireCodec.HEADER_BYTES - 4, Integer.MAX_VALUE);
+        expectRejected(hugeSize);
+        hugeSize.put(WireCodec.HEADER_BYTES - 7, (byte) 1);
+        expectRejected(hugeSize);
+
+        ByteBuffer negativeSize = copy(frame);
+        negativeSize.order(ByteOrder.LITTLE_ENDIAN).putInt(WireCodec.HEADER_BYTES - 4, -1);
+        expectRejected(negativeSize);
+
+        ByteBuffer shortLength = copy(frame); // below the header
+        shortLength.order(ByteOrder.LITTLE_ENDIAN).putInt(0, 4);
+        expectRejected(shortLength);
+
+        ByteBuffer badLength = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, 3);
+        try {
+            WireCodec.readFrame(Channels.newChannel(new ByteArrayInputStream(badLength.array())));
+            fail("Read a frame shorter than its header");
+        } catch (IOException expected) {
+            // as intended
+        }
+    }
+
+    @Test
+    public void testRejectOversizedHandshake() {
+        ByteBuffer hello = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putInt(1).putInt(1 << 20);
+        ReadableByteChannel in = Channels.newChannel(new ByteArrayInputStream(hello.array()));
+        try {
+            WireCodec.readPartyId(in);
+            WireCodec.readHandshake(in);
+            fail("Accepted a handshake of 1 MB");
+        } catch (IOException expected) {
+            // as intended
+        }
+    }
+
+    private static ByteBuffer copy(ByteBuffer frame) {
+        ByteBuffer result = ByteBuffer.allocate(frame.remaining());
+        result.put(frame.duplicate()).flip();
+        return result;
+    }
+
+    private static void expectRejected(ByteBuffer frame) {
+        try {
+            WireCodec.decode(frame);
+            fail("Decoded a bad frame");
+        } catch (IllegalArgumentException expected) {
+            // as intended
+        }
+    }
+
+    @Test
+    public void testOtherLimbWidth() throws IOException, InterruptedException {
+        if (Boolean.getBoolean(CHILD)) {
+            return;
+        }
+        String other = Params.FIELD.limbs() == 1 ? MontgomeryField.NAME : Mersenne61Field.NAME;
+        Process process = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-D" + CHILD + "=true", "-Dfptd.field=" + other, "-cp", System.getProperty("java.class.path"),
+                "org.junit.runner.JUnitCore", TestWireCodec.class.getName())
+                .redirectErrorStream(true).start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals(output, 0, process.waitFor());
+        assertTrue(output, output.contains("OK ("));
+    }
+}
@@ -0,0 +1,87 @@
+package fptd.offline;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import fptd.Params;
+import fptd.sharing.PseudoRandomSecretSharing;
+import fptd.sharing.SeededShamirSharing;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * The files of runOffline are the same for any number of threads, given the same share seeds and PRSS keys: every
+ * gate draws and writes in its planned segment whichever thread runs it and whenever.
+ */
+public class TestOfflineCircuitThreads {
+
+    private static final String JOB = "threads-test";
+    private static final int DIM = 5;
+
+    private final Map<Integer, byte[]> shareSeeds = SeededShamirSharing.generateSeeds(Params.T, Params.N);
+    private final Map<Integer, byte[]> prssKeys = PseudoRandomSecretSharing.generateKeys(Params.T, Params.N);
+
+    private static Path file(int threads, int party_id) {
+        return Path.of(Params.FAKE_OFFLINE_DIR, JOB + threads + "-party-" + party_id + FakeParty.FILE_SUFFIX);
+    }
+
+    @After
+    public void delete() throws IOException {
+        for (int threads : new int[]{1, 4}) {
+            for (int party_id = 0; party_id < Params.N; party_id++) {
+                Files.deleteIfExists(file(threads, party_id));
+            }
+        }
+    }
+
+    /**
+     * Gates that only draw from PRSS and the seeded dealer, several of them independent of each other
+     */
+    private void generate(int threads) {
+        FakeParty fakeParty = new FakeParty(JOB + threads, Params.N, shareSeeds, prssKeys);
+        OfflineCircuit circuit = new OfflineCircuit(fakeParty);
+        circuit.setThreads(threads);
+        OfflineGate a = circuit.input(0, DIM);
+        OfflineGate b = circuit.input(1, DIM);
+        OfflineGate c = circuit.input(2, DIM);
+        OfflineGate ab = circuit.elemWiseMult(a, b);
+        OfflineGate bc = circuit.elemWiseMult(b, c);
+        OfflineGate ca = circuit.elemWiseMultThenMulConst(c, a);
+        OfflineGate sum = circuit.add(circuit.subtract(ab, bc), ca);
+        circuit.addEndpoint(circuit.output(circuit.dotProduct(sum, circuit.scaling(a, BigInteger.TEN))));
+        circuit.addEndpoint(circuit.output(circuit.elemWiseMult(ab, ca)));
+        circuit.runOffline();
+        fakeParty.close();
+    }
+
+    @Test
+    public void testSameFilesForAnyThreads() throws IOException {
+        generate(1);
+        generate(4);
+        for (int party_id = 0; party_id < Params.N; party_id++) {
+            ByteBuffer sequential = ByteBuffer.wrap(Files.readAllBytes(file(1, party_id)));
+            ByteBuffer parallel = ByteBuffer.wrap(Files.readAllBytes(file(4, party_id)));
+            sequential.order(ByteOrder.LITTLE_ENDIAN);
+            parallel.order(ByteOrder.LITTLE_ENDIAN);
+            long count = sequential.getLong(FakeParty.COUNT_POSITION);
+            assertTrue(count > 0);
+            assertEquals(count, parallel.getLong(FakeParty.COUNT_POSITION));
+            // the headers differ in the offline id only
+            assertArrayEquals("entries of party " + party_id, entries(sequential), entries(parallel));
+        }
+    }
+
+    private static byte[] entries(ByteBuffer file) {
+        int dataStart = file.getInt(FakeParty.COUNT_POSITION + 8);
+        return Arrays.copyOfRange(file.array(), dataStart, file.capacity());
+    }
+}
@@ -0,0 +1,117 @@
+package fptd.offline;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * The written ranges of OfflineProgress, and await on another thread: it returns once its range is written,
+ * whatever the order and overlap of the writes, and fails once the writer finishes without it.
+ */
+public class TestOfflineProgress {
+
+    private static final long WAIT_SECONDS = 10;
+    private static final long BLOCKED_MILLIS = 100; // to see that an await still waits
+
+    private final Path file = Path.of("progress-test" + FakeParty.FILE_SUFFIX);
+    private final OfflineProgress progress = OfflineProgress.start(file, "id");
+
+    @After
+    public void finish() {
+        progress.finish();
+    }
+
+    /**
+     * On a thread of its own, as a pool may have fewer threads than awaits that block
+     */
+    private CompletableFuture<Void> await(long from, long to) {
+        return CompletableFuture.runAsync(() -> progress.await(from, to), command -> {
+            Thread thread = new Thread(command, "await-" + from + "-" + to);
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+
+    private static void assertReturns(CompletableFuture<Void> await) throws Exception {
+        await.get(WAIT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static void assertBlocks(CompletableFuture<Void> await) throws Exception {
+        try {
+            await.get(BLOCKED_MILLIS, TimeUnit.MILLISECONDS);
+            fail("Returned before the range was written");
+        } catch (TimeoutException expected) {
+            // as intended
+        }
+    }
+
+    @Test
+    public void testMergesRanges() throws Exception {
+        progress.written(10, 15);
+        progress.written(30, 40);
+        progress.written(5, 10); // touches the next
+        progress.written(12, 20); // overlaps the last
+        progress.written(32, 35); // inside
+        progress.written(0, 2);
+        assertReturns(await(5, 20));
+        assertReturns(await(30, 40));
+        assertReturns(await(0, 2));
+        assertReturns(await(7, 7)); // empty
+        assertReturns(await(50, 50));
+
+        CompletableFuture<Void> acrossGap = await(0, 40);
+        CompletableFuture<Void> beyondEnd = await(35, 41);
+        assertBlocks(acrossGap);
+        progress.written(20, 30); // touches both neighbours
+        assertBlocks(acrossGap); // 2 to 5 are still missing
+        progress.written(1, 6); // overlaps both neighbours
+        assertReturns(acrossGap);
+        assertBlocks(beyondEnd);
+        progress.written(40, 41);
+        assertReturns(beyondEnd);
+    }
+
+    @Test
+    public void testAwaitBlocksUntilWritten() throws Exception {
+        CompletableFuture<Void> first = await(0, 10);
+        CompletableFuture<Void> second = await(10, 20);
+        assertBlocks(first);
+        progress.written(10, 20); // out of order
+        assertReturns(second);
+        assertBlocks(first);
+        progress.written(0, 9);
+        assertBlocks(first);
+        progress.written(9, 10);
+        assertReturns(first);
+    }
+
+    @Test
+    public void testAwaitFailsAfterFinish() throws Exception {
+        progress.written(0, 10);
+        CompletableFuture<Void> waiting = await(5, 15);
+        assertBlocks(waiting);
+        assertSame(progress, OfflineProgress.find(file, "id"));
+        assertNull(OfflineProgress.find(file, "other id"));
+
+        progress.finish();
+        try {
+            waiting.get(WAIT_SECONDS, TimeUnit.SECONDS);
+            fail("Returned without the entries");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof IllegalStateException);
+        }
+        assertNull(OfflineProgress.find(file, "id")); // new readers read the whole file
+        assertReturns(await(0, 10)); // written before the end
+        assertFalse(await(10, 11).handle((result, e) -> e == null).get(WAIT_SECONDS, TimeUnit.SECONDS));
+    }
+}
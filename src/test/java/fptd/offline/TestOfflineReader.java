@@ -0,0 +1,169 @@
+package fptd.offline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import fptd.FieldVector;
+import fptd.Params;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * OfflineReader on a file of FakeParty: the entries as written, also through windows far smaller than an entry
+ * run so that reads cross them, and the files it must refuse.
+ */
+public class TestOfflineReader {
+
+    private static final String JOB = "reader-test";
+    private static final String FILE = JOB + "-party-0" + FakeParty.FILE_SUFFIX;
+    private static final int[] WRITES = {1, 17, 22}; // entries per write
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<BigInteger> written = new ArrayList<>();
+    private Path dir;
+
+    @Before
+    public void writeFile() throws IOException {
+        Random random = new Random(5);
+        FakeParty dealer = new FakeParty(JOB, Params.NUM_SERVER);
+        for (int size : WRITES) {
+            FieldVector values = new FieldVector(size);
+            for (int i = 0; i < size; i++) {
+                BigInteger value = i == 0 ? Params.P.subtract(BigInteger.ONE) : new BigInteger(64, random).mod(Params.P);
+                values.set(i, value);
+                written.add(value);
+            }
+            dealer.writeClearToIthParty(values, 0);
+        }
+        dealer.close();
+        dir = folder.getRoot().toPath();
+        for (int i = 0; i < Params.NUM_SERVER; i++) {
+            String name = JOB + "-party-" + i + FakeParty.FILE_SUFFIX;
+            Files.move(Path.of(Params.FAKE_OFFLINE_DIR, name), dir.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private List<BigInteger> read(OfflineReader reader, int entry, int entries) {
+        FieldVector result = new FieldVector(entries);
+        reader.read(entry, result.getLimbs(), 0, entries);
+        return result.toBigIntegers();
+    }
+
+    @Test
+    public void testRead() {
+        try (OfflineReader reader = new OfflineReader(dir.toString(), FILE)) {
+            assertEquals(FakeParty.fieldHeader(), reader.getFieldHeader());
+            assertFalse(reader.isStreaming());
+            assertEquals(written, read(reader, 0, written.size()));
+            assertEquals(written.subList(1, 18), read(reader, 1, 17));
+            try {
+                read(reader, written.size() - 1, 2);
+                fail("Read beyond the last entry");
+            } catch (IllegalStateException expected) {
+                // as intended
+            }
+        }
+    }
+
+    @Test
+    public void testReadAcrossWindows() {
+        int limbs = Params.FIELD.limbs();
+        // 3 longs split entries of several limbs, 5 entries do not divide the file
+        for (long windowBytes : new long[]{8, 24, 5L * limbs * 8}) {
+            try (OfflineReader reader = new OfflineReader(dir.toString(), FILE, windowBytes)) {
+                for (int entry = 0; entry < written.size(); entry += 3) {
+                    for (int entries = 1; entry + entries <= written.size(); entries += 4) {
+                        assertEquals("window of " + windowBytes + " bytes",
+                                written.subList(entry, entry + entries), read(reader, entry, entries));
+                    }
+                }
+                assertEquals(written, read(reader, 0, written.size()));
+            }
+        }
+        try {
+            new OfflineReader(dir.toString(), FILE, 12);
+            fail("Accepted a window that splits a long");
+        } catch (IllegalArgumentException expected) {
+            // as intended
+        }
+    }
+
+    @Test
+    public void testRejectMissingFile() {
+        expectRejected("no-such-file" + FakeParty.FILE_SUFFIX);
+    }
+
+    @Test
+    public void testRejectBadMagic() throws IOException {
+        corrupt(0, littleEndian(8).putLong(0, FakeParty.MAGIC + 1));
+        expectRejected(FILE);
+    }
+
+    @Test
+    public void testRejectOtherVersion() throws IOException {
+        corrupt(8, littleEndian(4).putInt(0, FakeParty.VERSION + 1));
+        expectRejected(FILE);
+    }
+
+    @Test
+    public void testRejectOtherField() throws IOException {
+        // the first byte of the field header, after its length
+        corrupt(FakeParty.COUNT_POSITION + 12 + 4, ByteBuffer.wrap(new byte[]{'%'}));
+        expectRejected(FILE);
+    }
+
+    @Test
+    public void testRejectOtherLimbs() throws IOException {
+        corrupt(12, littleEndian(4).putInt(0, Params.FIELD.limbs() + 1));
+        expectRejected(FILE);
+    }
+
+    @Test
+    public void testRejectTruncatedFile() throws IOException {
+        Path file = dir.resolve(FILE);
+        long size = Files.size(file);
+        for (long length : new long[]{size - 1, FakeParty.COUNT_POSITION + 11, 0}) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(length);
+            }
+            expectRejected(FILE);
+        }
+    }
+
+    private static ByteBuffer littleEndian(int bytes) {
+        return ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void corrupt(long position, ByteBuffer bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir.resolve(FILE), StandardOpenOption.WRITE)) {
+            channel.write(bytes, position);
+        }
+    }
+
+    private void expectRejected(String fileName) {
+        try {
+            new OfflineReader(dir.toString(), fileName).close();
+            fail("Opened a bad offline file");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains(fileName));
+        }
+    }
+}
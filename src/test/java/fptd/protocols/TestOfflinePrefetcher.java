@@ -0,0 +1,120 @@
+package fptd.protocols;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Which thread reads the material of a gate: the prefetcher, at most ahead gates before the scheduler, or the
+ * scheduler itself in take when the prefetcher has not got to the gate.
+ */
+public class TestOfflinePrefetcher {
+
+    private static final long WAIT_SECONDS = 10;
+
+    private final CountDownLatch release = new CountDownLatch(1); // of the reads of blocking gates
+    private final List<RecordingGate> gates = new ArrayList<>();
+    private OfflinePrefetcher prefetcher;
+
+    /**
+     * A gate without material, recording the thread that reads it
+     */
+    private final class RecordingGate extends Gate {
+
+        private final boolean blocking;
+        private final CountDownLatch read = new CountDownLatch(1);
+        private volatile Thread reader;
+
+        RecordingGate(boolean blocking) {
+            super(null, 1);
+            this.blocking = blocking;
+        }
+
+        @Override
+        void doReadOfflineFromFile() {
+        }
+
+        @Override
+        void readOfflineLazily() {
+            reader = Thread.currentThread();
+            read.countDown();
+            if (blocking) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+
+        boolean awaitRead() throws InterruptedException {
+            return read.await(WAIT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private void start(int ahead, boolean... blocking) {
+        for (boolean block : blocking) {
+            gates.add(new RecordingGate(block));
+        }
+        prefetcher = new OfflinePrefetcher(new ArrayList<>(gates), ahead, 0);
+    }
+
+    @After
+    public void close() {
+        release.countDown();
+        if (prefetcher != null) {
+            prefetcher.close();
+        }
+    }
+
+    @Test
+    public void testReadsAhead() throws InterruptedException {
+        start(2, false, false, false, false);
+        assertTrue(gates.get(0).awaitRead());
+        assertTrue(gates.get(1).awaitRead());
+        Thread.sleep(100);
+        assertEquals(1, gates.get(2).read.getCount()); // no more than ahead gates before the scheduler
+
+        prefetcher.take(gates.get(0));
+        assertTrue(gates.get(2).awaitRead());
+        for (int i = 0; i < 3; i++) {
+            assertTrue(gates.get(i).reader.getName().startsWith("offline-prefetch-"));
+        }
+    }
+
+    @Test
+    public void testTakeReadsUnreachedGate() throws InterruptedException {
+        start(1, true, false, false);
+        assertTrue(gates.get(0).awaitRead()); // the prefetcher waits in the read of gate 0
+
+        prefetcher.take(gates.get(2));
+        assertSame(Thread.currentThread(), gates.get(2).reader);
+        assertNotSame(Thread.currentThread(), gates.get(0).reader);
+
+        release.countDown();
+        prefetcher.take(gates.get(0));
+        prefetcher.take(gates.get(1));
+        assertTrue(gates.get(1).awaitRead());
+        assertSame(Thread.currentThread(), gates.get(2).reader); // not read again by the prefetcher
+    }
+
+    @Test
+    public void testTakeUnknownGate() {
+        start(1, false);
+        try {
+            prefetcher.take(new RecordingGate(false));
+            fail("Took a gate that is not scheduled");
+        } catch (IllegalArgumentException expected) {
+            // as intended
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package fptd.sharing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import fptd.FieldVector;
+import fptd.Params;
+import fptd.ShareVector;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Packed shares recover the secrets from any degree + 1 parties, fresh and after the product with a clear vector
+ * as in a Beaver step, and the partial recoveries of all the parties sum to the secrets.
+ */
+public class TestPackedShamirSharing {
+
+    private static final int T = Params.T;
+    private static final int N = Params.N;
+    private static final int K = 2;
+    private static final int DIM = 7; // the last block is padded
+
+    private final Random random = new Random(5);
+    private final PackedShamirSharing sharing = new PackedShamirSharing(K, T, N);
+
+    private FieldVector secrets(int size, int... missing) {
+        FieldVector result = new FieldVector(size);
+        for (int i = 0; i < size; i++) {
+            result.set(i, new BigInteger(Params.P.bitLength() + 8, random).mod(Params.P));
+        }
+        for (int i : missing) {
+            result.setMissing(i);
+        }
+        return result;
+    }
+
+    /**
+     * @return the rows of the parties whose ids are set in mask
+     */
+    private static List<ShareVector> rows(List<ShareVector> all, int mask) {
+        List<ShareVector> result = new ArrayList<>();
+        for (int party = 0; party < all.size(); party++) {
+            if ((mask & 1 << party) != 0) {
+                result.add(all.get(party));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Every subset of exactly degree + 1 parties recovers the secrets
+     */
+    private void assertRecovers(List<ShareVector> all, int degree, FieldVector secrets) {
+        int subsets = 0;
+        for (int mask = 0; mask < 1 << all.size(); mask++) {
+            if (Integer.bitCount(mask) != degree + 1) {
+                continue;
+            }
+            subsets++;
+            FieldVector recovered = sharing.recoverVector(rows(all, mask), secrets.size(), degree);
+            assertEquals("parties " + Integer.toBinaryString(mask), secrets.toBigIntegers(),
+                    recovered.toBigIntegers());
+        }
+        assertTrue(subsets > 1);
+    }
+
+    private FieldVector sumOfPartials(List<ShareVector> all, int dim) {
+        FieldVector sum = new FieldVector(dim);
+        for (ShareVector row : all) {
+            sum.addInPlace(sharing.partialRecover(row, dim));
+        }
+        return sum;
+    }
+
+    @Test
+    public void testFreshSharing() {
+        FieldVector secrets = secrets(DIM);
+        List<ShareVector> all = sharing.shareBatch(secrets);
+        assertEquals(N, all.size());
+        for (ShareVector row : all) {
+            assertEquals(sharing.blocks(DIM), row.size());
+        }
+        assertRecovers(all, sharing.degree(), secrets);
+        assertEquals(secrets.toBigIntegers(), sumOfPartials(all, DIM).toBigIntegers());
+    }
+
+    @Test
+    public void testProductWithClear() {
+        FieldVector secrets = secrets(DIM);
+        FieldVector clear = secrets(DIM);
+        List<ShareVector> all = sharing.shareBatch(secrets);
+        for (int party = 0; party < N; party++) {
+            all.get(party).multiplyInPlace(sharing.evaluateClear(party, clear));
+        }
+        FieldVector products = secrets.copy();
+        products.multiplyInPlace(clear);
+
+        assertTrue(sharing.productDegree() < N);
+        assertRecovers(all, sharing.productDegree(), products);
+        assertEquals(products.toBigIntegers(), sumOfPartials(all, DIM).toBigIntegers());
+    }
+
+    @Test
+    public void testMissingBlock() {
+        FieldVector secrets = secrets(DIM, 2);
+        List<ShareVector> all = sharing.shareBatch(secrets);
+        FieldVector recovered = sharing.recoverVector(all, DIM, sharing.degree());
+        for (int i = 0; i < DIM; i++) {
+            assertEquals("entry " + i, i / K == 1, recovered.isMissing(i)); // 2 and 3 share a block
+            if (!recovered.isMissing(i)) {
+                assertEquals(secrets.get(i), recovered.get(i));
+            }
+        }
+        assertFalse(sharing.partialRecover(all.get(0), DIM).isMissing(0));
+        assertTrue(sharing.partialRecover(all.get(0), DIM).isMissing(3));
+    }
+
+    /**
+     * The recovery coefficients are laid out per totalShares, so sharings of the same k and parties but of
+     * another number of parties must not share them
+     */
+    @Test
+    public void testOtherTotalShares() {
+        PackedShamirSharing fewer = new PackedShamirSharing(K, T, N - 1);
+        FieldVector secrets = secrets(DIM);
+        List<ShareVector> ofAll = sharing.shareBatch(secrets);
+        List<ShareVector> ofFewer = fewer.shareBatch(secrets);
+        int first = (1 << sharing.degree() + 1) - 1;
+        assertEquals(secrets.toBigIntegers(),
+                sharing.recoverVector(rows(ofAll, first), DIM, sharing.degree()).toBigIntegers());
+        assertEquals(secrets.toBigIntegers(),
+                fewer.recoverVector(rows(ofFewer, first), DIM, fewer.degree()).toBigIntegers());
+    }
+}
@@ -0,0 +1,144 @@
+package fptd.sharing;
+
+import static org.junit.Assert.assertEquals;
+
+import fptd.FieldVector;
+import fptd.Params;
+import fptd.ShareVector;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * The parties' PRSS shares are the dealer's and lie on one polynomial of the sharing's degree, so any T parties,
+ * or degree + 1 of packed shares, open the dealer's values. A copy or a nonce replays a stream.
+ */
+public class TestPseudoRandomSecretSharing {
+
+    private static final int T = Params.T;
+    private static final int N = Params.N;
+    private static final int[] SIZES = {5, 1, 9}; // values per request
+
+    private final Map<Integer, byte[]> keys = PseudoRandomSecretSharing.generateKeys(T, N);
+    private final PseudoRandomSecretSharing dealer = new PseudoRandomSecretSharing(-1, keys, T, N);
+
+    private List<PseudoRandomSecretSharing> parties() {
+        List<PseudoRandomSecretSharing> result = new ArrayList<>(N);
+        for (int party = 0; party < N; party++) {
+            result.add(new PseudoRandomSecretSharing(party, keys, T, N));
+        }
+        return result;
+    }
+
+    /**
+     * @return the masks of all subsets of count parties
+     */
+    private static List<Integer> subsets(int count) {
+        List<Integer> result = new ArrayList<>();
+        for (int mask = 0; mask < 1 << N; mask++) {
+            if (Integer.bitCount(mask) == count) {
+                result.add(mask);
+            }
+        }
+        return result;
+    }
+
+    private static List<ShareVector> rows(List<ShareVector> all, int mask) {
+        List<ShareVector> result = new ArrayList<>();
+        for (int party = 0; party < N; party++) {
+            if ((mask & 1 << party) != 0) {
+                result.add(all.get(party));
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testSharesOpenDealerValues() {
+        List<PseudoRandomSecretSharing> parties = parties();
+        ShamirSharing sharing = new ShamirSharing(T, N);
+        for (int size : SIZES) {
+            FieldVector values = new FieldVector(size);
+            List<ShareVector> dealt = dealer.nextAllShares(values);
+            List<ShareVector> drawn = new ArrayList<>(N);
+            for (int party = 0; party < N; party++) {
+                ShareVector own = parties.get(party).nextShares(size);
+                assertEquals("party " + party, dealt.get(party).toBigIntegers(), own.toBigIntegers());
+                drawn.add(own);
+            }
+            for (int mask : subsets(T)) { // any T parties, on one polynomial of degree T - 1
+                assertEquals("parties " + Integer.toBinaryString(mask), values.toBigIntegers(),
+                        sharing.recoverVector(rows(drawn, mask), size).toBigIntegers());
+            }
+        }
+        assertEquals(SIZES.length, dealer.getNonce());
+    }
+
+    @Test
+    public void testPackedSharesMatchPackedSharing() {
+        List<PseudoRandomSecretSharing> parties = parties();
+        PackedShamirSharing packed = new PackedShamirSharing(Params.PACK_K, T, N);
+        for (int size : SIZES) {
+            FieldVector values = new FieldVector(size);
+            List<ShareVector> dealt = dealer.nextAllPackedShares(values);
+            List<ShareVector> drawn = new ArrayList<>(N);
+            for (int party = 0; party < N; party++) {
+                ShareVector own = parties.get(party).nextPackedShares(size);
+                assertEquals(packed.blocks(size), own.size());
+                assertEquals("party " + party, dealt.get(party).toBigIntegers(), own.toBigIntegers());
+                drawn.add(own);
+            }
+            // the values are at the secret points of PackedShamirSharing, degree() + 1 parties open them
+            for (int mask : subsets(packed.degree() + 1)) {
+                assertEquals("parties " + Integer.toBinaryString(mask), values.toBigIntegers(),
+                        packed.recoverVector(rows(drawn, mask), size, packed.degree()).toBigIntegers());
+            }
+        }
+    }
+
+    @Test
+    public void testNonceAndCopyReplay() {
+        PseudoRandomSecretSharing party = new PseudoRandomSecretSharing(2, keys, T, N);
+        PseudoRandomSecretSharing atStart = party.copy();
+        List<List<BigInteger>> first = new ArrayList<>();
+        for (int size : SIZES) {
+            first.add(party.nextShares(size).toBigIntegers());
+        }
+        PseudoRandomSecretSharing atEnd = party.copy();
+        assertEquals(SIZES.length, atEnd.getNonce());
+        assertEquals(party.nextShares(4).toBigIntegers(), atEnd.nextShares(4).toBigIntegers());
+
+        for (int s = 0; s < SIZES.length; s++) { // the copy has streams of its own
+            assertEquals(first.get(s), atStart.nextShares(SIZES[s]).toBigIntegers());
+        }
+        PseudoRandomSecretSharing late = new PseudoRandomSecretSharing(2, keys, T, N);
+        late.setNonce(1);
+        assertEquals(first.get(1), late.nextShares(SIZES[1]).toBigIntegers());
+    }
+
+    @Test
+    public void testAesCtrStream() {
+        byte[] key = keys.values().iterator().next();
+        AesCtrRandom stream = new AesCtrRandom(key);
+        AesCtrRandom copy = stream.copy();
+        stream.reset(7);
+        copy.reset(7);
+        long[] first = new long[300]; // more than one buffer
+        for (int i = 0; i < first.length; i++) {
+            first[i] = stream.nextLong();
+            assertEquals(first[i], copy.nextLong());
+        }
+        stream.reset(7);
+        for (long value : first) {
+            assertEquals(value, stream.nextLong());
+        }
+        stream.reset(8);
+        int same = 0;
+        for (long value : first) {
+            same += value == stream.nextLong() ? 1 : 0;
+        }
+        assertEquals(0, same);
+    }
+}
@@ -0,0 +1,151 @@
+package fptd.sharing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import fptd.FieldVector;
+import fptd.Params;
+import fptd.ShareVector;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * The dealer's shares of the seeded parties are the ones they draw from their seeds, batch by batch, and any
+ * threshold shares, seeded ones or not, recover the secrets.
+ */
+public class TestSeededShamirSharing {
+
+    private static final int T = Params.T;
+    private static final int N = Params.N;
+    private static final int[] BATCHES = {6, 1, 70}; // secrets per batch
+
+    private final Random random = new Random(11);
+    private final Map<Integer, byte[]> seeds = SeededShamirSharing.generateSeeds(T, N);
+    private final SeededShamirSharing dealer = new SeededShamirSharing(seeds, T, N);
+
+    private FieldVector secrets(int size, int... missing) {
+        FieldVector result = new FieldVector(size);
+        for (int i = 0; i < size; i++) {
+            result.set(i, new BigInteger(Params.P.bitLength() + 8, random).mod(Params.P));
+        }
+        for (int i : missing) {
+            result.setMissing(i);
+        }
+        return result;
+    }
+
+    /**
+     * @return the rows of every party per batch, those of the seeded parties drawn by the parties themselves
+     */
+    private List<List<ShareVector>> share(List<FieldVector> batches) {
+        List<List<ShareVector>> dealt = new ArrayList<>();
+        for (FieldVector secrets : batches) {
+            dealt.add(dealer.shareBatch(secrets));
+        }
+        for (int party : SeededShamirSharing.seededParties(T, N)) {
+            SeededShamirSharing seeded = new SeededShamirSharing(party, seeds.get(party), T, N);
+            for (int b = 0; b < batches.size(); b++) {
+                ShareVector own = seeded.nextShares(batches.get(b).size());
+                ShareVector fromDealer = dealt.get(b).get(party);
+                for (int i = 0; i < own.size(); i++) {
+                    if (!fromDealer.isMissing(i)) {
+                        assertEquals("batch " + b + " of party " + party, fromDealer.get(i), own.get(i));
+                    }
+                }
+                dealt.get(b).set(party, own);
+            }
+        }
+        return dealt;
+    }
+
+    @Test
+    public void testSeededSharesMatchDealer() {
+        List<FieldVector> batches = new ArrayList<>();
+        for (int size : BATCHES) {
+            batches.add(secrets(size));
+        }
+        share(batches);
+        assertEquals(BATCHES.length, dealer.getNonce());
+
+        // a party that joins at a later batch
+        int party = SeededShamirSharing.seededParties(T, N).get(0);
+        SeededShamirSharing late = new SeededShamirSharing(party, seeds.get(party), T, N);
+        late.setNonce(BATCHES.length);
+        dealer.setNonce(BATCHES.length);
+        List<ShareVector> rows = dealer.shareBatch(secrets(4));
+        assertEquals(rows.get(party).toBigIntegers(), late.nextShares(4).toBigIntegers());
+    }
+
+    @Test
+    public void testAnyThresholdRecovers() {
+        List<FieldVector> batches = List.of(secrets(9, 0, 4, 8), secrets(3));
+        List<List<ShareVector>> dealt = share(batches);
+        ShamirSharing sharing = new ShamirSharing(T, N);
+        int subsets = 0;
+        for (int mask = 0; mask < 1 << N; mask++) {
+            if (Integer.bitCount(mask) != T) {
+                continue;
+            }
+            subsets++;
+            for (int b = 0; b < batches.size(); b++) {
+                FieldVector secrets = batches.get(b);
+                List<ShareVector> rows = new ArrayList<>();
+                for (int party = 0; party < N; party++) {
+                    if ((mask & 1 << party) != 0) {
+                        rows.add(dealt.get(b).get(party));
+                    }
+                }
+                FieldVector recovered = sharing.recoverVector(rows, secrets.size());
+                for (int i = 0; i < secrets.size(); i++) {
+                    if (secrets.isMissing(i)) { // in the dealt rows, at least one of which is in any T
+                        assertTrue(recovered.isMissing(i));
+                    } else {
+                        assertFalse(recovered.isMissing(i));
+                        assertEquals("parties " + Integer.toBinaryString(mask), secrets.get(i), recovered.get(i));
+                    }
+                }
+            }
+        }
+        assertTrue(subsets > 1);
+    }
+
+    @Test
+    public void testMissingStaysMissing() {
+        FieldVector secrets = secrets(5, 1, 3);
+        List<ShareVector> rows = dealer.shareBatch(secrets);
+        assertEquals(N, rows.size());
+        for (ShareVector row : rows) {
+            for (int i = 0; i < secrets.size(); i++) {
+                assertEquals(secrets.isMissing(i), row.isMissing(i));
+            }
+        }
+        FieldVector recovered = new ShamirSharing(T, N).recoverVector(rows, secrets.size());
+        assertEquals(secrets.toBigIntegers(), recovered.toBigIntegers()); // null where missing
+    }
+
+    @Test
+    public void testRejectMissingSeedAndSharingParty() {
+        Map<Integer, byte[]> partial = new HashMap<>(seeds);
+        partial.remove(SeededShamirSharing.seededParties(T, N).get(0));
+        try {
+            new SeededShamirSharing(partial, T, N);
+            fail("A dealer without every seed");
+        } catch (IllegalArgumentException expected) {
+            // as intended
+        }
+        int party = SeededShamirSharing.seededParties(T, N).get(0);
+        try {
+            new SeededShamirSharing(party, seeds.get(party), T, N).shareBatch(secrets(1));
+            fail("A seeded party dealt");
+        } catch (IllegalStateException expected) {
+            // as intended
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package offline;
+
+import org.junit.Test;
+import fptd.offline.OfflineCircuit;
+import fptd.offline.OfflineGate;
+import fptd.offline.FakeParty;
+
+import static fptd.Params.N;
+
+public class TestPackedElemWiseMultiplyOffline {
+
+    @Test
+    public void testFakeCircuit(){
+        FakeParty fakeParty = new FakeParty("test", N);
+        OfflineCircuit fakeCircuit = new OfflineCircuit(fakeParty);
+
+        OfflineGate a = fakeCircuit.packedInput(0, 5);
+        OfflineGate b = fakeCircuit.packedInput(0, 5);
+        OfflineGate c = fakeCircuit.packedInput(0, 5);
+        OfflineGate d = fakeCircuit.packedElemWiseMult(a, b);
+        OfflineGate e = fakeCircuit.packedElemWiseMult(d, c);
+        OfflineGate f = fakeCircuit.output(e);
+        fakeCircuit.addEndpoint(f);
+        fakeCircuit.runOffline();
+    }
+}
@@ -0,0 +1,63 @@
+package online;
+
+import static org.junit.Assert.fail;
+
+import fptd.ServerThread;
+import fptd.protocols.Circuit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Runs the circuit of every party on a ServerThread of its own, party 0 being the king
+ */
+final class Parties {
+
+    private static final long TIMEOUT_MILLIS = 120_000;
+
+    private Parties() {
+    }
+
+    static void runParties(List<Circuit> circuits, Consumer<Circuit> configure) throws InterruptedException {
+        runParties(circuits, configure, null);
+    }
+
+    /**
+     * Fails if a party throws or does not finish in time, as the others then wait for it forever
+     *
+     * @param configure applied to the circuit of every party before it runs, e.g. to set the opening mode
+     * @param statsDir  see ServerThread.setStatsDir, null for Params.STATS_DIR
+     */
+    static void runParties(List<Circuit> circuits, Consumer<Circuit> configure, String statsDir)
+            throws InterruptedException {
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int owner_idx = 0; owner_idx < circuits.size(); owner_idx++) {
+            Circuit circuit = circuits.get(owner_idx);
+            configure.accept(circuit);
+            ServerThread serverThread = new ServerThread(circuit, owner_idx, owner_idx == 0);
+            if (statsDir != null) {
+                serverThread.setStatsDir(statsDir);
+            }
+            Thread thread = new Thread(serverThread, "party-" + owner_idx);
+            thread.setDaemon(true);
+            thread.setUncaughtExceptionHandler((t, e) -> failures.add(e));
+            thread.start();
+            threads.add(thread);
+        }
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        for (Thread thread : threads) {
+            while (thread.isAlive() && failures.isEmpty() && System.currentTimeMillis() < deadline) {
+                thread.join(100);
+            }
+            if (!failures.isEmpty()) {
+                throw new AssertionError("A party failed", failures.peek());
+            }
+            if (thread.isAlive()) {
+                fail(thread.getName() + " did not finish in " + TIMEOUT_MILLIS + " ms");
+            }
+        }
+    }
+}
@@ -27,9 +27,6 @@ public class TestAdditionCircuit {
             Thread thread = new Thread(new ServerThread(circuit, owner_idx, owner_idx == 0));
             thread.start();
             threads.add(thread);
-            if (0 == owner_idx){//if it is the king
-                Thread.sleep(500);
-            }
         }
         for(Thread thread : threads){
             thread.join();
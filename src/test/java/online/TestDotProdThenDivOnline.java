@@ -31,9 +31,6 @@ public class TestDotProdThenDivOnline {
             Thread thread = new Thread(new ServerThread(circuit, owner_idx, owner_idx == 0));
             thread.start();
             threads.add(thread);
-            if (0 == owner_idx){//if it is the king
-                Thread.sleep(500);
-            }
         }
         for(Thread thread : threads){
             thread.join();
@@ -51,9 +48,6 @@ public class TestDotProdThenDivOnline {
             Thread thread = new Thread(new ServerThread(circuit, owner_idx, owner_idx == 0));
             thread.start();
             threads.add(thread);
-            if (0 == owner_idx){//if it is the king
-                Thread.sleep(500);
-            }
         }
         for(Thread thread : threads){
             thread.join();
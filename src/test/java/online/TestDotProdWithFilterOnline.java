@@ -25,13 +25,6 @@ public class TestDotProdWithFilterOnline {
             Thread thread = new Thread(new ServerThread(circuit, owner_idx, owner_idx == 0));
             thread.start();
             threads.add(thread);
-            if (0 == owner_idx){//if it is the king
-                try {
-                    Thread.sleep(500);
-                } catch (InterruptedException e) {
-                    throw new RuntimeException(e);
-                }
-            }
         }
         for(Thread thread : threads){
             try {
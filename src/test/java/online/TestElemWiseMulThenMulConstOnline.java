@@ -1,5 +1,7 @@
 package online;
 
+import static org.junit.Assert.assertEquals;
+
 import org.junit.Test;
 import fptd.EdgeServer;
 import fptd.Params;
@@ -8,6 +10,7 @@ import fptd.Share;
 import fptd.protocols.Circuit;
 import fptd.protocols.Gate;
 import fptd.protocols.InputGate;
+import fptd.protocols.OpeningMode;
 import fptd.protocols.OutputGate;
 import fptd.sharing.ShamirSharing;
 
@@ -27,9 +30,6 @@ public class TestElemWiseMulThenMulConstOnline {
             Thread thread = new Thread(new ServerThread(circuit, owner_idx, owner_idx == 0));
             thread.start();
             threads.add(thread);
-            if (0 == owner_idx){//if it is the king
-                Thread.sleep(500);
-            }
         }
         for(Thread thread : threads){
             thread.join();
@@ -37,6 +37,22 @@ public class TestElemWiseMulThenMulConstOnline {
 
     }
 
+    @Test
+    public void testTreeOpening() throws InterruptedException {
+        // 3 for N = 7 fills every internal node, with 4 party 1 has 5 and 6 but no third or fourth child
+        for (int fanout : new int[]{Params.TREE_FANOUT, 4, 1, Params.NUM_SERVER - 1}) {
+            List<Circuit> circuits = buildCircuit1();
+            Parties.runParties(circuits, circuit -> {
+                circuit.setOpeningMode(OpeningMode.TREE);
+                circuit.setTreeFanout(fanout);
+            });
+            List<List<BigInteger>> expected = List.of(List.of(BigInteger.valueOf(54), BigInteger.valueOf(315)));
+            for (Circuit circuit : circuits) {
+                assertEquals("fan-out " + fanout, expected, circuit.getOutputValues());
+            }
+        }
+    }
+
     public List<Circuit> buildCircuit1() {
         //Two workers prepare secrets
         BigInteger secret1 = BigInteger.valueOf(3);
@@ -1,6 +1,12 @@
 package online;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import fptd.Cost;
 import fptd.EdgeServer;
 import fptd.Params;
 import fptd.ServerThread;
@@ -8,15 +14,22 @@ import fptd.Share;
 import fptd.protocols.Circuit;
 import fptd.protocols.Gate;
 import fptd.protocols.InputGate;
+import fptd.protocols.OpeningMode;
 import fptd.protocols.OutputGate;
 import fptd.sharing.ShamirSharing;
 
+import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
 public class TestElemWiseMultiplyOnline {
 
+    @Rule
+    public TemporaryFolder stats = new TemporaryFolder();
+
     @Test
     public void testStart() throws InterruptedException {
        List<Circuit> circuits = buildCircuit1();
@@ -27,9 +40,6 @@ public class TestElemWiseMultiplyOnline {
             Thread thread = new Thread(new ServerThread(circuit, owner_idx, owner_idx == 0));
             thread.start();
             threads.add(thread);
-            if (0 == owner_idx){//if it is the king
-                Thread.sleep(500);
-            }
         }
         for(Thread thread : threads){
             thread.join();
@@ -37,7 +47,60 @@ public class TestElemWiseMultiplyOnline {
 
     }
 
+    @Test
+    public void testAllToAllOpening() throws InterruptedException {
+        List<Circuit> king = buildCircuit1();
+        Parties.runParties(king, circuit -> circuit.setOpeningMode(OpeningMode.KING));
+        List<Circuit> allToAll = buildCircuit1();
+        Parties.runParties(allToAll, circuit -> circuit.setOpeningMode(OpeningMode.ALL_TO_ALL));
+
+        List<List<BigInteger>> expected = List.of(List.of(BigInteger.valueOf(144), BigInteger.valueOf(315)));
+        for (int party_id : new int[]{0, Params.NUM_SERVER - 1}) { // the king and a party that is not
+            assertEquals(expected, king.get(party_id).getOutputValues());
+            assertEquals(expected, allToAll.get(party_id).getOutputValues());
+        }
+    }
+
+    @Test
+    public void testOfflinePrefetch() throws InterruptedException {
+        List<Circuit> ahead = buildCircuit1();
+        Parties.runParties(ahead, circuit -> circuit.setOfflinePrefetch(1));
+        List<Circuit> whole = buildCircuit1();
+        Parties.runParties(whole, circuit -> circuit.setOfflinePrefetch(0));
+
+        List<List<BigInteger>> expected = List.of(List.of(BigInteger.valueOf(144), BigInteger.valueOf(315)));
+        for (int party_id = 0; party_id < Params.NUM_SERVER; party_id++) {
+            assertEquals(expected, ahead.get(party_id).getOutputValues());
+            assertEquals(expected, whole.get(party_id).getOutputValues());
+        }
+    }
+
+    @Test
+    public void testStats() throws InterruptedException, IOException {
+        List<Circuit> circuits = buildCircuit1();
+        Parties.runParties(circuits, circuit -> {
+        }, stats.getRoot().getPath());
+
+        Cost king = circuits.get(0).getStats().getTotal();
+        assertTrue(king.getRounds() > 0);
+        assertTrue(king.getShares() > 0);
+        for (int party_id = 0; party_id < Params.NUM_SERVER; party_id++) {
+            Cost total = circuits.get(party_id).getStats().getTotal();
+            assertEquals(king.getRounds(), total.getRounds());
+            assertEquals(king.getShares(), total.getShares());
+
+            Path csv = stats.getRoot().toPath().resolve("test-party-" + party_id + "-stats.csv");
+            String gateRow = party_id + ",gate,";
+            long gateRows = Files.readAllLines(csv).stream().filter(line -> line.startsWith(gateRow)).count();
+            assertEquals(6, gateRows); // a, b, c, d, e and f
+        }
+    }
+
     public List<Circuit> buildCircuit1() {
+        return buildCircuit1("test");
+    }
+
+    public List<Circuit> buildCircuit1(String jobName) {
         //Two workers prepare secrets
         BigInteger secret1 = BigInteger.valueOf(3);
         BigInteger secret2 = BigInteger.valueOf(5);
@@ -55,7 +118,6 @@ public class TestElemWiseMultiplyOnline {
         List<Share> shares_secret5 = sharing.getShares(secret5);
         List<Share> shares_secret6 = sharing.getShares(secret6);
 
-        String jobName = "test";
         List<EdgeServer> servers = new ArrayList<EdgeServer>();
         for(int i = 0; i < Params.NUM_SERVER; i++){
             if(i == 0){
@@ -0,0 +1,70 @@
+package online;
+
+import static fptd.Params.N;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import fptd.Params;
+import fptd.offline.FakeParty;
+import fptd.offline.OfflineCircuit;
+import fptd.offline.OfflineGate;
+import fptd.protocols.Circuit;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * The online phase while the offline phase of the same JVM still writes the material, as Main runs with
+ * -Dfptd.offline.pipeline=true. FakeParty reads Params.OFFLINE_PIPELINE once, so without it the class runs
+ * once more in a JVM with it.
+ */
+public class TestOfflinePipelineOnline {
+
+    private static final String JOB = "pipeline-test";
+
+    @Test
+    public void testPipelined() throws InterruptedException, IOException {
+        if (!Params.OFFLINE_PIPELINE) {
+            Process process = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-ea", "-Dfptd.offline.pipeline=true", "-cp", System.getProperty("java.class.path"),
+                    "org.junit.runner.JUnitCore", TestOfflinePipelineOnline.class.getName())
+                    .redirectErrorStream(true).start();
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            assertEquals(output, 0, process.waitFor());
+            assertTrue(output, output.contains("OK ("));
+            return;
+        }
+        FakeParty fakeParty = new FakeParty(JOB, N);
+        // the parties open their files before a single gate is written, so they all stream them
+        List<Circuit> circuits = new TestElemWiseMultiplyOnline().buildCircuit1(JOB);
+        for (Circuit circuit : circuits) {
+            assertTrue(circuit.getServer().isOfflineStreaming());
+        }
+        Thread offline = new Thread(() -> {
+            try {
+                OfflineCircuit fakeCircuit = new OfflineCircuit(fakeParty);
+                OfflineGate a = fakeCircuit.input(0, 2);
+                OfflineGate b = fakeCircuit.input(0, 2);
+                OfflineGate c = fakeCircuit.input(0, 2);
+                OfflineGate d = fakeCircuit.elemWiseMult(a, b);
+                OfflineGate e = fakeCircuit.elemWiseMult(d, c);
+                fakeCircuit.addEndpoint(fakeCircuit.output(e));
+                fakeCircuit.runOffline();
+            } finally {
+                fakeParty.close();
+            }
+        }, "offline");
+        offline.start();
+
+        Parties.runParties(circuits, circuit -> {
+        });
+        offline.join();
+        List<List<BigInteger>> expected = List.of(List.of(BigInteger.valueOf(144), BigInteger.valueOf(315)));
+        for (Circuit circuit : circuits) {
+            assertEquals(expected, circuit.getOutputValues());
+        }
+    }
+}
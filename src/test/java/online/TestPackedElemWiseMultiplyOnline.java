@@ -0,0 +1,111 @@
+package online;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import fptd.EdgeServer;
+import fptd.FieldVector;
+import fptd.Params;
+import fptd.ShareVector;
+import fptd.protocols.Circuit;
+import fptd.protocols.Gate;
+import fptd.protocols.OpeningMode;
+import fptd.protocols.OutputGate;
+import fptd.protocols.PackedInputGate;
+import fptd.sharing.PackedShamirSharing;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestPackedElemWiseMultiplyOnline {
+
+    @Test
+    public void testStart() throws InterruptedException {
+        List<Circuit> circuits = buildCircuit1();
+
+        Parties.runParties(circuits, circuit -> {
+        });
+        assertOutputs(circuits);
+    }
+
+    @Test
+    public void testShardedOpening() throws InterruptedException {
+        List<Circuit> circuits = buildCircuit1();
+
+        Parties.runParties(circuits, circuit -> circuit.setOpeningMode(OpeningMode.SHARDED));
+        assertOutputs(circuits);
+    }
+
+    @Test
+    public void testStreamedOpening() throws InterruptedException {
+        List<Circuit> circuits = buildCircuit1();
+
+        Parties.runParties(circuits, circuit -> {
+            circuit.setOpeningMode(OpeningMode.KING);
+            circuit.setOpeningChunk(1);
+        });
+        assertOutputs(circuits);
+    }
+
+    /**
+     * a * b * c at every party
+     */
+    private static void assertOutputs(List<Circuit> circuits) {
+        List<BigInteger> values = new ArrayList<>();
+        for (int value : new int[]{54, 90, 108, 126, 144}) {
+            values.add(BigInteger.valueOf(value));
+        }
+        for (int party_id = 0; party_id < circuits.size(); party_id++) {
+            assertEquals("party " + party_id, List.of(values), circuits.get(party_id).getOutputValues());
+        }
+    }
+
+    public List<Circuit> buildCircuit1() {
+        //Five secrets per input, packed Params.PACK_K per share
+        FieldVector secrets_a = FieldVector.of(List.of(BigInteger.valueOf(3), BigInteger.valueOf(5),
+                BigInteger.valueOf(6), BigInteger.valueOf(7), BigInteger.valueOf(8)));
+        FieldVector secrets_b = FieldVector.filled(5, BigInteger.valueOf(9));
+        FieldVector secrets_c = FieldVector.filled(5, BigInteger.TWO);
+
+        //Get packed shares, one row per edge server
+        PackedShamirSharing sharing = new PackedShamirSharing(Params.PACK_K);
+        List<ShareVector> shares_a = sharing.shareBatch(secrets_a);
+        List<ShareVector> shares_b = sharing.shareBatch(secrets_b);
+        List<ShareVector> shares_c = sharing.shareBatch(secrets_c);
+
+        String jobName = "test";
+        List<EdgeServer> servers = new ArrayList<EdgeServer>();
+        for(int i = 0; i < Params.NUM_SERVER; i++){
+            if(i == 0){
+                EdgeServer king = new EdgeServer(true, i, jobName);
+                servers.add(king);
+            }else{
+                servers.add(new EdgeServer(false, i, jobName));
+            }
+        }
+        List<Circuit> circuits = new ArrayList<>();
+        for(int i = 0; i < servers.size(); i++){
+            Circuit circuit = new Circuit(servers.get(i));
+            circuits.add(circuit);
+        }
+
+        for(int owner_id = 0; owner_id < servers.size(); owner_id++){
+            Circuit circuitI = circuits.get(owner_id);
+            int dim = 5;
+            PackedInputGate a = circuitI.packedInput(owner_id, dim);
+            PackedInputGate b = circuitI.packedInput(owner_id, dim);
+            PackedInputGate c = circuitI.packedInput(owner_id, dim);
+            Gate d = circuitI.packedElemMultiply(a, b);
+            Gate e = circuitI.packedElemMultiply(d, c);
+            OutputGate f = circuitI.packedOutput(e);
+            circuitI.addEndpoint(f);
+
+            //Send shares to the corresponding edge server
+            a.setInput(shares_a.get(owner_id));
+            b.setInput(shares_b.get(owner_id));
+            c.setInput(shares_c.get(owner_id));
+        }
+        return circuits;
+    }
+}
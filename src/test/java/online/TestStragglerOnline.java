@@ -0,0 +1,159 @@
+package online;
+
+import static fptd.Params.N;
+import static fptd.Params.T;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import fptd.EdgeServer;
+import fptd.FieldVector;
+import fptd.Params;
+import fptd.Share;
+import fptd.offline.FakeParty;
+import fptd.offline.OfflineCircuit;
+import fptd.offline.OfflineGate;
+import fptd.net.MemoryTransport;
+import fptd.net.Sessions;
+import fptd.net.Transport;
+import fptd.protocols.Circuit;
+import fptd.protocols.InputGate;
+import fptd.protocols.OpeningMode;
+import fptd.sharing.ShamirSharing;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * A party whose share vectors reach the king one round late: the king reconstructs every round from the first
+ * T parties, drops the late vector when it arrives during the next round and waits for the last one in close.
+ */
+public class TestStragglerOnline {
+
+    private static final String JOB = "straggler-test";
+    private static final int STRAGGLER = 1; // read before most parties, a vector of an earlier round would count
+    private static final int DIM = 2;
+
+    @After
+    public void delete() throws IOException {
+        for (int party_id = 0; party_id < N; party_id++) {
+            Files.deleteIfExists(Path.of(Params.FAKE_OFFLINE_DIR, JOB + "-party-" + party_id + FakeParty.FILE_SUFFIX));
+        }
+    }
+
+    /**
+     * Holds every message to another party until the next one is sent, so it arrives after the round it belongs
+     * to: the party only sends again once the king has sent the values of that round
+     */
+    private static final class StragglerTransport implements Transport {
+
+        private final Transport transport;
+        private final int party_id;
+        private final List<Runnable> held = new ArrayList<>();
+        private int sentToKing = 0;
+
+        private StragglerTransport(Transport transport, int party_id) {
+            this.transport = transport;
+            this.party_id = party_id;
+        }
+
+        @Override
+        public void connect(Sessions sessions, String handshake) throws IOException {
+            transport.connect(sessions, handshake);
+        }
+
+        @Override
+        public synchronized void send(int session, int party_id, FieldVector message) throws IOException {
+            release();
+            if (party_id == this.party_id) {
+                transport.send(session, party_id, message);
+                return;
+            }
+            sentToKing += party_id == 0 ? 1 : 0;
+            held.add(() -> {
+                try {
+                    transport.send(session, party_id, message);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+
+        @Override
+        public synchronized void sendToAll(int session, FieldVector message) throws IOException {
+            for (int i = 0; i < N; i++) {
+                send(session, i, message);
+            }
+        }
+
+        private void release() {
+            held.forEach(Runnable::run);
+            held.clear();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            release();
+            transport.close();
+        }
+    }
+
+    private static void generateOffline() {
+        FakeParty fakeParty = new FakeParty(JOB, N);
+        OfflineCircuit circuit = new OfflineCircuit(fakeParty);
+        OfflineGate a = circuit.input(0, DIM);
+        OfflineGate b = circuit.input(0, DIM);
+        OfflineGate c = circuit.input(0, DIM);
+        circuit.addEndpoint(circuit.output(circuit.elemWiseMult(circuit.elemWiseMult(a, b), c)));
+        circuit.runOffline();
+        fakeParty.close();
+    }
+
+    @Test
+    public void testStraggler() throws InterruptedException {
+        assertTrue(N - 1 >= T); // the king does not need the straggler
+        generateOffline();
+        ShamirSharing sharing = new ShamirSharing();
+        List<List<Share>> secrets = new ArrayList<>();
+        for (int secret : new int[]{3, 5, 6, 7, 8, 9}) {
+            secrets.add(sharing.getShares(BigInteger.valueOf(secret)));
+        }
+
+        List<EdgeServer> servers = new ArrayList<>();
+        List<Circuit> circuits = new ArrayList<>();
+        StragglerTransport straggler = null;
+        for (int party_id = 0; party_id < N; party_id++) {
+            Transport transport = new MemoryTransport(JOB, party_id, N);
+            if (party_id == STRAGGLER) {
+                straggler = new StragglerTransport(transport, party_id);
+                transport = straggler;
+            }
+            EdgeServer server = new EdgeServer(party_id == 0, party_id, JOB, transport);
+            servers.add(server);
+            Circuit circuit = new Circuit(server);
+            InputGate[] inputs = new InputGate[3];
+            for (int i = 0; i < inputs.length; i++) {
+                inputs[i] = circuit.input(party_id, DIM);
+                inputs[i].setInput(List.of(secrets.get(2 * i).get(party_id), secrets.get(2 * i + 1).get(party_id)));
+            }
+            circuit.addEndpoint(circuit.output(circuit.elemMultiply(circuit.elemMultiply(inputs[0], inputs[1]),
+                    inputs[2])));
+            circuits.add(circuit);
+        }
+        Parties.runParties(circuits, circuit -> circuit.setOpeningMode(OpeningMode.KING));
+
+        // every party got the values of every round right, the king never used a vector of an earlier round
+        List<List<BigInteger>> expected = List.of(List.of(BigInteger.valueOf(144), BigInteger.valueOf(315)));
+        for (Circuit circuit : circuits) {
+            assertEquals(expected, circuit.getOutputValues());
+        }
+        assertTrue(straggler.sentToKing > 1);
+        // close waited for the late vectors: per round the king received one from every party and its own values
+        long rounds = straggler.sentToKing;
+        assertEquals((N + 1) * rounds, servers.get(0).getCost().getMessagesReceived());
+    }
+}